@@ -21,6 +21,9 @@ import java.util.concurrent.atomic.AtomicReference;
 import javax.management.NotCompliantMBeanException;
 import javax.management.StandardMBean;
 
+import org.apache.sling.engine.impl.filter.LatencyHistogram;
+import org.apache.sling.engine.impl.filter.ServletFilterManager;
+import org.apache.sling.engine.impl.filter.ServletFilterManager.FilterChainType;
 import org.apache.sling.engine.impl.request.RequestData;
 import org.apache.sling.engine.jmx.RequestProcessorMBean;
 
@@ -32,8 +35,15 @@ class RequestProcessorMBeanImpl extends StandardMBean implements RequestProcesso
 
     private final AtomicReference<Data> dataRef = new AtomicReference<Data>(new Data());
 
+    private final ServletFilterManager filterManager;
+
     RequestProcessorMBeanImpl() throws NotCompliantMBeanException {
+        this(null);
+    }
+
+    RequestProcessorMBeanImpl(final ServletFilterManager filterManager) throws NotCompliantMBeanException {
         super(RequestProcessorMBean.class);
+        this.filterManager = filterManager;
     }
 
     void addRequestData(final RequestData data) {
@@ -58,6 +68,11 @@ class RequestProcessorMBeanImpl extends StandardMBean implements RequestProcesso
     
     public void resetStatistics() {
         dataRef.set(new Data());
+        if (filterManager != null) {
+            for (final FilterChainType type : FilterChainType.values()) {
+                filterManager.getFilterChain(type).getHistogram().reset();
+            }
+        }
     }    
 
     public long getRequestsCount() {
@@ -114,6 +129,24 @@ class RequestProcessorMBeanImpl extends StandardMBean implements RequestProcesso
         return dataRef.get().standardDeviationServletCallCount;
     }
     
+    public long getFilterChainInvocationsCount(final String filterChainType) {
+        final LatencyHistogram histogram = getFilterChainHistogram(filterChainType);
+        return (histogram != null) ? histogram.getCount() : 0;
+    }
+
+    public double getFilterChainDurationPercentileMsec(final String filterChainType, final double percentile) {
+        final LatencyHistogram histogram = getFilterChainHistogram(filterChainType);
+        return (histogram != null) ? histogram.getValueAtPercentile(percentile) / 1000000d : 0;
+    }
+
+    private LatencyHistogram getFilterChainHistogram(final String filterChainType) {
+        if (filterChainType == null) {
+            throw new IllegalArgumentException("Missing filter chain type");
+        }
+        final FilterChainType type = FilterChainType.valueOf(filterChainType.toUpperCase());
+        return (filterManager != null) ? filterManager.getFilterChain(type).getHistogram() : null;
+    }
+
     /**
      * Helper class to atomically hold raw data and compute statistics
      */
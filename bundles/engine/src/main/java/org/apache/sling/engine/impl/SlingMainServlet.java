@@ -461,7 +461,7 @@ public class SlingMainServlet extends GenericServlet {
             Dictionary<String, String> mbeanProps = new Hashtable<>();
             mbeanProps.put("jmx.objectname", "org.apache.sling:type=engine,service=RequestProcessor");
 
-            RequestProcessorMBeanImpl mbean = new RequestProcessorMBeanImpl();
+            RequestProcessorMBeanImpl mbean = new RequestProcessorMBeanImpl(filterManager);
             requestProcessorMBeanRegistration = bundleContext.registerService(RequestProcessorMBean.class, mbean, mbeanProps);
             requestProcessor.setMBean(mbean);
         } catch (Throwable t) {
@@ -53,6 +53,7 @@ import org.apache.sling.engine.impl.filter.RequestSlingFilterChain;
 import org.apache.sling.engine.impl.filter.ServletFilterManager;
 import org.apache.sling.engine.impl.filter.ServletFilterManager.FilterChainType;
 import org.apache.sling.engine.impl.filter.SlingComponentFilterChain;
+import org.apache.sling.engine.impl.filter.SlingFilterChainHelper;
 import org.apache.sling.engine.impl.parameters.ParameterSupport;
 import org.apache.sling.engine.impl.request.ContentData;
 import org.apache.sling.engine.impl.request.RequestData;
@@ -140,10 +141,11 @@ public class SlingRequestProcessorImpl implements SlingRequestProcessor {
             Resource resource = requestData.initResource(resourceResolver);
             requestData.initServlet(resource, sr);
 
-            FilterHandle[] filters = filterManager.getFilters(FilterChainType.REQUEST);
+            SlingFilterChainHelper chain = filterManager.getFilterChain(FilterChainType.REQUEST);
+            FilterHandle[] filters = chain.getFilters();
             if (filters != null) {
                 FilterChain processor = new RequestSlingFilterChain(this,
-                    filters);
+                    filters, chain.getHistogram());
 
                 request.getRequestProgressTracker().log(
                     "Applying " + FilterChainType.REQUEST + "filters");
@@ -273,10 +275,11 @@ public class SlingRequestProcessorImpl implements SlingRequestProcessor {
             final FilterChainType filterChainType) throws IOException,
             ServletException {
 
-        FilterHandle filters[] = filterManager.getFilters(filterChainType);
+        SlingFilterChainHelper chain = filterManager.getFilterChain(filterChainType);
+        FilterHandle filters[] = chain.getFilters();
         if (filters != null) {
 
-            FilterChain processor = new SlingComponentFilterChain(filters);
+            FilterChain processor = new SlingComponentFilterChain(filters, chain.getHistogram());
             request.getRequestProgressTracker().log(
                 "Applying " + filterChainType + "filters");
             processor.doFilter(request, response);
@@ -335,9 +338,10 @@ public class SlingRequestProcessorImpl implements SlingRequestProcessor {
         // the response output stream if reset does not reset this
         response = new ErrorResponseWrapper(response);
 
-        FilterHandle[] filters = filterManager.getFilters(FilterChainType.ERROR);
+        SlingFilterChainHelper chain = filterManager.getFilterChain(FilterChainType.ERROR);
+        FilterHandle[] filters = chain.getFilters();
         if (filters != null && filters.length > 0) {
-            FilterChain processor = new AbstractSlingFilterChain(filters) {
+            FilterChain processor = new AbstractSlingFilterChain(filters, chain.getHistogram()) {
 
                 @Override
                 protected void render(SlingHttpServletRequest request,
@@ -367,9 +371,10 @@ public class SlingRequestProcessorImpl implements SlingRequestProcessor {
         // the response output stream if reset does not reset this
         response = new ErrorResponseWrapper(response);
 
-        FilterHandle[] filters = filterManager.getFilters(FilterChainType.ERROR);
+        SlingFilterChainHelper chain = filterManager.getFilterChain(FilterChainType.ERROR);
+        FilterHandle[] filters = chain.getFilters();
         if (filters != null && filters.length > 0) {
-            FilterChain processor = new AbstractSlingFilterChain(filters) {
+            FilterChain processor = new AbstractSlingFilterChain(filters, chain.getHistogram()) {
 
                 @Override
                 protected void render(SlingHttpServletRequest request,
@@ -23,6 +23,7 @@ import java.util.Dictionary;
 import java.util.Hashtable;
 
 import org.apache.sling.engine.impl.filter.FilterHandle;
+import org.apache.sling.engine.impl.filter.LatencyHistogram;
 import org.apache.sling.engine.impl.filter.ServletFilterManager;
 import org.apache.sling.engine.impl.filter.ServletFilterManager.FilterChainType;
 import org.osgi.framework.BundleContext;
@@ -84,9 +85,13 @@ public class WebConsoleConfigPrinter {
             pw.println("---");
         } else {
             for(final FilterHandle entry : entries) {
-                pw.printf("%d : %s (id: %d, property: %s); called: %d; time: %dms; time/call: %dµs%n",
+                final LatencyHistogram histogram = entry.getHistogram();
+                pw.printf("%d : %s (id: %d, property: %s); called: %d; time: %dms; time/call: %dµs; "
+                    + "p50: %dµs; p95: %dµs; p99: %dµs; max: %dµs%n",
                     entry.getOrder(), entry.getFilter().getClass(), entry.getFilterId(), entry.getOrderSource(),
-                    entry.getCalls(), entry.getTime(), entry.getTimePerCall());
+                    entry.getCalls(), entry.getTime(), entry.getTimePerCall(),
+                    histogram.getValueAtPercentile(50) / 1000, histogram.getValueAtPercentile(95) / 1000,
+                    histogram.getValueAtPercentile(99) / 1000, histogram.getMax() / 1000);
             }
         }
     }
@@ -38,17 +38,32 @@ public abstract class AbstractSlingFilterChain implements FilterChain {
 
     private long[] times;
 
+    private boolean[] called;
+
+    private final LatencyHistogram histogram;
+
     protected AbstractSlingFilterChain(FilterHandle[] filters) {
+        this(filters, null);
+    }
+
+    /**
+     * @param filters The filters of the chain
+     * @param histogram The histogram recording the time spent in the filters
+     *            of the chain, may be <code>null</code>
+     */
+    protected AbstractSlingFilterChain(FilterHandle[] filters, LatencyHistogram histogram) {
         this.filters = filters;
         this.current = -1;
         this.times = (filters != null) ? new long[filters.length + 1] : null;
+        this.called = (filters != null) ? new boolean[filters.length] : null;
+        this.histogram = histogram;
     }
 
     public void doFilter(ServletRequest request, ServletResponse response)
             throws ServletException, IOException {
 
         final int filterIdx = ++this.current;
-        final long start = System.currentTimeMillis();
+        final long start = System.nanoTime();
 
         // the previous filter may have wrapped non-Sling request and response
         // wrappers (e.g. WebCastellum does this), so we have to make
@@ -65,6 +80,7 @@ public abstract class AbstractSlingFilterChain implements FilterChain {
                 
                 if (filter.select(slingRequest)) {
                     trackFilter(slingRequest, filter);
+                    called[filterIdx] = true;
                     filter.getFilter().doFilter(slingRequest, slingResponse, this);
                 } else {
                     if (this.current == this.filters.length-1) {
@@ -78,7 +94,7 @@ public abstract class AbstractSlingFilterChain implements FilterChain {
             }
 
         } finally {
-            times[filterIdx] = System.currentTimeMillis() - start;
+            times[filterIdx] = System.nanoTime() - start;
             if (filterIdx == 0) {
                 consolidateFilterTimings(slingRequest);
             }
@@ -106,16 +122,31 @@ public abstract class AbstractSlingFilterChain implements FilterChain {
             RequestData data = RequestData.getRequestData(request);
             RequestProgressTracker tracker = (data != null) ? data.getRequestProgressTracker() : null;
 
-            for (int i = filters.length - 1; i > 0; i--) {
-                filters[i].trackTime(times[i] - times[i + 1]);
+            for (int i = filters.length - 1; i >= 0; i--) {
+                if (!called[i]) {
+                    continue;
+                }
+                final long outer = times[i] - times[i + 1];
+                filters[i].trackTime(outer);
                 if (tracker != null) {
                     tracker.log("Filter timing: filter={0}, inner={1}, total={2}, outer={3}",
-                        filters[i].getFilter().getClass().getName(), times[i + 1], times[i], (times[i] - times[i + 1]));
+                        filters[i].getFilter().getClass().getName(), toMsec(times[i + 1]), toMsec(times[i]),
+                        toMsec(outer));
                 }
             }
+
+            // times[filters.length] is the time spent rendering, unless a
+            // filter did not continue the chain
+            if (histogram != null && filters.length > 0) {
+                histogram.update(times[0] - times[filters.length]);
+            }
         }
     }
 
+    private static long toMsec(final long nanos) {
+        return nanos / 1000000L;
+    }
+
     private SlingHttpServletRequest toSlingRequest(ServletRequest request) {
         if (request instanceof SlingHttpServletRequest) {
             return (SlingHttpServletRequest) request;
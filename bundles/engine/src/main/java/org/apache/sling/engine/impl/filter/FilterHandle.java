@@ -40,6 +40,8 @@ public class FilterHandle implements Comparable<FilterHandle> {
     private AtomicLong calls;
 
     private AtomicLong time;
+
+    private final LatencyHistogram histogram;
     
     FilterProcessorMBeanImpl mbean;
 
@@ -56,6 +58,7 @@ public class FilterHandle implements Comparable<FilterHandle> {
         this.orderSource = orderSource;
         this.calls = new AtomicLong();
         this.time = new AtomicLong();
+        this.histogram = new LatencyHistogram();
         this.mbean = mbean;
     }
 
@@ -93,22 +96,42 @@ public class FilterHandle implements Comparable<FilterHandle> {
         return calls.get();
     }
 
+    /**
+     * Returns the time spent in the filter in milliseconds.
+     */
     public long getTime() {
-        return time.get();
+        return time.get() / 1000000L;
     }
 
+    /**
+     * Returns the mean time spent in the filter per call in microseconds or
+     * -1 if the filter has not been called yet.
+     */
     public long getTimePerCall() {
-        return (getCalls() > 0) ? (1000L * getTime() / getCalls()) : -1;
+        return (getCalls() > 0) ? (time.get() / 1000L / getCalls()) : -1;
+    }
+
+    /**
+     * Returns the histogram of the time spent in the filter per call.
+     */
+    public LatencyHistogram getHistogram() {
+        return histogram;
     }
 
     void track() {
         calls.incrementAndGet();
     }
 
-    void trackTime(long time) {
-        this.time.addAndGet(time);
+    /**
+     * Records the time spent in the filter for one call.
+     *
+     * @param nanos The time in nanoseconds
+     */
+    void trackTime(long nanos) {
+        this.time.addAndGet(nanos);
+        this.histogram.update(nanos);
         if (mbean != null) {
-            mbean.addFilterHandle(this);
+            mbean.trackTime(nanos);
         }
     }
 
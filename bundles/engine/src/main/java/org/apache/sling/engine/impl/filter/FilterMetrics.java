@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.filter;
+
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+
+import org.apache.sling.commons.metrics.Gauge;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
+
+/**
+ * The <code>FilterMetrics</code> publishes the statistics of a
+ * {@link LatencyHistogram} as Sling Commons Metrics gauges. The gauges are
+ * registered as services and picked up by the metrics service, so the
+ * durations are only read when the metrics are reported and recording them
+ * stays as cheap as it is.
+ * <p>
+ * The metrics package is an optional import: callers must be prepared for
+ * this class failing to load.
+ */
+class FilterMetrics {
+
+    private final List<ServiceRegistration<?>> registrations = new ArrayList<ServiceRegistration<?>>();
+
+    /**
+     * Registers the gauges <code>&lt;prefix&gt;.count</code> and the
+     * durations in milliseconds <code>&lt;prefix&gt;.p50</code>,
+     * <code>.p95</code>, <code>.p99</code> and <code>.max</code>.
+     */
+    FilterMetrics(final BundleContext context, final String prefix, final LatencyHistogram histogram) {
+        register(context, prefix + ".count", new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return histogram.getCount();
+            }
+        });
+        register(context, prefix + ".p50", new PercentileGauge(histogram, 50));
+        register(context, prefix + ".p95", new PercentileGauge(histogram, 95));
+        register(context, prefix + ".p99", new PercentileGauge(histogram, 99));
+        register(context, prefix + ".max", new PercentileGauge(histogram, 100));
+    }
+
+    private void register(final BundleContext context, final String name, final Gauge<?> gauge) {
+        final Dictionary<String, Object> props = new Hashtable<String, Object>();
+        props.put(Gauge.NAME, name);
+        registrations.add(context.registerService(Gauge.class.getName(), gauge, props));
+    }
+
+    void unregister() {
+        for (final ServiceRegistration<?> registration : registrations) {
+            try {
+                registration.unregister();
+            } catch (final IllegalStateException ise) {
+                // already unregistered by the framework
+            }
+        }
+        registrations.clear();
+    }
+
+    private static final class PercentileGauge implements Gauge<Double> {
+
+        private final LatencyHistogram histogram;
+
+        private final double percentile;
+
+        PercentileGauge(final LatencyHistogram histogram, final double percentile) {
+            this.histogram = histogram;
+            this.percentile = percentile;
+        }
+
+        @Override
+        public Double getValue() {
+            return histogram.getValueAtPercentile(percentile) / 1000000d;
+        }
+    }
+}
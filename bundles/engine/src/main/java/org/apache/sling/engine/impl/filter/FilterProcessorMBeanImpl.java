@@ -24,37 +24,60 @@ import org.apache.sling.engine.jmx.FilterProcessorMBean;
 /**
  * This is the implementation of the management interface for the
  * FilterProcessorMBean.
+ * <p>
+ * A filter registered for several scopes shares the same MBean, so the
+ * statistics cover the invocations in all filter chains.
  */
 public class FilterProcessorMBeanImpl extends StandardMBean implements FilterProcessorMBean{
-    
-    // number of filter invocations
-    private volatile long n;
-    
-    private volatile double meanDuration;
-    
+
+    private static final double NANOS_PER_MSEC = 1000000d;
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
     public FilterProcessorMBeanImpl() throws NotCompliantMBeanException{
         super(FilterProcessorMBean.class);
-        resetStatistics();
     }
 
-    void addFilterHandle(FilterHandle filterHandle) {        
-        this.n = filterHandle.getCalls();        
-        this.meanDuration = (double)filterHandle.getTimePerCall()/1000;
+    LatencyHistogram getHistogram() {
+        return this.histogram;
+    }
+
+    void trackTime(final long nanos) {
+        this.histogram.update(nanos);
     }
 
     @Override
     public long getInvocationsCount() {
-        return this.n;
+        return this.histogram.getCount();
     }
 
     @Override
     public double getMeanFilterDurationMsec() {
-        return this.meanDuration;
+        return this.histogram.getMean() / NANOS_PER_MSEC;
+    }
+
+    @Override
+    public double getMedianFilterDurationMsec() {
+        return this.histogram.getValueAtPercentile(50) / NANOS_PER_MSEC;
+    }
+
+    @Override
+    public double get95thPercentileFilterDurationMsec() {
+        return this.histogram.getValueAtPercentile(95) / NANOS_PER_MSEC;
+    }
+
+    @Override
+    public double get99thPercentileFilterDurationMsec() {
+        return this.histogram.getValueAtPercentile(99) / NANOS_PER_MSEC;
     }
-    
+
+    @Override
+    public double getMaxFilterDurationMsec() {
+        return this.histogram.getMax() / NANOS_PER_MSEC;
+    }
+
     @Override
     public void resetStatistics() {
-        this.n = 0;
-        this.meanDuration = 0;
+        this.histogram.reset();
     }
 }
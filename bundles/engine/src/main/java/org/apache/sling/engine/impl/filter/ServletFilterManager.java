@@ -99,6 +99,8 @@ public class ServletFilterManager extends ServiceTracker<Filter, Filter> {
 
     private Map <Long, ServiceRegistration<FilterProcessorMBean>> mbeanMap;
 
+    private final Map<Object, FilterMetrics> metricsMap;
+
     public ServletFilterManager(final BundleContext context,
             final SlingServletContext servletContext) {
         super(context, Filter.class, null);
@@ -110,6 +112,23 @@ public class ServletFilterManager extends ServiceTracker<Filter, Filter> {
         this.filterChains[FilterChainType.FORWARD.ordinal()] = new SlingFilterChainHelper();
         this.filterChains[FilterChainType.COMPONENT.ordinal()] = new SlingFilterChainHelper();
         this.mbeanMap = new HashMap<Long, ServiceRegistration<FilterProcessorMBean>>();
+        this.metricsMap = new HashMap<Object, FilterMetrics>();
+    }
+
+    @Override
+    public void open() {
+        for (final FilterChainType type : FilterChainType.values()) {
+            registerMetrics(type, "sling.engine.filterChain." + type, getFilterChain(type).getHistogram());
+        }
+        super.open();
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        for (final FilterChainType type : FilterChainType.values()) {
+            unregisterMetrics(type);
+        }
     }
 
     public SlingFilterChainHelper getFilterChain(final FilterChainType chain) {
@@ -189,6 +208,9 @@ public class ServletFilterManager extends ServiceTracker<Filter, Filter> {
                 log.debug("Unable to register mbean", t);
                 mbean = null;
             }
+            if (mbean != null) {
+                registerMetrics(serviceId, "sling.engine.filter." + filterName, mbean.getHistogram());
+            }
 
             final FilterConfig config = new SlingFilterConfig(
                 servletContext, reference, filterName);
@@ -274,6 +296,7 @@ public class ServletFilterManager extends ServiceTracker<Filter, Filter> {
         if (mbean != null) {
             mbean.unregister();
         }
+        unregisterMetrics(serviceId);
 
         boolean removed = false;
         for (SlingFilterChainHelper filterChain : filterChains) {
@@ -289,4 +312,29 @@ public class ServletFilterManager extends ServiceTracker<Filter, Filter> {
             }
         }
     }
+
+    /**
+     * Registers the metrics gauges of the histogram, unless the Sling Commons
+     * Metrics API is not available.
+     */
+    private void registerMetrics(final Object key, final String prefix, final LatencyHistogram histogram) {
+        try {
+            final FilterMetrics metrics = new FilterMetrics(context, prefix, histogram);
+            synchronized (metricsMap) {
+                metricsMap.put(key, metrics);
+            }
+        } catch (Throwable t) {
+            log.debug("Unable to register metrics for {}", prefix, t);
+        }
+    }
+
+    private void unregisterMetrics(final Object key) {
+        final FilterMetrics metrics;
+        synchronized (metricsMap) {
+            metrics = metricsMap.remove(key);
+        }
+        if (metrics != null) {
+            metrics.unregister();
+        }
+    }
 }
@@ -39,6 +39,8 @@ public class SlingFilterChainHelper {
 
     private FilterHandle[] filters = EMPTY_FILTER_ARRAY;
 
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
     SlingFilterChainHelper() {
     }
 
@@ -79,6 +81,14 @@ public class SlingFilterChainHelper {
         return filters;
     }
 
+    /**
+     * Returns the histogram of the time spent in the filters of the chain
+     * per request, not including the time spent rendering.
+     */
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
     private FilterHandle[] getFiltersInternal() {
         if (filterList == null || filterList.isEmpty()) {
             return EMPTY_FILTER_ARRAY;
@@ -42,6 +42,46 @@ public interface FilterProcessorMBean {
      */
     double getMeanFilterDurationMsec();
 
+    /**
+     * Returns the median filter invocation time in milliseconds since
+     * resetting the statistics.
+     *
+     * @return Get median filter duration
+     * @see #resetStatistics()
+     * @since 1.2, Sling Engine 2.6.9
+     */
+    double getMedianFilterDurationMsec();
+
+    /**
+     * Returns the filter invocation time in milliseconds below which 95% of
+     * the invocations since resetting the statistics are.
+     *
+     * @return Get 95th percentile of the filter duration
+     * @see #resetStatistics()
+     * @since 1.2, Sling Engine 2.6.9
+     */
+    double get95thPercentileFilterDurationMsec();
+
+    /**
+     * Returns the filter invocation time in milliseconds below which 99% of
+     * the invocations since resetting the statistics are.
+     *
+     * @return Get 99th percentile of the filter duration
+     * @see #resetStatistics()
+     * @since 1.2, Sling Engine 2.6.9
+     */
+    double get99thPercentileFilterDurationMsec();
+
+    /**
+     * Returns the time in milliseconds used by the longest filter invocation
+     * since resetting the statistics.
+     *
+     * @return Get max filter duration
+     * @see #resetStatistics()
+     * @since 1.2, Sling Engine 2.6.9
+     */
+    double getMaxFilterDurationMsec();
+
     /**
      * Resets all statistics values and restarts from zero.
      */
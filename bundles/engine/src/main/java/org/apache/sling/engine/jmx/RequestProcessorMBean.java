@@ -146,6 +146,38 @@ public interface RequestProcessorMBean {
      */
     double getStandardDeviationServletCallCount();
 
+    /**
+     * Returns the number of invocations of the filter chain of the given type
+     * since last resetting the statistics.
+     *
+     * @param filterChainType The type of the filter chain, one of
+     *            <code>REQUEST</code>, <code>ERROR</code>, <code>INCLUDE</code>,
+     *            <code>FORWARD</code> or <code>COMPONENT</code>
+     * @return Number of filter chain invocations
+     * @throws IllegalArgumentException if the filter chain type is unknown
+     * @see #resetStatistics()
+     * @since 1.2, Sling Engine 2.6.9
+     */
+    long getFilterChainInvocationsCount(String filterChainType);
+
+    /**
+     * Returns the time in milliseconds spent in the filters of the filter
+     * chain of the given type, below which the given percentage of the
+     * invocations since last resetting the statistics are. The time spent
+     * rendering the request at the end of the chain is not included. A
+     * percentile of 100 returns the longest invocation.
+     *
+     * @param filterChainType The type of the filter chain, one of
+     *            <code>REQUEST</code>, <code>ERROR</code>, <code>INCLUDE</code>,
+     *            <code>FORWARD</code> or <code>COMPONENT</code>
+     * @param percentile The percentile, between 0 and 100
+     * @return Filter chain duration at the percentile
+     * @throws IllegalArgumentException if the filter chain type is unknown
+     * @see #resetStatistics()
+     * @since 1.2, Sling Engine 2.6.9
+     */
+    double getFilterChainDurationPercentileMsec(String filterChainType, double percentile);
+
     /**
      * Resets all statistics values and restarts from zero.
      */
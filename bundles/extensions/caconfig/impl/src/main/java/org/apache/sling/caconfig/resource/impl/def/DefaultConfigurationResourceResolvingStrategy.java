@@ -21,6 +21,7 @@ package org.apache.sling.caconfig.resource.impl.def;
 import static org.apache.sling.caconfig.resource.impl.def.ConfigurationResourceNameConstants.PROPERTY_CONFIG_COLLECTION_INHERIT;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -39,6 +40,7 @@ import org.apache.commons.collections.iterators.ArrayIterator;
 import org.apache.commons.collections.iterators.FilterIterator;
 import org.apache.commons.collections.iterators.IteratorChain;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.SlingConstants;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceUtil;
@@ -48,6 +50,7 @@ import org.apache.sling.caconfig.resource.impl.util.ConfigNameUtil;
 import org.apache.sling.caconfig.resource.impl.util.PathEliminateDuplicatesIterator;
 import org.apache.sling.caconfig.resource.impl.util.PathParentExpandIterator;
 import org.apache.sling.caconfig.resource.impl.util.PropertyUtil;
+import org.apache.sling.caconfig.resource.impl.util.ResourceLookupCache;
 import org.apache.sling.caconfig.resource.spi.CollectionInheritanceDecider;
 import org.apache.sling.caconfig.resource.spi.ConfigurationResourceResolvingStrategy;
 import org.apache.sling.caconfig.resource.spi.ContextResource;
@@ -59,15 +62,19 @@ import org.osgi.service.component.annotations.FieldOption;
 import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.osgi.service.component.annotations.ReferencePolicy;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventConstants;
+import org.osgi.service.event.EventHandler;
 import org.osgi.service.metatype.annotations.AttributeDefinition;
 import org.osgi.service.metatype.annotations.Designate;
 import org.osgi.service.metatype.annotations.ObjectClassDefinition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-@Component(service=ConfigurationResourceResolvingStrategy.class)
+@Component(service={ ConfigurationResourceResolvingStrategy.class, EventHandler.class },
+        property = EventConstants.EVENT_TOPIC + "=org/apache/sling/api/resource/Resource/*")
 @Designate(ocd=DefaultConfigurationResourceResolvingStrategy.Config.class)
-public class DefaultConfigurationResourceResolvingStrategy implements ConfigurationResourceResolvingStrategy {
+public class DefaultConfigurationResourceResolvingStrategy implements ConfigurationResourceResolvingStrategy, EventHandler {
 
     @ObjectClassDefinition(name="Apache Sling Context-Aware Configuration Default Resource Resolving Strategy",
                            description="Standardized access to configurations in the resource tree.")
@@ -90,12 +97,20 @@ public class DefaultConfigurationResourceResolvingStrategy implements Configurat
                             + "always starting with " + PROPERTY_CONFIG_COLLECTION_INHERIT + ". Once a property with a value is found, that value is used and the following property names are skipped.")
         String[] configCollectionInheritancePropertyNames();
 
+        @AttributeDefinition(name="Cache size",
+                description = "Maximum number of configuration lookups for which the paths of the configuration resources found are cached. "
+                            + "The entries are invalidated when resources below the configurations path or a fallback path are changed. As the changes "
+                            + "are processed asynchronously, lookups right after a change may still return the previous resources. 0 disables the cache (default).")
+        int cacheSize() default 0;
+
     }
 
     private static final Logger log = LoggerFactory.getLogger(DefaultConfigurationResourceResolvingStrategy.class);
 
     private volatile Config config;
 
+    private volatile ResourceLookupCache<List<String>> cache = new ResourceLookupCache<>(0);
+
     @Reference
     private ContextPathStrategyMultiplexer contextPathStrategy;
 
@@ -107,18 +122,56 @@ public class DefaultConfigurationResourceResolvingStrategy implements Configurat
     @Activate
     private void activate(final Config config) {
         this.config = config;
+        this.cache = new ResourceLookupCache<>(config.cacheSize());
     }
 
     @Deactivate
     private void deactivate() {
         this.config = null;
+        this.cache.clear();
+    }
+
+    /**
+     * Removes the cached configuration resource paths of the lookups which resolved a path below, above or at the
+     * changed resource, if it is related to the configurations path or a fallback path.
+     */
+    @Override
+    public void handleEvent(Event event) {
+        final Config config = this.config;
+        final String path = (String)event.getProperty(SlingConstants.PROPERTY_PATH);
+        if (config == null || path == null) {
+            return;
+        }
+        if (isAncestorOrSelf(path, config.configPath())) {
+            cache.invalidateWithAncestors(path);
+            return;
+        }
+        for (String fallbackPath : config.fallbackPaths()) {
+            if (isAncestorOrSelf(path, fallbackPath)) {
+                cache.invalidateWithAncestors(path);
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return true if the changed path is the given path, one of its descendants or one of its ancestors
+     */
+    private static boolean isAncestorOrSelf(final String changedPath, final String path) {
+        return StringUtils.equals(changedPath, path)
+                || StringUtils.startsWith(changedPath, path + "/")
+                || StringUtils.startsWith(path, StringUtils.removeEnd(changedPath, "/") + "/");
     }
 
-    @SuppressWarnings("unchecked")
     Iterator<String> getResolvePaths(final Resource contentResource, final Collection<String> bucketNames) {
+        return getResolvePaths(contextPathStrategy.findContextResources(contentResource), bucketNames);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Iterator<String> getResolvePaths(final Iterator<ContextResource> contextResources, final Collection<String> bucketNames) {
         return new IteratorChain(
             // add all config references found in resource hierarchy
-            findConfigRefs(contentResource, bucketNames),
+            findConfigRefs(contextResources, bucketNames),
             // finally add the global fallbacks
             new ArrayIterator(this.config.fallbackPaths())
         );
@@ -129,11 +182,15 @@ public class DefaultConfigurationResourceResolvingStrategy implements Configurat
      * @param refs List to add found resources to
      * @param startResource Resource to start searching
      */
-    @SuppressWarnings("unchecked")
     private Iterator<String> findConfigRefs(final Resource startResource, final Collection<String> bucketNames) {
+        return findConfigRefs(contextPathStrategy.findContextResources(startResource), bucketNames);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Iterator<String> findConfigRefs(final Iterator<ContextResource> allContextResources, final Collection<String> bucketNames) {
 
         // collect all context path resources (but filter out those without config reference)
-        final Iterator<ContextResource> contextResources = new FilterIterator(contextPathStrategy.findContextResources(startResource),
+        final Iterator<ContextResource> contextResources = new FilterIterator(allContextResources,
                 new Predicate() {
                     @Override
                     public boolean evaluate(Object object) {
@@ -314,9 +371,49 @@ public class DefaultConfigurationResourceResolvingStrategy implements Configurat
             return null;
         }
         final ResourceResolver resourceResolver = contentResource.getResourceResolver();
+        if (!cache.isEnabled(resourceResolver)) {
+            Iterator<String> paths = getResolvePaths(contentResource, bucketNames);
+            return getResourceInheritanceChainInternal(bucketNames, configName, paths, resourceResolver);
+        }
 
-        Iterator<String> paths = getResolvePaths(contentResource, bucketNames);
-        return getResourceInheritanceChainInternal(bucketNames, configName, paths, resourceResolver);
+        // the configuration resources only depend on the context resources found, not on the content resource itself
+        final List<ContextResource> contextResources = IteratorUtils.toList(contextPathStrategy.findContextResources(contentResource));
+        final String contextPaths = toCacheKey(contextResources);
+        final List<Object> qualifier = Arrays.<Object>asList(new ArrayList<>(bucketNames), configName);
+
+        List<String> configPaths = cache.get(resourceResolver, contextPaths, qualifier);
+        if (configPaths != null) {
+            final List<Resource> result = new ArrayList<>(configPaths.size());
+            for (String configPath : configPaths) {
+                final Resource resource = resourceResolver.getResource(configPath);
+                if (resource != null) {
+                    log.trace("+ Found cached config resource for inheritance chain: {}", configPath);
+                    result.add(resource);
+                }
+            }
+            return result.isEmpty() ? null : result.iterator();
+        }
+
+        final long generation = cache.getGeneration();
+        final List<String> resolvePaths = IteratorUtils.toList(getResolvePaths(contextResources.iterator(), bucketNames));
+        Iterator<Resource> resources = getResourceInheritanceChainInternal(bucketNames, configName,
+                resolvePaths.iterator(), resourceResolver);
+        final List<Resource> result = (resources != null) ? IteratorUtils.toList(resources) : Collections.<Resource>emptyList();
+        configPaths = new ArrayList<>(result.size());
+        for (Resource resource : result) {
+            configPaths.add(resource.getPath());
+        }
+        // the result only depends on the resources below the resolve paths
+        cache.put(resourceResolver, contextPaths, qualifier, configPaths, generation, resolvePaths);
+        return result.isEmpty() ? null : result.iterator();
+    }
+
+    private static String toCacheKey(final List<ContextResource> contextResources) {
+        final StringBuilder key = new StringBuilder();
+        for (ContextResource contextResource : contextResources) {
+            key.append(contextResource.getResource().getPath()).append('=').append(contextResource.getConfigRef()).append('\n');
+        }
+        return key.toString();
     }
 
     private boolean include(final List<CollectionInheritanceDecider> deciders,
@@ -20,26 +20,37 @@ package org.apache.sling.caconfig.resource.impl.def;
 
 import static org.apache.sling.caconfig.resource.impl.def.ConfigurationResourceNameConstants.PROPERTY_CONFIG_REF;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.SlingConstants;
 import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceUtil;
 import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.caconfig.resource.impl.util.ResourceLookupCache;
 import org.apache.sling.caconfig.resource.spi.ContextPathStrategy;
 import org.apache.sling.caconfig.resource.spi.ContextResource;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventConstants;
+import org.osgi.service.event.EventHandler;
 import org.osgi.service.metatype.annotations.AttributeDefinition;
 import org.osgi.service.metatype.annotations.Designate;
 import org.osgi.service.metatype.annotations.ObjectClassDefinition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-@Component(service = ContextPathStrategy.class)
+@Component(service = { ContextPathStrategy.class, EventHandler.class },
+        property = EventConstants.EVENT_TOPIC + "=org/apache/sling/api/resource/Resource/*")
 @Designate(ocd=DefaultContextPathStrategy.Config.class)
-public class DefaultContextPathStrategy implements ContextPathStrategy {
+public class DefaultContextPathStrategy implements ContextPathStrategy, EventHandler {
 
     @ObjectClassDefinition(name="Apache Sling Context-Aware Configuration Default Context Path Strategy",
             description="Detects context path by existence of " + PROPERTY_CONFIG_REF + " properties.")
@@ -62,15 +73,24 @@ public class DefaultContextPathStrategy implements ContextPathStrategy {
         @AttributeDefinition(name = "Service Ranking",
                 description = "Priority of persistence strategy (higher = higher priority).")
             int service_ranking() default 0;
+
+        @AttributeDefinition(name="Cache size",
+                description = "Maximum number of resource paths for which the context paths found in the hierarchy are cached. "
+                            + "The entries are invalidated when resources are changed. As the changes are processed asynchronously, "
+                            + "lookups right after a change may still return the previous context paths. 0 disables the cache (default).")
+        int cacheSize() default 0;
     }
 
     private static final Logger log = LoggerFactory.getLogger(DefaultContextPathStrategy.class);
 
     private volatile Config config;
 
+    private volatile ResourceLookupCache<List<ContextPath>> cache = new ResourceLookupCache<>(0);
+
     @Activate
     private void activate(Config config) {
         this.config = config;
+        this.cache = new ResourceLookupCache<>(config.cacheSize());
     }
 
     @Override
@@ -78,7 +98,167 @@ public class DefaultContextPathStrategy implements ContextPathStrategy {
         if (!config.enabled()) {
             return Collections.emptyIterator();
         }
-        return new ConfigResourceIterator(resource);
+        final ResourceResolver resolver = resource.getResourceResolver();
+        if (!cache.isEnabled(resolver)) {
+            return new ConfigResourceIterator(resource);
+        }
+        return new CachedContextResourceIterator(resolver, getContextPaths(resource, resolver));
+    }
+
+    /**
+     * Get the context paths for the resource and its ancestors from the cache, or look them up and cache them
+     * for the resource and each ancestor, so resources sharing ancestors walk the hierarchy only once.
+     * @param resource Resource
+     * @param resolver Resource resolver
+     * @return Context paths, starting with the closest
+     */
+    private List<ContextPath> getContextPaths(final Resource resource, final ResourceResolver resolver) {
+        List<ContextPath> contextPaths = cache.get(resolver, resource.getPath(), null);
+        if (contextPaths == null) {
+            final long generation = cache.getGeneration();
+            final Resource parent = resource.getParent();
+            final List<ContextPath> parentContextPaths = (parent != null) ? getContextPaths(parent, resolver) : Collections.<ContextPath>emptyList();
+            final String configRef = getConfigRef(resource);
+            if (configRef != null) {
+                log.trace("+ Found context path {}, configRef {}", resource.getPath(), configRef);
+                contextPaths = new ArrayList<>(parentContextPaths.size() + 1);
+                contextPaths.add(new ContextPath(resource.getPath(), configRef));
+                contextPaths.addAll(parentContextPaths);
+                contextPaths = Collections.unmodifiableList(contextPaths);
+            }
+            else {
+                contextPaths = parentContextPaths;
+            }
+            cache.put(resolver, resource.getPath(), null, contextPaths, generation);
+        }
+        return contextPaths;
+    }
+
+    /**
+     * Removes the cached context paths of the changed resource and its descendants. As the configuration
+     * reference may be stored in a lookup resource below the context resource, the context paths of the
+     * ancestors the changed resource may be a lookup resource of are removed as well, with their descendants.
+     */
+    @Override
+    public void handleEvent(Event event) {
+        String path = (String)event.getProperty(SlingConstants.PROPERTY_PATH);
+        if (path != null) {
+            for (int i = getLookupDepth(); i > 0 && ResourceUtil.getParent(path) != null; i--) {
+                path = ResourceUtil.getParent(path);
+            }
+            cache.invalidate(path);
+        }
+    }
+
+    /**
+     * @return Maximum depth of the config ref. resource names below the context resource
+     */
+    private int getLookupDepth() {
+        int depth = 0;
+        if (!ArrayUtils.isEmpty(config.configRefResourceNames())) {
+            for (final String name : config.configRefResourceNames()) {
+                int nameDepth = 0;
+                for (final String segment : StringUtils.split(name, '/')) {
+                    if (!".".equals(segment)) {
+                        nameDepth++;
+                    }
+                }
+                depth = Math.max(depth, nameDepth);
+            }
+        }
+        return depth;
+    }
+
+    private String getConfigRefValue(final Resource resource) {
+        final ValueMap map = resource.getValueMap();
+        String val = map.get(PROPERTY_CONFIG_REF, String.class);
+        if ( val == null && !ArrayUtils.isEmpty(config.configRefPropertyNames()) ) {
+            for(final String name : config.configRefPropertyNames()) {
+                val = map.get(name, String.class);
+                if ( val != null ) {
+                    break;
+                }
+            }
+        }
+        return val;
+    }
+
+    private String getConfigRef(final Resource resource) {
+        if (ArrayUtils.isEmpty(config.configRefResourceNames())) {
+            return getConfigRefValue(resource);
+        }
+        for (final String name : config.configRefResourceNames()) {
+            final Resource lookupResource = resource.getChild(name);
+            if (lookupResource != null) {
+                String configRef = getConfigRefValue(lookupResource);
+                if (configRef != null) {
+                    return configRef;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Context path with config reference as kept in the cache.
+     */
+    private static final class ContextPath {
+
+        private final String path;
+        private final String configRef;
+
+        ContextPath(String path, String configRef) {
+            this.path = path;
+            this.configRef = configRef;
+        }
+
+    }
+
+    /**
+     * Returns the context resources for cached context paths.
+     */
+    private class CachedContextResourceIterator implements Iterator<ContextResource> {
+
+        private final ResourceResolver resolver;
+        private final Iterator<ContextPath> contextPaths;
+        private ContextResource next;
+
+        public CachedContextResourceIterator(ResourceResolver resolver, List<ContextPath> contextPaths) {
+            this.resolver = resolver;
+            this.contextPaths = contextPaths.iterator();
+            next = seek();
+        }
+
+        private ContextResource seek() {
+            while (contextPaths.hasNext()) {
+                final ContextPath contextPath = contextPaths.next();
+                final Resource resource = resolver.getResource(contextPath.path);
+                if (resource != null) {
+                    return new ContextResource(resource, contextPath.configRef, config.service_ranking());
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public ContextResource next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            ContextResource result = next;
+            next = seek();
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
     }
 
     /**
@@ -134,36 +314,6 @@ public class DefaultContextPathStrategy implements ContextPathStrategy {
             // if hit root and nothing found, return null
             return null;
         }
-
-        private String getConfigRefValue(final Resource resource) {
-            final ValueMap map = resource.getValueMap();
-            String val = map.get(PROPERTY_CONFIG_REF, String.class);
-            if ( val == null && !ArrayUtils.isEmpty(config.configRefPropertyNames()) ) {
-                for(final String name : config.configRefPropertyNames()) {
-                    val = map.get(name, String.class);
-                    if ( val != null ) {
-                        break;
-                    }
-                }
-            }
-            return val;
-        }
-
-        private String getConfigRef(final Resource resource) {
-            if (ArrayUtils.isEmpty(config.configRefResourceNames())) {
-                return getConfigRefValue(resource);
-            }
-            for (final String name : config.configRefResourceNames()) {
-                final Resource lookupResource = resource.getChild(name);
-                if (lookupResource != null) {
-                    String configRef = getConfigRefValue(lookupResource);
-                    if (configRef != null) {
-                        return configRef;
-                    }
-                }
-            }
-            return null;
-        }
     }
 
 }
@@ -0,0 +1,320 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.caconfig.resource.impl.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceUtil;
+
+/**
+ * Bounded cache for the results of resource lookups shared by all resource resolvers.
+ * <p>
+ * Entries are kept per user ID of the resource resolver, as the result of a lookup depends on
+ * the resources the user may read, and per path with an optional qualifier. Resource resolvers
+ * with pending changes bypass the cache as they may see resources not visible to others.
+ * If the cache is full the least recently used entry is removed.
+ * <p>
+ * The keys are indexed by path, or by the paths the result depends on, so invalidating a path only
+ * touches the entries indexed by the path and its descendants - or also its ancestors. Each
+ * invalidation increments a generation counter and the most recent invalidations are remembered.
+ * A result is not added if an invalidation covering one of its paths happened after the lookup
+ * started, so a lookup racing with a change does not leave a stale entry, while lookups of other
+ * paths are still cached.
+ * <p>
+ * The owners invalidate the entries when they are notified of changes, which happens
+ * asynchronously: lookups right after a change may still return the previous result.
+ * @param <V> Value type
+ */
+public final class ResourceLookupCache<V> {
+
+    /**
+     * Number of invalidations remembered for lookups in progress. Lookups started before the oldest
+     * remembered invalidation do not add their result.
+     */
+    private static final int MAX_INVALIDATIONS = 256;
+
+    private final int maxSize;
+    private final Map<Key, CacheEntry<V>> cache;
+    private final NavigableMap<String, Set<Key>> keysByPath = new TreeMap<>();
+    private final Deque<Invalidation> invalidations = new ArrayDeque<>();
+    private long generation;
+    private long oldestValidGeneration;
+
+    /**
+     * @param maxSize Maximum number of entries, 0 disables the cache
+     */
+    public ResourceLookupCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.cache = new LinkedHashMap<Key, CacheEntry<V>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CacheEntry<V>> eldest) {
+                if (size() > ResourceLookupCache.this.maxSize) {
+                    removeFromIndex(eldest.getKey(), eldest.getValue().paths);
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @param resolver Resource resolver
+     * @return true if lookups of this resource resolver may use the cache
+     */
+    public boolean isEnabled(ResourceResolver resolver) {
+        return maxSize > 0 && resolver != null && !resolver.hasChanges();
+    }
+
+    /**
+     * @return Generation to pass to {@link #put(ResourceResolver, String, Object, Object, long)}, get it before the lookup
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @param resolver Resource resolver
+     * @param path Path
+     * @param qualifier Qualifier or null
+     * @return Cached value or null
+     */
+    public synchronized V get(ResourceResolver resolver, String path, Object qualifier) {
+        final CacheEntry<V> entry = cache.get(new Key(resolver.getUserID(), path, qualifier));
+        return (entry != null) ? entry.value : null;
+    }
+
+    /**
+     * Adds a value indexed by its path unless the path has been invalidated after the given generation was read.
+     * @param resolver Resource resolver
+     * @param path Path
+     * @param qualifier Qualifier or null
+     * @param value Value
+     * @param lookupGeneration Generation read before the lookup
+     */
+    public void put(ResourceResolver resolver, String path, Object qualifier, V value, long lookupGeneration) {
+        put(resolver, path, qualifier, value, lookupGeneration, Collections.singleton(path));
+    }
+
+    /**
+     * Adds a value indexed by the paths it depends on unless one of them has been invalidated after the given
+     * generation was read.
+     * @param resolver Resource resolver
+     * @param key Key, not necessarily a path
+     * @param qualifier Qualifier or null
+     * @param value Value
+     * @param lookupGeneration Generation read before the lookup
+     * @param paths Paths the value depends on
+     */
+    public synchronized void put(ResourceResolver resolver, String key, Object qualifier, V value, long lookupGeneration,
+            Collection<String> paths) {
+        for (String path : paths) {
+            if (isInvalidatedSince(path, lookupGeneration)) {
+                return;
+            }
+        }
+        final Key cacheKey = new Key(resolver.getUserID(), key, qualifier);
+        final CacheEntry<V> previous = cache.put(cacheKey, new CacheEntry<>(value, paths));
+        if (previous != null) {
+            removeFromIndex(cacheKey, previous.paths);
+        }
+        for (String path : paths) {
+            Set<Key> keys = keysByPath.get(path);
+            if (keys == null) {
+                keys = new HashSet<>();
+                keysByPath.put(path, keys);
+            }
+            keys.add(cacheKey);
+        }
+    }
+
+    /**
+     * Removes the entries indexed by the path or its descendants.
+     * @param path Path
+     */
+    public synchronized void invalidate(String path) {
+        invalidate(path, false);
+    }
+
+    /**
+     * Removes the entries indexed by the path, its descendants or its ancestors.
+     * @param path Path
+     */
+    public synchronized void invalidateWithAncestors(String path) {
+        invalidate(path, true);
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public synchronized void clear() {
+        oldestValidGeneration = ++generation;
+        invalidations.clear();
+        cache.clear();
+        keysByPath.clear();
+    }
+
+    /**
+     * @return Number of entries
+     */
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    private void invalidate(String path, boolean ancestors) {
+        final String prefix = StringUtils.removeEnd(path, "/") + "/";
+        invalidations.addLast(new Invalidation(++generation, path, prefix, ancestors));
+        if (invalidations.size() > MAX_INVALIDATIONS) {
+            oldestValidGeneration = invalidations.removeFirst().generation;
+        }
+        final List<Key> keys = new ArrayList<>();
+        addKeys(keys, keysByPath.get(path));
+        for (Set<Key> descendantKeys : keysByPath.subMap(prefix, prefix + Character.MAX_VALUE).values()) {
+            addKeys(keys, descendantKeys);
+        }
+        if (ancestors) {
+            String ancestor = ResourceUtil.getParent(path);
+            while (ancestor != null) {
+                addKeys(keys, keysByPath.get(ancestor));
+                ancestor = ResourceUtil.getParent(ancestor);
+            }
+        }
+        for (Key key : keys) {
+            final CacheEntry<V> entry = cache.remove(key);
+            if (entry != null) {
+                removeFromIndex(key, entry.paths);
+            }
+        }
+    }
+
+    private static void addKeys(List<Key> keys, Set<Key> indexedKeys) {
+        if (indexedKeys != null) {
+            keys.addAll(indexedKeys);
+        }
+    }
+
+    private boolean isInvalidatedSince(String path, long lookupGeneration) {
+        if (lookupGeneration < oldestValidGeneration) {
+            return true;
+        }
+        final Iterator<Invalidation> newestFirst = invalidations.descendingIterator();
+        while (newestFirst.hasNext()) {
+            final Invalidation invalidation = newestFirst.next();
+            if (invalidation.generation <= lookupGeneration) {
+                break;
+            }
+            if (invalidation.covers(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void removeFromIndex(Key key, Collection<String> paths) {
+        for (String path : paths) {
+            final Set<Key> keys = keysByPath.get(path);
+            if (keys != null && keys.remove(key) && keys.isEmpty()) {
+                keysByPath.remove(path);
+            }
+        }
+    }
+
+    private static final class CacheEntry<V> {
+
+        private final V value;
+        private final Collection<String> paths;
+
+        CacheEntry(V value, Collection<String> paths) {
+            this.value = value;
+            this.paths = paths;
+        }
+
+    }
+
+    private static final class Invalidation {
+
+        private final long generation;
+        private final String path;
+        private final String prefix;
+        private final boolean ancestors;
+
+        Invalidation(long generation, String path, String prefix, boolean ancestors) {
+            this.generation = generation;
+            this.path = path;
+            this.prefix = prefix;
+            this.ancestors = ancestors;
+        }
+
+        boolean covers(String otherPath) {
+            return StringUtils.equals(otherPath, path) || StringUtils.startsWith(otherPath, prefix)
+                    || (ancestors && StringUtils.startsWith(path, StringUtils.removeEnd(otherPath, "/") + "/"));
+        }
+
+    }
+
+    private static final class Key {
+
+        private final String userId;
+        private final String path;
+        private final Object qualifier;
+        private final int hashCode;
+
+        Key(String userId, String path, Object qualifier) {
+            this.userId = userId;
+            this.path = path;
+            this.qualifier = qualifier;
+            int hc = (userId != null) ? userId.hashCode() : 0;
+            hc = 31 * hc + ((path != null) ? path.hashCode() : 0);
+            hc = 31 * hc + ((qualifier != null) ? qualifier.hashCode() : 0);
+            this.hashCode = hc;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key)obj;
+            return StringUtils.equals(userId, other.userId)
+                    && StringUtils.equals(path, other.path)
+                    && (qualifier == null ? other.qualifier == null : qualifier.equals(other.qualifier));
+        }
+
+    }
+
+}
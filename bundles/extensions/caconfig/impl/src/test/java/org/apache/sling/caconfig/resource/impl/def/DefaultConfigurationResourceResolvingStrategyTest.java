@@ -27,6 +27,7 @@ import static org.junit.Assert.assertThat;
 import java.util.Collection;
 import java.util.Collections;
 
+import org.apache.sling.api.SlingConstants;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.caconfig.management.impl.ContextPathStrategyMultiplexerImpl;
 import org.apache.sling.caconfig.resource.spi.ConfigurationResourceResolvingStrategy;
@@ -35,6 +36,10 @@ import org.apache.sling.testing.mock.sling.junit.SlingContext;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventHandler;
+
+import com.google.common.collect.ImmutableMap;
 
 public class DefaultConfigurationResourceResolvingStrategyTest {
 
@@ -94,6 +99,44 @@ public class DefaultConfigurationResourceResolvingStrategyTest {
         assertEquals("/conf/main/sub/deep/sling:test/test", underTest.getResource(deepPage, BUCKETS, "test").getPath());
     }
 
+    @Test
+    public void testGetResourceCachedInvalidatedOnChange() throws Exception {
+        ConfigurationResourceResolvingStrategy underTest = context.registerInjectActivateService(new DefaultConfigurationResourceResolvingStrategy(),
+                "cacheSize", 10000);
+
+        context.build()
+            .resource("/libs/conf/sling:test/test");
+        context.resourceResolver().commit();
+        assertEquals("/libs/conf/sling:test/test", underTest.getResource(site1Page1, BUCKETS, "test").getPath());
+
+        // changes without event are not seen as the configuration resource paths are cached
+        context.build()
+            .resource("/conf/site1/sling:test/test");
+        context.resourceResolver().commit();
+        assertEquals("/libs/conf/sling:test/test", underTest.getResource(site1Page1, BUCKETS, "test").getPath());
+
+        // changes outside the configuration paths do not invalidate the cache
+        ((EventHandler)underTest).handleEvent(new Event(SlingConstants.TOPIC_RESOURCE_ADDED,
+                ImmutableMap.<String, Object>of(SlingConstants.PROPERTY_PATH, "/content/site1/page2")));
+        assertEquals("/libs/conf/sling:test/test", underTest.getResource(site1Page1, BUCKETS, "test").getPath());
+
+        // changes of configurations not resolved by the lookup do not invalidate it
+        ((EventHandler)underTest).handleEvent(new Event(SlingConstants.TOPIC_RESOURCE_ADDED,
+                ImmutableMap.<String, Object>of(SlingConstants.PROPERTY_PATH, "/conf/site2/sling:test/test")));
+        assertEquals("/libs/conf/sling:test/test", underTest.getResource(site1Page1, BUCKETS, "test").getPath());
+
+        ((EventHandler)underTest).handleEvent(new Event(SlingConstants.TOPIC_RESOURCE_ADDED,
+                ImmutableMap.<String, Object>of(SlingConstants.PROPERTY_PATH, "/conf/site1/sling:test/test")));
+        assertEquals("/conf/site1/sling:test/test", underTest.getResource(site1Page1, BUCKETS, "test").getPath());
+
+        // removing an ancestor of the resolved configurations invalidates the lookup
+        context.resourceResolver().delete(context.resourceResolver().getResource("/conf/site1"));
+        context.resourceResolver().commit();
+        ((EventHandler)underTest).handleEvent(new Event(SlingConstants.TOPIC_RESOURCE_REMOVED,
+                ImmutableMap.<String, Object>of(SlingConstants.PROPERTY_PATH, "/conf")));
+        assertEquals("/libs/conf/sling:test/test", underTest.getResource(site1Page1, BUCKETS, "test").getPath());
+    }
+
     /**
      * Default resource inheritance without customizing inheritance.
      * => no resource list merging.
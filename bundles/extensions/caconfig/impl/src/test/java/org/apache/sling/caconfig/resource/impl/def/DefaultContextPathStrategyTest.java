@@ -24,6 +24,8 @@ import static org.apache.sling.caconfig.resource.impl.util.ContextResourceTestUt
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 
+import org.apache.sling.api.SlingConstants;
+import org.apache.sling.api.resource.ModifiableValueMap;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.caconfig.resource.spi.ContextPathStrategy;
 import org.apache.sling.hamcrest.ResourceIteratorMatchers;
@@ -32,8 +34,11 @@ import org.hamcrest.Matchers;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventHandler;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 
 public class DefaultContextPathStrategyTest {
     
@@ -106,4 +111,76 @@ public class DefaultContextPathStrategyTest {
                 "/conf/tenant1/region1"));
     }
 
+    @Test
+    public void testCachedContextPathsInvalidatedOnChange() throws Exception {
+        ContextPathStrategy underTest = context.registerInjectActivateService(new DefaultContextPathStrategy(),
+                "cacheSize", 10000);
+        context.resourceResolver().commit();
+
+        assertThat(toResourceIterator(underTest.findContextResources(site1Page1)), ResourceIteratorMatchers.paths(
+                "/content/tenant1/region1/site1",
+                "/content/tenant1/region1",
+                "/content/tenant1"));
+
+        // changes without event are not seen as the context paths are cached
+        context.resourceResolver().getResource("/content/tenant1/region1").adaptTo(ModifiableValueMap.class).remove(PROPERTY_CONFIG_REF);
+        context.resourceResolver().commit();
+        assertThat(toResourceIterator(underTest.findContextResources(site2Page1)), ResourceIteratorMatchers.paths(
+                "/content/tenant1/region1/site2",
+                "/content/tenant1/region1",
+                "/content/tenant1"));
+
+        ((EventHandler)underTest).handleEvent(new Event(SlingConstants.TOPIC_RESOURCE_CHANGED,
+                ImmutableMap.<String, Object>of(SlingConstants.PROPERTY_PATH, "/content/tenant1/region1")));
+        assertThat(toResourceIterator(underTest.findContextResources(site1Page1)), ResourceIteratorMatchers.paths(
+                "/content/tenant1/region1/site1",
+                "/content/tenant1"));
+        assertThat(toResourceIterator(underTest.findContextResources(site2Page1)), ResourceIteratorMatchers.paths(
+                "/content/tenant1/region1/site2",
+                "/content/tenant1"));
+    }
+
+    @Test
+    public void testCachedContextPathsInvalidatedOnLookupResourceChange() throws Exception {
+        ContextPathStrategy underTest = context.registerInjectActivateService(new DefaultContextPathStrategy(),
+                "configRefResourceNames", new String[] { ".", "jcr:content/config" },
+                "cacheSize", 10000);
+        context.build()
+            .resource("/content/tenant1/region1/jcr:content/config", PROPERTY_CONFIG_REF, "/conf/tenant1/region1");
+        context.resourceResolver().getResource("/content/tenant1/region1").adaptTo(ModifiableValueMap.class).remove(PROPERTY_CONFIG_REF);
+        context.resourceResolver().commit();
+
+        assertThat(toResourceIterator(underTest.findContextResources(site1Page1)), ResourceIteratorMatchers.paths(
+                "/content/tenant1/region1/site1",
+                "/content/tenant1/region1",
+                "/content/tenant1"));
+
+        context.resourceResolver().delete(context.resourceResolver().getResource("/content/tenant1/region1/jcr:content/config"));
+        context.resourceResolver().commit();
+
+        // the context resource is two levels above the lookup resource
+        ((EventHandler)underTest).handleEvent(new Event(SlingConstants.TOPIC_RESOURCE_REMOVED,
+                ImmutableMap.<String, Object>of(SlingConstants.PROPERTY_PATH, "/content/tenant1/region1/jcr:content/config")));
+        assertThat(toResourceIterator(underTest.findContextResources(site1Page1)), ResourceIteratorMatchers.paths(
+                "/content/tenant1/region1/site1",
+                "/content/tenant1"));
+    }
+
+    @Test
+    public void testCacheDisabledByDefault() throws Exception {
+        ContextPathStrategy underTest = context.registerInjectActivateService(new DefaultContextPathStrategy());
+        context.resourceResolver().commit();
+
+        assertThat(toResourceIterator(underTest.findContextResources(site1Page1)), ResourceIteratorMatchers.paths(
+                "/content/tenant1/region1/site1",
+                "/content/tenant1/region1",
+                "/content/tenant1"));
+
+        context.resourceResolver().getResource("/content/tenant1/region1").adaptTo(ModifiableValueMap.class).remove(PROPERTY_CONFIG_REF);
+        context.resourceResolver().commit();
+        assertThat(toResourceIterator(underTest.findContextResources(site1Page1)), ResourceIteratorMatchers.paths(
+                "/content/tenant1/region1/site1",
+                "/content/tenant1"));
+    }
+
 }
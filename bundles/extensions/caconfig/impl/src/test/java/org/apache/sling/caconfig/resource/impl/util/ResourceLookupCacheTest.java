@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.caconfig.resource.impl.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+
+import org.apache.sling.api.resource.ResourceResolver;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ResourceLookupCacheTest {
+
+    private ResourceResolver user1;
+    private ResourceResolver user2;
+    private ResourceLookupCache<String> underTest;
+
+    @Before
+    public void setUp() {
+        user1 = mock(ResourceResolver.class);
+        when(user1.getUserID()).thenReturn("user1");
+        user2 = mock(ResourceResolver.class);
+        when(user2.getUserID()).thenReturn("user2");
+        underTest = new ResourceLookupCache<>(3);
+    }
+
+    @Test
+    public void testPerUser() {
+        underTest.put(user1, "/content/a", null, "a", underTest.getGeneration());
+        assertEquals("a", underTest.get(user1, "/content/a", null));
+        assertNull(underTest.get(user2, "/content/a", null));
+        assertNull(underTest.get(user1, "/content/a", "qualifier"));
+    }
+
+    @Test
+    public void testInvalidate() {
+        underTest.put(user1, "/content/a", null, "a", underTest.getGeneration());
+        underTest.put(user1, "/content/a/b", null, "b", underTest.getGeneration());
+        underTest.put(user1, "/content/ab", null, "ab", underTest.getGeneration());
+
+        underTest.invalidate("/content/a");
+        assertNull(underTest.get(user1, "/content/a", null));
+        assertNull(underTest.get(user1, "/content/a/b", null));
+        assertEquals("ab", underTest.get(user1, "/content/ab", null));
+
+        underTest.invalidate("/");
+        assertEquals(0, underTest.size());
+    }
+
+    @Test
+    public void testInvalidateWithAncestors() {
+        underTest.put(user1, "key1", null, "1", underTest.getGeneration(), Arrays.asList("/conf/a", "/libs/conf"));
+        underTest.put(user1, "key2", null, "2", underTest.getGeneration(), Arrays.asList("/conf/b", "/libs/conf"));
+        underTest.put(user1, "/conf/a/x/y", null, "3", underTest.getGeneration());
+
+        underTest.invalidateWithAncestors("/conf/a/x");
+        assertNull(underTest.get(user1, "key1", null));
+        assertNull(underTest.get(user1, "/conf/a/x/y", null));
+        assertEquals("2", underTest.get(user1, "key2", null));
+
+        underTest.invalidateWithAncestors("/libs/conf/sling:configs/x");
+        assertEquals(0, underTest.size());
+    }
+
+    @Test
+    public void testPutAfterInvalidationOfDescendant() {
+        long generation = underTest.getGeneration();
+        underTest.invalidate("/conf/a/x");
+        underTest.put(user1, "key1", null, "1", generation, Arrays.asList("/conf/a"));
+        assertEquals("1", underTest.get(user1, "key1", null));
+
+        generation = underTest.getGeneration();
+        underTest.invalidateWithAncestors("/conf/a/x");
+        underTest.put(user1, "key1", null, "1", generation, Arrays.asList("/conf/b", "/conf/a"));
+        assertNull(underTest.get(user1, "key1", null));
+    }
+
+    @Test
+    public void testPutAfterInvalidation() {
+        long generation = underTest.getGeneration();
+        underTest.invalidate("/content");
+        underTest.put(user1, "/content/a", null, "a", generation);
+        assertNull(underTest.get(user1, "/content/a", null));
+    }
+
+    @Test
+    public void testPutAfterInvalidationOfOtherPath() {
+        long generation = underTest.getGeneration();
+        underTest.invalidate("/content/b");
+        underTest.invalidate("/content/a/b");
+        underTest.put(user1, "/content/a", null, "a", generation);
+        assertEquals("a", underTest.get(user1, "/content/a", null));
+    }
+
+    @Test
+    public void testPutAfterManyInvalidations() {
+        long generation = underTest.getGeneration();
+        for (int i = 0; i < 1000; i++) {
+            underTest.invalidate("/content/b" + i);
+        }
+        // the invalidations are not remembered anymore
+        underTest.put(user1, "/content/a", null, "a", generation);
+        assertNull(underTest.get(user1, "/content/a", null));
+
+        underTest.put(user1, "/content/a", null, "a", underTest.getGeneration());
+        assertEquals("a", underTest.get(user1, "/content/a", null));
+    }
+
+    @Test
+    public void testMaxSize() {
+        for (int i = 0; i < 3; i++) {
+            underTest.put(user1, "/content/" + i, null, "value", underTest.getGeneration());
+        }
+        // use the first entry, so the second one is the least recently used
+        assertEquals("value", underTest.get(user1, "/content/0", null));
+        underTest.put(user1, "/content/3", null, "value", underTest.getGeneration());
+        assertEquals(3, underTest.size());
+        assertEquals("value", underTest.get(user1, "/content/0", null));
+        assertNull(underTest.get(user1, "/content/1", null));
+        assertEquals("value", underTest.get(user1, "/content/3", null));
+
+        // the evicted entry is not indexed anymore
+        underTest.invalidate("/content");
+        assertEquals(0, underTest.size());
+    }
+
+    @Test
+    public void testReplacedEntryIsReindexed() {
+        underTest.put(user1, "key1", null, "1", underTest.getGeneration(), Arrays.asList("/conf/a"));
+        underTest.put(user1, "key1", null, "2", underTest.getGeneration(), Arrays.asList("/conf/b"));
+
+        underTest.invalidate("/conf/a");
+        assertEquals("2", underTest.get(user1, "key1", null));
+        underTest.invalidate("/conf/b");
+        assertNull(underTest.get(user1, "key1", null));
+    }
+
+    @Test
+    public void testEnabled() {
+        assertTrue(underTest.isEnabled(user1));
+        when(user1.hasChanges()).thenReturn(true);
+        assertFalse(underTest.isEnabled(user1));
+        assertFalse(new ResourceLookupCache<String>(0).isEnabled(user2));
+    }
+
+}
@@ -43,6 +43,14 @@ public class JobBuilderImpl implements JobBuilder {
     }
 
 
+    String getTopic() {
+        return this.topic;
+    }
+
+    Map<String, Object> getProperties() {
+        return this.properties;
+    }
+
     @Override
     public JobBuilder properties(final Map<String, Object> props) {
         this.properties = props;
@@ -34,6 +34,7 @@ import org.apache.sling.api.resource.PersistenceException;
 import org.apache.sling.api.resource.QuerySyntaxException;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceUtil;
 import org.apache.sling.api.resource.observation.ResourceChange;
 import org.apache.sling.api.resource.observation.ResourceChangeListener;
 import org.apache.sling.commons.scheduler.Scheduler;
@@ -552,31 +553,19 @@ public class JobManagerImpl
     private Job addJobInternal(final String jobTopic,
             final Map<String, Object> jobProperties,
             final List<String> errors) {
-        final QueueInfo info = this.configuration.getQueueConfigurationManager().getQueueInfo(jobTopic);
+        final QueueInfo info = this.getQueueInfo(jobTopic, jobProperties);
 
-        final TopologyCapabilities caps = this.configuration.getTopologyCapabilities();
-        info.targetId = (caps == null ? null : caps.detectTarget(jobTopic, jobProperties, info));
-
-        if ( logger.isDebugEnabled() ) {
-            if ( info.targetId != null ) {
-                logger.debug("Persisting job {} into queue {}, target={}", new Object[] {Utility.toString(jobTopic, jobProperties), info.queueName, info.targetId});
-            } else {
-                logger.debug("Persisting job {} into queue {}", Utility.toString(jobTopic, jobProperties), info.queueName);
-            }
-        }
         final ResourceResolver resolver = this.configuration.createResourceResolver();
         try {
+            final String jobId = this.configuration.getUniqueId(jobTopic);
             final JobImpl job = this.writeJob(resolver,
                     jobTopic,
                     jobProperties,
-                    info);
-            if ( info.targetId != null ) {
-                this.configuration.getAuditLogger().debug("ASSIGN OK {} : {}",
-                        info.targetId, job.getId());
-            } else {
-                this.configuration.getAuditLogger().debug("UNASSIGN OK : {}",
-                        job.getId());
-            }
+                    info,
+                    jobId,
+                    this.configuration.getUniquePath(info.targetId, jobTopic, jobId, jobProperties),
+                    true);
+            this.logAssignment(job, info);
             return job;
         } catch (final PersistenceException re ) {
             // something went wrong, so let's log it
@@ -591,21 +580,118 @@ public class JobManagerImpl
         return null;
     }
 
+    /**
+     * Persist a chunk of jobs in the resource tree with a single commit.
+     * The parent folders of the jobs are created and committed upfront,
+     * so no job resource is committed before the whole chunk is written.
+     * @param chunk The jobs to persist
+     * @param result The result list, the new jobs are set at their index
+     * @param errors The optional error list
+     */
+    private void addJobsInternal(final List<BatchEntry> chunk,
+            final List<Job> result,
+            final List<String> errors) {
+        final List<JobImpl> jobs = new ArrayList<>(chunk.size());
+        final ResourceResolver resolver = this.configuration.createResourceResolver();
+        try {
+            for(final BatchEntry entry : chunk) {
+                entry.info = this.getQueueInfo(entry.topic, entry.properties);
+                entry.jobId = this.configuration.getUniqueId(entry.topic);
+                entry.path = this.configuration.getUniquePath(entry.info.targetId, entry.topic, entry.jobId, entry.properties);
+                ResourceHelper.getOrCreateBasePath(resolver, ResourceUtil.getParent(entry.path));
+            }
+            for(final BatchEntry entry : chunk) {
+                jobs.add(this.writeJob(resolver,
+                        entry.topic,
+                        entry.properties,
+                        entry.info,
+                        entry.jobId,
+                        entry.path,
+                        false));
+            }
+            resolver.commit();
+        } catch (final PersistenceException re ) {
+            // something went wrong, so let's log it
+            this.logger.error("Exception during persisting " + chunk.size() + " new jobs", re);
+            for(final BatchEntry entry : chunk) {
+                if ( errors != null ) {
+                    errors.add("Unable to persist new job.");
+                }
+                this.configuration.getAuditLogger().debug("ADD FAILED topic={}, properties={} : {}",
+                        new Object[] {entry.topic,
+                                      entry.properties,
+                                      "Unable to persist new job."});
+            }
+            return;
+        } finally {
+            resolver.close();
+        }
+        for(int i = 0; i < chunk.size(); i++) {
+            final BatchEntry entry = chunk.get(i);
+            final JobImpl job = jobs.get(i);
+            this.logAssignment(job, entry.info);
+            this.configuration.getAuditLogger().debug("ADD OK topic={}, properties={} : {}",
+                    new Object[] {entry.topic,
+                                  entry.properties,
+                                  job.getId()});
+            result.set(entry.index, job);
+        }
+    }
+
+    /**
+     * Get the queue information and the target instance for a new job.
+     * @param jobTopic The job topic
+     * @param jobProperties The optional job properties
+     * @return The queue info
+     */
+    private QueueInfo getQueueInfo(final String jobTopic,
+            final Map<String, Object> jobProperties) {
+        final QueueInfo info = this.configuration.getQueueConfigurationManager().getQueueInfo(jobTopic);
+
+        final TopologyCapabilities caps = this.configuration.getTopologyCapabilities();
+        info.targetId = (caps == null ? null : caps.detectTarget(jobTopic, jobProperties, info));
+
+        if ( logger.isDebugEnabled() ) {
+            if ( info.targetId != null ) {
+                logger.debug("Persisting job {} into queue {}, target={}", new Object[] {Utility.toString(jobTopic, jobProperties), info.queueName, info.targetId});
+            } else {
+                logger.debug("Persisting job {} into queue {}", Utility.toString(jobTopic, jobProperties), info.queueName);
+            }
+        }
+        return info;
+    }
+
+    private void logAssignment(final JobImpl job, final QueueInfo info) {
+        if ( info.targetId != null ) {
+            this.configuration.getAuditLogger().debug("ASSIGN OK {} : {}",
+                    info.targetId, job.getId());
+        } else {
+            this.configuration.getAuditLogger().debug("UNASSIGN OK : {}",
+                    job.getId());
+        }
+    }
+
     /**
      * Write a job to the resource tree.
      * @param resolver The resolver resolver
      * @param event The event
      * @param info The queue information (queue name etc.)
+     * @param jobId The unique job id
+     * @param path The path of the job resource
+     * @param commit Whether the job resource should be committed. If not, the
+     *               caller has to commit the resolver. Nothing is committed
+     *               in this case, missing parent folders are created with
+     *               the job resource.
      * @throws PersistenceException
      */
     private JobImpl writeJob(final ResourceResolver resolver,
             final String jobTopic,
             final Map<String, Object> jobProperties,
-            final QueueInfo info)
+            final QueueInfo info,
+            final String jobId,
+            final String path,
+            final boolean commit)
     throws PersistenceException {
-        final String jobId = this.configuration.getUniqueId(jobTopic);
-        final String path = this.configuration.getUniquePath(info.targetId, jobTopic, jobId, jobProperties);
-
         // create properties
         final Map<String, Object> properties = new HashMap<>();
 
@@ -638,9 +724,17 @@ public class JobManagerImpl
         if ( logger.isDebugEnabled() ) {
             logger.debug("Storing new job {} at {}", Utility.toString(jobTopic, properties), path);
         }
-        ResourceHelper.createAndCommitResource(resolver,
-                path,
-                properties);
+        if ( commit ) {
+            ResourceHelper.createAndCommitResource(resolver,
+                    path,
+                    properties);
+        } else {
+            ResourceUtil.getOrCreateResource(resolver,
+                    path,
+                    properties,
+                    ResourceHelper.RESOURCE_TYPE_FOLDER,
+                    false);
+        }
 
         // update property types - priority, add path and create job
         properties.put(JobImpl.PROPERTY_RESOURCE_PATH, path);
@@ -682,6 +776,51 @@ public class JobManagerImpl
         return new JobBuilderImpl(this, topic);
     }
 
+    /**
+     * @see org.apache.sling.event.jobs.JobManager#addJobs(java.util.Collection, java.util.List)
+     */
+    @Override
+    public List<Job> addJobs(final Collection<JobBuilder> jobs, final List<String> errors) {
+        final List<Job> result = new ArrayList<>(jobs.size());
+        final int batchSize = this.configuration.getJobBatchSize();
+        final List<BatchEntry> chunk = new ArrayList<>(Math.min(batchSize, jobs.size()));
+        for(final JobBuilder builder : jobs) {
+            final int index = result.size();
+            result.add(null);
+            if ( !(builder instanceof JobBuilderImpl) ) {
+                final String errorMessage = "Job builder has not been created by this job manager: " + builder;
+                logger.warn("{}", errorMessage);
+                if ( errors != null ) {
+                    errors.add(errorMessage);
+                }
+                continue;
+            }
+            final String topic = ((JobBuilderImpl)builder).getTopic();
+            final Map<String, Object> properties = ((JobBuilderImpl)builder).getProperties();
+            final String errorMessage = Utility.checkJob(topic, properties);
+            if ( errorMessage != null ) {
+                logger.warn("{}", errorMessage);
+                if ( errors != null ) {
+                    errors.add(errorMessage);
+                }
+                this.configuration.getAuditLogger().debug("ADD FAILED topic={}, properties={} : {}",
+                        new Object[] {topic,
+                                      properties,
+                                      errorMessage});
+                continue;
+            }
+            chunk.add(new BatchEntry(index, topic, properties));
+            if ( chunk.size() == batchSize ) {
+                this.addJobsInternal(chunk, result, errors);
+                chunk.clear();
+            }
+        }
+        if ( !chunk.isEmpty() ) {
+            this.addJobsInternal(chunk, result, errors);
+        }
+        return result;
+    }
+
     /**
      * @see org.apache.sling.event.jobs.JobManager#getScheduledJobs()
      */
@@ -754,4 +893,22 @@ public class JobManagerImpl
     public JobSchedulerImpl getJobScheduler() {
         return this.jobScheduler;
     }
+
+    /**
+     * A job of a batch waiting to be persisted.
+     */
+    private static final class BatchEntry {
+        public final int index;
+        public final String topic;
+        public final Map<String, Object> properties;
+        public QueueInfo info;
+        public String jobId;
+        public String path;
+
+        public BatchEntry(final int index, final String topic, final Map<String, Object> properties) {
+            this.index = index;
+            this.topic = topic;
+            this.properties = properties;
+        }
+    }
 }
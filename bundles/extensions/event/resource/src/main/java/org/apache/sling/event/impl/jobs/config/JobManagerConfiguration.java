@@ -87,6 +87,14 @@ public class JobManagerConfiguration {
               description="Specify amount in seconds that job manager waits on startup before starting with job handling. "
                         + "This can be used to allow enough time to restart a cluster before jobs are eventually reassigned.")
         long startup_delay() default 30;
+
+        @AttributeDefinition(name = "Batch Size",
+              description="Maximum number of jobs which are persisted together with a single commit when a batch of jobs is added.")
+        int job_batch_size() default DEFAULT_JOB_BATCH_SIZE;
+
+        @AttributeDefinition(name = "Queue Preload Limit",
+              description="Maximum number of jobs per topic a queue loads into memory at once.")
+        int job_queue_preload_limit() default DEFAULT_QUEUE_PRELOAD_LIMIT;
     }
     /** Logger. */
     private final Logger logger = LoggerFactory.getLogger("org.apache.sling.event.impl.jobs");
@@ -103,6 +111,12 @@ public class JobManagerConfiguration {
     /** Default resource path for scheduled jobs. */
     public static final String DEFAULT_SCHEDULED_JOBS_PATH = "/var/eventing/scheduled-jobs";
 
+    /** Default number of jobs persisted with a single commit. */
+    public static final int DEFAULT_JOB_BATCH_SIZE = 100;
+
+    /** Default number of jobs per topic a queue loads at once. */
+    public static final int DEFAULT_QUEUE_PRELOAD_LIMIT = 10;
+
     /** The path where all jobs are stored. */
     public static final String PROPERTY_REPOSITORY_PATH = "repository.path";
 
@@ -139,6 +153,10 @@ public class JobManagerConfiguration {
 
     private volatile boolean disabledDistribution;
 
+    private volatile int jobBatchSize = DEFAULT_JOB_BATCH_SIZE;
+
+    private volatile int queuePreloadLimit = DEFAULT_QUEUE_PRELOAD_LIMIT;
+
     private String storedCancelledJobsPath;
 
     private String storedSuccessfulJobsPath;
@@ -239,6 +257,8 @@ public class JobManagerConfiguration {
         // an immediate effect - it will only have an effect on next activation.
         // (as 'startup delay runnable' is already scheduled in activate)
         this.startupDelay = config.startup_delay();
+        this.jobBatchSize = config.job_batch_size() > 0 ? config.job_batch_size() : DEFAULT_JOB_BATCH_SIZE;
+        this.queuePreloadLimit = config.job_queue_preload_limit() > 0 ? config.job_queue_preload_limit() : DEFAULT_QUEUE_PRELOAD_LIMIT;
     }
 
     /**
@@ -400,6 +420,23 @@ public class JobManagerConfiguration {
         return this.disabledDistribution;
     }
 
+    /**
+     * The maximum number of jobs persisted with a single commit
+     * when a batch of jobs is added.
+     * @return The batch size, always greater than zero
+     */
+    public int getJobBatchSize() {
+        return this.jobBatchSize;
+    }
+
+    /**
+     * The maximum number of jobs per topic a queue loads at once.
+     * @return The preload limit, always greater than zero
+     */
+    public int getQueuePreloadLimit() {
+        return this.queuePreloadLimit;
+    }
+
     public String getStoredCancelledJobsPath() {
         return this.storedCancelledJobsPath;
     }
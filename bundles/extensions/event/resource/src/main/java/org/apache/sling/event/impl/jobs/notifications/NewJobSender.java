@@ -19,8 +19,10 @@
 package org.apache.sling.event.impl.jobs.notifications;
 
 import java.util.Dictionary;
+import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.sling.api.resource.observation.ExternalResourceChangeListener;
 import org.apache.sling.api.resource.observation.ResourceChange;
@@ -92,6 +94,8 @@ public class NewJobSender implements ResourceChangeListener, ExternalResourceCha
 
     @Override
 	public void onChange(final List<ResourceChange> resourceChanges) {
+        // jobs added as a batch arrive together, so look up the queue once per topic
+        final Map<String, String> queueNames = new HashMap<>();
     	for(final ResourceChange resourceChange : resourceChanges) {
     		logger.debug("Received event {}", resourceChange);
 
@@ -110,7 +114,11 @@ public class NewJobSender implements ResourceChangeListener, ExternalResourceCha
                     properties.put(NotificationConstants.NOTIFICATION_PROPERTY_JOB_TOPIC, topic);
 
                  // we also set internally the queue name
-                    final String queueName = this.configuration.getQueueConfigurationManager().getQueueInfo(topic).queueName;
+                    String queueName = queueNames.get(topic);
+                    if ( queueName == null ) {
+                        queueName = this.configuration.getQueueConfigurationManager().getQueueInfo(topic).queueName;
+                        queueNames.put(topic, queueName);
+                    }
                     properties.put(Job.PROPERTY_JOB_QUEUE_NAME, queueName);
 
                     final Event jobEvent = new Event(NotificationConstants.TOPIC_JOB_ADDED, properties);
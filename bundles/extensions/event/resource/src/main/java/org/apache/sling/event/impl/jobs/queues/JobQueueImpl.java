@@ -197,8 +197,20 @@ public class JobQueueImpl
         if ( this.startJobsGuard.compareAndSet(false, true) ) {
             // we start as many jobs in parallel as possible
             while ( this.running && !this.isOutdated.get() && !this.isSuspended() && this.available.tryAcquire() ) {
+                // the permit keeps tryToClose from closing the queue, but it
+                // might just have closed it before the permit was taken
+                this.lock.readLock().lock();
+                try {
+                    if ( !this.running ) {
+                        this.available.release();
+                        break;
+                    }
+                } finally {
+                    this.lock.readLock().unlock();
+                }
+                // the cache is not accessed under the lock, as it might
+                // have to load the jobs from the resource tree
                 boolean started = false;
-                this.lock.writeLock().lock();
                 try {
                     final JobHandler handler = this.cache.getNextJob(this.services.jobConsumerManager,
                             this.services.statisticsManager, this, this.doFullCacheSearch.getAndSet(false));
@@ -244,7 +256,6 @@ public class JobQueueImpl
                     if ( !started ) {
                         this.available.release();
                     }
-                    this.lock.writeLock().unlock();
                 }
             }
             this.startJobsGuard.set(false);
@@ -514,6 +525,7 @@ public class JobQueueImpl
             // we keep cancelled jobs and succeeded jobs if the queue is configured like this.
             final boolean keepJobs = rescheduleInfo.state != Job.JobState.SUCCEEDED || this.configuration.isKeepJobs();
             handler.finished(rescheduleInfo.state, keepJobs, rescheduleInfo.processingTime);
+            this.cache.finished(jobId);
         } else {
             this.reschedule(handler);
         }
@@ -635,7 +647,11 @@ public class JobQueueImpl
                 ", asyncJobs=" + this.asyncCounter.get() +
                 ", waitCount=" + this.waitCounter.get() +
                 ", jobCount=" + String.valueOf(this.configuration.getMaxParallel() - this.available.availablePermits() +
-                (this.configuration.getType() == Type.ORDERED ? ", isSleepingUntil=" + this.isSleepingUntil : ""));
+                (this.configuration.getType() == Type.ORDERED ? ", isSleepingUntil=" + this.isSleepingUntil : "")) +
+                ", cachedJobs=" + this.cache.size() +
+                ", cacheRefills=" + this.cache.getRefillCount() +
+                ", cacheLoadedJobs=" + this.cache.getLoadedJobCount() +
+                ", cacheRefillTime=" + this.cache.getRefillTime();
     }
 
     /**
@@ -684,6 +700,8 @@ public class JobQueueImpl
                     try {
                         if ( handler.removeFromRetryList() ) {
                             requeue(handler);
+                        } else {
+                            cache.finished(handler.getJob().getId());
                         }
                         waitCounter.decrementAndGet();
                     } finally {
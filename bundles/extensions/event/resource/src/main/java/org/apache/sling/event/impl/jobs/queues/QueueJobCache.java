@@ -19,14 +19,21 @@
 package org.apache.sling.event.impl.jobs.queues;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Deque;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
@@ -48,6 +55,18 @@ import org.slf4j.LoggerFactory;
 /**
  * The queue job cache caches jobs per queue based on the topics the queue is actively
  * processing.
+ * <p>
+ * The jobs are kept in one deque per topic, each deque is ordered as the jobs are
+ * read from the resource tree. Ordered queues keep all jobs in a single deque to
+ * preserve the order across topics. Taking the next job does not need a lock: for
+ * unordered queues the oldest head of all topics is taken, for topic round robin
+ * queues the topics are visited in turn. Loading jobs from the resource tree and
+ * putting rescheduled jobs back are guarded by a lock, loading happens once all
+ * deques are drained.
+ * <p>
+ * The ids of all jobs in the cache or taken from it and not finished yet are
+ * tracked, so a job is never loaded a second time while it is processed or
+ * waiting to be rescheduled.
  */
 public class QueueJobCache {
 
@@ -55,7 +74,7 @@ public class QueueJobCache {
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
     /** The maximum of pre loaded jobs for a topic. */
-    private final int maxPreloadLimit = 10;
+    private final int maxPreloadLimit;
 
     /** The job manager configuration. */
     private final JobManagerConfiguration configuration;
@@ -64,10 +83,19 @@ public class QueueJobCache {
     private final Set<String> topics;
 
     /** The set of new topics to scan. */
-    private final Set<String> topicsWithNewJobs = new HashSet<String>();
+    private final Set<String> topicsWithNewJobs = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
-    /** The cache of current objects. */
-    private final List<JobImpl> cache = new ArrayList<JobImpl>();
+    /** The cached jobs per topic. */
+    private final ConcurrentMap<String, Deque<JobImpl>> cache = new ConcurrentHashMap<String, Deque<JobImpl>>();
+
+    /** The cached jobs of an ordered queue. */
+    private final Deque<JobImpl> orderedCache = new ConcurrentLinkedDeque<JobImpl>();
+
+    /** The topics of the cache in the order they are visited. */
+    private volatile String[] cachedTopics = new String[0];
+
+    /** The ids of the cached jobs and the jobs taken from the cache which are not finished yet. */
+    private final Set<String> jobIds = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
     /** The queue type. */
     private final QueueConfiguration.Type queueType;
@@ -75,6 +103,21 @@ public class QueueJobCache {
     /** Block the cache - for ordered queues only. */
     private final AtomicBoolean queueIsBlocked = new AtomicBoolean(false);
 
+    /** Lock for loading jobs into the cache and rescheduling jobs. */
+    private final ReentrantLock loadLock = new ReentrantLock();
+
+    /** Counter for the next topic of a topic round robin queue. */
+    private final AtomicInteger nextTopic = new AtomicInteger();
+
+    /** Number of times jobs have been loaded into the cache. */
+    private final AtomicLong refillCount = new AtomicLong();
+
+    /** Number of jobs loaded into the cache. */
+    private final AtomicLong loadedJobCount = new AtomicLong();
+
+    /** Time in ms spent loading jobs into the cache. */
+    private final AtomicLong refillTime = new AtomicLong();
+
     /**
      * Create a new queue job cache
      * @param configuration Current job manager configuration
@@ -89,6 +132,7 @@ public class QueueJobCache {
             final QueueConfiguration.Type queueType,
             final Set<String> topics) {
         this.configuration = configuration;
+        this.maxPreloadLimit = configuration.getQueuePreloadLimit();
         this.queueType = queueType;
         this.topics = new ConcurrentSkipListSet<String>(topics);
         this.fillCache(queueName, statisticsManager);
@@ -107,22 +151,49 @@ public class QueueJobCache {
      * @return {@code true} if there is any job outstanding.
      */
     public boolean isEmpty() {
-        boolean result = true;
-        synchronized ( this.cache ) {
-            result = this.cache.isEmpty();
-        }
-        if ( result ) {
-            synchronized ( this.topicsWithNewJobs ) {
-                result = this.topicsWithNewJobs.isEmpty();
-            }
-        }
-        return result;
+        return this.isCacheEmpty() && this.topicsWithNewJobs.isEmpty();
     }
 
     public void setIsBlocked(final boolean value) {
         this.queueIsBlocked.set(value);
     }
 
+    /**
+     * The number of times jobs have been loaded into the cache.
+     * @return The refill count
+     */
+    public long getRefillCount() {
+        return this.refillCount.get();
+    }
+
+    /**
+     * The total number of jobs loaded into the cache.
+     * @return The number of loaded jobs
+     */
+    public long getLoadedJobCount() {
+        return this.loadedJobCount.get();
+    }
+
+    /**
+     * The total time spent loading jobs into the cache.
+     * @return The time in milliseconds
+     */
+    public long getRefillTime() {
+        return this.refillTime.get();
+    }
+
+    /**
+     * The number of jobs currently in the cache.
+     * @return The number of cached jobs
+     */
+    public int size() {
+        int size = this.orderedCache.size();
+        for(final Deque<JobImpl> jobs : this.cache.values()) {
+            size += jobs.size();
+        }
+        return size;
+    }
+
     /**
      * Fill the cache.
      * No need to sync as this is called from the constructor.
@@ -153,26 +224,18 @@ public class QueueJobCache {
         JobHandler handler = null;
 
         if ( !this.queueIsBlocked.get() ) {
-            synchronized ( this.cache ) {
-                boolean retry;
-                do {
-                    retry = false;
-                    if ( this.cache.isEmpty() ) {
-                        final Set<String> checkingTopics = new HashSet<String>();
-                        synchronized ( this.topicsWithNewJobs ) {
-                            checkingTopics.addAll(this.topicsWithNewJobs);
-                            this.topicsWithNewJobs.clear();
-                        }
-                        if ( doFull ) {
-                            checkingTopics.addAll(this.topics);
-                        }
-                        if ( !checkingTopics.isEmpty() ) {
-                            this.loadJobs(queue.getName(), checkingTopics, statisticsManager);
-                        }
-                    }
+            boolean retry;
+            do {
+                retry = false;
+                boolean started = false;
+                JobImpl job = this.takeJob();
+                if ( job == null ) {
+                    this.refill(queue.getName(), statisticsManager, doFull);
+                    job = this.takeJob();
+                }
 
-                    if ( !this.cache.isEmpty() ) {
-                        final JobImpl job = this.cache.remove(0);
+                if ( job != null ) {
+                    try {
                         final JobExecutor consumer = jobConsumerManager.getExecutor(job.getTopic());
 
                         handler = new JobHandler(job, consumer, this.configuration);
@@ -184,6 +247,8 @@ public class QueueJobCache {
                                 }
                                 handler = null;
                                 retry = true;
+                            } else {
+                                started = true;
                             }
                         } else {
                             statisticsManager.jobDequeued(queue.getName(), handler.getJob().getTopic());
@@ -193,14 +258,141 @@ public class QueueJobCache {
                             handler = null;
                             retry = true;
                         }
-
+                    } finally {
+                        if ( !started ) {
+                            this.jobIds.remove(job.getId());
+                        }
                     }
-                } while ( handler == null && retry);
-            }
+                }
+            } while ( handler == null && retry);
         }
         return handler;
     }
 
+    /**
+     * Take the next job from the cache.
+     * The id of the job stays registered until the job is finished,
+     * so a refill does not load it again.
+     * @return The job or {@code null} if the cache is empty.
+     */
+    private JobImpl takeJob() {
+        if ( this.queueType == Type.ORDERED ) {
+            return this.orderedCache.pollFirst();
+        }
+        while ( true ) {
+            final Deque<JobImpl> jobs = this.queueType == Type.TOPIC_ROUND_ROBIN ? this.nextRoundRobinTopic() : this.oldestTopic();
+            if ( jobs == null ) {
+                return null;
+            }
+            final JobImpl job = jobs.peekFirst();
+            if ( job != null && jobs.removeFirstOccurrence(job) ) {
+                return job;
+            }
+            // taken concurrently
+        }
+    }
+
+    /**
+     * Get the topic deque with the oldest first job.
+     * @return The deque or {@code null} if all deques are empty.
+     */
+    private Deque<JobImpl> oldestTopic() {
+        Deque<JobImpl> result = null;
+        JobImpl oldest = null;
+        for(final String topic : this.cachedTopics) {
+            final Deque<JobImpl> jobs = this.cache.get(topic);
+            final JobImpl job = jobs.peekFirst();
+            if ( job != null && (oldest == null || job.compareTo(oldest) < 0) ) {
+                oldest = job;
+                result = jobs;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the next non empty topic deque in round robin order.
+     * @return The deque or {@code null} if all deques are empty.
+     */
+    private Deque<JobImpl> nextRoundRobinTopic() {
+        final String[] topics = this.cachedTopics;
+        if ( topics.length > 0 ) {
+            final int start = (this.nextTopic.getAndIncrement() & Integer.MAX_VALUE) % topics.length;
+            for(int i = 0; i < topics.length; i++) {
+                final Deque<JobImpl> jobs = this.cache.get(topics[(start + i) % topics.length]);
+                if ( !jobs.isEmpty() ) {
+                    return jobs;
+                }
+            }
+        }
+        return null;
+    }
+
+    private boolean isCacheEmpty() {
+        if ( !this.orderedCache.isEmpty() ) {
+            return false;
+        }
+        for(final Deque<JobImpl> jobs : this.cache.values()) {
+            if ( !jobs.isEmpty() ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the deque for a topic, create it if needed.
+     * Ordered queues use a single deque for all topics.
+     */
+    private Deque<JobImpl> getTopicCache(final String topic) {
+        if ( this.queueType == Type.ORDERED ) {
+            return this.orderedCache;
+        }
+        Deque<JobImpl> jobs = this.cache.get(topic);
+        if ( jobs == null ) {
+            synchronized ( this.cache ) {
+                jobs = this.cache.get(topic);
+                if ( jobs == null ) {
+                    jobs = new ConcurrentLinkedDeque<JobImpl>();
+                    this.cache.put(topic, jobs);
+                    final String[] topics = Arrays.copyOf(this.cachedTopics, this.cachedTopics.length + 1);
+                    topics[topics.length - 1] = topic;
+                    this.cachedTopics = topics;
+                }
+            }
+        }
+        return jobs;
+    }
+
+    /**
+     * Load new jobs into the cache if the cache is (still) empty.
+     */
+    private void refill(final String queueName,
+            final StatisticsManager statisticsManager,
+            final boolean doFull) {
+        this.loadLock.lock();
+        try {
+            if ( !this.isCacheEmpty() ) {
+                // another thread has loaded jobs in the meantime
+                return;
+            }
+            final Set<String> checkingTopics = new HashSet<String>();
+            final Iterator<String> iter = this.topicsWithNewJobs.iterator();
+            while ( iter.hasNext() ) {
+                checkingTopics.add(iter.next());
+                iter.remove();
+            }
+            if ( doFull ) {
+                checkingTopics.addAll(this.topics);
+            }
+            if ( !checkingTopics.isEmpty() ) {
+                this.loadJobs(queueName, checkingTopics, statisticsManager);
+            }
+        } finally {
+            this.loadLock.unlock();
+        }
+    }
+
     /**
      * Load the next N x numberOf(topics) jobs
      * @param checkingTopics The set of topics to check.
@@ -208,9 +400,10 @@ public class QueueJobCache {
     private void loadJobs( final String queueName, final Set<String> checkingTopics,
             final StatisticsManager statisticsManager) {
         logger.debug("Starting jobs loading from {}...", checkingTopics);
+        final long startTime = System.currentTimeMillis();
 
-        final Map<String, List<JobImpl>> topicCache = new HashMap<String, List<JobImpl>>();
-
+        int count = 0;
+        final List<JobImpl> orderedJobs = new ArrayList<JobImpl>();
         final ResourceResolver resolver = this.configuration.createResourceResolver();
         try {
             final Resource baseResource = resolver.getResource(this.configuration.getLocalJobsPath());
@@ -220,44 +413,33 @@ public class QueueJobCache {
 
                     final Resource topicResource = baseResource.getChild(topic.replace('/', '.'));
                     if ( topicResource != null ) {
-                        topicCache.put(topic, loadJobs(queueName, topic, topicResource, statisticsManager));
+                        final List<JobImpl> jobs = loadJobs(queueName, topic, topicResource, statisticsManager);
+                        if ( !jobs.isEmpty() ) {
+                            if ( this.queueType == Type.ORDERED ) {
+                                orderedJobs.addAll(jobs);
+                            } else {
+                                if ( this.queueType != Type.TOPIC_ROUND_ROBIN ) {
+                                    Collections.sort(jobs);
+                                }
+                                this.getTopicCache(topic).addAll(jobs);
+                            }
+                            count += jobs.size();
+                        }
                     }
                 }
             }
+            if ( !orderedJobs.isEmpty() ) {
+                Collections.sort(orderedJobs);
+                this.orderedCache.addAll(orderedJobs);
+            }
         } finally {
             resolver.close();
         }
-        orderTopics(topicCache);
-
-        logger.debug("Finished jobs loading {}", this.cache.size());
-    }
+        this.refillCount.incrementAndGet();
+        this.loadedJobCount.addAndGet(count);
+        this.refillTime.addAndGet(System.currentTimeMillis() - startTime);
 
-    /**
-     * Order the topics based on the queue type and put them in the cache.
-     * @param topicCache The topic based cache
-     */
-    private void orderTopics(final Map<String, List<JobImpl>> topicCache) {
-        if ( this.queueType == Type.ORDERED
-             || this.queueType == Type.UNORDERED) {
-            for(final List<JobImpl> list : topicCache.values()) {
-                this.cache.addAll(list);
-            }
-            Collections.sort(this.cache);
-        } else {
-            // topic round robin
-            boolean done = true;
-            do {
-                done = true;
-                for(final Map.Entry<String, List<JobImpl>> entry : topicCache.entrySet()) {
-                    if ( !entry.getValue().isEmpty() ) {
-                        this.cache.add(entry.getValue().remove(0));
-                        if ( !entry.getValue().isEmpty() ) {
-                            done = false;
-                        }
-                    }
-                }
-            } while ( !done ) ;
-        }
+        logger.debug("Finished jobs loading {}", count);
     }
 
     /**
@@ -279,6 +461,10 @@ public class QueueJobCache {
             @Override
             public boolean handle(final JobImpl job) {
                 if ( job.getProcessingStarted() == null && !job.hasReadErrors() ) {
+                    if ( !jobIds.add(job.getId()) ) {
+                        logger.debug("Ignoring job {} - job is already cached or processed.", job);
+                        return true;
+                    }
                     list.add(job);
                     statisticsManager.jobQueued(queueName, topic);
                     if ( list.size() == maxPreloadLimit ) {
@@ -301,9 +487,7 @@ public class QueueJobCache {
             }
         });
         if ( scanTopic.get() ) {
-            synchronized ( this.topicsWithNewJobs ) {
-                this.topicsWithNewJobs.add(topic);
-            }
+            this.topicsWithNewJobs.add(topic);
         }
         logger.debug("Caching {} jobs for topic {}", list.size(), topic);
 
@@ -316,29 +500,44 @@ public class QueueJobCache {
      */
     public void handleNewTopics(final Set<String> topics) {
         logger.debug("Update cache to handle new event for topics {}", topics);
-        synchronized ( this.topicsWithNewJobs ) {
-            this.topicsWithNewJobs.addAll(topics);
-        }
+        this.topicsWithNewJobs.addAll(topics);
         this.topics.addAll(topics);
     }
 
     /**
      * Reschedule a job
      * Reschedule the job and add it back into the cache.
+     * This is serialized with loading jobs, so a concurrent refill
+     * never sees the job as not started while it is not cached.
      * @param queueName The queue name
      * @param handler The job handler
      * @param statisticsManager The statistics manager
      */
     public void reschedule(final String queueName, final JobHandler handler, final StatisticsManager statisticsManager) {
-        synchronized ( this.cache ) {
+        this.loadLock.lock();
+        try {
             if ( handler.reschedule() ) {
+                final Deque<JobImpl> jobs = this.getTopicCache(handler.getJob().getTopic());
                 if ( this.queueType == Type.ORDERED ) {
-                    this.cache.add(0, handler.getJob());
+                    jobs.addFirst(handler.getJob());
                 } else {
-                    this.cache.add(handler.getJob());
+                    jobs.addLast(handler.getJob());
                 }
                 statisticsManager.jobQueued(queueName, handler.getJob().getTopic());
+            } else {
+                this.jobIds.remove(handler.getJob().getId());
             }
+        } finally {
+            this.loadLock.unlock();
         }
     }
+
+    /**
+     * Inform the cache that a job taken from it is finished and
+     * will not be rescheduled.
+     * @param jobId The job id
+     */
+    public void finished(final String jobId) {
+        this.jobIds.remove(jobId);
+    }
 }
@@ -19,6 +19,7 @@
 package org.apache.sling.event.jobs;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
 import org.osgi.annotation.versioning.ProviderType;
@@ -201,6 +202,25 @@ public interface JobManager {
      */
     JobBuilder createJob(final String topic);
 
+    /**
+     * Add a batch of new jobs.
+     *
+     * Each job is described by a job builder created with {@link #createJob(String)}
+     * and the optional properties set with {@link JobBuilder#properties(Map)}. The same
+     * rules as for {@link #addJob(String, Map)} apply to each single job.
+     *
+     * In contrast to adding the jobs one by one, the jobs are persisted in chunks
+     * and each chunk is stored with a single save operation. If storing a chunk fails,
+     * none of the jobs of that chunk is added.
+     *
+     * @param jobs The job builders for the jobs to add.
+     * @param errors Optional list which will be filled with error messages.
+     * @return A list with the new jobs in the order of the job builders. If a job could
+     *         not be created, the list contains <code>null</code> at its position.
+     * @since 2.1.0
+     */
+    List<Job> addJobs(Collection<JobBuilder> jobs, List<String> errors);
+
     /**
      * Return all available job schedules.
      * @return A collection of scheduled job infos
@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.event.impl.jobs.queues;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.event.impl.jobs.JobConsumerManager;
+import org.apache.sling.event.impl.jobs.JobHandler;
+import org.apache.sling.event.impl.jobs.config.JobManagerConfiguration;
+import org.apache.sling.event.impl.jobs.stats.StatisticsManager;
+import org.apache.sling.event.impl.support.ResourceHelper;
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.Queue;
+import org.apache.sling.event.jobs.QueueConfiguration;
+import org.apache.sling.event.jobs.consumer.JobExecutor;
+import org.apache.sling.testing.mock.sling.junit.SlingContext;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class QueueJobCacheTest {
+
+    private static final String JOBS_PATH = "/var/eventing/jobs/assigned/local";
+
+    private static final String QUEUE_NAME = "test";
+
+    @Rule
+    public final SlingContext ctx = new SlingContext();
+
+    @Mock
+    private JobManagerConfiguration configuration;
+
+    @Mock
+    private StatisticsManager statisticsManager;
+
+    @Mock
+    private JobConsumerManager jobConsumerManager;
+
+    @Mock
+    private Queue queue;
+
+    @Mock
+    private QueueConfiguration queueConfiguration;
+
+    private int counter;
+
+    @Before
+    public void setUp() {
+        Mockito.when(configuration.getLocalJobsPath()).thenReturn(JOBS_PATH);
+        Mockito.when(configuration.getQueuePreloadLimit()).thenReturn(3);
+        // the cache and the job handler close the resolver after each use
+        final ResourceResolver resolver = Mockito.spy(ctx.resourceResolver());
+        Mockito.doNothing().when(resolver).close();
+        Mockito.when(configuration.createResourceResolver()).thenReturn(resolver);
+        Mockito.when(jobConsumerManager.getExecutor(Mockito.anyString())).thenReturn(Mockito.mock(JobExecutor.class));
+        Mockito.when(queue.getName()).thenReturn(QUEUE_NAME);
+        Mockito.when(queue.getConfiguration()).thenReturn(queueConfiguration);
+    }
+
+    @Test
+    public void testOrderedByCreationAcrossTopics() {
+        createJob("a", 1);
+        createJob("b", 2);
+        createJob("a", 3);
+        createJob("b", 4);
+
+        final QueueJobCache cache = new QueueJobCache(configuration, QUEUE_NAME, statisticsManager,
+                QueueConfiguration.Type.UNORDERED, new HashSet<String>(Arrays.asList("a", "b")));
+        assertEquals(4, cache.size());
+        assertEquals(1, cache.getRefillCount());
+        assertEquals(4, cache.getLoadedJobCount());
+
+        assertEquals(Arrays.asList("a_1", "b_2", "a_3", "b_4"), drain(cache, false));
+        assertNull(cache.getNextJob(jobConsumerManager, statisticsManager, queue, false));
+        assertTrue(cache.isEmpty());
+    }
+
+    @Test
+    public void testTopicRoundRobin() {
+        createJob("a", 1);
+        createJob("a", 2);
+        createJob("a", 3);
+        createJob("b", 4);
+
+        final QueueJobCache cache = new QueueJobCache(configuration, QUEUE_NAME, statisticsManager,
+                QueueConfiguration.Type.TOPIC_ROUND_ROBIN, new HashSet<String>(Arrays.asList("a", "b")));
+        final List<String> jobs = drain(cache, false);
+        assertEquals(4, jobs.size());
+        // the single job of topic b is not the last one
+        assertTrue(jobs.indexOf("b_4") < 3);
+    }
+
+    @Test
+    public void testPreloadLimitAndRefill() {
+        for(int i = 0; i < 5; i++) {
+            createJob("a", i);
+        }
+        final QueueJobCache cache = new QueueJobCache(configuration, QUEUE_NAME, statisticsManager,
+                QueueConfiguration.Type.ORDERED, new HashSet<String>(Arrays.asList("a")));
+        assertEquals(3, cache.size());
+        assertFalse(cache.isEmpty());
+
+        // the remaining jobs are loaded once the cache is drained
+        assertEquals(Arrays.asList("a_0", "a_1", "a_2", "a_3", "a_4"), drain(cache, false));
+        assertEquals(2, cache.getRefillCount());
+        assertEquals(5, cache.getLoadedJobCount());
+    }
+
+    @Test
+    public void testRescheduleFirstInOrderedQueue() {
+        createJob("a", 1);
+        createJob("b", 2);
+        createJob("a", 3);
+
+        final QueueJobCache cache = new QueueJobCache(configuration, QUEUE_NAME, statisticsManager,
+                QueueConfiguration.Type.ORDERED, new HashSet<String>(Arrays.asList("a", "b")));
+        final JobHandler first = cache.getNextJob(jobConsumerManager, statisticsManager, queue, false);
+        final JobHandler second = cache.getNextJob(jobConsumerManager, statisticsManager, queue, false);
+        assertEquals("a_1", first.getJob().getId());
+        assertEquals("b_2", second.getJob().getId());
+
+        // the rescheduled job of topic b is processed before the job of topic a
+        cache.reschedule(QUEUE_NAME, second, statisticsManager);
+        assertEquals(Arrays.asList("b_2", "a_3"), drain(cache, true));
+    }
+
+    @Test
+    public void testJobInProcessIsNotLoadedAgain() throws PersistenceException {
+        createJob("a", 1);
+
+        final QueueJobCache cache = new QueueJobCache(configuration, QUEUE_NAME, statisticsManager,
+                QueueConfiguration.Type.UNORDERED, new HashSet<String>(Arrays.asList("a")));
+        final JobHandler handler = cache.getNextJob(jobConsumerManager, statisticsManager, queue, false);
+        assertEquals("a_1", handler.getJob().getId());
+
+        // a stale view of the job resource does not show the job as started
+        final Resource jobResource = ctx.resourceResolver().getResource(handler.getJob().getResourcePath());
+        jobResource.adaptTo(ModifiableValueMap.class).remove(Job.PROPERTY_JOB_STARTED_TIME);
+        ctx.resourceResolver().commit();
+        assertNull(cache.getNextJob(jobConsumerManager, statisticsManager, queue, true));
+
+        // a rescheduled job is cached once
+        cache.reschedule(QUEUE_NAME, handler, statisticsManager);
+        assertEquals(Arrays.asList("a_1"), drain(cache, true));
+
+        // a finished job can be loaded again
+        cache.finished("a_1");
+        jobResource.adaptTo(ModifiableValueMap.class).remove(Job.PROPERTY_JOB_STARTED_TIME);
+        ctx.resourceResolver().commit();
+        assertEquals(Arrays.asList("a_1"), drain(cache, true));
+    }
+
+    private List<String> drain(final QueueJobCache cache, final boolean doFull) {
+        final List<String> result = new ArrayList<String>();
+        JobHandler handler;
+        while ( (handler = cache.getNextJob(jobConsumerManager, statisticsManager, queue, doFull)) != null ) {
+            result.add(handler.getJob().getId());
+        }
+        return result;
+    }
+
+    private void createJob(final String topic, final int index) {
+        final Calendar created = Calendar.getInstance();
+        created.setTimeInMillis(1000000L + index * 1000L);
+        final String jobId = topic + "_" + index;
+        final Map<String, Object> props = new HashMap<String, Object>();
+        props.put(ResourceHelper.PROPERTY_JOB_TOPIC, topic);
+        props.put(ResourceHelper.PROPERTY_JOB_ID, jobId);
+        props.put(Job.PROPERTY_JOB_CREATED, created);
+        props.put(Job.PROPERTY_JOB_RETRY_COUNT, 0);
+        props.put(Job.PROPERTY_JOB_RETRIES, 10);
+        ctx.create().resource(JOBS_PATH + "/" + topic + "/2017/1/1/0/" + (counter++) + "/" + jobId, props);
+        try {
+            ctx.resourceResolver().commit();
+        } catch (final PersistenceException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.event.it;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.sling.event.impl.jobs.config.ConfigurationConstants;
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.JobBuilder;
+import org.apache.sling.event.jobs.JobManager;
+import org.apache.sling.event.jobs.QueueConfiguration;
+import org.apache.sling.event.jobs.consumer.JobConsumer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.ops4j.pax.exam.junit.PaxExam;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Adds jobs one by one and as a batch and compares the throughput.
+ */
+@RunWith(PaxExam.class)
+public class BatchAddTest extends AbstractJobHandlingTest {
+
+    private static final String TOPIC = "sling/test/batch";
+
+    private static final int NUM_JOBS = 1000;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Override
+    @Before
+    public void setup() throws IOException {
+        super.setup();
+
+        final org.osgi.service.cm.Configuration config = this.configAdmin.createFactoryConfiguration("org.apache.sling.event.jobs.QueueConfiguration", null);
+        final Dictionary<String, Object> props = new Hashtable<String, Object>();
+        props.put(ConfigurationConstants.PROP_NAME, "test");
+        props.put(ConfigurationConstants.PROP_TYPE, QueueConfiguration.Type.UNORDERED.name());
+        props.put(ConfigurationConstants.PROP_TOPICS, TOPIC);
+        config.update(props);
+
+        this.sleep(1000L);
+    }
+
+    @Override
+    @After
+    public void cleanup() {
+        super.cleanup();
+    }
+
+    @Test(timeout = DEFAULT_TEST_TIMEOUT)
+    public void testBatchAdd() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        this.registerJobConsumer(TOPIC,
+                new JobConsumer() {
+
+                    @Override
+                    public JobResult process(final Job job) {
+                        count.incrementAndGet();
+                        return JobResult.OK;
+                    }
+                });
+        final JobManager jobManager = this.getJobManager();
+
+        long start = System.currentTimeMillis();
+        for(int i = 0; i < NUM_JOBS; i++) {
+            assertNotNull(jobManager.addJob(TOPIC, Collections.<String, Object>singletonMap("index", i)));
+        }
+        final long singleTime = System.currentTimeMillis() - start;
+
+        final List<JobBuilder> builders = new ArrayList<JobBuilder>();
+        for(int i = 0; i < NUM_JOBS; i++) {
+            builders.add(jobManager.createJob(TOPIC).properties(Collections.<String, Object>singletonMap("index", i)));
+        }
+        // add an invalid job in the middle
+        builders.add(NUM_JOBS / 2, jobManager.createJob(TOPIC).properties(Collections.<String, Object>singletonMap("invalid", new Object())));
+
+        final List<String> errors = new ArrayList<String>();
+        start = System.currentTimeMillis();
+        final List<Job> jobs = jobManager.addJobs(builders, errors);
+        final long batchTime = System.currentTimeMillis() - start;
+
+        assertEquals(NUM_JOBS + 1, jobs.size());
+        assertEquals(1, errors.size());
+        for(int i = 0; i < jobs.size(); i++) {
+            if ( i == NUM_JOBS / 2 ) {
+                assertEquals(null, jobs.get(i));
+            } else {
+                assertNotNull(jobs.get(i));
+                assertEquals(i < NUM_JOBS / 2 ? i : i - 1, jobs.get(i).getProperty("index"));
+            }
+        }
+        logger.info("Added {} jobs one by one in {} ms and as a batch in {} ms", new Object[] {NUM_JOBS, singleTime, batchTime});
+
+        while ( count.get() < 2 * NUM_JOBS ) {
+            this.sleep(100);
+        }
+        assertEquals(2 * NUM_JOBS, count.get());
+    }
+}
@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashSet;
@@ -33,6 +34,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.jackrabbit.commons.json.JsonHandler;
 import org.apache.jackrabbit.commons.json.JsonParser;
@@ -66,18 +68,34 @@ public class JcrResourceBundle extends ResourceBundle {
 
     static final String QUERY_LANGUAGE_ROOTS = "//element(*,mix:language)[@jcr:language]";
 
-    private final Map<String, Object> resources;
+    /** the merged dictionaries, replaced when a dictionary is reloaded */
+    private volatile MessageDictionary resources;
+
+    /** the dictionaries of the language roots, in the order in which they have been found */
+    private final Map<String, MessageDictionary> dictionaries = new LinkedHashMap<String, MessageDictionary>();
+
+    private final MessageDictionary.KeyPool keyPool;
 
     private final Locale locale;
 
     private final String baseName;
 
-    private final Set<String> languageRoots = new HashSet<String>();
+    private final Set<String> languageRoots = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
     JcrResourceBundle(Locale locale, String baseName,
             ResourceResolver resourceResolver) {
+        this(locale, baseName, resourceResolver, null);
+    }
+
+    /**
+     * @param keyPool The pool of message keys shared by the bundles of the
+     *      provider, may be <code>null</code>
+     */
+    JcrResourceBundle(Locale locale, String baseName,
+            ResourceResolver resourceResolver, MessageDictionary.KeyPool keyPool) {
         this.locale = locale;
         this.baseName = baseName;
+        this.keyPool = keyPool;
 
         log.info("Finding all dictionaries for '{}' (basename: {}) ...", locale, baseName == null ? "<none>" : baseName);
 
@@ -95,6 +113,81 @@ public class JcrResourceBundle extends ResourceBundle {
         }
     }
 
+    /**
+     * Applies the changes of the given resources to the dictionaries of the
+     * language roots containing them and merges them with the dictionaries
+     * of the other language roots of this bundle, which are not touched.
+     * <p>
+     * For a <code>sling:Message</code> dictionary only the messages at and
+     * below a changed path are read again and replace the messages which
+     * have been read from there before. A JSON dictionary, a dictionary in
+     * which several resources define the same key and a changed language root
+     * itself are read again completely. A language root which does not exist
+     * anymore is removed from the bundle.
+     * <p>
+     * The messages are replaced at once, so concurrent lookups see either
+     * the old or the new messages.
+     *
+     * @param resolver The storage access
+     * @param paths The paths of the changed resources
+     */
+    synchronized void applyChanges(final ResourceResolver resolver, final Collection<String> paths) {
+        long start = System.currentTimeMillis();
+        resolver.refresh();
+        final Set<String> reloadedRoots = new HashSet<String>();
+        for (final String path : paths) {
+            final String root = getLanguageRoot(path);
+            if (root == null) {
+                log.debug("Ignoring change of {} not below a language root of {}", path, this);
+                continue;
+            }
+            if (reloadedRoots.contains(root)) {
+                continue;
+            }
+            final Resource dictionaryResource = resolver.getResource(root);
+            final MessageDictionary dictionary = dictionaries.get(root);
+            if (dictionaryResource == null) {
+                log.info("Dictionary root {} has been removed", root);
+                dictionaries.remove(root);
+                languageRoots.remove(root);
+                reloadedRoots.add(root);
+            } else if (path.length() == root.length() || !dictionary.isEditable()) {
+                dictionaries.put(root, loadDictionary(dictionaryResource));
+                reloadedRoots.add(root);
+            } else {
+                log.debug("Applying change of {} to dictionary {}", path, root);
+                final MessageDictionary.Builder builder = dictionary.edit(path.substring(root.length() + 1), keyPool);
+                final Resource resource = resolver.getResource(path);
+                if (resource != null) {
+                    scanForSlingMessages(resource, root.length() + 1, builder);
+                }
+                dictionaries.put(root, builder.build());
+            }
+        }
+        this.resources = merge(resolver.getSearchPath());
+
+        long end = System.currentTimeMillis();
+        if (log.isInfoEnabled()) {
+            log.info(
+                "Finished applying changes {} for '{}' (basename: {}) in {}ms, {} entries",
+                new Object[] { paths, locale, baseName == null ? "<none>" : baseName, (end - start), resources.size()}
+            );
+        }
+    }
+
+    /**
+     * Returns the language root of this bundle which is or contains the given
+     * path, <code>null</code> if there is none.
+     */
+    private String getLanguageRoot(final String path) {
+        for (final String root : dictionaries.keySet()) {
+            if (path.startsWith(root) && (path.length() == root.length() || path.charAt(root.length()) == '/')) {
+                return root;
+            }
+        }
+        return null;
+    }
+
     protected Set<String> getLanguageRootPaths() {
         return languageRoots;
     }
@@ -165,62 +258,73 @@ public class JcrResourceBundle extends ResourceBundle {
      *
      * @throws NullPointerException if either of the parameters is {@code null}.
      */
-    private Map<String, Object> loadFully(final ResourceResolver resolver, Set<String> roots, Set<String> languageRoots) {
+    private MessageDictionary loadFully(final ResourceResolver resolver, Set<String> roots, Set<String> languageRoots) {
+
+        for (final String root: roots) {
+
+            Resource dictionaryResource = resolver.getResource(root);
+            if (dictionaryResource == null) {
+                log.warn("Dictionary root found by search not accessible: {}", root);
+                continue;
+            }
+
+            dictionaries.put(root, loadDictionary(dictionaryResource));
+            languageRoots.add(root);
+        }
+
+        return merge(resolver.getSearchPath());
+    }
+
+    private MessageDictionary loadDictionary(final Resource dictionaryResource) {
+        final MessageDictionary.Builder dictionary = new MessageDictionary.Builder(0, keyPool);
 
-        final String[] searchPath = resolver.getSearchPath();
+        // check type of dictionary
+        if (dictionaryResource.getName().endsWith(".json")) {
+            loadJsonDictionary(dictionaryResource, dictionary);
+        } else {
+            loadSlingMessageDictionary(dictionaryResource, dictionary);
+        }
+        return dictionary.build();
+    }
+
+    /**
+     * Merges the dictionaries of the language roots into a single one.
+     */
+    private MessageDictionary merge(final String[] searchPath) {
 
-        // for each search path entry, have a list of maps (dictionaries)
-        // plus other = "outside the search path" at the end
+        // for each dictionary find where in the search path it belongs
+        // otherwise put it in the outside-the-search-path bucket (index = searchPath.length)
 
         //   [0] /apps2  -> [dict1, dict2, dict3 ...]
         //   [1] /apps   -> [dict4, dict5, ...]
         //   [2] /libs   -> [dict6, ...]
         //   [3] (other) -> [dict7, dict8 ...]
 
-        List<List<Map<String, Object>>> dictionariesBySearchPath = new ArrayList<List<Map<String, Object>>>(searchPath.length + 1);
+        final List<List<MessageDictionary>> dictionariesBySearchPath = new ArrayList<List<MessageDictionary>>(searchPath.length + 1);
         for (int i = 0; i < searchPath.length + 1; i++) {
-            dictionariesBySearchPath.add(new ArrayList<Map<String, Object>>());
+            dictionariesBySearchPath.add(new ArrayList<MessageDictionary>());
         }
 
-        for (final String root: roots) {
-
-            Resource dictionaryResource = resolver.getResource(root);
-            if (dictionaryResource == null) {
-                log.warn("Dictionary root found by search not accessible: {}", root);
-                continue;
-            }
-
-            // linked hash map to keep order (not functionally important, but helpful for dictionary debugging)
-            Map<String, Object> dictionary = new LinkedHashMap<String, Object>();
-
-            // find where in the search path this dict belongs
-            // otherwise put it in the outside-the-search-path bucket (last list)
-            List<Map<String, Object>> targetList = dictionariesBySearchPath.get(searchPath.length);
+        int expectedSize = 0;
+        for (final Map.Entry<String, MessageDictionary> entry : dictionaries.entrySet()) {
+            List<MessageDictionary> targetList = dictionariesBySearchPath.get(searchPath.length);
             for (int i = 0; i < searchPath.length; i++) {
-                if (root.startsWith(searchPath[i])) {
+                if (entry.getKey().startsWith(searchPath[i])) {
                     targetList = dictionariesBySearchPath.get(i);
                     break;
                 }
             }
-            targetList.add(dictionary);
-
-            // check type of dictionary
-            if (dictionaryResource.getName().endsWith(".json")) {
-                loadJsonDictionary(dictionaryResource, dictionary);
-            } else {
-                loadSlingMessageDictionary(dictionaryResource, dictionary);
-            }
-
-            languageRoots.add(root);
+            targetList.add(entry.getValue());
+            expectedSize += entry.getValue().size();
         }
 
-        // linked hash map to keep order (not functionally important, but helpful for dictionary debugging)
-        final Map<String, Object> result = new LinkedHashMap<String, Object>();
+        // keeps the order of the keys (not functionally important, but helpful for dictionary debugging)
+        final MessageDictionary.Builder result = new MessageDictionary.Builder(expectedSize, null);
 
         // first, add everything that's not under a search path (e.g. /content)
         // below, same strings inside a search path dictionary would overlay them since
         // they are added later to result = overwrite
-        for (Map<String, Object> dict : dictionariesBySearchPath.get(searchPath.length)) {
+        for (MessageDictionary dict : dictionariesBySearchPath.get(searchPath.length)) {
             result.putAll(dict);
         }
 
@@ -228,15 +332,15 @@ public class JcrResourceBundle extends ResourceBundle {
         // a single result, so that e.g. strings in /apps overlay the ones in /libs
         for (int i = searchPath.length - 1; i >= 0; i--) {
 
-            for (Map<String, Object> dict : dictionariesBySearchPath.get(i)) {
+            for (MessageDictionary dict : dictionariesBySearchPath.get(i)) {
                 result.putAll(dict);
             }
         }
 
-        return result;
+        return result.build();
     }
 
-    private void loadJsonDictionary(Resource resource, final Map<String, Object> targetDictionary) {
+    private void loadJsonDictionary(Resource resource, final MessageDictionary.Builder targetDictionary) {
         log.info("Loading json dictionary: {}", resource.getPath());
 
         // use streaming parser (we don't need the dict in memory twice)
@@ -296,35 +400,32 @@ public class JcrResourceBundle extends ResourceBundle {
     }
 
     /**
-     * Depth-first traversal of a resource tree
+     * Depth-first traversal of a resource tree, the messages are added with
+     * their path after the first <code>rootLength</code> characters as source
      */
-    private void scanForSlingMessages(final Resource rsrc, final Map<String, Object> targetDictionary) {
+    private void scanForSlingMessages(final Resource rsrc, final int rootLength, final MessageDictionary.Builder targetDictionary) {
         final ValueMap vm = rsrc.adaptTo(ValueMap.class);
         if ( vm != null ) {
             final String value = vm.get(PROP_VALUE, String.class);
             if ( value != null ) {
                 final String key = vm.get(PROP_KEY, rsrc.getName());
-                targetDictionary.put(key, value);
+                final String path = rsrc.getPath();
+                targetDictionary.put(key, value, (path.length() > rootLength) ? path.substring(rootLength) : "");
             }
         }
 
         for(final Resource c : rsrc.getChildren()) {
-            scanForSlingMessages(c, targetDictionary);
+            scanForSlingMessages(c, rootLength, targetDictionary);
         }
     }
 
-    private void loadSlingMessageDictionary(final Resource dictionaryResource, final Map<String, Object> targetDictionary) {
+    private void loadSlingMessageDictionary(final Resource dictionaryResource, final MessageDictionary.Builder targetDictionary) {
         log.info("Loading sling:Message dictionary: {}", dictionaryResource.getPath());
 
-        this.scanForSlingMessages(dictionaryResource, targetDictionary);
+        this.scanForSlingMessages(dictionaryResource, dictionaryResource.getPath().length() + 1, targetDictionary);
     }
 
     private Set<String> loadPotentialLanguageRoots(ResourceResolver resourceResolver, Locale locale, String baseName) {
-        final String localeString = locale.toString();
-        final String localeStringLower = localeString.toLowerCase();
-        final String localeRFC4646String = toRFC4646String(locale);
-        final String localeRFC4646StringLower = localeRFC4646String.toLowerCase();
-
         final Set<String> paths = new LinkedHashSet<String>();
         final Iterator<Resource> bundles = resourceResolver.findResources(QUERY_LANGUAGE_ROOTS, "xpath");
         while (bundles.hasNext()) {
@@ -332,10 +433,7 @@ public class JcrResourceBundle extends ResourceBundle {
             ValueMap properties = bundle.adaptTo(ValueMap.class);
             String language = properties.get(PROP_LANGUAGE, String.class);
             if (language != null && language.length() > 0) {
-                if (language.equals(localeString)
-                        || language.equals(localeStringLower)
-                        || language.equals(localeRFC4646String)
-                        || language.equals(localeRFC4646StringLower)) {
+                if (isLanguageOf(language, locale)) {
                     // basename might be a multivalue (see https://issues.apache.org/jira/browse/SLING-4547)
                     String[] baseNames = properties.get(PROP_BASENAME, new String[]{});
                     if (baseName == null || Arrays.asList(baseName).contains(baseName)) {
@@ -347,6 +445,20 @@ public class JcrResourceBundle extends ResourceBundle {
         return Collections.unmodifiableSet(paths);
     }
 
+    /**
+     * Returns whether the value of a <code>jcr:language</code> property
+     * denotes the locale, either in the format of {@link Locale#toString()} or
+     * in RFC 4646 format, each in the original or in lower case.
+     */
+    static boolean isLanguageOf(final String language, final Locale locale) {
+        final String localeString = locale.toString();
+        final String localeRFC4646String = toRFC4646String(locale);
+        return language.equals(localeString)
+                || language.equals(localeString.toLowerCase())
+                || language.equals(localeRFC4646String)
+                || language.equals(localeRFC4646String.toLowerCase());
+    }
+
     // Would be nice if Locale.toString() output RFC 4646, but it doesn't
     private static String toRFC4646String(Locale locale) {
         return locale.toString().replace('_', '-');
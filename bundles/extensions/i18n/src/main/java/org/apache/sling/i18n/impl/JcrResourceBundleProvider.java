@@ -145,6 +145,18 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider, Resour
      */
     private final Set<String> languageRootPaths = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
+    /**
+     * paths of changed resources below the language roots per cached bundle,
+     * to be applied by the scheduled job of the bundle
+     */
+    private final Map<Key, Set<String>> pendingChanges = new HashMap<>();
+
+    /**
+     * the message keys of all cached bundles, so the bundles of the different
+     * locales share the key instances
+     */
+    private final MessageDictionary.KeyPool messageKeys = new MessageDictionary.KeyPool();
+
     /**
      * Return root resource bundle as created on-demand by
      * {@link #getRootResourceBundle()}.
@@ -208,41 +220,97 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider, Resour
             log.trace("handleEvent: Detecting event {} for path '{}'", change.getType(), change.getPath());
 
             // if this change was on languageRootPath level this might change basename and locale as well, therefore
-            // invalidate everything
-            if (languageRootPaths.contains(change.getPath())) {
+            // invalidate everything, same if a language root has been moved or removed with one of its ancestors
+            if (languageRootPaths.contains(change.getPath()) || isAncestorOfLanguageRoot(change.getPath())) {
                 log.debug(
                         "handleEvent: Detected change of cached language root '{}', removing all cached ResourceBundles",
                         change.getPath());
                 scheduleReloadBundles(true);
-            } else {
-                // if it is only a change below a root path, only messages of one resource bundle can be affected!
-                for (final String root : languageRootPaths) {
-                    if (change.getPath().startsWith(root)) {
-                        // figure out which JcrResourceBundle from the cached ones is affected
-                        for (JcrResourceBundle bundle : resourceBundleCache.values()) {
-                            if (bundle.getLanguageRootPaths().contains(root)) {
-                                // reload it
-                                log.debug("handleEvent: Resource changes below '{}', reloading ResourceBundle '{}'",
-                                        root, bundle);
-                                scheduleReloadBundle(bundle);
-                                return;
-                            }
-                        }
-                        log.debug("handleEvent: No cached resource bundle found with root '{}'", root);
-                        break;
+                return;
+            }
+
+            // if it is only a change below a root path, only the changed messages of that root have to be read
+            final String root = getLanguageRoot(change.getPath());
+            if (root != null) {
+                // figure out which JcrResourceBundles from the cached ones are affected
+                boolean cached = false;
+                for (JcrResourceBundle bundle : resourceBundleCache.values()) {
+                    if (bundle.getLanguageRootPaths().contains(root)) {
+                        log.debug("handleEvent: Resource '{}' changed, updating dictionary of ResourceBundle '{}'",
+                                change.getPath(), bundle);
+                        scheduleApplyChange(bundle, change.getPath());
+                        cached = true;
                     }
                 }
-                // may be a completely new dictionary
-                if (!refreshed) {
-                    // refresh at most once per onChange()
-                    resourceResolver.refresh();
-                    refreshed = true;
+                if (!cached) {
+                    log.debug("handleEvent: No cached resource bundle found with root '{}'", root);
                 }
-                if (isDictionaryResource(change)) {
-                    scheduleReloadBundles(true);
+                continue;
+            }
+
+            // may be a completely new dictionary
+            if (!refreshed) {
+                // refresh at most once per onChange()
+                resourceResolver.refresh();
+                refreshed = true;
+            }
+            if (isDictionaryResource(change)) {
+                // only the bundles of the dictionary's language have to be reloaded
+                final String language = getDictionaryLanguage(change.getPath());
+                if (language == null) {
+                    log.debug("handleEvent: No language found for dictionary '{}', not part of any ResourceBundle",
+                            change.getPath());
+                    continue;
                 }
+                for (JcrResourceBundle bundle : resourceBundleCache.values()) {
+                    if (JcrResourceBundle.isLanguageOf(language, bundle.getLocale())) {
+                        log.debug("handleEvent: New dictionary '{}', reloading ResourceBundle '{}'",
+                                change.getPath(), bundle);
+                        scheduleReloadBundle(bundle);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the known language root containing the given path or
+     * <code>null</code> if the path is not below any of them.
+     */
+    private String getLanguageRoot(final String path) {
+        for (final String root : languageRootPaths) {
+            if (path.startsWith(root) && path.length() > root.length() && path.charAt(root.length()) == '/') {
+                return root;
+            }
+        }
+        return null;
+    }
+
+    private boolean isAncestorOfLanguageRoot(final String path) {
+        for (final String root : languageRootPaths) {
+            if (root.startsWith(path) && root.length() > path.length()
+                    && (path.endsWith("/") || root.charAt(path.length()) == '/')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the <code>jcr:language</code> of the resource at the given path
+     * or of its closest ancestor having one, <code>null</code> if there is
+     * none.
+     */
+    private String getDictionaryLanguage(final String path) {
+        Resource resource = resourceResolver.getResource(path);
+        while (resource != null) {
+            final String language = resource.getValueMap().get(PROP_LANGUAGE, String.class);
+            if (language != null && language.length() > 0) {
+                return language;
             }
+            resource = resource.getParent();
         }
+        return null;
     }
 
     private boolean isDictionaryResource(final ResourceChange change) {
@@ -298,6 +366,9 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider, Resour
             }
         }
         scheduledJobNames.clear();
+        synchronized (pendingChanges) {
+            pendingChanges.clear();
+        }
         // defer this job
         final ScheduleOptions options;
         if (withDelay) {
@@ -321,20 +392,75 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider, Resour
         Locale locale = bundle.getLocale();
         final Key key = new Key(baseName, locale);
 
+        final String jobName = "JcrResourceBundleProvider: reload bundle with key " + key.toString();
+        if (scheduledJobNames.contains(jobName)) {
+            // the scheduled job will also cover this change
+            return;
+        }
         // defer this job
         ScheduleOptions options = scheduler.AT(new Date(System.currentTimeMillis() + invalidationDelay));
-        final String jobName = "JcrResourceBundleProvider: reload bundle with key " + key.toString();
         scheduledJobNames.add(jobName);
         options.name(jobName);
         scheduler.schedule(new Runnable() {
             @Override
             public void run() {
+                scheduledJobNames.remove(jobName);
                 reloadBundle(key);
+            }
+        }, options);
+    }
+
+    /**
+     * Schedules applying the change of the resource below a language root of
+     * the bundle. The changes until the job runs are applied together.
+     */
+    private void scheduleApplyChange(JcrResourceBundle bundle, String path) {
+        final Key key = new Key(bundle.getBaseName(), bundle.getLocale());
+        synchronized (pendingChanges) {
+            Set<String> paths = pendingChanges.get(key);
+            if (paths != null) {
+                // the scheduled job will apply this change as well
+                paths.add(path);
+                return;
+            }
+            paths = new HashSet<>();
+            paths.add(path);
+            pendingChanges.put(key, paths);
+        }
+
+        // defer this job
+        ScheduleOptions options = scheduler.AT(new Date(System.currentTimeMillis() + invalidationDelay));
+        final String jobName = "JcrResourceBundleProvider: update dictionaries of bundle with key " + key.toString();
+        scheduledJobNames.add(jobName);
+        options.name(jobName);
+        scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
                 scheduledJobNames.remove(jobName);
+                applyChanges(key);
             }
         }, options);
     }
 
+    /**
+     * Applies the pending changes to the dictionaries of the cached bundle.
+     * The bundle is updated in place: it stays registered and remains the
+     * parent of its dependent bundles, so those do not need to be reloaded.
+     */
+    void applyChanges(final Key key) {
+        final Set<String> paths;
+        synchronized (pendingChanges) {
+            paths = pendingChanges.remove(key);
+        }
+        final JcrResourceBundle bundle = resourceBundleCache.get(key);
+        if (paths == null || bundle == null) {
+            log.debug("Resource bundle for {} is not cached anymore, nothing to update", key);
+            return;
+        }
+        log.info("Applying changes {} to resource bundle for {}", paths, key);
+        bundle.applyChanges(resourceResolver, paths);
+    }
+
     void reloadBundle(final Key key) {
         // remove bundle from cache
         resourceBundleCache.remove(key);
@@ -469,7 +595,7 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider, Resour
      *             is not available to access the resources.
      */
     private JcrResourceBundle createResourceBundle(String baseName, Locale locale) {
-        final JcrResourceBundle bundle = new JcrResourceBundle(locale, baseName, resourceResolver);
+        final JcrResourceBundle bundle = new JcrResourceBundle(locale, baseName, resourceResolver, messageKeys);
 
         // set parent resource bundle
         Locale parentLocale = getParentLocale(locale);
@@ -531,6 +657,7 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider, Resour
     private void clearCache() {
         resourceBundleCache.clear();
         languageRootPaths.clear();
+        messageKeys.clear();
 
         synchronized (this) {
             for (ServiceRegistration<ResourceBundle> serviceReg : bundleServiceRegistrations.values()) {
@@ -0,0 +1,335 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.i18n.impl;
+
+import java.lang.ref.WeakReference;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * The <code>MessageDictionary</code> is an immutable map of message keys to
+ * messages.
+ * <p>
+ * The keys and messages are held in two arrays in the order in which they have
+ * been added and an open addressing hash table of array indexes is used to
+ * look them up. Unlike a <code>LinkedHashMap</code> no object is created per
+ * entry, which matters for dictionaries with many thousand messages per
+ * locale. Dictionaries are created with a {@link Builder}.
+ * <p>
+ * A dictionary may record the source of each message, the path of the
+ * message resource relative to the language root. This allows to apply the
+ * change of a single message resource with {@link #edit(String, KeyPool)}
+ * instead of reading the whole language root again.
+ */
+final class MessageDictionary {
+
+    static final MessageDictionary EMPTY = new Builder(0, null).build();
+
+    private final String[] keys;
+
+    private final Object[] values;
+
+    /** the sources of the entries, <code>null</code> if not recorded */
+    private final String[] sources;
+
+    /** whether a key is defined by more than one source */
+    private final boolean ambiguous;
+
+    /** index + 1 of the entries in the arrays, 0 marks an empty slot */
+    private final int[] table;
+
+    private final int size;
+
+    private final Set<String> keySet = new KeySet();
+
+    private MessageDictionary(final String[] keys, final Object[] values, final String[] sources,
+            final boolean ambiguous, final int[] table, final int size) {
+        this.keys = keys;
+        this.values = values;
+        this.sources = sources;
+        this.ambiguous = ambiguous;
+        this.table = table;
+        this.size = size;
+    }
+
+    /**
+     * Returns the message for the key or <code>null</code> if the dictionary
+     * does not contain the key.
+     */
+    Object get(final String key) {
+        final int index = table[slot(table, keys, key)];
+        return (index == 0) ? null : values[index - 1];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns an unmodifiable view of the keys, in the order in which they
+     * have been added.
+     */
+    Set<String> keySet() {
+        return keySet;
+    }
+
+    /**
+     * Returns whether the sources of the messages are recorded and each key
+     * is defined by a single source. Only then the dictionary can be
+     * {@link #edit(String, KeyPool) edited}, otherwise removing a source might
+     * remove a message still defined by another source.
+     */
+    boolean isEditable() {
+        return sources != null && !ambiguous;
+    }
+
+    /**
+     * Returns a builder with the entries of this dictionary except the ones
+     * whose source is the given source or below it.
+     *
+     * @param source The source to remove, relative to the language root
+     * @param keyPool The pool of keys for the entries added to the builder,
+     *      may be <code>null</code>
+     * @throws IllegalStateException if the dictionary is not editable
+     */
+    Builder edit(final String source, final KeyPool keyPool) {
+        if (!isEditable()) {
+            throw new IllegalStateException("Sources of the dictionary are not known");
+        }
+        final String prefix = source + '/';
+        final Builder builder = new Builder(size, keyPool);
+        for (int i = 0; i < size; i++) {
+            if (!sources[i].equals(source) && !sources[i].startsWith(prefix)) {
+                builder.put(keys[i], values[i], sources[i]);
+            }
+        }
+        return builder;
+    }
+
+    /**
+     * Returns the slot of the key in the table: either the slot referencing
+     * the key or the empty slot where the key would be inserted.
+     */
+    private static int slot(final int[] table, final String[] keys, final String key) {
+        final int mask = table.length - 1;
+        final int h = key.hashCode();
+        int slot = (h ^ (h >>> 16)) & mask;
+        int index = table[slot];
+        while (index != 0 && !keys[index - 1].equals(key)) {
+            slot = (slot + 1) & mask;
+            index = table[slot];
+        }
+        return slot;
+    }
+
+    /**
+     * Returns the table size for the number of entries, a power of two at
+     * least twice as large to keep the probe sequences short.
+     */
+    private static int tableSize(final int capacity) {
+        int tableSize = 2;
+        while (tableSize < capacity * 2) {
+            tableSize <<= 1;
+        }
+        return tableSize;
+    }
+
+    private final class KeySet extends AbstractSet<String> {
+
+        @Override
+        public Iterator<String> iterator() {
+            return new Iterator<String>() {
+
+                private int next;
+
+                @Override
+                public boolean hasNext() {
+                    return next < size;
+                }
+
+                @Override
+                public String next() {
+                    if (next >= size) {
+                        throw new NoSuchElementException();
+                    }
+                    return keys[next++];
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public boolean contains(final Object o) {
+            return (o instanceof String) && get((String) o) != null;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * The <code>Builder</code> collects the entries of a dictionary. Adding a
+     * key again replaces the message but keeps the position of the key.
+     * <p>
+     * If a key pool is given, the keys are replaced by the instances in the
+     * pool, so the bundles of all locales share a single instance of each key.
+     * <p>
+     * The sources are recorded if every entry is added with a source.
+     */
+    static final class Builder {
+
+        private final KeyPool keyPool;
+
+        private String[] keys;
+
+        private Object[] values;
+
+        private String[] sources;
+
+        private boolean ambiguous;
+
+        private int[] table;
+
+        private int size;
+
+        /**
+         * @param expectedSize The expected number of entries
+         * @param keyPool The pool of keys, may be <code>null</code>
+         */
+        Builder(final int expectedSize, final KeyPool keyPool) {
+            this.keyPool = keyPool;
+            this.keys = new String[Math.max(expectedSize, 8)];
+            this.values = new Object[keys.length];
+            this.table = new int[tableSize(keys.length)];
+        }
+
+        Builder put(final String key, final Object value) {
+            return put(key, value, null);
+        }
+
+        /**
+         * @param source The path of the message resource relative to the
+         *      language root, <code>null</code> if not known
+         */
+        Builder put(final String key, final Object value, final String source) {
+            final int slot = slot(table, keys, key);
+            final int index = table[slot];
+            if (index != 0) {
+                values[index - 1] = value;
+                if (sources != null) {
+                    ambiguous |= (source == null || !source.equals(sources[index - 1]));
+                    sources[index - 1] = source;
+                }
+            } else if (size == keys.length) {
+                grow();
+                put(key, value, source);
+            } else {
+                keys[size] = intern(key);
+                values[size] = value;
+                if (source == null) {
+                    sources = null;
+                } else if (sources != null || size == 0) {
+                    if (sources == null) {
+                        sources = new String[keys.length];
+                    }
+                    // most messages are named after their key
+                    sources[size] = source.equals(key) ? keys[size] : source;
+                }
+                table[slot] = ++size;
+            }
+            return this;
+        }
+
+        Builder putAll(final MessageDictionary dictionary) {
+            for (int i = 0; i < dictionary.size; i++) {
+                put(dictionary.keys[i], dictionary.values[i]);
+            }
+            return this;
+        }
+
+        MessageDictionary build() {
+            if (size == keys.length) {
+                return new MessageDictionary(keys, values, sources, ambiguous, table, size);
+            }
+            final String[] compactKeys = Arrays.copyOf(keys, size);
+            final int[] compactTable = new int[tableSize(size)];
+            for (int i = 0; i < size; i++) {
+                compactTable[slot(compactTable, compactKeys, compactKeys[i])] = i + 1;
+            }
+            return new MessageDictionary(compactKeys, Arrays.copyOf(values, size),
+                    (sources != null) ? Arrays.copyOf(sources, size) : null, ambiguous, compactTable, size);
+        }
+
+        private String intern(final String key) {
+            return (keyPool == null) ? key : keyPool.intern(key);
+        }
+
+        private void grow() {
+            keys = Arrays.copyOf(keys, keys.length * 2);
+            values = Arrays.copyOf(values, keys.length);
+            if (sources != null) {
+                sources = Arrays.copyOf(sources, keys.length);
+            }
+            table = new int[tableSize(keys.length)];
+            for (int i = 0; i < size; i++) {
+                table[slot(table, keys, keys[i])] = i + 1;
+            }
+        }
+    }
+
+    /**
+     * The <code>KeyPool</code> holds a single instance of each message key
+     * used by the dictionaries. The keys are weakly referenced, so the keys
+     * of removed messages do not stay in the pool once no dictionary uses
+     * them anymore.
+     */
+    static final class KeyPool {
+
+        private final Map<String, WeakReference<String>> keys = new WeakHashMap<String, WeakReference<String>>();
+
+        synchronized String intern(final String key) {
+            final WeakReference<String> ref = keys.get(key);
+            final String pooled = (ref != null) ? ref.get() : null;
+            if (pooled != null) {
+                return pooled;
+            }
+            keys.put(key, new WeakReference<String>(key));
+            return key;
+        }
+
+        synchronized int size() {
+            return keys.size();
+        }
+
+        synchronized void clear() {
+            keys.clear();
+        }
+    }
+}
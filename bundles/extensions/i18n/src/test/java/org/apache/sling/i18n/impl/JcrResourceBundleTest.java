@@ -20,6 +20,7 @@ package org.apache.sling.i18n.impl;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -556,6 +557,89 @@ public class JcrResourceBundleTest extends RepositoryTestBase {
         assertEquals(MESSAGES_DE.size(), counter);
     }
 
+    public void test_reload_language_roots() throws Exception {
+        Node appsI18n = getSession().getRootNode().addNode("apps").addNode("i18n", "nt:unstructured");
+        Node de = appsI18n.addNode("de", "nt:folder");
+        de.addMixin("mix:language");
+        de.setProperty("jcr:language", "de");
+        Message overlay = new Message("", "overlaid", "from apps", true);
+        overlay.add(de);
+        getSession().save();
+
+        JcrResourceBundle bundle = new JcrResourceBundle(new Locale("de"), null, resolver);
+        assertEquals("from apps", bundle.getString("overlaid"));
+        assertEquals(MESSAGES_DE.size() + 1, bundle.keySet().size());
+
+        // change a message in /libs, add one in /apps and reload /apps only
+        getSession().getNode("/libs/i18n/de/plate").setProperty("sling:message", "Platte");
+        new Message("", "added", "new", true).add(de);
+        getSession().save();
+        bundle.applyChanges(resolver, Collections.singleton("/apps/i18n/de"));
+        assertEquals("new", bundle.getString("added"));
+        assertEquals("Teller", bundle.getString("plate"));
+
+        // reload /libs, /apps still overlays it
+        Node libsOverlaid = getSession().getNode("/libs/i18n/de").addNode("overlaid", "sling:MessageEntry");
+        libsOverlaid.setProperty("sling:message", "from libs");
+        getSession().save();
+        bundle.applyChanges(resolver, Collections.singleton("/libs/i18n/de"));
+        assertEquals("Platte", bundle.getString("plate"));
+        assertEquals("from apps", bundle.getString("overlaid"));
+        assertEquals(MESSAGES_DE.size() + 2, bundle.keySet().size());
+
+        // removing the /apps root drops its messages
+        de.remove();
+        getSession().save();
+        bundle.applyChanges(resolver, Collections.singleton("/apps/i18n/de"));
+        assertEquals("from libs", bundle.getString("overlaid"));
+        assertFalse(bundle.keySet().contains("added"));
+        assertFalse(bundle.getLanguageRootPaths().contains("/apps/i18n/de"));
+    }
+
+    public void test_apply_message_changes() throws Exception {
+        JcrResourceBundle bundle = new JcrResourceBundle(new Locale("de"), null, resolver);
+        assertEquals("Teller", bundle.getString("plate"));
+
+        // change a message
+        getSession().getNode("/libs/i18n/de/plate").setProperty("sling:message", "Platte");
+        getSession().save();
+        bundle.applyChanges(resolver, Collections.singleton("/libs/i18n/de/plate"));
+        assertEquals("Platte", bundle.getString("plate"));
+        assertEquals(MESSAGES_DE.size(), bundle.keySet().size());
+
+        // remove a folder with a message
+        getSession().getNode("/libs/i18n/de/s").remove();
+        getSession().save();
+        bundle.applyChanges(resolver, Collections.singleton("/libs/i18n/de/s"));
+        assertFalse(bundle.keySet().contains("spoon"));
+        assertEquals(MESSAGES_DE.size() - 1, bundle.keySet().size());
+
+        // add a message and change its key
+        Node cup = getSession().getNode("/libs/i18n/de/f").addNode("cup", "sling:MessageEntry");
+        cup.setProperty("sling:key", "cup");
+        cup.setProperty("sling:message", "Tasse");
+        getSession().save();
+        bundle.applyChanges(resolver, Collections.singleton("/libs/i18n/de/f/cup"));
+        assertEquals("Tasse", bundle.getString("cup"));
+        cup.setProperty("sling:key", "mug");
+        getSession().save();
+        bundle.applyChanges(resolver, Collections.singleton("/libs/i18n/de/f/cup"));
+        assertEquals("Tasse", bundle.getString("mug"));
+        assertFalse(bundle.keySet().contains("cup"));
+        assertEquals("Gabel", bundle.getString("fork"));
+
+        // a key defined twice is still found after removing one of its definitions
+        Node plate = getSession().getNode("/libs/i18n/de/f").addNode("plate", "sling:MessageEntry");
+        plate.setProperty("sling:message", "Teller");
+        getSession().save();
+        bundle.applyChanges(resolver, Collections.singleton("/libs/i18n/de/f/plate"));
+        assertEquals("Teller", bundle.getString("plate"));
+        plate.remove();
+        getSession().save();
+        bundle.applyChanges(resolver, Collections.singleton("/libs/i18n/de/f/plate"));
+        assertEquals("Platte", bundle.getString("plate"));
+    }
+
     public void test_outside_search_path() throws Exception {
         Node libsI18n = getSession().getRootNode().getNode("libs/i18n");
         libsI18n.remove();
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.i18n.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class MessageDictionaryTest {
+
+    @Test
+    public void testEmpty() {
+        assertEquals(0, MessageDictionary.EMPTY.size());
+        assertNull(MessageDictionary.EMPTY.get("key"));
+        assertFalse(MessageDictionary.EMPTY.keySet().iterator().hasNext());
+    }
+
+    @Test
+    public void testPutGrowsAndKeepsOrder() {
+        final MessageDictionary.Builder builder = new MessageDictionary.Builder(0, null);
+        final List<String> keys = new ArrayList<String>();
+        for (int i = 0; i < 1000; i++) {
+            keys.add("key" + i);
+            builder.put("key" + i, "value" + i);
+        }
+        // replacing a message keeps the position of the key
+        builder.put("key10", "replaced");
+
+        final MessageDictionary dictionary = builder.build();
+        assertEquals(1000, dictionary.size());
+        assertEquals("replaced", dictionary.get("key10"));
+        assertEquals("value999", dictionary.get("key999"));
+        assertNull(dictionary.get("key1000"));
+        assertEquals(keys, new ArrayList<String>(dictionary.keySet()));
+        assertTrue(dictionary.keySet().contains("key500"));
+        assertFalse(dictionary.keySet().contains(500));
+    }
+
+    @Test
+    public void testPutAllOverrides() {
+        final MessageDictionary libs = new MessageDictionary.Builder(2, null)
+                .put("a", "libs a").put("b", "libs b").build();
+        final MessageDictionary apps = new MessageDictionary.Builder(2, null)
+                .put("b", "apps b").put("c", "apps c").build();
+
+        final MessageDictionary merged = new MessageDictionary.Builder(4, null).putAll(libs).putAll(apps).build();
+        assertEquals(3, merged.size());
+        assertEquals("libs a", merged.get("a"));
+        assertEquals("apps b", merged.get("b"));
+        assertEquals("apps c", merged.get("c"));
+        assertEquals(Arrays.asList("a", "b", "c"), new ArrayList<String>(merged.keySet()));
+    }
+
+    @Test
+    public void testKeyPool() {
+        final MessageDictionary.KeyPool keyPool = new MessageDictionary.KeyPool();
+        final MessageDictionary de = new MessageDictionary.Builder(1, keyPool).put(new String("key"), "Wert").build();
+        final MessageDictionary fr = new MessageDictionary.Builder(1, keyPool).put(new String("key"), "valeur").build();
+        assertSame(de.keySet().iterator().next(), fr.keySet().iterator().next());
+    }
+
+    @Test
+    public void testEditRemovesSources() {
+        final MessageDictionary dictionary = new MessageDictionary.Builder(0, null)
+                .put("a", "A", "a").put("b", "B", "folder/b").put("c", "C", "folder/sub/c").put("d", "D", "folder2/d")
+                .build();
+        assertTrue(dictionary.isEditable());
+
+        final MessageDictionary edited = dictionary.edit("folder", null).put("e", "E", "folder/e").build();
+        assertEquals(Arrays.asList("a", "d", "e"), new ArrayList<String>(edited.keySet()));
+        assertTrue(edited.isEditable());
+    }
+
+    @Test
+    public void testNotEditable() {
+        // no sources
+        assertFalse(new MessageDictionary.Builder(0, null).put("a", "A").build().isEditable());
+        assertFalse(new MessageDictionary.Builder(0, null).put("a", "A", "a").put("b", "B").build().isEditable());
+        // key defined twice
+        assertFalse(new MessageDictionary.Builder(0, null).put("a", "A", "x").put("a", "A", "y").build().isEditable());
+        assertTrue(new MessageDictionary.Builder(0, null).put("a", "A", "x").put("a", "B", "x").build().isEditable());
+    }
+}
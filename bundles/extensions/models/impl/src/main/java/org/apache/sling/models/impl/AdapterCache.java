@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.models.impl;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.servlet.ServletRequest;
+
+/**
+ * The <code>AdapterCache</code> holds the models created with
+ * <code>@Model(cache = true)</code> per adaptable instance.
+ * <p>
+ * Models adapted from a request are kept in a request attribute, so they are
+ * dropped with the request and looking them up does not touch any state shared
+ * between requests. All other adaptables are weakly referenced from a
+ * concurrent map, lookups do not lock. The entries of collected adaptables
+ * are removed by {@link #expungeStaleEntries()}, which is called when a model
+ * is added and by the cleanup job, but not on lookups.
+ */
+class AdapterCache {
+
+    /** The request attribute holding the models adapted from the request and its wrappers */
+    static final String REQUEST_ATTRIBUTE = AdapterCache.class.getName();
+
+    // use a smaller initial capacity than the default as we expect a relatively small number of
+    // adapters per adaptable
+    private static final int INNER_CACHE_INITIAL_CAPACITY = 4;
+
+    private final ConcurrentMap<Object, Map<Class<?>, Object>> cache = new ConcurrentHashMap<Object, Map<Class<?>, Object>>();
+
+    private final ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+
+    /**
+     * Returns the model of the given type cached for the adaptable.
+     *
+     * @param adaptable The adaptable
+     * @param type The requested type
+     * @return The model or <code>null</code> if none is cached
+     */
+    Object get(final Object adaptable, final Class<?> type) {
+        final Map<Class<?>, Object> models;
+        if (adaptable instanceof ServletRequest) {
+            final Map<Object, Map<Class<?>, Object>> requestCache = getRequestCache((ServletRequest) adaptable, false);
+            models = (requestCache != null) ? requestCache.get(adaptable) : null;
+        } else {
+            models = cache.get(new LookupKey(adaptable));
+        }
+        return (models != null) ? models.get(type) : null;
+    }
+
+    /**
+     * Caches the model of the given type for the adaptable.
+     *
+     * @param adaptable The adaptable
+     * @param type The requested type
+     * @param model The model
+     */
+    void put(final Object adaptable, final Class<?> type, final Object model) {
+        if (adaptable instanceof ServletRequest) {
+            final Map<Object, Map<Class<?>, Object>> requestCache = getRequestCache((ServletRequest) adaptable, true);
+            Map<Class<?>, Object> models = requestCache.get(adaptable);
+            if (models == null) {
+                models = new HashMap<Class<?>, Object>(INNER_CACHE_INITIAL_CAPACITY);
+                requestCache.put(adaptable, models);
+            }
+            models.put(type, model);
+        } else {
+            expungeStaleEntries();
+            Map<Class<?>, Object> models = cache.get(new LookupKey(adaptable));
+            if (models == null) {
+                final Map<Class<?>, Object> newModels = new ConcurrentHashMap<Class<?>, Object>(INNER_CACHE_INITIAL_CAPACITY);
+                models = cache.putIfAbsent(new WeakKey(adaptable, queue), newModels);
+                if (models == null) {
+                    models = newModels;
+                }
+            }
+            models.put(type, model);
+        }
+    }
+
+    /**
+     * Removes the entries of the adaptables which have been garbage collected.
+     */
+    void expungeStaleEntries() {
+        Reference<?> ref = queue.poll();
+        while (ref != null) {
+            cache.remove(ref);
+            ref = queue.poll();
+        }
+    }
+
+    /**
+     * Removes all entries of adaptables other than requests.
+     */
+    void clear() {
+        cache.clear();
+        expungeStaleEntries();
+    }
+
+    /**
+     * The cache is shared by the request and all its wrappers, the models are
+     * kept per wrapper as the wrappers may provide different values. A request
+     * is processed by a single thread, so the maps are not synchronized.
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<Object, Map<Class<?>, Object>> getRequestCache(final ServletRequest request, final boolean create) {
+        Map<Object, Map<Class<?>, Object>> requestCache = (Map<Object, Map<Class<?>, Object>>) request.getAttribute(REQUEST_ATTRIBUTE);
+        if (requestCache == null && create) {
+            requestCache = new IdentityHashMap<Object, Map<Class<?>, Object>>();
+            request.setAttribute(REQUEST_ATTRIBUTE, requestCache);
+        }
+        return requestCache;
+    }
+
+    /**
+     * The key of an adaptable in the map, weakly referencing the adaptable.
+     * Keys are compared by the identity of the adaptables.
+     */
+    private static final class WeakKey extends WeakReference<Object> {
+
+        private final int hash;
+
+        WeakKey(final Object adaptable, final ReferenceQueue<Object> queue) {
+            super(adaptable, queue);
+            this.hash = System.identityHashCode(adaptable);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (obj instanceof LookupKey) {
+                return ((LookupKey) obj).adaptable == get();
+            }
+            if (obj instanceof WeakKey) {
+                final Object adaptable = get();
+                // a cleared key is only equal to itself
+                return adaptable != null && adaptable == ((WeakKey) obj).get();
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A short lived key to look up an adaptable in the map without creating a
+     * weak reference.
+     */
+    private static final class LookupKey {
+
+        private final Object adaptable;
+
+        LookupKey(final Object adaptable) {
+            this.adaptable = adaptable;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(adaptable);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (obj instanceof WeakKey) {
+                return ((WeakKey) obj).get() == adaptable;
+            }
+            return obj instanceof LookupKey && ((LookupKey) obj).adaptable == adaptable;
+        }
+    }
+}
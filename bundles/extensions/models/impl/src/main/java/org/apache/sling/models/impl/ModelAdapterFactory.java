@@ -21,7 +21,6 @@ import java.lang.ref.ReferenceQueue;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Proxy;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
@@ -31,12 +30,11 @@ import java.util.Collections;
 import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.Hashtable;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
@@ -78,9 +76,11 @@ import org.apache.sling.models.impl.model.ConstructorParameter;
 import org.apache.sling.models.impl.model.InjectableElement;
 import org.apache.sling.models.impl.model.InjectableField;
 import org.apache.sling.models.impl.model.InjectableMethod;
+import org.apache.sling.models.impl.model.InjectionPlan;
+import org.apache.sling.models.impl.model.InjectionPlan.ElementPlan;
+import org.apache.sling.models.impl.model.InjectionPlan.TypeCoercion;
 import org.apache.sling.models.impl.model.ModelClass;
 import org.apache.sling.models.impl.model.ModelClassConstructor;
-import org.apache.sling.models.spi.AcceptsNullName;
 import org.apache.sling.models.spi.DisposalCallback;
 import org.apache.sling.models.spi.DisposalCallbackRegistry;
 import org.apache.sling.models.spi.ImplementationPicker;
@@ -149,6 +149,10 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
     @Override
     public void run() {
         clearDisposalCallbackRegistryQueue();
+        final AdapterCache cache = this.adapterCache;
+        if (cache != null) {
+            cache.expungeStaleEntries();
+        }
     }
 
     private void clearDisposalCallbackRegistryQueue() {
@@ -177,6 +181,10 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
     private final @Nonnull RankedServices<Injector> sortedInjectors = new RankedServices<Injector>();
     private final @Nonnull ConcurrentMap<Class<? extends ViaProviderType>, ViaProvider> viaProviders = new ConcurrentHashMap<Class<? extends ViaProviderType>, ViaProvider>();
 
+    // incremented whenever an injector or an annotation processor factory is bound or unbound
+    // to invalidate the injection plans of all model classes
+    private final AtomicInteger injectionPlanGeneration = new AtomicInteger();
+
     @Reference(name = "injectAnnotationProcessorFactory", referenceInterface = InjectAnnotationProcessorFactory.class,
             cardinality = ReferenceCardinality.OPTIONAL_MULTIPLE, policy = ReferencePolicy.DYNAMIC)
     private final @Nonnull RankedServices<InjectAnnotationProcessorFactory> injectAnnotationProcessorFactories = new RankedServices<InjectAnnotationProcessorFactory>();
@@ -215,11 +223,7 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
     // Use threadlocal to count recursive invocations and break recursing if a max. limit is reached (to avoid cyclic dependencies)
     private ThreadLocal<ThreadInvocationCounter> invocationCountThreadLocal;
 
-    private Map<Object, Map<Class, Object>> adapterCache;
-
-    // use a smaller initial capacity than the default as we expect a relatively small number of
-    // adapters per adaptable
-    private final int INNER_CACHE_INITIAL_CAPACITY = 4;
+    private AdapterCache adapterCache;
 
 
     public <AdapterType> AdapterType getAdapter(Object adaptable, Class<AdapterType> type) {
@@ -325,12 +329,9 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
             Model modelAnnotation = modelClass.getModelAnnotation();
 
             if (modelAnnotation.cache()) {
-                Map<Class, Object> adaptableCache = adapterCache.get(adaptable);
-                if (adaptableCache != null) {
-                    ModelType cachedObject = (ModelType) adaptableCache.get(requestedType);
-                    if (cachedObject != null) {
-                        return new Result<ModelType>(cachedObject);
-                    }
+                ModelType cachedObject = (ModelType) adapterCache.get(adaptable, requestedType);
+                if (cachedObject != null) {
+                    return new Result<ModelType>(cachedObject);
                 }
             }
 
@@ -354,12 +355,7 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
                         ModelType model = (ModelType) Proxy.newProxyInstance(modelClass.getType().getClassLoader(), new Class<?>[] { modelClass.getType() }, handlerResult.getValue());
 
                         if (modelAnnotation.cache()) {
-                            Map<Class, Object> adaptableCache = adapterCache.get(adaptable);
-                            if (adaptableCache == null) {
-                                adaptableCache = new ConcurrentHashMap<Class, Object>(INNER_CACHE_INITIAL_CAPACITY);
-                                adapterCache.put(adaptable, adaptableCache);
-                            }
-                            adaptableCache.put(requestedType, model);
+                            adapterCache.put(adaptable, requestedType, model);
                         }
 
                         result = new Result<ModelType>(model);
@@ -371,12 +367,7 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
                         result = createObject(adaptable, modelClass);
 
                         if (result.wasSuccessful() && modelAnnotation.cache()) {
-                            Map<Class, Object> adaptableCache = adapterCache.get(adaptable);
-                            if (adaptableCache == null) {
-                                adaptableCache = new ConcurrentHashMap<Class, Object>(INNER_CACHE_INITIAL_CAPACITY);
-                                adapterCache.put(adaptable, adaptableCache);
-                            }
-                            adaptableCache.put(requestedType, result.getValue());
+                            adapterCache.put(adaptable, requestedType, result.getValue());
                         }
                     } catch (Exception e) {
                         String msg = String.format("Unable to create model %s", modelClass.getType());
@@ -404,10 +395,11 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
         /**
          * Is called each time when the given value should be injected into the given element
          * @param element
+         * @param coercion the type coercion of the element from the injection plan
          * @param value
          * @return an InjectionResult
          */
-        RuntimeException inject(InjectableElement element, Object value);
+        RuntimeException inject(InjectableElement element, TypeCoercion coercion, Object value);
     }
 
     private class SetFieldCallback implements InjectCallback {
@@ -419,8 +411,8 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
         }
 
         @Override
-        public RuntimeException inject(InjectableElement element, Object value) {
-            return setField((InjectableField) element, object, value);
+        public RuntimeException inject(InjectableElement element, TypeCoercion coercion, Object value) {
+            return setField((InjectableField) element, coercion, object, value);
         }
     }
 
@@ -433,8 +425,8 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
         }
 
         @Override
-        public RuntimeException inject(InjectableElement element, Object value) {
-            return setMethod((InjectableMethod) element, methods, value);
+        public RuntimeException inject(InjectableElement element, TypeCoercion coercion, Object value) {
+            return setMethod((InjectableMethod) element, coercion, methods, value);
         }
     }
 
@@ -447,30 +439,32 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
         }
 
         @Override
-        public RuntimeException inject(InjectableElement element, Object value) {
-            return setConstructorParameter((ConstructorParameter)element, parameterValues, value);
+        public RuntimeException inject(InjectableElement element, TypeCoercion coercion, Object value) {
+            return setConstructorParameter((ConstructorParameter)element, coercion, parameterValues, value);
         }
     }
 
     private
     @CheckForNull
     RuntimeException injectElement(final InjectableElement element, final Object adaptable,
+                                   final @Nonnull InjectionPlan plan,
                                    final @Nonnull DisposalCallbackRegistry registry, final InjectCallback callback,
                                    final @Nonnull Map<ValuePreparer, Object> preparedValues) {
 
         InjectAnnotationProcessor annotationProcessor = null;
-        String source = element.getSource();
+        final ElementPlan elementPlan = plan.getElementPlan(element);
+        final TypeCoercion coercion = elementPlan.getCoercion();
         boolean wasInjectionSuccessful = false;
 
-        // find an appropriate annotation processor
-        for (InjectAnnotationProcessorFactory2 factory : injectAnnotationProcessorFactories2) {
+        // find an appropriate annotation processor, the processors depend on the adaptable
+        for (InjectAnnotationProcessorFactory2 factory : plan.getProcessorFactories2()) {
             annotationProcessor = factory.createAnnotationProcessor(adaptable, element.getAnnotatedElement());
             if (annotationProcessor != null) {
                 break;
             }
         }
         if (annotationProcessor == null) {
-            for (InjectAnnotationProcessorFactory factory : injectAnnotationProcessorFactories) {
+            for (InjectAnnotationProcessorFactory factory : plan.getProcessorFactories()) {
                 annotationProcessor = factory.createAnnotationProcessor(adaptable, element.getAnnotatedElement());
                 if (annotationProcessor != null) {
                     break;
@@ -484,49 +478,42 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
         RuntimeException lastInjectionException = null;
         if (injectionAdaptable != null) {
             
-            // prepare the set of injectors to process. if a source is given only use injectors with this name.
-            final RankedServices<Injector> injectorsToProcess;
-            if (StringUtils.isEmpty(source)) {
-                injectorsToProcess = sortedInjectors;
-            }
-            else {
-                injectorsToProcess = injectors.get(source);
-                if (injectorsToProcess == null) {
-                    throw new IllegalArgumentException("No Sling Models Injector registered for source '" + source + "'.");
-                }
+            // the injectors to process in ranking order. if a source is given only injectors with this name are used.
+            // injectors not accepting a null name are already left out for a null name.
+            final Injector[] injectorsToProcess = elementPlan.getInjectors(name);
+            if (injectorsToProcess == null) {
+                throw new IllegalArgumentException("No Sling Models Injector registered for source '" + element.getSource() + "'.");
             }
-            
+
             // find the right injector
             for (Injector injector : injectorsToProcess) {
-                if (name != null || injector instanceof AcceptsNullName) {
-                    Object preparedValue = injectionAdaptable;
-
-                    // only do the ValuePreparer optimization for the original adaptable
-                    if (injector instanceof ValuePreparer && adaptable == injectionAdaptable) {
-                        final ValuePreparer preparer = (ValuePreparer) injector;
-                        Object fromMap = preparedValues.get(preparer);
-                        if (fromMap != null) {
-                            preparedValue = fromMap;
-                        } else {
-                            preparedValue = preparer.prepareValue(injectionAdaptable);
-                            preparedValues.put(preparer, preparedValue);
-                        }
+                Object preparedValue = injectionAdaptable;
+
+                // only do the ValuePreparer optimization for the original adaptable
+                if (injector instanceof ValuePreparer && adaptable == injectionAdaptable) {
+                    final ValuePreparer preparer = (ValuePreparer) injector;
+                    Object fromMap = preparedValues.get(preparer);
+                    if (fromMap != null) {
+                        preparedValue = fromMap;
+                    } else {
+                        preparedValue = preparer.prepareValue(injectionAdaptable);
+                        preparedValues.put(preparer, preparedValue);
                     }
+                }
 
-                    Object value = injector.getValue(preparedValue, name, element.getType(), element.getAnnotatedElement(), registry);
-                    if (value != null) {
-                        lastInjectionException = callback.inject(element, value);
-                        if (lastInjectionException == null) {
-                            wasInjectionSuccessful = true;
-                            break;
-                        }
+                Object value = injector.getValue(preparedValue, name, element.getType(), element.getAnnotatedElement(), registry);
+                if (value != null) {
+                    lastInjectionException = callback.inject(element, coercion, value);
+                    if (lastInjectionException == null) {
+                        wasInjectionSuccessful = true;
+                        break;
                     }
                 }
             }
         }
         // if injection failed, use default
         if (!wasInjectionSuccessful) {
-            Result<Boolean> defaultInjectionResult = injectDefaultValue(element, annotationProcessor, callback);
+            Result<Boolean> defaultInjectionResult = injectDefaultValue(element, coercion, annotationProcessor, callback);
             if (defaultInjectionResult.wasSuccessful()) {
                 wasInjectionSuccessful = defaultInjectionResult.getValue();
                 // log previous injection error, if there was any
@@ -546,7 +533,7 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
                     log.debug("Injection into optional element {} failed because of: " + lastInjectionException.getMessage(), element.getAnnotatedElement(), lastInjectionException);
                 }
                 if (element.isPrimitive()) {
-                    RuntimeException throwable = injectPrimitiveInitialValue(element, callback);
+                    RuntimeException throwable = injectPrimitiveInitialValue(element, coercion, callback);
                     if (throwable != null) {
                         return throwable;
                     }
@@ -562,6 +549,22 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
         return null;
     }
 
+    /**
+     * Returns the injection plan of the model class, computing it if the registered injectors or annotation processor
+     * factories changed since the last plan was computed.
+     */
+    private @Nonnull InjectionPlan getInjectionPlan(final ModelClass<?> modelClass) {
+        // read the generation before taking the snapshot, so a concurrent change leaves behind an outdated plan
+        final int generation = injectionPlanGeneration.get();
+        InjectionPlan plan = modelClass.getInjectionPlan();
+        if (plan == null || plan.getGeneration() != generation) {
+            plan = new InjectionPlan(generation, modelClass, injectAnnotationProcessorFactories2.get(),
+                    injectAnnotationProcessorFactories.get(), sortedInjectors.get(), injectors);
+            modelClass.setInjectionPlan(plan);
+        }
+        return plan;
+    }
+
     private <ModelType> Result<InvocationHandler> createInvocationHandler(final Object adaptable, final ModelClass<ModelType> modelClass) {
         InjectableMethod[] injectableMethods = modelClass.getInjectableMethods();
         final Map<Method, Object> methods = new HashMap<Method, Object>();
@@ -573,15 +576,21 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
 
         final Map<ValuePreparer, Object> preparedValues = new HashMap<ValuePreparer, Object>(VALUE_PREPARERS_COUNT);
 
-        MissingElementsException missingElements = new MissingElementsException("Could not create all mandatory methods for interface of model " + modelClass);
+        final InjectionPlan plan = getInjectionPlan(modelClass);
+
+        // only created on failure, creating the exception is expensive
+        MissingElementsException missingElements = null;
         for (InjectableMethod method : injectableMethods) {
-            RuntimeException t = injectElement(method, adaptable, registry, callback, preparedValues);
+            RuntimeException t = injectElement(method, adaptable, plan, registry, callback, preparedValues);
             if (t != null) {
+                if (missingElements == null) {
+                    missingElements = new MissingElementsException("Could not create all mandatory methods for interface of model " + modelClass);
+                }
                 missingElements.addMissingElementExceptions(new MissingElementException(method.getAnnotatedElement(), t));
             }
         }
         registry.seal();
-        if (!missingElements.isEmpty()) {
+        if (missingElements != null) {
             return new Result<InvocationHandler>(missingElements);
         }
         return new Result<InvocationHandler>(handler);
@@ -602,6 +611,7 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
         }
 
         final Map<ValuePreparer, Object> preparedValues = new HashMap<ValuePreparer, Object>(VALUE_PREPARERS_COUNT);
+        final InjectionPlan plan = getInjectionPlan(modelClass);
 
         final ModelType object;
         if (constructorToUse.getConstructor().getParameterTypes().length == 0) {
@@ -611,7 +621,7 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
             // instantiate with constructor injection
             // if this fails, make sure resources that may be claimed by injectors are cleared up again
             try {
-                Result<ModelType> result = newInstanceWithConstructorInjection(constructorToUse, adaptable, modelClass, registry, preparedValues);
+                Result<ModelType> result = newInstanceWithConstructorInjection(constructorToUse, adaptable, modelClass, plan, registry, preparedValues);
                 if (!result.wasSuccessful()) {
                     registry.onDisposed();
                     return result;
@@ -635,17 +645,21 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
         InjectCallback callback = new SetFieldCallback(object);
 
         InjectableField[] injectableFields = modelClass.getInjectableFields();
-        MissingElementsException missingElements = new MissingElementsException("Could not inject all required fields into " + modelClass.getType());
+        // only created on failure, creating the exception is expensive
+        MissingElementsException missingElements = null;
 
         for (InjectableField field : injectableFields) {
-            RuntimeException t = injectElement(field, adaptable, registry, callback, preparedValues);
+            RuntimeException t = injectElement(field, adaptable, plan, registry, callback, preparedValues);
             if (t != null) {
+                if (missingElements == null) {
+                    missingElements = new MissingElementsException("Could not inject all required fields into " + modelClass.getType());
+                }
                 missingElements.addMissingElementExceptions(new MissingElementException(field.getAnnotatedElement(), t));
             }
         }
 
         registry.seal();
-        if (!missingElements.isEmpty()) {
+        if (missingElements != null) {
             return new Result<ModelType>(missingElements);
         }
         try {
@@ -691,31 +705,36 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
     }
 
     private <ModelType> Result<ModelType> newInstanceWithConstructorInjection(final ModelClassConstructor<ModelType> constructor, final Object adaptable,
-            final ModelClass<ModelType> modelClass, final DisposalCallbackRegistry registry, final @Nonnull Map<ValuePreparer, Object> preparedValues)
+            final ModelClass<ModelType> modelClass, final InjectionPlan plan, final DisposalCallbackRegistry registry,
+            final @Nonnull Map<ValuePreparer, Object> preparedValues)
             throws InstantiationException, InvocationTargetException, IllegalAccessException {
         ConstructorParameter[] parameters = constructor.getConstructorParameters();
 
         List<Object> paramValues = new ArrayList<Object>(Arrays.asList(new Object[parameters.length]));
         InjectCallback callback = new SetConstructorParameterCallback(paramValues);
 
-        MissingElementsException missingElements = new MissingElementsException("Required constructor parameters were not able to be injected on model " + modelClass.getType());
+        // only created on failure, creating the exception is expensive
+        MissingElementsException missingElements = null;
         for (int i = 0; i < parameters.length; i++) {
-            RuntimeException t = injectElement(parameters[i], adaptable, registry, callback, preparedValues);
+            RuntimeException t = injectElement(parameters[i], adaptable, plan, registry, callback, preparedValues);
             if (t != null) {
+                if (missingElements == null) {
+                    missingElements = new MissingElementsException("Required constructor parameters were not able to be injected on model " + modelClass.getType());
+                }
                 missingElements.addMissingElementExceptions(new MissingElementException(parameters[i].getAnnotatedElement(), t));
             }
         }
-        if (!missingElements.isEmpty()) {
+        if (missingElements != null) {
             return new Result<ModelType>(missingElements);
         }
         return new Result<ModelType>(constructor.getConstructor().newInstance(paramValues.toArray(new Object[paramValues.size()])));
     }
 
-    private Result<Boolean> injectDefaultValue(InjectableElement point, InjectAnnotationProcessor processor,
+    private Result<Boolean> injectDefaultValue(InjectableElement point, TypeCoercion coercion, InjectAnnotationProcessor processor,
             InjectCallback callback) {
         if (processor != null) {
             if (processor.hasDefault()) {
-                RuntimeException t = callback.inject(point, processor.getDefault());
+                RuntimeException t = callback.inject(point, coercion, processor.getDefault());
                 if (t == null) {
                     return new Result<Boolean>(Boolean.TRUE);
                 } else {
@@ -726,7 +745,7 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
 
         Object value = point.getDefaultValue();
         if (value != null) {
-            RuntimeException t = callback.inject(point, value);
+            RuntimeException t = callback.inject(point, coercion, value);
             if (t == null) {
                 return new Result<Boolean>(Boolean.TRUE);
             } else {
@@ -743,9 +762,10 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
      * cannot be null (e.g. int = 0, boolean = false).
      * 
      * @param point Annotated element
+     * @param coercion Type coercion of the element
      * @param callback Inject callback
      */
-    private RuntimeException injectPrimitiveInitialValue(InjectableElement point, InjectCallback callback) {
+    private RuntimeException injectPrimitiveInitialValue(InjectableElement point, TypeCoercion coercion, InjectCallback callback) {
         Type primitiveType = ReflectionUtil.mapWrapperClasses(point.getType());
         Object value = null;
         if (primitiveType == int.class) {
@@ -766,7 +786,7 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
             value = '\u0000';
         }
         if (value != null) {
-            return callback.inject(point, value);
+            return callback.inject(point, coercion, value);
         } else {
             return new ModelClassException(String.format("Unknown primitive type %s", primitiveType.toString()));
         }
@@ -851,8 +871,8 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
         }
     }
 
-    private RuntimeException setField(InjectableField injectableField, Object createdObject, Object value) {
-        Result<Object> result = adaptIfNecessary(value, injectableField.getFieldType(), injectableField.getFieldGenericType());
+    private RuntimeException setField(InjectableField injectableField, TypeCoercion coercion, Object createdObject, Object value) {
+        Result<Object> result = adaptIfNecessary(value, coercion);
         if (result.wasSuccessful()) {
             return injectableField.set(createdObject, result);
         } else {
@@ -860,9 +880,9 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
         }
     }
 
-    private RuntimeException setMethod(InjectableMethod injectableMethod, Map<Method, Object> methods, Object value) {
+    private RuntimeException setMethod(InjectableMethod injectableMethod, TypeCoercion coercion, Map<Method, Object> methods, Object value) {
         Method method = injectableMethod.getMethod();
-        Result<Object> result = adaptIfNecessary(value, method.getReturnType(), method.getGenericReturnType());
+        Result<Object> result = adaptIfNecessary(value, coercion);
         if (result.wasSuccessful()) {
             methods.put(method, result.getValue());
             return null;
@@ -871,9 +891,9 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
         }
     }
 
-    private RuntimeException setConstructorParameter(ConstructorParameter constructorParameter, List<Object> parameterValues, Object value) {
-        if (constructorParameter.getParameterType() instanceof Class<?>) {
-            Result<Object> result = adaptIfNecessary(value, (Class<?>) constructorParameter.getParameterType(), constructorParameter.getGenericType());
+    private RuntimeException setConstructorParameter(ConstructorParameter constructorParameter, TypeCoercion coercion, List<Object> parameterValues, Object value) {
+        if (coercion != null) {
+            Result<Object> result = adaptIfNecessary(value, coercion);
             if (result.wasSuccessful() ) {
                 parameterValues.set(constructorParameter.getParameterIndex(), result.getValue());
                 return null;
@@ -885,18 +905,17 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
         }
     }
 
-    private Result<Object> adaptIfNecessary(final Object value, final Class<?> type, final Type genericType) {
+    private Result<Object> adaptIfNecessary(final Object value, final TypeCoercion coercion) {
         final Object adaptedValue;
-        if (!isAcceptableType(type, genericType, value)) {
-            if (genericType instanceof ParameterizedType) {
-                ParameterizedType parameterizedType = (ParameterizedType) genericType;
-                if (value instanceof Collection &&
-                        (type.equals(Collection.class) || type.equals(List.class)) &&
-                        parameterizedType.getActualTypeArguments().length == 1) {
+        if (!coercion.isAcceptable(value)) {
+            final Class<?> type = coercion.getType();
+            if (coercion.isParameterized()) {
+                final Class<?> componentType = coercion.getComponentType();
+                if (value instanceof Collection && componentType != null) {
                     
                     List<Object> result = new ArrayList<Object>();
                     for (Object valueObject : (Collection<?>) value) {
-                        Result<Object> singleValueResult = adapt(valueObject, (Class<?>) parameterizedType.getActualTypeArguments()[0], true);
+                        Result<Object> singleValueResult = adapt(valueObject, componentType, true);
                         if (singleValueResult.wasSuccessful()) {
                             result.add(singleValueResult.getValue());
                         } else {
@@ -950,53 +969,6 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
         }
     }
 
-    private static boolean isAcceptableType(Class<?> type, Type genericType, Object value) {
-        if (type.isInstance(value)) {
-            if ((type == Collection.class || type == List.class) && genericType instanceof ParameterizedType &&
-                    value instanceof Collection) {
-                Iterator<?> it = ((Collection<?>) value).iterator();
-                if (!it.hasNext()) {
-                    // empty collection, so it doesn't really matter
-                    return true;
-                } else {
-                    // this is not an ideal way to get the actual component type, but erasure...
-                    Class<?> actualComponentType = it.next().getClass();
-                    Class<?> desiredComponentType = (Class<?>) ((ParameterizedType) genericType).getActualTypeArguments()[0];
-                    return desiredComponentType.isAssignableFrom(actualComponentType);
-                }
-            } else {
-                return true;
-            }
-        }
-
-        if (type == Integer.TYPE) {
-            return Integer.class.isInstance(value);
-        }
-        if (type == Long.TYPE) {
-            return Long.class.isInstance(value);
-        }
-        if (type == Boolean.TYPE) {
-            return Boolean.class.isInstance(value);
-        }
-        if (type == Double.TYPE) {
-            return Double.class.isInstance(value);
-        }
-        if (type == Float.TYPE) {
-            return Float.class.isInstance(value);
-        }
-        if (type == Short.TYPE) {
-            return Short.class.isInstance(value);
-        }
-        if (type == Byte.TYPE) {
-            return Byte.class.isInstance(value);
-        }
-        if (type == Character.TYPE) {
-            return Character.class.isInstance(value);
-        }
-
-        return false;
-    }
-
     @Activate
     protected void activate(final ComponentContext ctx) {
         Dictionary<?, ?> props = ctx.getProperties();
@@ -1008,7 +980,7 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
             }
         };
 
-        this.adapterCache = Collections.synchronizedMap(new WeakHashMap<Object, Map<Class, Object>>());
+        this.adapterCache = new AdapterCache();
 
         BundleContext bundleContext = ctx.getBundleContext();
         this.queue = new ReferenceQueue<Object>();
@@ -1037,6 +1009,7 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
 
     @Deactivate
     protected void deactivate() {
+        this.adapterCache.clear();
         this.adapterCache = null;
         this.clearDisposalCallbackRegistryQueue();
         this.listener.unregisterAll();
@@ -1059,6 +1032,7 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
         }
         injectorsPerInjectorName.bind(injector, props);
         sortedInjectors.bind(injector, props);
+        injectionPlanGeneration.incrementAndGet();
     }
 
     protected void unbindInjector(final Injector injector, final Map<String, Object> props) {
@@ -1067,28 +1041,34 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
             injectorsPerInjectorName.unbind(injector, props);
         }
         sortedInjectors.unbind(injector, props);
+        injectionPlanGeneration.incrementAndGet();
     }
 
     protected void bindInjectAnnotationProcessorFactory(final InjectAnnotationProcessorFactory factory, final Map<String, Object> props) {
         injectAnnotationProcessorFactories.bind(factory, props);
+        injectionPlanGeneration.incrementAndGet();
     }
 
     protected void unbindInjectAnnotationProcessorFactory(final InjectAnnotationProcessorFactory factory, final Map<String, Object> props) {
         injectAnnotationProcessorFactories.unbind(factory, props);
+        injectionPlanGeneration.incrementAndGet();
     }
 
     protected void bindInjectAnnotationProcessorFactory2(final InjectAnnotationProcessorFactory2 factory, final Map<String, Object> props) {
         injectAnnotationProcessorFactories2.bind(factory, props);
+        injectionPlanGeneration.incrementAndGet();
     }
 
     protected void unbindInjectAnnotationProcessorFactory2(final InjectAnnotationProcessorFactory2 factory, final Map<String, Object> props) {
         injectAnnotationProcessorFactories2.unbind(factory, props);
+        injectionPlanGeneration.incrementAndGet();
     }
 
     protected void bindStaticInjectAnnotationProcessorFactory(final StaticInjectAnnotationProcessorFactory factory, final Map<String, Object> props) {
         synchronized (staticInjectAnnotationProcessorFactories) {
             staticInjectAnnotationProcessorFactories.bind(factory, props);
             this.adapterImplementations.setStaticInjectAnnotationProcessorFactories(staticInjectAnnotationProcessorFactories.get());
+            injectionPlanGeneration.incrementAndGet();
         }
     }
 
@@ -1096,6 +1076,7 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
         synchronized (staticInjectAnnotationProcessorFactories) {
             staticInjectAnnotationProcessorFactories.unbind(factory, props);
             this.adapterImplementations.setStaticInjectAnnotationProcessorFactories(staticInjectAnnotationProcessorFactories.get());
+            injectionPlanGeneration.incrementAndGet();
         }
     }
 
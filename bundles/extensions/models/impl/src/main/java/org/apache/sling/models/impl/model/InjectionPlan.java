@@ -0,0 +1,266 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.models.impl.model;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.sling.models.impl.ReflectionUtil;
+import org.apache.sling.models.spi.AcceptsNullName;
+import org.apache.sling.models.spi.Injector;
+import org.apache.sling.models.spi.injectorspecific.InjectAnnotationProcessorFactory;
+import org.apache.sling.models.spi.injectorspecific.InjectAnnotationProcessorFactory2;
+
+/**
+ * The <code>InjectionPlan</code> holds the decisions taken when injecting the
+ * elements of a {@link ModelClass} which do not depend on the adaptable: the
+ * annotation processor factories to ask, the injectors to try for each element
+ * in ranking order and how an injected value is checked against the element
+ * type.
+ * <p>
+ * A plan is a snapshot of the registered services. It is tagged with the
+ * generation of the services it was computed from and must not be used once
+ * an injector or an annotation processor factory was bound or unbound.
+ */
+@SuppressWarnings("deprecation")
+public final class InjectionPlan {
+
+    private static final Injector[] NO_INJECTORS = new Injector[0];
+
+    private final int generation;
+
+    private final InjectAnnotationProcessorFactory2[] processorFactories2;
+
+    private final InjectAnnotationProcessorFactory[] processorFactories;
+
+    private final Map<InjectableElement, ElementPlan> elements = new IdentityHashMap<InjectableElement, ElementPlan>();
+
+    private final Injector[] sortedInjectors;
+
+    private final Map<String, ? extends Iterable<Injector>> injectorsBySource;
+
+    public InjectionPlan(final int generation, final ModelClass<?> modelClass,
+            final Collection<InjectAnnotationProcessorFactory2> processorFactories2,
+            final Collection<InjectAnnotationProcessorFactory> processorFactories,
+            final Collection<Injector> sortedInjectors,
+            final Map<String, ? extends Iterable<Injector>> injectorsBySource) {
+        this.generation = generation;
+        this.processorFactories2 = processorFactories2.toArray(new InjectAnnotationProcessorFactory2[processorFactories2.size()]);
+        this.processorFactories = processorFactories.toArray(new InjectAnnotationProcessorFactory[processorFactories.size()]);
+        this.sortedInjectors = sortedInjectors.toArray(new Injector[sortedInjectors.size()]);
+        this.injectorsBySource = injectorsBySource;
+
+        for (final InjectableField field : modelClass.getInjectableFields()) {
+            elements.put(field, createElementPlan(field));
+        }
+        for (final InjectableMethod method : modelClass.getInjectableMethods()) {
+            elements.put(method, createElementPlan(method));
+        }
+        for (final ModelClassConstructor<?> constructor : modelClass.getConstructors()) {
+            for (final ConstructorParameter parameter : constructor.getConstructorParameters()) {
+                elements.put(parameter, createElementPlan(parameter));
+            }
+        }
+    }
+
+    public int getGeneration() {
+        return generation;
+    }
+
+    public InjectAnnotationProcessorFactory2[] getProcessorFactories2() {
+        return processorFactories2;
+    }
+
+    public InjectAnnotationProcessorFactory[] getProcessorFactories() {
+        return processorFactories;
+    }
+
+    /**
+     * Returns the plan for the given element. Elements which were not part of
+     * the model class when the plan was computed get a plan computed on the
+     * fly.
+     *
+     * @param element The element
+     * @return The element plan
+     */
+    public ElementPlan getElementPlan(final InjectableElement element) {
+        final ElementPlan plan = elements.get(element);
+        if (plan != null) {
+            return plan;
+        }
+        return createElementPlan(element);
+    }
+
+    private ElementPlan createElementPlan(final InjectableElement element) {
+        final String source = element.getSource();
+        final Injector[] injectors;
+        if (StringUtils.isEmpty(source)) {
+            injectors = sortedInjectors;
+        } else {
+            final Iterable<Injector> injectorsForSource = injectorsBySource.get(source);
+            if (injectorsForSource == null) {
+                injectors = null;
+            } else {
+                final List<Injector> list = new ArrayList<Injector>();
+                for (final Injector injector : injectorsForSource) {
+                    list.add(injector);
+                }
+                injectors = list.toArray(new Injector[list.size()]);
+            }
+        }
+
+        final Injector[] nullNameInjectors;
+        if (injectors == null) {
+            nullNameInjectors = null;
+        } else {
+            final List<Injector> list = new ArrayList<Injector>();
+            for (final Injector injector : injectors) {
+                if (injector instanceof AcceptsNullName) {
+                    list.add(injector);
+                }
+            }
+            nullNameInjectors = list.isEmpty() ? NO_INJECTORS : list.toArray(new Injector[list.size()]);
+        }
+        return new ElementPlan(injectors, nullNameInjectors, createTypeCoercion(element));
+    }
+
+    private static TypeCoercion createTypeCoercion(final InjectableElement element) {
+        if (element instanceof InjectableField) {
+            final InjectableField field = (InjectableField) element;
+            return new TypeCoercion(field.getFieldType(), field.getFieldGenericType());
+        }
+        if (element instanceof InjectableMethod) {
+            final Method method = ((InjectableMethod) element).getMethod();
+            return new TypeCoercion(method.getReturnType(), method.getGenericReturnType());
+        }
+        if (element instanceof ConstructorParameter) {
+            final ConstructorParameter parameter = (ConstructorParameter) element;
+            if (parameter.getParameterType() instanceof Class<?>) {
+                return new TypeCoercion((Class<?>) parameter.getParameterType(), parameter.getGenericType());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The injectors and the type coercion of a single element.
+     */
+    public static final class ElementPlan {
+
+        private final Injector[] injectors;
+
+        private final Injector[] nullNameInjectors;
+
+        private final TypeCoercion coercion;
+
+        private ElementPlan(final Injector[] injectors, final Injector[] nullNameInjectors, final TypeCoercion coercion) {
+            this.injectors = injectors;
+            this.nullNameInjectors = nullNameInjectors;
+            this.coercion = coercion;
+        }
+
+        /**
+         * Returns the injectors to try in ranking order.
+         *
+         * @param name The name to inject, injectors not accepting a
+         *            <code>null</code> name are skipped for a
+         *            <code>null</code> name
+         * @return The injectors or <code>null</code> if no injector is
+         *         registered for the source of the element
+         */
+        public Injector[] getInjectors(final String name) {
+            return name != null ? injectors : nullNameInjectors;
+        }
+
+        /**
+         * @return The type coercion or <code>null</code> if the type of the
+         *         element is not a class
+         */
+        public TypeCoercion getCoercion() {
+            return coercion;
+        }
+    }
+
+    /**
+     * The <code>TypeCoercion</code> precomputes the checks done on an injected
+     * value to decide whether it can be injected as is or must be adapted.
+     */
+    public static final class TypeCoercion {
+
+        private final Class<?> type;
+
+        private final Type genericType;
+
+        /** The type used for the instance check, the wrapper class for primitive types */
+        private final Class<?> instanceType;
+
+        /** The component type of a parameterized Collection or List, null otherwise */
+        private final Class<?> componentType;
+
+        private TypeCoercion(final Class<?> type, final Type genericType) {
+            this.type = type;
+            this.genericType = genericType;
+            this.instanceType = type.isPrimitive() ? (Class<?>) ReflectionUtil.mapPrimitiveClasses(type) : type;
+            Class<?> componentType = null;
+            if ((type == Collection.class || type == List.class) && genericType instanceof ParameterizedType) {
+                final Type[] arguments = ((ParameterizedType) genericType).getActualTypeArguments();
+                if (arguments.length == 1 && arguments[0] instanceof Class<?>) {
+                    componentType = (Class<?>) arguments[0];
+                }
+            }
+            this.componentType = componentType;
+        }
+
+        public Class<?> getType() {
+            return type;
+        }
+
+        public Class<?> getComponentType() {
+            return componentType;
+        }
+
+        public boolean isParameterized() {
+            return genericType instanceof ParameterizedType;
+        }
+
+        /**
+         * Checks whether the value can be injected without adapting it.
+         */
+        public boolean isAcceptable(final Object value) {
+            if (!instanceType.isInstance(value)) {
+                return false;
+            }
+            if (componentType != null && value instanceof Collection) {
+                final Iterator<?> it = ((Collection<?>) value).iterator();
+                // an empty collection can be injected as is,
+                // otherwise check the first element as the actual component type is erased
+                return !it.hasNext() || componentType.isAssignableFrom(it.next().getClass());
+            }
+            return true;
+        }
+    }
+}
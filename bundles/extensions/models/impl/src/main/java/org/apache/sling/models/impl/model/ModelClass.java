@@ -37,6 +37,7 @@ public class ModelClass<ModelType> {
     private volatile ModelClassConstructor[] constructors;
     private volatile InjectableField[] injectableFields;
     private volatile InjectableMethod[] injectableMethods;
+    private volatile InjectionPlan injectionPlan;
 
     public ModelClass(Class<ModelType> type, StaticInjectAnnotationProcessorFactory[] processorFactories) {
         this.type = type;
@@ -57,6 +58,7 @@ public class ModelClass<ModelType> {
         this.constructors = getConstructors(type, processorFactories, defaultInjectionStrategy);
         this.injectableFields = getInjectableFields(type, processorFactories, defaultInjectionStrategy);
         this.injectableMethods = getInjectableMethods(type, processorFactories, defaultInjectionStrategy);
+        this.injectionPlan = null;
     }
     
     @SuppressWarnings("unchecked")
@@ -124,4 +126,18 @@ public class ModelClass<ModelType> {
         return this.injectableMethods;
     }
 
+    /**
+     * @return The injection plan computed last for this model class or null
+     */
+    public InjectionPlan getInjectionPlan() {
+        return this.injectionPlan;
+    }
+
+    /**
+     * @param injectionPlan The injection plan to reuse for further injections
+     */
+    public void setInjectionPlan(InjectionPlan injectionPlan) {
+        this.injectionPlan = injectionPlan;
+    }
+
 }
@@ -17,22 +17,32 @@
 package org.apache.sling.models.impl;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 
 import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
 import org.apache.sling.models.impl.injectors.RequestAttributeInjector;
+import org.apache.sling.models.impl.injectors.ValueMapInjector;
 import org.apache.sling.models.testmodels.classes.CachedModel;
 import org.apache.sling.models.testmodels.classes.UncachedModel;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 import org.osgi.framework.BundleContext;
 import org.osgi.service.component.ComponentContext;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.Map;
 
 @RunWith(MockitoJUnitRunner.class)
 public class CachingTest {
@@ -40,6 +50,12 @@ public class CachingTest {
     @Mock
     private SlingHttpServletRequest request;
 
+    @Mock
+    private SlingHttpServletRequest otherRequest;
+
+    @Mock
+    private Resource resource;
+
     @Mock
     private ComponentContext componentCtx;
 
@@ -56,10 +72,33 @@ public class CachingTest {
         factory = new ModelAdapterFactory();
         factory.activate(componentCtx);
         factory.bindInjector(new RequestAttributeInjector(), new ServicePropertiesMap(0, 0));
+        factory.bindInjector(new ValueMapInjector(), new ServicePropertiesMap(1, 1));
         factory.adapterImplementations.addClassesAsAdapterAndImplementation(CachedModel.class, UncachedModel.class,
                 org.apache.sling.models.testmodels.interfaces.CachedModel.class, org.apache.sling.models.testmodels.interfaces.UncachedModel.class);
 
         when(request.getAttribute("testValue")).thenReturn("test");
+        when(otherRequest.getAttribute("testValue")).thenReturn("test");
+        mockAttributes(request, AdapterCache.REQUEST_ATTRIBUTE);
+        mockAttributes(otherRequest, AdapterCache.REQUEST_ATTRIBUTE);
+        when(resource.adaptTo(ValueMap.class)).thenReturn(
+                new ValueMapDecorator(Collections.<String, Object> singletonMap("testValue", "test")));
+    }
+
+    private static void mockAttributes(final SlingHttpServletRequest request, final String name) {
+        final Map<String, Object> attributes = new HashMap<String, Object>();
+        doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                attributes.put(name, invocation.getArguments()[1]);
+                return null;
+            }
+        }).when(request).setAttribute(eq(name), any());
+        when(request.getAttribute(name)).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                return attributes.get(name);
+            }
+        });
     }
 
     @Test
@@ -74,6 +113,27 @@ public class CachingTest {
         verify(request, times(1)).getAttribute("testValue");
     }
 
+    @Test
+    public void testCachedClassIsRequestScoped() {
+        CachedModel cached1 = factory.getAdapter(request, CachedModel.class);
+        CachedModel cached2 = factory.getAdapter(otherRequest, CachedModel.class);
+
+        assertTrue(cached1 != cached2);
+        assertNotNull(request.getAttribute(AdapterCache.REQUEST_ATTRIBUTE));
+        assertTrue(cached2 == factory.getAdapter(otherRequest, CachedModel.class));
+    }
+
+    @Test
+    public void testCachedClassFromResource() {
+        CachedModel cached1 = factory.getAdapter(resource, CachedModel.class);
+        CachedModel cached2 = factory.getAdapter(resource, CachedModel.class);
+
+        assertTrue(cached1 == cached2);
+        assertEquals("test", cached1.getTestValue());
+
+        verify(resource, times(1)).adaptTo(ValueMap.class);
+    }
+
     @Test
     public void testNoCachedClass() {
         UncachedModel uncached1 = factory.getAdapter(request, UncachedModel.class);
@@ -79,6 +79,21 @@ public class CustomInjectorTest {
         assertEquals("custom value", model.getCustomString());
     }
 
+    @Test
+    public void testInjectorsChangedAfterAdaptation() {
+        SimpleInjector injector = new SimpleInjector();
+        assertNull(factory.getAdapter(new Object(), TestModel.class));
+
+        // the injection plan computed for the first adaptation must not be reused
+        factory.bindInjector(injector, new ServicePropertiesMap(1, 1));
+        TestModel model = factory.getAdapter(new Object(), TestModel.class);
+        assertNotNull(model);
+        assertEquals("test string", model.getTestString());
+
+        factory.unbindInjector(injector, new ServicePropertiesMap(1, 1));
+        assertNull(factory.getAdapter(new Object(), TestModel.class));
+    }
+
     @Model(adaptables = Object.class)
     public interface TestModel {
         @Inject
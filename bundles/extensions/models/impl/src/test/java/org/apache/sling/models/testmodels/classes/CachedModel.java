@@ -17,11 +17,12 @@
 package org.apache.sling.models.testmodels.classes;
 
 import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.resource.Resource;
 import org.apache.sling.models.annotations.Model;
 
 import javax.inject.Inject;
 
-@Model(adaptables = SlingHttpServletRequest.class, cache = true)
+@Model(adaptables = {SlingHttpServletRequest.class, Resource.class}, cache = true)
 public class CachedModel {
 
     @Inject
@@ -45,6 +45,8 @@ import org.apache.sling.resourceresolver.impl.mapping.MapConfigurationProvider;
 import org.apache.sling.resourceresolver.impl.mapping.MapEntries;
 import org.apache.sling.resourceresolver.impl.mapping.MapEntriesHandler;
 import org.apache.sling.resourceresolver.impl.mapping.Mapping;
+import org.apache.sling.resourceresolver.impl.observation.ResourceChangeListenerQueue;
+import org.apache.sling.resourceresolver.impl.observation.ResourceChangeListenerWhiteboard;
 import org.apache.sling.resourceresolver.impl.providers.ResourceProviderTracker;
 import org.apache.sling.spi.resource.provider.ResourceProvider;
 import org.osgi.framework.Bundle;
@@ -346,6 +348,17 @@ public class CommonResourceResolverFactoryImpl implements ResourceResolverFactor
         return this.activator.getSearchPath();
     }
 
+    /**
+     * @return The queues of the resource change listeners, empty if changes are delivered synchronously
+     */
+    public List<ResourceChangeListenerQueue> getResourceChangeListenerQueues() {
+        final ResourceChangeListenerWhiteboard whiteboard = this.activator.getResourceChangeListenerWhiteboard();
+        if ( whiteboard == null ) {
+            return Collections.emptyList();
+        }
+        return whiteboard.getListenerQueues();
+    }
+
     public boolean isMangleNamespacePrefixes() {
         return this.activator.isMangleNamespacePrefixes();
     }
@@ -415,6 +428,11 @@ public class CommonResourceResolverFactoryImpl implements ResourceResolverFactor
         return this.activator.getVanityBloomFilterMaxBytes();
     }
 
+    @Override
+    public boolean isVanityPathIndexEnabled() {
+        return this.activator.isVanityPathIndexEnabled();
+    }
+
     @Override
     public boolean isOptimizeAliasResolutionEnabled() {
         return this.activator.isOptimizeAliasResolutionEnabled();
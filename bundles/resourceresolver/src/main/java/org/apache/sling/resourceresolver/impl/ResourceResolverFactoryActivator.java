@@ -225,6 +225,10 @@ public class ResourceResolverFactoryActivator {
         return this.config.resource_resolver_vanitypath_bloomfilter_maxBytes();
     }
 
+    public boolean isVanityPathIndexEnabled() {
+        return this.config.resource_resolver_vanitypath_index();
+    }
+
     public boolean shouldLogResourceResolverClosing() {
         return this.config.resource_resolver_log_closing();
     }
@@ -372,7 +376,9 @@ public class ResourceResolverFactoryActivator {
             		requiredResourceProviderNames,
             		resourceProviderTracker);
             this.changeListenerWhiteboard.activate(this.bundleContext,
-                this.resourceProviderTracker, searchPath);
+                this.resourceProviderTracker, searchPath,
+                config.resource_resolver_observation_dispatch_threads(),
+                config.resource_resolver_observation_queue_size());
             this.resourceProviderTracker.activate(this.bundleContext,
                     this.eventAdmin,
                     new ChangeListener() {
@@ -578,6 +584,14 @@ public class ResourceResolverFactoryActivator {
         return resourceProviderTracker;
     }
 
+    /**
+     * Get the resource change listener whiteboard
+     * @return The whiteboard
+     */
+    public ResourceChangeListenerWhiteboard getResourceChangeListenerWhiteboard() {
+        return changeListenerWhiteboard;
+    }
+
     /**
      * Utility method to create a set out of a string array
      */
@@ -143,6 +143,15 @@ public @interface ResourceResolverFactoryConfig {
                       "Changing this value is subject to vanity bloom filter rebuild")
     int resource_resolver_vanitypath_bloomfilter_maxBytes() default 1024000;
 
+    @AttributeDefinition(name = "Vanity Path Index",
+        description = "If enabled, all vanity paths are kept in an index file in the bundle data area instead of " +
+                      "loading them with a query on startup. The index is built in the background on the first start " +
+                      "and maintained through resource change events. If the index has not been closed cleanly, it is " +
+                      "rebuilt in the background. Changes made while the bundle is not active, e.g. on other cluster " +
+                      "instances, are not picked up; only enable the index if vanity paths only change while this " +
+                      "instance is running. Disabling the index removes the index file.")
+    boolean resource_resolver_vanitypath_index() default false;
+
     @AttributeDefinition(name = "Optimize alias resolution",
         description ="This flag controls whether to optimize" +
                      " the alias resolution by creating an internal cache of aliases. This might have an impact on the startup time"+
@@ -182,5 +191,18 @@ public @interface ResourceResolverFactoryConfig {
             description = "When enabled unclosed resource resolvers will be logged. Not closing " +
                           "a resource resolver is a bug in the code using the resolver and should be fixed.")
     boolean resource_resolver_log_unclosed() default true;
+
+    @AttributeDefinition(name = "Resource Change Listener Dispatch Threads",
+        description = "Number of threads delivering resource changes to the resource change listeners. If set to 0, " +
+                      "changes are delivered synchronously by the thread reporting them, usually the observation " +
+                      "thread of the resource provider. Otherwise each listener gets its own queue, so a slow " +
+                      "listener does not delay the others, and queued changes of the same path are coalesced.")
+    int resource_resolver_observation_dispatch_threads() default 0;
+
+    @AttributeDefinition(name = "Resource Change Listener Queue Size",
+        description = "Maximum number of changes queued for a resource change listener, if changes are delivered " +
+                      "asynchronously. If the queue of a listener is full, the thread reporting changes waits " +
+                      "until the listener has caught up.")
+    int resource_resolver_observation_queue_size() default 10000;
 }
 
@@ -463,27 +463,22 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
             // read all parents SLING-2093
             final LinkedList<String> names = new LinkedList<>();
 
+            final boolean optimizeAliasResolution = factory.isOptimizeAliasResolutionEnabled();
+            logger.debug("map: Optimize Alias Resolution is {}", optimizeAliasResolution ? "Enabled" : "Disabled");
+
             Resource current = res;
             String path = res.getPath();
             while (path != null) {
                 String alias = null;
-                if (current != null && !path.endsWith(JCR_CONTENT_LEAF)) {
-                    if (factory.isOptimizeAliasResolutionEnabled()) {
-                        logger.debug("map: Optimize Alias Resolution is Enabled");
-                        String parentPath = ResourceUtil.getParent(path);
+                if (!path.endsWith(JCR_CONTENT_LEAF)) {
+                    if (optimizeAliasResolution) {
+                        // the alias index is keyed by parent path and name, so
+                        // there is no need to resolve the ancestors
+                        final String parentPath = ResourceUtil.getParent(path);
                         if (parentPath != null) {
-                            final Map<String, String> aliases = factory.getMapEntries().getAliasMap(parentPath);
-                            if (aliases!= null && aliases.containsValue(current.getName())) {
-                                for (String key:aliases.keySet()) {
-                                    if (current.getName().equals(aliases.get(key))) {
-                                        alias = key;
-                                        break;
-                                    }
-                                }
-                            }
+                            alias = factory.getMapEntries().getAlias(parentPath, ResourceUtil.getName(path));
                         }
-                    } else {
-                        logger.debug("map: Optimize Alias Resolution is Disabled");
+                    } else if (current != null) {
                         alias = ResourceResolverControl.getProperty(current, PROP_ALIAS);
                     }
                 }
@@ -494,7 +489,7 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
                 path = ResourceUtil.getParent(path);
                 if ("/".equals(path)) {
                     path = null;
-                } else if (path != null) {
+                } else if (path != null && !optimizeAliasResolution) {
                     current = res.getResourceResolver().resolve(path);
                 }
             }
@@ -525,7 +520,9 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
         }
 
         boolean mappedPathIsUrl = false;
-        for (final MapEntry mapEntry : this.factory.getMapEntries().getMapMaps()) {
+        final Iterator<MapEntry> mapMapsIterator = this.factory.getMapEntries().getMapMapsIterator(mappedPath);
+        while (mapMapsIterator.hasNext()) {
+            final MapEntry mapEntry = mapMapsIterator.next();
             final String[] mappedPaths = mapEntry.replace(mappedPath);
             if (mappedPaths != null) {
 
@@ -49,6 +49,7 @@ import org.apache.sling.resourceresolver.impl.helper.URI;
 import org.apache.sling.resourceresolver.impl.helper.URIException;
 import org.apache.sling.resourceresolver.impl.mapping.MapEntriesHandler;
 import org.apache.sling.resourceresolver.impl.mapping.MapEntry;
+import org.apache.sling.resourceresolver.impl.observation.ResourceChangeListenerQueue;
 import org.apache.sling.spi.resource.provider.ResourceProvider;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
@@ -283,6 +284,13 @@ public class ResourceResolverWebConsolePlugin extends HttpServlet {
         separatorText(pw);
 
         dumpMapText(pw, "Mapping Map Entries", mapEntries.getMapMaps());
+
+        final List<ResourceChangeListenerQueue> queues = resolverFactory.getResourceChangeListenerQueues();
+        if ( !queues.isEmpty() ) {
+            separatorText(pw);
+
+            dumpQueuesText(pw, queues);
+        }
     }
 
     // ---------- internal
@@ -554,6 +562,20 @@ public class ResourceResolverWebConsolePlugin extends HttpServlet {
         }
     }
 
+    private void dumpQueuesText(final PrintWriter pw, final List<ResourceChangeListenerQueue> queues) {
+
+        pw.println("Resource Change Listener Queues");
+
+        for(final ResourceChangeListenerQueue queue : queues) {
+            pw.println(queue.getListener());
+            pw.printf("  queued: %d (now %d, max %d), coalesced: %d, delivered: %d in %d calls, failed calls: %d\r\n",
+                    queue.getQueuedCount(), queue.getQueueSize(), queue.getMaxQueueSize(), queue.getCoalescedCount(),
+                    queue.getDeliveredCount(), queue.getDeliveryCount(), queue.getFailureCount());
+            pw.printf("  processing time: %d ms (max %d ms), full queue waits: %d (%d ms)\r\n",
+                    queue.getProcessingTime(), queue.getMaxProcessingTime(), queue.getWaitCount(), queue.getWaitTime());
+        }
+    }
+
     private void separatorText(PrintWriter pw) {
         pw.println();
     }
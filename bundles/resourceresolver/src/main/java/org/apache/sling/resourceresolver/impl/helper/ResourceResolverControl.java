@@ -53,6 +53,7 @@ import org.apache.sling.resourceresolver.impl.providers.ResourceProviderStorage;
 import org.apache.sling.resourceresolver.impl.providers.ResourceProviderStorageProvider;
 import org.apache.sling.resourceresolver.impl.providers.stateful.AuthenticatedResourceProvider;
 import org.apache.sling.resourceresolver.impl.providers.tree.Node;
+import org.apache.sling.resourceresolver.impl.providers.tree.PathTree;
 import org.apache.sling.spi.resource.provider.ResourceProvider;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.FrameworkUtil;
@@ -92,6 +93,9 @@ public class ResourceResolverControl {
 
     private final Map<ResourceProviderHandler, Object> authenticatedProviders;
 
+    /** The result of the last lookup in the provider tree */
+    private PathTree.Match<ResourceProviderHandler> lastProviderMatch;
+
     /**
      * Create a new resource resolver context.
      */
@@ -243,7 +247,8 @@ public class ResourceResolverControl {
     }
 
     private boolean isIntermediatePath(final String fullPath) {
-        return getResourceProviderStorage().getTree().getNode(fullPath) != null;
+        final PathTree.Match<ResourceProviderHandler> match = getProviderMatch(fullPath);
+        return match != null && match.getNode() != null;
     }
 
     /**
@@ -277,7 +282,8 @@ public class ResourceResolverControl {
         }
 
         // synthetic and providers are done in one loop
-        final Node<ResourceProviderHandler> node = getResourceProviderStorage().getTree().getNode(parent.getPath());
+        final PathTree.Match<ResourceProviderHandler> match = getProviderMatch(parentPath);
+        final Node<ResourceProviderHandler> node = match == null ? null : match.getNode();
         if (node != null) {
             final List<Resource> syntheticList = new ArrayList<>();
             final List<Resource> providerList = new ArrayList<>();
@@ -501,7 +507,7 @@ public class ResourceResolverControl {
     private AuthenticatedResourceProvider checkSourceAndDest(final ResourceResolverContext context,
             final String srcAbsPath, final String destAbsPath) throws PersistenceException {
         // check source
-        final Node<ResourceProviderHandler> srcNode = getResourceProviderStorage().getTree().getBestMatchingNode(srcAbsPath);
+        final Node<ResourceProviderHandler> srcNode = getBestMatchingNode(srcAbsPath);
         if ( srcNode == null ) {
             throw new PersistenceException("Source resource does not exist.", null, srcAbsPath, null);
         }
@@ -520,7 +526,7 @@ public class ResourceResolverControl {
         }
 
         // check destination
-        final Node<ResourceProviderHandler> destNode = getResourceProviderStorage().getTree().getBestMatchingNode(destAbsPath);
+        final Node<ResourceProviderHandler> destNode = getBestMatchingNode(destAbsPath);
         if ( destNode == null ) {
             throw new PersistenceException("Destination resource does not exist.", null, destAbsPath, null);
         }
@@ -634,6 +640,30 @@ public class ResourceResolverControl {
         return this.resourceProviderTracker.getResourceProviderStorage();
     }
 
+    /**
+     * Look up the path in the tree of the resource providers. The last
+     * result is kept, as most lookups are for the same path or for paths
+     * below the same provider.
+     * @param path The path
+     * @return The match or {@code null} if the path is not absolute
+     */
+    private @CheckForNull PathTree.Match<ResourceProviderHandler> getProviderMatch(final String path) {
+        final PathTree<ResourceProviderHandler> tree = getResourceProviderStorage().getTree();
+        PathTree.Match<ResourceProviderHandler> match = this.lastProviderMatch;
+        if (match == null || !match.matches(tree, path)) {
+            match = tree.match(path);
+            if (match != null) {
+                this.lastProviderMatch = match;
+            }
+        }
+        return match;
+    }
+
+    private @CheckForNull Node<ResourceProviderHandler> getBestMatchingNode(final String path) {
+        final PathTree.Match<ResourceProviderHandler> match = getProviderMatch(path);
+        return match == null ? null : match.getBestMatchingNode();
+    }
+
     /**
      * @param path
      * @return
@@ -641,7 +671,7 @@ public class ResourceResolverControl {
     private @CheckForNull AuthenticatedResourceProvider getBestMatchingProvider(final ResourceResolverContext context,
             final String path) {
         try {
-            final Node<ResourceProviderHandler> node = resourceProviderTracker.getResourceProviderStorage().getTree().getBestMatchingNode(path);
+            final Node<ResourceProviderHandler> node = getBestMatchingNode(path);
             return node == null ? null : context.getProviderManager().getOrCreateProvider(node.getValue(), this);
         } catch ( final LoginException le ) {
             // ignore
@@ -656,7 +686,7 @@ public class ResourceResolverControl {
     private @CheckForNull AuthenticatedResourceProvider getBestMatchingModifiableProvider(
             final ResourceResolverContext context,
             final String path)  {
-        final Node<ResourceProviderHandler> node = resourceProviderTracker.getResourceProviderStorage().getTree().getBestMatchingNode(path);
+        final Node<ResourceProviderHandler> node = getBestMatchingNode(path);
         if ( node != null && node.getValue().getInfo().isModifiable() ) {
             try {
                 return context.getProviderManager().getOrCreateProvider(node.getValue(), this);
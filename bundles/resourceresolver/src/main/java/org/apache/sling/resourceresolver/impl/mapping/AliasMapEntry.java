@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.mapping;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The aliases of the children of a single parent resource. The map itself
+ * maps each alias to the name of the child resource (in the order the
+ * aliases have been added). In addition a reverse index from the child name
+ * to its first alias is maintained, so the alias of a child can be looked up
+ * without scanning all aliases of its siblings.
+ * <p>
+ * The key, value and entry views are read only, modifications have to go
+ * through {@link #put(String, String)}, {@link #remove(Object)},
+ * {@link #removeName(String)} and {@link #clear()} to keep both directions
+ * in sync.
+ */
+final class AliasMapEntry extends LinkedHashMap<String, String> {
+
+    private static final long serialVersionUID = 1L;
+
+    /** child name to the first alias for that child */
+    private final Map<String, String> nameToAlias = new HashMap<>();
+
+    /**
+     * Returns the first alias of the child with the given name.
+     * @param name The child name
+     * @return The alias or {@code null} if the child does not have an alias
+     */
+    public String getAlias(final String name) {
+        return nameToAlias.get(name);
+    }
+
+    @Override
+    public String put(final String alias, final String name) {
+        final String old = super.put(alias, name);
+        if (old != null && !old.equals(name) && alias.equals(nameToAlias.get(old))) {
+            updateName(old);
+        }
+        if (!nameToAlias.containsKey(name)) {
+            nameToAlias.put(name, alias);
+        }
+        return old;
+    }
+
+    @Override
+    public String remove(final Object alias) {
+        final String name = super.remove(alias);
+        if (name != null && alias.equals(nameToAlias.get(name))) {
+            updateName(name);
+        }
+        return name;
+    }
+
+    /**
+     * Remove all aliases of the child with the given name.
+     * @param name The child name
+     * @return {@code true} if at least one alias has been removed
+     */
+    public boolean removeName(final String name) {
+        if (!nameToAlias.containsKey(name)) {
+            return false;
+        }
+        final Iterator<Map.Entry<String, String>> iter = super.entrySet().iterator();
+        while (iter.hasNext()) {
+            if (name.equals(iter.next().getValue())) {
+                iter.remove();
+            }
+        }
+        nameToAlias.remove(name);
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        nameToAlias.clear();
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return Collections.unmodifiableSet(super.keySet());
+    }
+
+    @Override
+    public Collection<String> values() {
+        return Collections.unmodifiableCollection(super.values());
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        return Collections.unmodifiableSet(super.entrySet());
+    }
+
+    @Override
+    public boolean containsValue(final Object name) {
+        return nameToAlias.containsKey(name);
+    }
+
+    /**
+     * Recalculate the first alias of the given child after an alias
+     * has been removed or replaced.
+     */
+    private void updateName(final String name) {
+        nameToAlias.remove(name);
+        for (final Map.Entry<String, String> entry : super.entrySet()) {
+            if (name.equals(entry.getValue())) {
+                nameToAlias.put(name, entry.getKey());
+                break;
+            }
+        }
+    }
+}
@@ -52,6 +52,8 @@ public interface MapConfigurationProvider extends ResourceResolverFactory {
 
     int getVanityBloomFilterMaxBytes();
 
+    boolean isVanityPathIndexEnabled();
+
     boolean isOptimizeAliasResolutionEnabled();
 
     boolean hasVanityPathPrecedence();
@@ -33,7 +33,6 @@ import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -99,6 +98,16 @@ public class MapEntries implements
 
     private static final int VANITY_BLOOM_FILTER_MAX_ENTRIES = 10000000;
 
+    private static final String VANITY_PATH_INDEX_NAME = "vanityPathIndex";
+
+    /** Number of vanity paths kept in memory while building the vanity path index */
+    private static final int VANITY_PATH_INDEX_CHUNK_SIZE = 100000;
+
+    /** Number of changed resources after which the changes are merged into the vanity path index file */
+    private static final int VANITY_PATH_INDEX_MAX_PENDING_CHANGES = 1000;
+
+    private static final String VANITY_PATH_QUERY = "SELECT sling:vanityPath, sling:redirect, sling:redirectStatus FROM nt:base WHERE sling:vanityPath IS NOT NULL";
+
     /** Key for the global list. */
     private static final String GLOBAL_LIST_KEY = "*";
 
@@ -125,9 +134,15 @@ public class MapEntries implements
 
     private Collection<MapEntry> mapMaps;
 
+    /** Compiled index of the global resolve map entries */
+    private volatile MapEntryIndex resolveMapsIndex;
+
+    /** Compiled index of the map entries */
+    private volatile MapEntryIndex mapMapsIndex;
+
     private Map <String,List <String>> vanityTargets;
 
-    private Map<String, Map<String, String>> aliasMap;
+    private Map<String, AliasMapEntry> aliasMap;
 
     private final ReentrantLock initializing = new ReentrantLock();
 
@@ -135,7 +150,15 @@ public class MapEntries implements
 
     private final File vanityBloomFilterFile;
 
-    private byte[] vanityBloomFilter;
+    private volatile byte[] vanityBloomFilter;
+
+    private final File vanityPathIndexDirectory;
+
+    /**
+     * Persisted index of all vanity paths, {@code null} if the vanity paths are queried.
+     * Until the index is up to date, vanity paths are looked up with a query.
+     */
+    private volatile VanityPathIndex vanityPathIndex;
 
     private Timer timer;
 
@@ -151,8 +174,10 @@ public class MapEntries implements
 
         this.resolveMapsMap = Collections.singletonMap(GLOBAL_LIST_KEY, (List<MapEntry>)Collections.EMPTY_LIST);
         this.mapMaps = Collections.<MapEntry> emptyList();
+        this.resolveMapsIndex = MapEntryIndex.EMPTY;
+        this.mapMapsIndex = MapEntryIndex.EMPTY;
         this.vanityTargets = Collections.<String,List <String>>emptyMap();
-        this.aliasMap = Collections.<String, Map<String, String>>emptyMap();
+        this.aliasMap = Collections.<String, AliasMapEntry>emptyMap();
 
         doInit();
 
@@ -169,6 +194,7 @@ public class MapEntries implements
 
         this.vanityCounter = new AtomicLong(0);
         this.vanityBloomFilterFile = bundleContext.getDataFile(VANITY_BLOOM_FILTER_NAME);
+        this.vanityPathIndexDirectory = getVanityPathIndexDirectory(bundleContext, factory);
         initializeVanityPaths();
     }
 
@@ -191,7 +217,7 @@ public class MapEntries implements
 
             //optimization made in SLING-2521
             if (this.factory.isOptimizeAliasResolutionEnabled()) {
-                final Map<String, Map<String, String>> aliasMap = this.loadAliases(resolver);
+                final Map<String, AliasMapEntry> aliasMap = this.loadAliases(resolver);
                 this.aliasMap = aliasMap;
             }
 
@@ -227,6 +253,24 @@ public class MapEntries implements
                     throw new RuntimeException(
                             "This platform does not have file system support");
                 }
+
+                // task for persisting the bloom filter every minute (if changes
+                // exist)
+                timer = new Timer();
+                timer.schedule(new BloomFilterTask(), 60 * 1000);
+
+                final VanityPathIndex index = this.openVanityPathIndex();
+                if (index != null) {
+                    this.vanityPathIndex = index;
+                    this.vanityTargets = new ConcurrentHashMap<>();
+                    timer.schedule(new VanityPathIndexTask(), 60 * 1000, 60 * 1000);
+                    if (!index.isUpToDate()) {
+                        // new index or changes might have been missed
+                        timer.schedule(new VanityPathIndexRefreshTask(), 0);
+                    }
+                    return;
+                }
+
                 boolean createVanityBloomFilter = false;
                 if (!vanityBloomFilterFile.exists()) {
                     log.debug("creating bloom filter file {}",
@@ -247,11 +291,6 @@ public class MapEntries implements
                     }
                 }
 
-                // task for persisting the bloom filter every minute (if changes
-                // exist)
-                timer = new Timer();
-                timer.schedule(new BloomFilterTask(), 60 * 1000);
-
                 final Map<String, List<String>> vanityTargets = this
                         .loadVanityPaths(createVanityBloomFilter);
                 this.vanityTargets = vanityTargets;
@@ -323,7 +362,9 @@ public class MapEntries implements
         final String actualContentPath = getActualContentPath(path);
         final String actualContentPathPrefix = actualContentPath + "/";
 
-        for (final String target : this.vanityTargets.keySet()) {
+        final VanityPathIndex index = this.vanityPathIndex;
+        final Collection<String> targets = index != null ? index.getTargets(actualContentPath) : this.vanityTargets.keySet();
+        for (final String target : targets) {
             if (target.startsWith(actualContentPathPrefix) || target.equals(actualContentPath)) {
                 changed |= removeVanityPath(target);
             }
@@ -416,12 +457,20 @@ public class MapEntries implements
         // sort global list and add to map
         Collections.sort(globalResolveMap);
         resolveMapsMap.put(GLOBAL_LIST_KEY, globalResolveMap);
-        this.mapMaps = Collections.unmodifiableSet(new TreeSet<>(newMapMaps.values()));
+        this.resolveMapsIndex = new MapEntryIndex(globalResolveMap);
+        final Collection<MapEntry> sortedMapMaps = Collections.unmodifiableSet(new TreeSet<>(newMapMaps.values()));
+        this.mapMaps = sortedMapMaps;
+        this.mapMapsIndex = new MapEntryIndex(sortedMapMaps);
     }
 
     private boolean doAddVanity(final Resource resource) {
         log.debug("doAddVanity getting {}", resource.getPath());
 
+        final VanityPathIndex index = this.vanityPathIndex;
+        if (index != null) {
+            return addIndexedVanityPath(index, resource);
+        }
+
         boolean needsUpdate = false;
         if (isAllVanityPathEntriesCached() || vanityCounter.longValue() < this.factory.getMaxCachedVanityPathEntries()) {
             // fill up the cache and the bloom filter
@@ -439,6 +488,16 @@ public class MapEntries implements
 
     private boolean doRemoveVanity(final String path) {
         final String actualContentPath = getActualContentPath(path);
+        final VanityPathIndex index = this.vanityPathIndex;
+        if (index != null) {
+            evictCachedVanityPaths(actualContentPath);
+            try {
+                return index.remove(actualContentPath);
+            } catch (final IOException e) {
+                log.warn("Unable to persist removal of vanity paths of {}", actualContentPath, e);
+                return true;
+            }
+        }
         final List <String> l = vanityTargets.remove(actualContentPath);
         if (l != null){
             for (final String s : l){
@@ -464,6 +523,47 @@ public class MapEntries implements
         return false;
     }
 
+    /**
+     * Add the vanity paths of a resource to the vanity path index. The
+     * cached entries of the resource and of its vanity paths are evicted,
+     * they are loaded from the index on the next lookup.
+     */
+    private boolean addIndexedVanityPath(final VanityPathIndex index, final Resource resource) {
+        final List<VanityPathIndex.Entry> vanityPaths = getVanityPathEntries(resource);
+        if (vanityPaths.isEmpty()) {
+            return false;
+        }
+        final String target = vanityPaths.get(0).target;
+        evictCachedVanityPaths(target);
+        try {
+            index.put(target, vanityPaths);
+        } catch (final IOException e) {
+            log.warn("Unable to persist vanity paths of {}", target, e);
+        }
+        for (final VanityPathIndex.Entry vanityPath : vanityPaths) {
+            BloomFilterUtils.add(vanityBloomFilter, vanityPath.vanityPath);
+            evictCachedVanityPath(vanityPath.vanityPath);
+        }
+        updateBloomFilterFile = true;
+        return true;
+    }
+
+    private void evictCachedVanityPaths(final String target) {
+        final List<String> vanityPaths = vanityTargets.remove(target);
+        if (vanityPaths != null) {
+            for (final String vanityPath : vanityPaths) {
+                evictCachedVanityPath(vanityPath);
+            }
+        }
+    }
+
+    private void evictCachedVanityPath(final String vanityPath) {
+        final List<MapEntry> entries = this.resolveMapsMap.remove(vanityPath);
+        if (entries != null) {
+            vanityCounter.addAndGet(-entries.size());
+        }
+    }
+
     private boolean doAddAlias(final Resource resource) {
         return loadAlias(resource, this.aliasMap);
     }
@@ -485,14 +585,9 @@ public class MapEntries implements
             final String containingResourceName = containingResource.getName();
             final String parentPath = ResourceUtil.getParent(containingResource.getPath());
 
-            final Map<String, String> aliasMapEntry = parentPath == null ? null : aliasMap.get(parentPath);
+            final AliasMapEntry aliasMapEntry = parentPath == null ? null : aliasMap.get(parentPath);
             if (aliasMapEntry != null) {
-                for (Iterator<Map.Entry<String, String>> iterator = aliasMapEntry.entrySet().iterator(); iterator.hasNext(); ) {
-                    final Map.Entry<String, String> entry = iterator.next();
-                    if (containingResourceName.equals(entry.getValue())){
-                        iterator.remove();
-                    }
-                }
+                aliasMapEntry.removeName(containingResourceName);
             }
 
             if (aliasMapEntry != null && aliasMapEntry.isEmpty()) {
@@ -518,6 +613,10 @@ public class MapEntries implements
      * Cleans up this class.
      */
     public void dispose() {
+        if (this.timer != null) {
+            this.timer.cancel();
+        }
+
         try {
             persistBloomFilter();
         } catch (IOException e) {
@@ -562,6 +661,16 @@ public class MapEntries implements
             } else {
                 log.warn("dispose: ResourceResolver has already been cleared before; duplicate call to dispose ?");
             }
+
+            // the index stays readable, changes are no longer persisted
+            final VanityPathIndex index = this.vanityPathIndex;
+            if (index != null) {
+                try {
+                    index.close();
+                } catch (final IOException e) {
+                    log.error("Error while closing the vanity path index", e);
+                }
+            }
         } finally {
             if (initLocked) {
                 this.initializing.unlock();
@@ -599,7 +708,8 @@ public class MapEntries implements
             key = requestPath.substring(secondIndex);
         }
 
-        return new MapEntryIterator(key, resolveMapsMap, this.factory.hasVanityPathPrecedence());
+        return new MapEntryIterator(key, resolveMapsMap, this.resolveMapsIndex.getCandidates(requestPath),
+                this.factory.hasVanityPathPrecedence());
     }
 
     @Override
@@ -607,11 +717,22 @@ public class MapEntries implements
         return mapMaps;
     }
 
+    @Override
+    public Iterator<MapEntry> getMapMapsIterator(final String path) {
+        return this.mapMapsIndex.getCandidates(path);
+    }
+
     @Override
     public Map<String, String> getAliasMap(final String parentPath) {
         return aliasMap.get(parentPath);
     }
 
+    @Override
+    public String getAlias(final String parentPath, final String name) {
+        final AliasMapEntry aliasMapEntry = aliasMap.get(parentPath);
+        return aliasMapEntry == null ? null : aliasMapEntry.getAlias(name);
+    }
+
     /**
      * get the MapEnty containing all the nodes having a specific vanityPath
      */
@@ -621,14 +742,55 @@ public class MapEntries implements
         if (BloomFilterUtils.probablyContains(vanityBloomFilter, vanityPath)) {
             mapEntries = this.resolveMapsMap.get(vanityPath);
             if (mapEntries == null) {
-                Map<String, List<MapEntry>>  mapEntry = getVanityPaths(vanityPath);
-                mapEntries = mapEntry.get(vanityPath);
+                final VanityPathIndex index = this.vanityPathIndex;
+                if (index != null && index.isUpToDate()) {
+                    mapEntries = getIndexedVanityPaths(index, vanityPath);
+                } else {
+                    Map<String, List<MapEntry>>  mapEntry = getVanityPaths(vanityPath);
+                    mapEntries = mapEntry.get(vanityPath);
+                }
             }
         }
 
         return mapEntries;
     }
 
+    /**
+     * Get the map entries of a vanity path from the vanity path index. The
+     * entries are cached if the maximum number of cached entries is not
+     * reached yet.
+     */
+    private List<MapEntry> getIndexedVanityPaths(final VanityPathIndex index, final String vanityPath) {
+        final long modificationCount = index.getModificationCount();
+        final List<VanityPathIndex.Entry> vanityPaths = index.get(vanityPath);
+        if (vanityPaths.isEmpty()) {
+            return null;
+        }
+        final Map<String, List<MapEntry>> entryMap = new HashMap<>();
+        for (final VanityPathIndex.Entry entry : vanityPaths) {
+            addVanityPathEntries(entryMap, entry);
+        }
+        final List<MapEntry> mapEntries = entryMap.get(vanityPath);
+        if (mapEntries != null
+                && (isAllVanityPathEntriesCached() || this.factory.isMaxCachedVanityPathEntriesStartup()
+                        || vanityCounter.longValue() < this.factory.getMaxCachedVanityPathEntries())
+                && this.initializing.tryLock()) {
+            try {
+                // don't cache the entries if the index has been changed meanwhile
+                if (index.getModificationCount() == modificationCount && !this.resolveMapsMap.containsKey(vanityPath)) {
+                    this.resolveMapsMap.put(vanityPath, mapEntries);
+                    for (final VanityPathIndex.Entry entry : vanityPaths) {
+                        this.updateTargetPaths(vanityTargets, entry.target, vanityPath);
+                    }
+                    vanityCounter.addAndGet(mapEntries.size());
+                }
+            } finally {
+                this.initializing.unlock();
+            }
+        }
+        return mapEntries;
+    }
+
     /**
      * Refresh the resource resolver if not already done
      * @param resolverRefreshed Boolean flag containing the state if the resolver
@@ -763,6 +925,89 @@ public class MapEntries implements
         }
     }
 
+    /**
+     * Get the directory of the vanity path index. If the index is disabled,
+     * a previously created index is removed as it might get outdated.
+     * @return The directory or {@code null} if the index is disabled
+     */
+    private static File getVanityPathIndexDirectory(final BundleContext bundleContext,
+            final MapConfigurationProvider factory) {
+        final File directory = bundleContext.getDataFile(VANITY_PATH_INDEX_NAME);
+        if (factory.isVanityPathIndexEnabled()) {
+            return directory;
+        }
+        if (directory != null && directory.exists()) {
+            VanityPathIndex.delete(directory);
+        }
+        return null;
+    }
+
+    /**
+     * Open the vanity path index. If there is no index yet, an empty index
+     * is created, which is built in the background. The bloom filter is
+     * rebuilt from the index.
+     * @return The index or {@code null} if no index can be used
+     */
+    private VanityPathIndex openVanityPathIndex() {
+        if (this.vanityPathIndexDirectory == null) {
+            return null;
+        }
+        try {
+            final byte[] bloomFilter = BloomFilterUtils.createFilter(VANITY_BLOOM_FILTER_MAX_ENTRIES, this.factory.getVanityBloomFilterMaxBytes());
+            VanityPathIndex index = VanityPathIndex.open(this.vanityPathIndexDirectory);
+            if (index != null) {
+                for (final Iterator<String> i = index.getVanityPaths(); i.hasNext(); ) {
+                    BloomFilterUtils.add(bloomFilter, i.next());
+                }
+            } else {
+                log.debug("creating vanity path index {}", this.vanityPathIndexDirectory.getAbsolutePath());
+                index = VanityPathIndex.createEmpty(this.vanityPathIndexDirectory);
+                // any path might be a vanity path until the index is built
+                Arrays.fill(bloomFilter, (byte) 0xFF);
+            }
+            this.vanityBloomFilter = bloomFilter;
+            this.updateBloomFilterFile = true;
+            return index;
+        } catch (final IOException | RuntimeException e) {
+            log.warn("Unable to use the vanity path index " + this.vanityPathIndexDirectory + ", querying vanity paths instead", e);
+            return null;
+        }
+    }
+
+    /**
+     * Query all vanity paths and collect them for a new vanity path index.
+     * @param resolver The resolver used for the query
+     * @return The builder for the index
+     */
+    private VanityPathIndex.Builder buildVanityPathIndex(final ResourceResolver resolver) throws IOException {
+        final VanityPathIndex.Builder builder = new VanityPathIndex.Builder(this.vanityPathIndexDirectory, VANITY_PATH_INDEX_CHUNK_SIZE);
+        boolean success = false;
+        try {
+            final Iterator<Resource> i = resolver.findResources(VANITY_PATH_QUERY, "sql");
+            while (i.hasNext()) {
+                final Resource resource = i.next();
+                boolean isValid = false;
+                for(final Path sPath : this.factory.getObservationPaths()) {
+                    if ( sPath.matches(resource.getPath())) {
+                        isValid = true;
+                        break;
+                    }
+                }
+                if ( isValid ) {
+                    for (final VanityPathIndex.Entry entry : getVanityPathEntries(resource)) {
+                        builder.add(entry);
+                    }
+                }
+            }
+            success = true;
+            return builder;
+        } finally {
+            if (!success) {
+                builder.close();
+            }
+        }
+    }
+
     private boolean isAllVanityPathEntriesCached() {
         return this.factory.getMaxCachedVanityPathEntries() == -1;
     }
@@ -1001,8 +1246,8 @@ public class MapEntries implements
      * Load aliases Search for all nodes inheriting the sling:alias
      * property
      */
-    private Map<String, Map<String, String>> loadAliases(final ResourceResolver resolver) {
-        final Map<String, Map<String, String>> map = new ConcurrentHashMap<>();
+    private Map<String, AliasMapEntry> loadAliases(final ResourceResolver resolver) {
+        final Map<String, AliasMapEntry> map = new ConcurrentHashMap<>();
         final String queryString = "SELECT sling:alias FROM nt:base WHERE sling:alias IS NOT NULL";
         final Iterator<Resource> i = resolver.findResources(queryString, "sql");
         while (i.hasNext()) {
@@ -1015,7 +1260,7 @@ public class MapEntries implements
     /**
      * Load alias given a resource
      */
-    private boolean loadAlias(final Resource resource, Map<String, Map<String, String>> map) {
+    private boolean loadAlias(final Resource resource, Map<String, AliasMapEntry> map) {
         // ignore system tree
         if (resource.getPath().startsWith(JCR_SYSTEM_PREFIX)) {
             log.debug("loadAliases: Ignoring {}", resource);
@@ -1056,7 +1301,7 @@ public class MapEntries implements
             final String[] aliasArray = props.get(ResourceResolverImpl.PROP_ALIAS, String[].class);
 
             if ( aliasArray != null ) {
-                Map<String, String> parentMap = map.get(parentPath);
+                AliasMapEntry parentMap = map.get(parentPath);
                 for (final String alias : aliasArray) {
                     if (parentMap != null && parentMap.containsKey(alias)) {
                         log.warn("Encountered duplicate alias {} under parent path {}. Refusing to replace current target {} with {}.", new Object[] {
@@ -1082,7 +1327,7 @@ public class MapEntries implements
                                     alias, parentPath);
                         } else {
                             if (parentMap == null) {
-                                parentMap = new LinkedHashMap<>();
+                                parentMap = new AliasMapEntry();
                                 map.put(parentPath, parentMap);
                             }
                             parentMap.put(alias, resourceName);
@@ -1102,8 +1347,7 @@ public class MapEntries implements
     private Map <String, List<String>> loadVanityPaths(boolean createVanityBloomFilter) {
         // sling:vanityPath (lowercase) is the property name
         final Map <String, List<String>> targetPaths = new ConcurrentHashMap <>();
-        final String queryString = "SELECT sling:vanityPath, sling:redirect, sling:redirectStatus FROM nt:base WHERE sling:vanityPath IS NOT NULL";
-        final Iterator<Resource> i = resolver.findResources(queryString, "sql");
+        final Iterator<Resource> i = resolver.findResources(VANITY_PATH_QUERY, "sql");
 
         while (i.hasNext() && (createVanityBloomFilter || isAllVanityPathEntriesCached() || vanityCounter.longValue() < this.factory.getMaxCachedVanityPathEntries())) {
             final Resource resource = i.next();
@@ -1137,8 +1381,40 @@ public class MapEntries implements
      */
     private boolean loadVanityPath(final Resource resource, final Map<String, List<MapEntry>> entryMap, final Map <String, List<String>> targetPaths, boolean addToCache, boolean newVanity) {
 
+        final List<VanityPathIndex.Entry> vanityPaths = getVanityPathEntries(resource);
+        for (final VanityPathIndex.Entry vanityPath : vanityPaths) {
+            final String checkPath = vanityPath.vanityPath;
+            if (addToCache) {
+                if (this.addVanityPathEntries(entryMap, vanityPath)) {
+                    // 3. keep the path to return
+                    this.updateTargetPaths(targetPaths, vanityPath.target, checkPath);
+                    //increment only if the instance variable
+                    if (entryMap == resolveMapsMap) {
+                        vanityCounter.addAndGet(2);
+                    }
+
+                    if (newVanity) {
+                        // update bloom filter
+                        BloomFilterUtils.add(vanityBloomFilter, checkPath);
+                    }
+                }
+            } else {
+                if (newVanity) {
+                    // update bloom filter
+                    BloomFilterUtils.add(vanityBloomFilter, checkPath);
+                }
+            }
+        }
+        return !vanityPaths.isEmpty();
+    }
+
+    /**
+     * Get the vanity paths defined by a resource
+     */
+    private List<VanityPathIndex.Entry> getVanityPathEntries(final Resource resource) {
+        final List<VanityPathIndex.Entry> vanityPaths = new ArrayList<>();
         if (!isValidVanityPath(resource.getPath())) {
-            return false;
+            return vanityPaths;
         }
 
         final ValueMap props = resource.getValueMap();
@@ -1149,13 +1425,10 @@ public class MapEntries implements
 
         // url is ignoring scheme and host.port and the path is
         // what is stored in the sling:vanityPath property
-        boolean hasVanityPath = false;
         final String[] pVanityPaths = props.get(PROP_VANITY_PATH, new String[0]);
         for (final String pVanityPath : pVanityPaths) {
             final String[] result = this.getVanityPathDefinition(pVanityPath);
             if (result != null) {
-                hasVanityPath = true;
-                final String url = result[0] + result[1];
                 // redirect target is the node providing the
                 // sling:vanityPath
                 // property (or its parent if the node is called
@@ -1166,8 +1439,6 @@ public class MapEntries implements
                 } else {
                     redirectTarget = resource;
                 }
-                final String redirect = redirectTarget.getPath();
-                final String redirectName = redirectTarget.getName();
 
                 // whether the target is attained by a external redirect or
                 // by an internal redirect is defined by the sling:redirect
@@ -1176,48 +1447,39 @@ public class MapEntries implements
                         PROP_REDIRECT_EXTERNAL_REDIRECT_STATUS, factory.getDefaultVanityPathRedirectStatus())
                         : -1;
 
-                final String checkPath = result[1];
+                vanityPaths.add(new VanityPathIndex.Entry(result[1], result[0], redirectTarget.getPath(), status, vanityOrder));
+            }
+        }
+        return vanityPaths;
+    }
 
-                boolean addedEntry;
-                if (addToCache) {
-                    if (redirectName.indexOf('.') > -1) {
-                        // 1. entry with exact match
-                        this.addEntry(entryMap, checkPath, getMapEntry(url + "$", status, false, vanityOrder, redirect));
+    /**
+     * Add the map entries for a vanity path
+     * @return {@code true} if the entries have been added
+     */
+    private boolean addVanityPathEntries(final Map<String, List<MapEntry>> entryMap, final VanityPathIndex.Entry vanityPath) {
+        final String url = vanityPath.prefix + vanityPath.vanityPath;
+        final String redirect = vanityPath.target;
+        final String redirectName = ResourceUtil.getName(redirect);
+        final String checkPath = vanityPath.vanityPath;
+        final int status = vanityPath.status;
+        final long vanityOrder = vanityPath.order;
 
-                        final int idx = redirectName.lastIndexOf('.');
-                        final String extension = redirectName.substring(idx + 1);
+        if (redirectName.indexOf('.') > -1) {
+            // 1. entry with exact match
+            this.addEntry(entryMap, checkPath, getMapEntry(url + "$", status, false, vanityOrder, redirect));
 
-                        // 2. entry with extension
-                        addedEntry = this.addEntry(entryMap, checkPath, getMapEntry(url + "\\." + extension, status, false, vanityOrder, redirect));
-                    } else {
-                        // 1. entry with exact match
-                        this.addEntry(entryMap, checkPath, getMapEntry(url + "$", status, false, vanityOrder, redirect + ".html"));
+            final int idx = redirectName.lastIndexOf('.');
+            final String extension = redirectName.substring(idx + 1);
 
-                        // 2. entry with match supporting selectors and extension
-                        addedEntry = this.addEntry(entryMap, checkPath, getMapEntry(url + "(\\..*)", status, false, vanityOrder, redirect + "$1"));
-                    }
-                    if (addedEntry) {
-                        // 3. keep the path to return
-                        this.updateTargetPaths(targetPaths, redirect, checkPath);
-                        //increment only if the instance variable
-                        if (entryMap == resolveMapsMap) {
-                            vanityCounter.addAndGet(2);
-                        }
-
-                        if (newVanity) {
-                            // update bloom filter
-                            BloomFilterUtils.add(vanityBloomFilter, checkPath);
-                        }
-                    }
-                } else {
-                    if (newVanity) {
-                        // update bloom filter
-                        BloomFilterUtils.add(vanityBloomFilter, checkPath);
-                    }
-                }
-            }
+            // 2. entry with extension
+            return this.addEntry(entryMap, checkPath, getMapEntry(url + "\\." + extension, status, false, vanityOrder, redirect));
         }
-        return hasVanityPath;
+        // 1. entry with exact match
+        this.addEntry(entryMap, checkPath, getMapEntry(url + "$", status, false, vanityOrder, redirect + ".html"));
+
+        // 2. entry with match supporting selectors and extension
+        return this.addEntry(entryMap, checkPath, getMapEntry(url + "(\\..*)", status, false, vanityOrder, redirect + "$1"));
     }
 
     private void updateTargetPaths(final Map<String, List<String>> targetPaths, final String key, final String entry) {
@@ -1387,10 +1649,11 @@ public class MapEntries implements
 
         private boolean vanityPathPrecedence;
 
-        public MapEntryIterator(final String startKey, final Map<String, List<MapEntry>> resolveMapsMap, final boolean vanityPathPrecedence) {
+        public MapEntryIterator(final String startKey, final Map<String, List<MapEntry>> resolveMapsMap,
+                final Iterator<MapEntry> globalListIterator, final boolean vanityPathPrecedence) {
             this.key = startKey;
             this.resolveMapsMap = resolveMapsMap;
-            this.globalListIterator = this.resolveMapsMap.get(GLOBAL_LIST_KEY).iterator();
+            this.globalListIterator = globalListIterator;
             this.vanityPathPrecedence = vanityPathPrecedence;
             this.seek();
         }
@@ -1441,7 +1704,7 @@ public class MapEntries implements
                     }
 
                     final List<MapEntry> special;
-                    if (MapEntries.this.isAllVanityPathEntriesCached()) {
+                    if (MapEntries.this.isAllVanityPathEntriesCached() && MapEntries.this.vanityPathIndex == null) {
                         special = this.resolveMapsMap.get(key);
                     } else {
                         special = MapEntries.this.getMapEntryList(key)
@@ -1513,6 +1776,78 @@ public class MapEntries implements
         return mapEntry;
     }
 
+    /**
+     * Merges the changes into the vanity path index file once enough
+     * changes have been collected.
+     */
+    final class VanityPathIndexTask extends TimerTask {
+        @Override
+        public void run() {
+            final VanityPathIndex index = vanityPathIndex;
+            if (index != null && index.getPendingChanges() >= VANITY_PATH_INDEX_MAX_PENDING_CHANGES) {
+                try {
+                    index.compact();
+                } catch (final IOException e) {
+                    log.warn("Error while compacting the vanity path index", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the vanity path index from a query if the index is new or
+     * has not been closed cleanly, so changes might have been missed.
+     * Until the index is up to date, vanity paths are looked up with a query.
+     */
+    final class VanityPathIndexRefreshTask extends TimerTask {
+        @Override
+        public void run() {
+            final VanityPathIndex index = vanityPathIndex;
+            final MapConfigurationProvider factory = MapEntries.this.factory;
+            if (index == null || factory == null) {
+                return;
+            }
+            ResourceResolver queryResolver = null;
+            try {
+                queryResolver = factory.getServiceResourceResolver(factory.getServiceUserAuthenticationInfo("mapping"));
+                // the query result replaces the changes applied so far
+                final Map<String, List<VanityPathIndex.Entry>> changes = index.getChanges();
+                final VanityPathIndex.Builder builder = buildVanityPathIndex(queryResolver);
+                try {
+                    index.replace(builder, changes);
+                } finally {
+                    builder.close();
+                }
+
+                initializing.lock();
+                try {
+                    // rebuild the bloom filter including the changes applied while building
+                    final byte[] bloomFilter = BloomFilterUtils.createFilter(VANITY_BLOOM_FILTER_MAX_ENTRIES, factory.getVanityBloomFilterMaxBytes());
+                    for (final Iterator<String> i = index.getVanityPaths(); i.hasNext(); ) {
+                        BloomFilterUtils.add(bloomFilter, i.next());
+                    }
+                    vanityBloomFilter = bloomFilter;
+                    updateBloomFilterFile = true;
+                    // the cached entries might be outdated
+                    for (final List<String> vanityPaths : vanityTargets.values()) {
+                        for (final String vanityPath : vanityPaths) {
+                            evictCachedVanityPath(vanityPath);
+                        }
+                    }
+                    vanityTargets.clear();
+                } finally {
+                    initializing.unlock();
+                }
+            } catch (final LoginException | IOException | RuntimeException e) {
+                log.warn("Error while refreshing the vanity path index", e);
+            } finally {
+                if (queryResolver != null) {
+                    queryResolver.close();
+                }
+            }
+        }
+    }
+
     final class BloomFilterTask extends TimerTask {
         @Override
         public void run() {
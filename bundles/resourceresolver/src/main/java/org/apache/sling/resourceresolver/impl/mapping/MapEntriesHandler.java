@@ -47,14 +47,31 @@ public interface MapEntriesHandler {
             return Collections.emptyList();
         }
 
+        @Override
+        public Iterator<MapEntry> getMapMapsIterator(String path) {
+            return Collections.emptyIterator();
+        }
+
         @Override
         public Map<String, String> getAliasMap(String parentPath) {
             return Collections.emptyMap();
         }
+
+        @Override
+        public String getAlias(String parentPath, String name) {
+            return null;
+        }
     };
 
     Map<String, String> getAliasMap(String parentPath);
 
+    /**
+     * Returns the alias of the child resource with the given name below
+     * the given parent or <code>null</code> if the child has no alias.
+     * If the child has several aliases, the first one is returned.
+     */
+    String getAlias(String parentPath, String name);
+
     /**
      * Calculate the resolve maps. As the entries have to be sorted by pattern
      * length, we have to create a new list containing all relevant entries.
@@ -63,6 +80,13 @@ public interface MapEntriesHandler {
 
     Collection<MapEntry> getMapMaps();
 
+    /**
+     * Returns the map entries which might match the given path in the
+     * order of {@link #getMapMaps()}. Entries which can not match the
+     * path are skipped.
+     */
+    Iterator<MapEntry> getMapMapsIterator(String path);
+
     /**
      * This is for the web console plugin
      */
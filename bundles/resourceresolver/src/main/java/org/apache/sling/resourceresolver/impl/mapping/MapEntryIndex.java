@@ -0,0 +1,265 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.mapping;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The <code>MapEntryIndex</code> is a compiled, immutable lookup structure
+ * for an ordered collection of {@link MapEntry} instances.
+ * <p>
+ * Every map entry pattern is anchored at the start of the string. The
+ * literal prefix of each pattern (the characters up to the first regular
+ * expression construct) is stored in a character trie. Looking up a value
+ * walks the trie once along the value and only returns the entries whose
+ * literal prefix is a prefix of the value - all other entries can never
+ * match. Patterns starting with {@link MapEntries#ANY_SCHEME_HOST} are kept
+ * in a second trie which is walked along the path part of the value.
+ * <p>
+ * The candidates are returned in the order of the collection the index has
+ * been built from, so the first matching candidate is the same entry which
+ * would have been found by iterating the full collection. The regular
+ * expression of a candidate still has to be applied by the caller.
+ */
+public class MapEntryIndex {
+
+    /** Regular expression characters ending a literal prefix */
+    private static final String SPECIAL_CHARS = ".[](){}*+?^$|";
+
+    /** Regular expression quantifiers which make the preceding character optional or repeatable */
+    private static final String QUANTIFIERS = "*+?{";
+
+    public static final MapEntryIndex EMPTY = new MapEntryIndex(Collections.<MapEntry> emptyList());
+
+    private final MapEntry[] entries;
+
+    /** Trie of the literal prefixes anchored at the start of the value */
+    private final Node root = new Node();
+
+    /** Trie of the literal prefixes following any scheme and host */
+    private final Node pathRoot = new Node();
+
+    /**
+     * Create a new index.
+     * @param entries The entries in the order in which they have to be applied.
+     */
+    public MapEntryIndex(final Collection<MapEntry> entries) {
+        this.entries = entries.toArray(new MapEntry[entries.size()]);
+        for (int i = 0; i < this.entries.length; i++) {
+            final String pattern = this.entries[i].getPattern();
+            if (pattern.startsWith("^") && pattern.startsWith(MapEntries.ANY_SCHEME_HOST, 1)) {
+                final String prefix = getLiteralPrefix(pattern, 1 + MapEntries.ANY_SCHEME_HOST.length());
+                if (prefix.startsWith("/")) {
+                    pathRoot.add(prefix, i);
+                } else {
+                    root.add("", i);
+                }
+            } else if (pattern.startsWith("^")) {
+                root.add(getLiteralPrefix(pattern, 1), i);
+            } else {
+                root.add("", i);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of entries in this index.
+     */
+    public int size() {
+        return entries.length;
+    }
+
+    /**
+     * Returns an iterator over all entries which might match the given value
+     * in the order of the collection this index has been created from.
+     * @param value The request path or resource path to match
+     * @return An iterator over the candidate entries, never <code>null</code>
+     */
+    public Iterator<MapEntry> getCandidates(final String value) {
+        if (entries.length == 0) {
+            return Collections.emptyIterator();
+        }
+        final IntList candidates = new IntList();
+        root.collect(value, 0, candidates);
+
+        final int firstSlash = value.indexOf('/');
+        final int secondSlash = firstSlash == -1 ? -1 : value.indexOf('/', firstSlash + 1);
+        if (secondSlash != -1) {
+            pathRoot.collect(value, secondSlash, candidates);
+        }
+
+        return new CandidateIterator(entries, candidates.sorted());
+    }
+
+    /**
+     * Returns the literal prefix of the regular expression starting at the
+     * given position. The prefix is empty if the expression contains an
+     * alternation, as in this case no common prefix can be assumed.
+     */
+    static String getLiteralPrefix(final String pattern, final int start) {
+        if (pattern.indexOf('|') != -1) {
+            return "";
+        }
+        final StringBuilder sb = new StringBuilder();
+        int lastLength = 0;
+        int i = start;
+        while (i < pattern.length()) {
+            final char c = pattern.charAt(i);
+            if (c == '\\') {
+                // only escaped non alphanumeric characters are literals
+                if (i + 1 < pattern.length() && !Character.isLetterOrDigit(pattern.charAt(i + 1))) {
+                    lastLength = sb.length();
+                    sb.append(pattern.charAt(i + 1));
+                    i += 2;
+                    continue;
+                }
+                break;
+            }
+            if (SPECIAL_CHARS.indexOf(c) != -1) {
+                if (QUANTIFIERS.indexOf(c) != -1) {
+                    // the quantified character is not part of the literal prefix
+                    sb.setLength(lastLength);
+                }
+                break;
+            }
+            lastLength = sb.length();
+            sb.append(c);
+            i++;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * A node in the literal prefix trie.
+     */
+    private static final class Node {
+
+        private char[] chars = new char[0];
+
+        private Node[] children = new Node[0];
+
+        /** Indexes of the entries whose literal prefix ends at this node */
+        private int[] values = new int[0];
+
+        void add(final String prefix, final int index) {
+            Node current = this;
+            for (int i = 0; i < prefix.length(); i++) {
+                current = current.getOrCreateChild(prefix.charAt(i));
+            }
+            current.values = Arrays.copyOf(current.values, current.values.length + 1);
+            current.values[current.values.length - 1] = index;
+        }
+
+        void collect(final String value, final int start, final IntList result) {
+            Node current = this;
+            int pos = start;
+            while (current != null) {
+                result.addAll(current.values);
+                current = pos < value.length() ? current.getChild(value.charAt(pos)) : null;
+                pos++;
+            }
+        }
+
+        private Node getChild(final char c) {
+            final int pos = Arrays.binarySearch(chars, c);
+            return pos < 0 ? null : children[pos];
+        }
+
+        private Node getOrCreateChild(final char c) {
+            int pos = Arrays.binarySearch(chars, c);
+            if (pos < 0) {
+                pos = -pos - 1;
+                final char[] newChars = new char[chars.length + 1];
+                final Node[] newChildren = new Node[children.length + 1];
+                System.arraycopy(chars, 0, newChars, 0, pos);
+                System.arraycopy(children, 0, newChildren, 0, pos);
+                newChars[pos] = c;
+                newChildren[pos] = new Node();
+                System.arraycopy(chars, pos, newChars, pos + 1, chars.length - pos);
+                System.arraycopy(children, pos, newChildren, pos + 1, children.length - pos);
+                chars = newChars;
+                children = newChildren;
+            }
+            return children[pos];
+        }
+    }
+
+    /**
+     * Minimal growable list of int values.
+     */
+    private static final class IntList {
+
+        private int[] values = new int[8];
+
+        private int size;
+
+        void addAll(final int[] toAdd) {
+            if (toAdd.length == 0) {
+                return;
+            }
+            if (size + toAdd.length > values.length) {
+                values = Arrays.copyOf(values, Math.max(values.length * 2, size + toAdd.length));
+            }
+            System.arraycopy(toAdd, 0, values, size, toAdd.length);
+            size += toAdd.length;
+        }
+
+        int[] sorted() {
+            final int[] result = Arrays.copyOf(values, size);
+            Arrays.sort(result);
+            return result;
+        }
+    }
+
+    private static final class CandidateIterator implements Iterator<MapEntry> {
+
+        private final MapEntry[] entries;
+
+        private final int[] indexes;
+
+        private int pos;
+
+        CandidateIterator(final MapEntry[] entries, final int[] indexes) {
+            this.entries = entries;
+            this.indexes = indexes;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return pos < indexes.length;
+        }
+
+        @Override
+        public MapEntry next() {
+            if (pos >= indexes.length) {
+                throw new NoSuchElementException();
+            }
+            return entries[indexes[pos++]];
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,1360 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.mapping;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The <code>VanityPathIndex</code> is a persisted index of all vanity paths,
+ * mapping each vanity path to the resources defining it.
+ * <p>
+ * The index is kept in a read only file which is memory mapped, so it does
+ * not occupy any heap and a lookup is a binary search over the sorted vanity
+ * paths. Changes are kept in a small in memory overlay, keyed by the path of
+ * the resource defining the vanity paths, and appended to a journal file, so
+ * they survive a restart. {@link #compact()} merges the overlay into a new
+ * generation of the index file.
+ * <p>
+ * An index is up to date if it contains all vanity paths of the resource
+ * tree, provided all changes have been applied since. Closing an up to date
+ * index writes its generation into a marker file; an index opened without
+ * a marker for the opened generation, e.g. after a crash, is not up to date.
+ * <p>
+ * The index file is built by the {@link Builder} with an external merge
+ * sort, so building it does not require to keep all vanity paths in memory.
+ * <p>
+ * Strings are stored in modified UTF-8 (see {@link DataOutputStream#writeUTF(String)}).
+ * The byte order of this encoding is the same as the order of
+ * {@link String#compareTo(String)} for all strings without a null character,
+ * which allows to search the file without decoding the strings.
+ */
+final class VanityPathIndex implements Closeable {
+
+    /** Magic number of the index file: "SVPI" */
+    private static final int MAGIC = 0x53565049;
+
+    private static final int VERSION = 1;
+
+    /** magic, version, entry count, target count, entry table position, target table position */
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 4 + 4 + 4;
+
+    private static final String FILE_PREFIX = "index-";
+
+    private static final String DATA_SUFFIX = ".dat";
+
+    private static final String JOURNAL_SUFFIX = ".journal";
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /** The marker file containing the generation of a cleanly closed index */
+    private static final String CLEAN_FILE = "clean";
+
+    /** Order of the entries in the index file */
+    static final Comparator<Entry> VANITY_PATH_ORDER = new Comparator<Entry>() {
+
+        @Override
+        public int compare(final Entry e1, final Entry e2) {
+            int result = e1.vanityPath.compareTo(e2.vanityPath);
+            if (result == 0) {
+                result = e1.target.compareTo(e2.target);
+            }
+            if (result == 0) {
+                result = e1.prefix.compareTo(e2.prefix);
+            }
+            return result;
+        }
+    };
+
+    /** Order of the targets in the index file */
+    private static final Comparator<Entry> TARGET_ORDER = new Comparator<Entry>() {
+
+        @Override
+        public int compare(final Entry e1, final Entry e2) {
+            return e1.target.compareTo(e2.target);
+        }
+    };
+
+    private static final Comparator<String> STRING_ORDER = new Comparator<String>() {
+
+        @Override
+        public int compare(final String s1, final String s2) {
+            return s1.compareTo(s2);
+        }
+    };
+
+    /** default log */
+    private static final Logger log = LoggerFactory.getLogger(VanityPathIndex.class);
+
+    private final File directory;
+
+    /** The current generation of the index file */
+    private volatile Base base;
+
+    /** The changed targets and their entries, an empty list marks a removed target */
+    private final Map<String, List<Entry>> overlay = new ConcurrentHashMap<>();
+
+    /** The targets in the overlay per vanity path */
+    private final Map<String, Set<String>> overlayTargets = new ConcurrentHashMap<>();
+
+    private final AtomicLong modificationCount = new AtomicLong();
+
+    /** Guards all modifications */
+    private final Object lock = new Object();
+
+    private DataOutputStream journal;
+
+    private boolean closed;
+
+    private volatile boolean upToDate;
+
+    private VanityPathIndex(final File directory, final Base base, final boolean upToDate) {
+        this.directory = directory;
+        this.base = base;
+        this.upToDate = upToDate;
+    }
+
+    /**
+     * Open the latest generation of the index in the directory and replay
+     * its journal. The index is up to date if it has been closed cleanly
+     * with the same generation.
+     * @param directory The directory of the index
+     * @return The index or {@code null} if there is no valid index
+     * @throws IOException If the journal can't be written
+     */
+    static VanityPathIndex open(final File directory) throws IOException {
+        final long cleanGeneration = readCleanGeneration(directory);
+        final List<Long> generations = getGenerations(directory);
+        for (int i = generations.size() - 1; i >= 0; i--) {
+            final long generation = generations.get(i);
+            final Base base;
+            try {
+                base = Base.open(getDataFile(directory, generation), generation);
+            } catch (final IOException e) {
+                log.warn("Ignoring invalid vanity path index generation {}", generation, e);
+                continue;
+            }
+            final VanityPathIndex index = new VanityPathIndex(directory, base, generation == cleanGeneration);
+            index.replayJournal(getJournalFile(directory, generation));
+            synchronized (index.lock) {
+                index.switchJournal(generation);
+            }
+            deleteOtherGenerations(directory, generation);
+            return index;
+        }
+        return null;
+    }
+
+    /**
+     * Create a new index from the builder, replacing any existing index in
+     * the directory.
+     * @param directory The directory of the index
+     * @param builder The builder containing all entries
+     * @return The index
+     * @throws IOException If writing fails
+     */
+    static VanityPathIndex create(final File directory, final Builder builder) throws IOException {
+        return create(directory, builder, true);
+    }
+
+    /**
+     * Create a new empty index, replacing any existing index in the
+     * directory. The index is not up to date until it is replaced with
+     * a complete index.
+     * @param directory The directory of the index
+     * @return The index
+     * @throws IOException If writing fails
+     */
+    static VanityPathIndex createEmpty(final File directory) throws IOException {
+        final Builder builder = new Builder(directory, 1);
+        try {
+            return create(directory, builder, false);
+        } finally {
+            builder.close();
+        }
+    }
+
+    private static VanityPathIndex create(final File directory, final Builder builder, final boolean upToDate)
+    throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create directory " + directory);
+        }
+        new File(directory, CLEAN_FILE).delete();
+        final List<Long> generations = getGenerations(directory);
+        final long generation = generations.isEmpty() ? 1 : generations.get(generations.size() - 1) + 1;
+        final VanityPathIndex index = new VanityPathIndex(directory,
+                Base.write(getDataFile(directory, generation), generation, builder.entries(), builder.targets()),
+                upToDate);
+        synchronized (index.lock) {
+            index.switchJournal(generation);
+        }
+        deleteOtherGenerations(directory, generation);
+        return index;
+    }
+
+    /**
+     * Get all entries for the vanity path.
+     * @param vanityPath The vanity path
+     * @return The entries, sorted by target
+     */
+    List<Entry> get(final String vanityPath) {
+        final List<Entry> result = new ArrayList<>();
+        final byte[] key = encode(vanityPath);
+        if (key != null) {
+            final Base base = this.base;
+            for (int i = base.lowerBound(key); i < base.entryCount && base.compareEntry(i, key) == 0; i++) {
+                final Entry entry = base.getEntry(i);
+                if (!overlay.containsKey(entry.target)) {
+                    result.add(entry);
+                }
+            }
+        }
+        final Set<String> targets = overlayTargets.get(vanityPath);
+        if (targets != null) {
+            for (final String target : targets) {
+                final List<Entry> entries = overlay.get(target);
+                if (entries != null) {
+                    for (final Entry entry : entries) {
+                        if (entry.vanityPath.equals(vanityPath)) {
+                            result.add(entry);
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get all targets with vanity paths at or below the path.
+     * @param path The path
+     * @return The targets
+     */
+    Collection<String> getTargets(final String path) {
+        final Set<String> result = new TreeSet<>();
+        final byte[] key = encode(path);
+        if (key != null) {
+            final Base base = this.base;
+            for (int i = base.targetLowerBound(key); i < base.targetCount; i++) {
+                final String target = base.getTarget(i);
+                if (!target.startsWith(path)) {
+                    break;
+                }
+                if (isDescendantOrSelf(target, path) && !overlay.containsKey(target)) {
+                    result.add(target);
+                }
+            }
+        }
+        for (final Map.Entry<String, List<Entry>> entry : overlay.entrySet()) {
+            if (!entry.getValue().isEmpty() && isDescendantOrSelf(entry.getKey(), path)) {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Iterate over all vanity paths in the index. A vanity path might be
+     * returned more than once.
+     */
+    Iterator<String> getVanityPaths() {
+        final Base base = this.base;
+        final Iterator<String> overlayPaths = new ArrayList<>(overlayTargets.keySet()).iterator();
+        return new LookAheadIterator<String>() {
+
+            private int next;
+
+            @Override
+            protected String seek() {
+                if (next < base.entryCount) {
+                    return base.getVanityPath(next++);
+                }
+                return overlayPaths.hasNext() ? overlayPaths.next() : null;
+            }
+        };
+    }
+
+    /**
+     * Set the entries of a target, replacing all previous entries.
+     * @param target The target path
+     * @param entries The entries, an empty list removes the target
+     * @throws IOException If the change can't be written to the journal.
+     *         The change is applied anyway.
+     */
+    void put(final String target, final List<Entry> entries) throws IOException {
+        final List<Entry> value = entries.isEmpty() ? Collections.<Entry> emptyList()
+                : Collections.unmodifiableList(new ArrayList<>(entries));
+        synchronized (lock) {
+            setOverlay(target, value);
+            modificationCount.incrementAndGet();
+            if (journal != null) {
+                writeJournalRecord(journal, target, value);
+                journal.flush();
+            }
+        }
+    }
+
+    /**
+     * Remove all entries of a target.
+     * @param target The target path
+     * @return {@code true} if the target had entries
+     * @throws IOException If the change can't be written to the journal.
+     *         The change is applied anyway.
+     */
+    boolean remove(final String target) throws IOException {
+        final List<Entry> entries = overlay.get(target);
+        final boolean exists = entries != null ? !entries.isEmpty() : base.containsTarget(target);
+        if (exists) {
+            put(target, Collections.<Entry> emptyList());
+        }
+        return exists;
+    }
+
+    /**
+     * @return {@code true} if the index contains all vanity paths
+     */
+    boolean isUpToDate() {
+        return upToDate;
+    }
+
+    /**
+     * The modification count is increased by every change, it can be used
+     * to detect concurrent changes.
+     */
+    long getModificationCount() {
+        return modificationCount.get();
+    }
+
+    /**
+     * @return The number of changed targets not yet merged into the index file
+     */
+    int getPendingChanges() {
+        return overlay.size();
+    }
+
+    /**
+     * Merge the changes into a new generation of the index file. The index
+     * can be read and changed while the file is written.
+     * @return {@code true} if a new generation has been written
+     * @throws IOException If writing fails
+     */
+    boolean compact() throws IOException {
+        final Map<String, List<Entry>> snapshot;
+        final Base current;
+        synchronized (lock) {
+            if (closed || overlay.isEmpty()) {
+                return false;
+            }
+            snapshot = new HashMap<>(overlay);
+            current = base;
+        }
+
+        final List<Entry> changedEntries = new ArrayList<>();
+        final List<String> changedTargets = new ArrayList<>();
+        for (final Map.Entry<String, List<Entry>> entry : snapshot.entrySet()) {
+            changedEntries.addAll(entry.getValue());
+            if (!entry.getValue().isEmpty()) {
+                changedTargets.add(entry.getKey());
+            }
+        }
+        Collections.sort(changedEntries, VANITY_PATH_ORDER);
+        Collections.sort(changedTargets);
+
+        final Iterator<Entry> entries = merge(Arrays.<Iterator<Entry>> asList(new LookAheadIterator<Entry>() {
+
+            private int next;
+
+            @Override
+            protected Entry seek() {
+                while (next < current.entryCount) {
+                    final Entry entry = current.getEntry(next++);
+                    if (!snapshot.containsKey(entry.target)) {
+                        return entry;
+                    }
+                }
+                return null;
+            }
+        }, changedEntries.iterator()), VANITY_PATH_ORDER, false);
+        final Iterator<String> targets = merge(Arrays.<Iterator<String>> asList(new LookAheadIterator<String>() {
+
+            private int next;
+
+            @Override
+            protected String seek() {
+                while (next < current.targetCount) {
+                    final String target = current.getTarget(next++);
+                    if (!snapshot.containsKey(target)) {
+                        return target;
+                    }
+                }
+                return null;
+            }
+        }, changedTargets.iterator()), STRING_ORDER, true);
+
+        final long generation = current.generation + 1;
+        final Base next = Base.write(getDataFile(directory, generation), generation, entries, targets);
+
+        synchronized (lock) {
+            if (closed || base != current) {
+                getDataFile(directory, generation).delete();
+                return false;
+            }
+            this.base = next;
+            for (final Map.Entry<String, List<Entry>> entry : snapshot.entrySet()) {
+                if (overlay.get(entry.getKey()) == entry.getValue()) {
+                    setOverlay(entry.getKey(), null);
+                }
+            }
+            switchJournal(generation);
+        }
+        deleteGeneration(directory, current.generation);
+        return true;
+    }
+
+    /**
+     * Get a snapshot of the changes not yet merged into the index file.
+     * @return The changed targets and their entries
+     */
+    Map<String, List<Entry>> getChanges() {
+        synchronized (lock) {
+            return new HashMap<>(overlay);
+        }
+    }
+
+    /**
+     * Replace the index file with a new one, built from the builder. The
+     * changes not yet merged into the current index file are kept and the
+     * index is up to date afterwards.
+     * @param builder The builder containing all entries
+     * @throws IOException If writing fails
+     */
+    void replace(final Builder builder) throws IOException {
+        replace(builder, Collections.<String, List<Entry>> emptyMap());
+    }
+
+    /**
+     * Replace the index file with a new one, built from the builder. The
+     * changes of the snapshot, taken before the builder has been filled,
+     * are dropped unless they have been changed again. All other changes
+     * not yet merged into the current index file are kept and the index is
+     * up to date afterwards.
+     * @param builder The builder containing all entries
+     * @param snapshot The changes contained in the builder, see {@link #getChanges()}
+     * @throws IOException If writing fails
+     */
+    void replace(final Builder builder, final Map<String, List<Entry>> snapshot) throws IOException {
+        final Base current = this.base;
+        final long generation = current.generation + 1;
+        final Base next = Base.write(getDataFile(directory, generation), generation, builder.entries(), builder.targets());
+        synchronized (lock) {
+            if (closed || base != current) {
+                getDataFile(directory, generation).delete();
+                return;
+            }
+            this.base = next;
+            this.upToDate = true;
+            for (final Map.Entry<String, List<Entry>> entry : snapshot.entrySet()) {
+                if (overlay.get(entry.getKey()) == entry.getValue()) {
+                    setOverlay(entry.getKey(), null);
+                }
+            }
+            modificationCount.incrementAndGet();
+            switchJournal(generation);
+        }
+        deleteGeneration(directory, current.generation);
+    }
+
+    /**
+     * Close the index. If the index is up to date and all changes have been
+     * written, the generation is recorded as cleanly closed.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (journal != null) {
+                journal.close();
+                journal = null;
+                if (upToDate) {
+                    final DataOutputStream out = new DataOutputStream(new FileOutputStream(new File(directory, CLEAN_FILE)));
+                    try {
+                        out.writeLong(base.generation);
+                    } finally {
+                        out.close();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Delete the index in the directory.
+     * @param directory The directory of the index
+     */
+    static void delete(final File directory) {
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    /**
+     * Read and remove the marker of a cleanly closed index. From now on the
+     * index is open and a crash must not leave the marker behind.
+     * @return The generation of the cleanly closed index or {@code -1}
+     */
+    private static long readCleanGeneration(final File directory) {
+        final File file = new File(directory, CLEAN_FILE);
+        long generation = -1;
+        if (file.exists()) {
+            try {
+                final DataInputStream in = new DataInputStream(new FileInputStream(file));
+                try {
+                    generation = in.readLong();
+                } finally {
+                    in.close();
+                }
+            } catch (final IOException e) {
+                log.debug("Ignoring invalid marker {}", file, e);
+            }
+            file.delete();
+        }
+        return generation;
+    }
+
+    private void setOverlay(final String target, final List<Entry> value) {
+        final List<Entry> old = value == null ? overlay.remove(target) : overlay.put(target, value);
+        if (old != null) {
+            for (final Entry entry : old) {
+                final Set<String> targets = overlayTargets.get(entry.vanityPath);
+                if (targets != null) {
+                    targets.remove(target);
+                    if (targets.isEmpty()) {
+                        overlayTargets.remove(entry.vanityPath);
+                    }
+                }
+            }
+        }
+        if (value != null) {
+            for (final Entry entry : value) {
+                Set<String> targets = overlayTargets.get(entry.vanityPath);
+                if (targets == null) {
+                    targets = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+                    overlayTargets.put(entry.vanityPath, targets);
+                }
+                targets.add(target);
+            }
+        }
+    }
+
+    private void replayJournal(final File file) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            while (true) {
+                final String target = in.readUTF();
+                final int count = in.readInt();
+                final List<Entry> entries = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    entries.add(new Entry(in.readUTF(), in.readUTF(), target, in.readInt(), in.readLong()));
+                }
+                setOverlay(target, entries.isEmpty() ? Collections.<Entry> emptyList()
+                        : Collections.unmodifiableList(entries));
+            }
+        } catch (final EOFException e) {
+            // end of the journal, a partially written last record is ignored
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Write the current overlay into the journal of the generation and
+     * append all further changes to it. Must be called with the lock held.
+     */
+    private void switchJournal(final long generation) throws IOException {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+        final File file = getJournalFile(directory, generation);
+        final File temp = new File(file.getPath() + TEMP_SUFFIX);
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            for (final Map.Entry<String, List<Entry>> entry : overlay.entrySet()) {
+                writeJournalRecord(out, entry.getKey(), entry.getValue());
+            }
+        } finally {
+            out.close();
+        }
+        file.delete();
+        if (!temp.renameTo(file)) {
+            throw new IOException("Unable to rename " + temp + " to " + file);
+        }
+        journal = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+    }
+
+    private static void writeJournalRecord(final DataOutputStream out, final String target, final List<Entry> entries)
+    throws IOException {
+        out.writeUTF(target);
+        out.writeInt(entries.size());
+        for (final Entry entry : entries) {
+            out.writeUTF(entry.vanityPath);
+            out.writeUTF(entry.prefix);
+            out.writeInt(entry.status);
+            out.writeLong(entry.order);
+        }
+    }
+
+    private static boolean isDescendantOrSelf(final String target, final String path) {
+        return target.startsWith(path)
+                && (target.length() == path.length() || target.charAt(path.length()) == '/' || path.endsWith("/"));
+    }
+
+    /**
+     * Encode the string in modified UTF-8, without the length.
+     * @return The encoded string or {@code null} if it is too long to be stored
+     */
+    private static byte[] encode(final String value) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(value.length() + 2);
+        try {
+            new DataOutputStream(bytes).writeUTF(value);
+        } catch (final IOException e) {
+            return null;
+        }
+        final byte[] result = new byte[bytes.size() - 2];
+        System.arraycopy(bytes.toByteArray(), 2, result, 0, result.length);
+        return result;
+    }
+
+    private static File getDataFile(final File directory, final long generation) {
+        return new File(directory, FILE_PREFIX + generation + DATA_SUFFIX);
+    }
+
+    private static File getJournalFile(final File directory, final long generation) {
+        return new File(directory, FILE_PREFIX + generation + JOURNAL_SUFFIX);
+    }
+
+    /**
+     * @return The sorted generations of the index files in the directory
+     */
+    private static List<Long> getGenerations(final File directory) {
+        final List<Long> generations = new ArrayList<>();
+        final String[] names = directory.list();
+        if (names != null) {
+            for (final String name : names) {
+                if (name.startsWith(FILE_PREFIX) && name.endsWith(DATA_SUFFIX)) {
+                    try {
+                        generations.add(Long.parseLong(
+                                name.substring(FILE_PREFIX.length(), name.length() - DATA_SUFFIX.length())));
+                    } catch (final NumberFormatException e) {
+                        // not an index file
+                    }
+                }
+            }
+        }
+        Collections.sort(generations);
+        return generations;
+    }
+
+    private static void deleteGeneration(final File directory, final long generation) {
+        // on some platforms a file which is still mapped can't be deleted,
+        // it is deleted the next time the index is opened or created
+        getDataFile(directory, generation).delete();
+        getJournalFile(directory, generation).delete();
+    }
+
+    private static void deleteOtherGenerations(final File directory, final long generation) {
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            final String dataName = getDataFile(directory, generation).getName();
+            final String journalName = getJournalFile(directory, generation).getName();
+            for (final File file : files) {
+                // the directory only contains the index, remove old generations and left over temporary files
+                if (!file.getName().equals(dataName) && !file.getName().equals(journalName)) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Merge sorted iterators.
+     * @param sources The sorted iterators
+     * @param comparator The order of the iterators
+     * @param distinct Whether to skip duplicates
+     * @return The merged iterator
+     */
+    private static <T> Iterator<T> merge(final List<Iterator<T>> sources, final Comparator<? super T> comparator,
+            final boolean distinct) {
+        final PriorityQueue<PeekingIterator<T>> queue = new PriorityQueue<>(Math.max(1, sources.size()),
+                new Comparator<PeekingIterator<T>>() {
+
+            @Override
+            public int compare(final PeekingIterator<T> i1, final PeekingIterator<T> i2) {
+                return comparator.compare(i1.peek(), i2.peek());
+            }
+        });
+        for (final Iterator<T> source : sources) {
+            if (source.hasNext()) {
+                queue.add(new PeekingIterator<>(source));
+            }
+        }
+        return new LookAheadIterator<T>() {
+
+            private T last;
+
+            @Override
+            protected T seek() {
+                while (!queue.isEmpty()) {
+                    final PeekingIterator<T> source = queue.poll();
+                    final T value = source.next();
+                    if (source.hasNext()) {
+                        queue.add(source);
+                    }
+                    if (!distinct || last == null || comparator.compare(last, value) != 0) {
+                        last = value;
+                        return value;
+                    }
+                }
+                return null;
+            }
+        };
+    }
+
+    /**
+     * A vanity path of a target resource.
+     */
+    static final class Entry {
+
+        /** The vanity path, without scheme and host */
+        final String vanityPath;
+
+        /** The scheme and host pattern of the vanity path */
+        final String prefix;
+
+        /** The path of the target resource */
+        final String target;
+
+        /** The redirect status or -1 for an internal redirect */
+        final int status;
+
+        /** The vanity order */
+        final long order;
+
+        Entry(final String vanityPath, final String prefix, final String target, final int status, final long order) {
+            this.vanityPath = vanityPath;
+            this.prefix = prefix;
+            this.target = target;
+            this.status = status;
+            this.order = order;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Entry)) {
+                return false;
+            }
+            final Entry other = (Entry) obj;
+            return vanityPath.equals(other.vanityPath) && prefix.equals(other.prefix) && target.equals(other.target)
+                    && status == other.status && order == other.order;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * vanityPath.hashCode() + prefix.hashCode()) + target.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "Entry [vanityPath=" + vanityPath + ", prefix=" + prefix + ", target=" + target + ", status="
+                    + status + ", order=" + order + "]";
+        }
+    }
+
+    /**
+     * Collects the entries for a new index file. The entries are sorted in
+     * chunks, and all chunks but the last one are written to temporary run
+     * files in the directory. The runs are merged while the index file is
+     * written.
+     */
+    static final class Builder implements Closeable {
+
+        private final File directory;
+
+        private final int chunkSize;
+
+        private final List<Entry> chunk = new ArrayList<>();
+
+        private final List<File> entryRuns = new ArrayList<>();
+
+        private final List<File> targetRuns = new ArrayList<>();
+
+        private final List<Closeable> readers = new ArrayList<>();
+
+        /**
+         * @param directory The directory for the temporary files
+         * @param chunkSize The maximum number of entries kept in memory
+         */
+        Builder(final File directory, final int chunkSize) {
+            this.directory = directory;
+            this.chunkSize = chunkSize;
+        }
+
+        void add(final Entry entry) throws IOException {
+            chunk.add(entry);
+            if (chunk.size() >= chunkSize) {
+                Collections.sort(chunk, VANITY_PATH_ORDER);
+                entryRuns.add(writeRun(chunk));
+                Collections.sort(chunk, TARGET_ORDER);
+                targetRuns.add(writeRun(chunk));
+                chunk.clear();
+            }
+        }
+
+        @Override
+        public void close() {
+            for (final Closeable reader : readers) {
+                try {
+                    reader.close();
+                } catch (final IOException ignore) {
+                    // ignore
+                }
+            }
+            readers.clear();
+            for (final File run : entryRuns) {
+                run.delete();
+            }
+            for (final File run : targetRuns) {
+                run.delete();
+            }
+            entryRuns.clear();
+            targetRuns.clear();
+            chunk.clear();
+        }
+
+        private Iterator<Entry> entries() throws IOException {
+            final List<Entry> last = new ArrayList<>(chunk);
+            Collections.sort(last, VANITY_PATH_ORDER);
+            return merge(openRuns(entryRuns, last), VANITY_PATH_ORDER, false);
+        }
+
+        private Iterator<String> targets() throws IOException {
+            final List<Entry> last = new ArrayList<>(chunk);
+            Collections.sort(last, TARGET_ORDER);
+            final Iterator<Entry> entries = merge(openRuns(targetRuns, last), TARGET_ORDER, true);
+            return new LookAheadIterator<String>() {
+
+                @Override
+                protected String seek() {
+                    return entries.hasNext() ? entries.next().target : null;
+                }
+            };
+        }
+
+        private List<Iterator<Entry>> openRuns(final List<File> runs, final List<Entry> last) throws IOException {
+            final List<Iterator<Entry>> sources = new ArrayList<>();
+            for (final File run : runs) {
+                final RunReader reader = new RunReader(run);
+                readers.add(reader);
+                sources.add(reader);
+            }
+            sources.add(last.iterator());
+            return sources;
+        }
+
+        private File writeRun(final List<Entry> entries) throws IOException {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Unable to create directory " + directory);
+            }
+            final File run = File.createTempFile("run-", TEMP_SUFFIX, directory);
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run)));
+            try {
+                out.writeInt(entries.size());
+                for (final Entry entry : entries) {
+                    out.writeUTF(entry.vanityPath);
+                    out.writeUTF(entry.prefix);
+                    out.writeUTF(entry.target);
+                    out.writeInt(entry.status);
+                    out.writeLong(entry.order);
+                }
+            } finally {
+                out.close();
+            }
+            return run;
+        }
+    }
+
+    /**
+     * Reads a sorted run written by the {@link Builder}.
+     */
+    private static final class RunReader extends LookAheadIterator<Entry> implements Closeable {
+
+        private final DataInputStream in;
+
+        private int remaining;
+
+        RunReader(final File run) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(run)));
+            this.remaining = in.readInt();
+        }
+
+        @Override
+        protected Entry seek() {
+            if (remaining == 0) {
+                return null;
+            }
+            remaining--;
+            try {
+                return new Entry(in.readUTF(), in.readUTF(), in.readUTF(), in.readInt(), in.readLong());
+            } catch (final IOException e) {
+                throw new IndexException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * A generation of the index file.
+     * <p>
+     * The file starts with the header, followed by the entries sorted by
+     * {@link VanityPathIndex#VANITY_PATH_ORDER}, the sorted distinct targets,
+     * and the tables with the positions of the entries and the targets.
+     */
+    private static final class Base {
+
+        final long generation;
+
+        final int entryCount;
+
+        final int targetCount;
+
+        private final ByteBuffer buffer;
+
+        private final int entryTable;
+
+        private final int targetTable;
+
+        private Base(final long generation, final ByteBuffer buffer) throws IOException {
+            this.generation = generation;
+            this.buffer = buffer;
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("Not a vanity path index file");
+            }
+            this.entryCount = buffer.getInt(8);
+            this.targetCount = buffer.getInt(12);
+            this.entryTable = buffer.getInt(16);
+            this.targetTable = buffer.getInt(20);
+            if (entryCount < 0 || targetCount < 0 || entryTable < HEADER_SIZE
+                    || (long) entryTable + 4L * entryCount > targetTable
+                    || (long) targetTable + 4L * targetCount != buffer.capacity()) {
+                throw new IOException("Corrupt vanity path index file");
+            }
+        }
+
+        static Base open(final File file, final long generation) throws IOException {
+            final RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                final FileChannel channel = raf.getChannel();
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new IOException("Vanity path index file too large: " + file);
+                }
+                return new Base(generation, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            } finally {
+                raf.close();
+            }
+        }
+
+        /**
+         * Write a new index file and open it.
+         * @param file The file
+         * @param generation The generation
+         * @param entries The entries, sorted by {@link VanityPathIndex#VANITY_PATH_ORDER}
+         * @param targets The distinct targets, sorted
+         * @return The index file
+         * @throws IOException If writing fails
+         */
+        static Base write(final File file, final long generation, final Iterator<Entry> entries,
+                final Iterator<String> targets) throws IOException {
+            final File temp = new File(file.getPath() + TEMP_SUFFIX);
+            final File entryPositions = new File(file.getPath() + ".entries" + TEMP_SUFFIX);
+            final File targetPositions = new File(file.getPath() + ".targets" + TEMP_SUFFIX);
+            try {
+                int entryCount = 0;
+                int targetCount = 0;
+                final CountingOutputStream counter = new CountingOutputStream(new FileOutputStream(temp));
+                final DataOutputStream out = new DataOutputStream(counter);
+                try {
+                    out.write(new byte[HEADER_SIZE]);
+                    final DataOutputStream entryOut = new DataOutputStream(
+                            new BufferedOutputStream(new FileOutputStream(entryPositions)));
+                    try {
+                        while (entries.hasNext()) {
+                            final Entry entry = entries.next();
+                            entryOut.writeInt(counter.getPosition());
+                            out.writeUTF(entry.vanityPath);
+                            out.writeUTF(entry.target);
+                            out.writeUTF(entry.prefix);
+                            out.writeInt(entry.status);
+                            out.writeLong(entry.order);
+                            entryCount++;
+                        }
+                    } finally {
+                        entryOut.close();
+                    }
+                    final DataOutputStream targetOut = new DataOutputStream(
+                            new BufferedOutputStream(new FileOutputStream(targetPositions)));
+                    try {
+                        while (targets.hasNext()) {
+                            targetOut.writeInt(counter.getPosition());
+                            out.writeUTF(targets.next());
+                            targetCount++;
+                        }
+                    } finally {
+                        targetOut.close();
+                    }
+                    final int entryTable = counter.getPosition();
+                    copy(entryPositions, out);
+                    final int targetTable = counter.getPosition();
+                    copy(targetPositions, out);
+                    out.flush();
+                    // fails if the file can't be mapped
+                    counter.getPosition();
+
+                    final RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+                    try {
+                        raf.writeInt(MAGIC);
+                        raf.writeInt(VERSION);
+                        raf.writeInt(entryCount);
+                        raf.writeInt(targetCount);
+                        raf.writeInt(entryTable);
+                        raf.writeInt(targetTable);
+                        raf.getChannel().force(true);
+                    } finally {
+                        raf.close();
+                    }
+                } finally {
+                    out.close();
+                }
+            } catch (final IndexException e) {
+                temp.delete();
+                throw e.getCause();
+            } catch (final IOException e) {
+                temp.delete();
+                throw e;
+            } finally {
+                entryPositions.delete();
+                targetPositions.delete();
+            }
+            file.delete();
+            if (!temp.renameTo(file)) {
+                throw new IOException("Unable to rename " + temp + " to " + file);
+            }
+            return open(file, generation);
+        }
+
+        private static void copy(final File file, final OutputStream out) throws IOException {
+            final InputStream in = new FileInputStream(file);
+            try {
+                final byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            } finally {
+                in.close();
+            }
+        }
+
+        boolean containsTarget(final String target) {
+            final byte[] key = encode(target);
+            if (key == null) {
+                return false;
+            }
+            final int index = targetLowerBound(key);
+            return index < targetCount && compare(getTargetPosition(index), key) == 0;
+        }
+
+        /**
+         * @return The index of the first entry with a vanity path not lower than the key
+         */
+        int lowerBound(final byte[] key) {
+            int low = 0;
+            int high = entryCount;
+            while (low < high) {
+                final int mid = (low + high) >>> 1;
+                if (compareEntry(mid, key) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * @return The index of the first target not lower than the key
+         */
+        int targetLowerBound(final byte[] key) {
+            int low = 0;
+            int high = targetCount;
+            while (low < high) {
+                final int mid = (low + high) >>> 1;
+                if (compare(getTargetPosition(mid), key) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        int compareEntry(final int index, final byte[] key) {
+            return compare(getEntryPosition(index), key);
+        }
+
+        Entry getEntry(final int index) {
+            int pos = getEntryPosition(index);
+            final String vanityPath = readString(pos);
+            pos += 2 + getLength(pos);
+            final String target = readString(pos);
+            pos += 2 + getLength(pos);
+            final String prefix = readString(pos);
+            pos += 2 + getLength(pos);
+            return new Entry(vanityPath, prefix, target, buffer.getInt(pos), buffer.getLong(pos + 4));
+        }
+
+        String getVanityPath(final int index) {
+            return readString(getEntryPosition(index));
+        }
+
+        String getTarget(final int index) {
+            return readString(getTargetPosition(index));
+        }
+
+        private int getEntryPosition(final int index) {
+            return buffer.getInt(entryTable + 4 * index);
+        }
+
+        private int getTargetPosition(final int index) {
+            return buffer.getInt(targetTable + 4 * index);
+        }
+
+        private int getLength(final int pos) {
+            return buffer.getShort(pos) & 0xFFFF;
+        }
+
+        /**
+         * Compare the string at the position with the encoded key, byte by
+         * byte and without decoding the string.
+         */
+        private int compare(final int pos, final byte[] key) {
+            final int length = getLength(pos);
+            final int min = Math.min(length, key.length);
+            for (int i = 0; i < min; i++) {
+                final int result = (buffer.get(pos + 2 + i) & 0xFF) - (key[i] & 0xFF);
+                if (result != 0) {
+                    return result;
+                }
+            }
+            return length - key.length;
+        }
+
+        private String readString(final int pos) {
+            final byte[] bytes = new byte[2 + getLength(pos)];
+            final ByteBuffer source = buffer.duplicate();
+            source.position(pos);
+            source.get(bytes);
+            try {
+                return new DataInputStream(new ByteArrayInputStream(bytes)).readUTF();
+            } catch (final IOException e) {
+                throw new IndexException(e);
+            }
+        }
+    }
+
+    /**
+     * Output stream keeping track of the number of bytes written, failing
+     * if the index file would exceed the size which can be mapped.
+     */
+    private static final class CountingOutputStream extends BufferedOutputStream {
+
+        private long position;
+
+        CountingOutputStream(final OutputStream out) {
+            super(out, 65536);
+        }
+
+        int getPosition() throws IOException {
+            if (position > Integer.MAX_VALUE) {
+                throw new IOException("Vanity path index file too large");
+            }
+            return (int) position;
+        }
+
+        @Override
+        public synchronized void write(final int b) throws IOException {
+            super.write(b);
+            position++;
+        }
+
+        @Override
+        public synchronized void write(final byte[] b, final int off, final int len) throws IOException {
+            super.write(b, off, len);
+            position += len;
+        }
+    }
+
+    /**
+     * Unchecked wrapper for an {@link IOException} while iterating.
+     */
+    private static final class IndexException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        IndexException(final IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+
+    private static final class PeekingIterator<T> implements Iterator<T> {
+
+        private final Iterator<T> delegate;
+
+        private T next;
+
+        PeekingIterator(final Iterator<T> delegate) {
+            this.delegate = delegate;
+            this.next = delegate.next();
+        }
+
+        T peek() {
+            return next;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            final T result = next;
+            next = delegate.hasNext() ? delegate.next() : null;
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Base class for iterators computing the next element on demand.
+     */
+    private abstract static class LookAheadIterator<T> implements Iterator<T> {
+
+        private T next;
+
+        /**
+         * @return The next element or {@code null} at the end
+         */
+        protected abstract T seek();
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = seek();
+            }
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final T result = next;
+            next = null;
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,403 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.observation;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.api.resource.observation.ExternalResourceChangeListener;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Queue delivering the changes for a resource change listener asynchronously.
+ * <p>
+ * Changes are added to a bounded queue and delivered in order by a thread of the
+ * shared executor, never more than one thread delivering to the same listener.
+ * While changes are queued, changes of the same path and origin (local or external)
+ * are coalesced like the JCR resource listener does within an observation batch: a
+ * change of a path already queued is dropped, an addition replaces a queued change
+ * and a removal replaces a queued addition or change. Provider changes are not
+ * coalesced.
+ * <p>
+ * If the queue is full, the thread reporting the changes waits until the listener
+ * has caught up. A thread delivering changes to a listener never waits, as the
+ * listener it is waiting for might need the same dispatcher threads, the queue
+ * exceeds its capacity instead. The number and duration of these waits are
+ * counted, as well as the time spent by the listener.
+ */
+public class ResourceChangeListenerQueue implements ResourceChangeListener {
+
+    /** Marks the threads delivering changes, they never wait for a queue. */
+    private static final ThreadLocal<Boolean> DELIVERING = new ThreadLocal<>();
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final ResourceChangeListener listener;
+
+    private final String[] searchPath;
+
+    private final Executor executor;
+
+    private final int capacity;
+
+    /** The queued changes, by path, type and origin for the resource changes. */
+    private final Map<Object, ResourceChange> queue = new LinkedHashMap<>();
+
+    private final Runnable delivery = new Runnable() {
+
+        @Override
+        public void run() {
+            deliver();
+        }
+    };
+
+    /** Whether a delivery is scheduled or running. */
+    private boolean scheduled;
+
+    private boolean closed;
+
+    private long queuedCount;
+
+    private long coalescedCount;
+
+    private long deliveredCount;
+
+    private long deliveryCount;
+
+    private long failureCount;
+
+    private long waitCount;
+
+    private long waitTime;
+
+    private long processingTime;
+
+    private long maxProcessingTime;
+
+    private int maxQueueSize;
+
+    /**
+     * Create a queue for a listener
+     * @param listener The listener
+     * @param searchPath The search path
+     * @param executor The executor delivering the changes
+     * @param capacity The maximum number of queued changes
+     * @return The queue, an external resource change listener if the listener is one
+     */
+    public static ResourceChangeListenerQueue create(final ResourceChangeListener listener,
+            final String[] searchPath,
+            final Executor executor,
+            final int capacity) {
+        if ( listener instanceof ExternalResourceChangeListener ) {
+            return new External(listener, searchPath, executor, capacity);
+        }
+        return new ResourceChangeListenerQueue(listener, searchPath, executor, capacity);
+    }
+
+    ResourceChangeListenerQueue(final ResourceChangeListener listener,
+            final String[] searchPath,
+            final Executor executor,
+            final int capacity) {
+        this.listener = listener;
+        this.searchPath = searchPath;
+        this.executor = executor;
+        this.capacity = Math.max(1, capacity);
+    }
+
+    @Override
+    public void onChange(final List<ResourceChange> changes) {
+        final boolean delivering = DELIVERING.get() != null;
+        synchronized ( this ) {
+            for(final ResourceChange change : changes) {
+                if ( queue.size() >= capacity && !delivering ) {
+                    final long start = System.nanoTime();
+                    waitCount++;
+                    schedule();
+                    while ( queue.size() >= capacity && !closed ) {
+                        try {
+                            this.wait();
+                        } catch (final InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            logger.warn("Interrupted while waiting for resource change listener {}, changes are dropped", listener);
+                            return;
+                        }
+                    }
+                    waitTime += System.nanoTime() - start;
+                }
+                if ( closed ) {
+                    return;
+                }
+                add(change);
+            }
+            maxQueueSize = Math.max(maxQueueSize, queue.size());
+            schedule();
+        }
+    }
+
+    /**
+     * Add a change to the queue, coalescing it with the queued changes of its path.
+     */
+    private void add(final ResourceChange change) {
+        queuedCount++;
+        final String path = change.getPath();
+        final boolean external = change.isExternal();
+        switch ( change.getType() ) {
+            case CHANGED:
+                if ( queue.containsKey(new Key(path, ChangeType.ADDED, external))
+                     || queue.containsKey(new Key(path, ChangeType.REMOVED, external))
+                     || queue.containsKey(new Key(path, ChangeType.CHANGED, external)) ) {
+                    coalescedCount++;
+                    return;
+                }
+                break;
+            case ADDED:
+                coalesce(path, ChangeType.CHANGED, external);
+                if ( queue.containsKey(new Key(path, ChangeType.ADDED, external)) ) {
+                    coalescedCount++;
+                    return;
+                }
+                break;
+            case REMOVED:
+                coalesce(path, ChangeType.ADDED, external);
+                coalesce(path, ChangeType.CHANGED, external);
+                if ( queue.containsKey(new Key(path, ChangeType.REMOVED, external)) ) {
+                    coalescedCount++;
+                    return;
+                }
+                break;
+            default:
+                // provider changes are delivered as they are
+                queue.put(new Object(), change);
+                return;
+        }
+        queue.put(new Key(path, change.getType(), external), change);
+    }
+
+    private void coalesce(final String path, final ChangeType type, final boolean external) {
+        if ( queue.remove(new Key(path, type, external)) != null ) {
+            coalescedCount++;
+        }
+    }
+
+    /**
+     * Schedule a delivery unless one is already scheduled.
+     */
+    private void schedule() {
+        if ( !scheduled && !closed && !queue.isEmpty() ) {
+            scheduled = true;
+            try {
+                executor.execute(delivery);
+            } catch (final RejectedExecutionException e) {
+                logger.warn("Unable to deliver changes to resource change listener {}", listener, e);
+                scheduled = false;
+            }
+        }
+    }
+
+    /**
+     * Deliver the queued changes to the listener.
+     */
+    private void deliver() {
+        final ResourceChangeListImpl changes = new ResourceChangeListImpl(this.searchPath);
+        synchronized ( this ) {
+            if ( closed ) {
+                scheduled = false;
+                return;
+            }
+            for(final ResourceChange change : queue.values()) {
+                changes.add(change);
+            }
+            queue.clear();
+            this.notifyAll();
+        }
+        changes.lock();
+        final long start = System.nanoTime();
+        boolean failed = false;
+        DELIVERING.set(Boolean.TRUE);
+        try {
+            listener.onChange(changes);
+        } catch (final Throwable t) {
+            failed = true;
+            logger.warn("Resource change listener " + listener + " failed to process changes", t);
+        } finally {
+            DELIVERING.remove();
+            final long time = System.nanoTime() - start;
+            synchronized ( this ) {
+                deliveredCount += changes.size();
+                deliveryCount++;
+                if ( failed ) {
+                    failureCount++;
+                }
+                processingTime += time;
+                maxProcessingTime = Math.max(maxProcessingTime, time);
+                // other listeners get a chance to be delivered before the next changes
+                scheduled = false;
+                schedule();
+            }
+        }
+    }
+
+    /**
+     * Close the queue, the queued changes are dropped.
+     */
+    public synchronized void close() {
+        closed = true;
+        queue.clear();
+        this.notifyAll();
+    }
+
+    /**
+     * @return The listener
+     */
+    public ResourceChangeListener getListener() {
+        return this.listener;
+    }
+
+    /**
+     * @return The number of queued changes
+     */
+    public synchronized int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * @return The maximum number of changes which have been queued at once
+     */
+    public synchronized int getMaxQueueSize() {
+        return maxQueueSize;
+    }
+
+    /**
+     * @return The number of changes reported for the listener
+     */
+    public synchronized long getQueuedCount() {
+        return queuedCount;
+    }
+
+    /**
+     * @return The number of changes coalesced with a queued change
+     */
+    public synchronized long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    /**
+     * @return The number of changes delivered to the listener
+     */
+    public synchronized long getDeliveredCount() {
+        return deliveredCount;
+    }
+
+    /**
+     * @return The number of calls of the listener
+     */
+    public synchronized long getDeliveryCount() {
+        return deliveryCount;
+    }
+
+    /**
+     * @return The number of calls of the listener which have thrown an exception
+     */
+    public synchronized long getFailureCount() {
+        return failureCount;
+    }
+
+    /**
+     * @return The number of times a reporting thread waited for the queue
+     */
+    public synchronized long getWaitCount() {
+        return waitCount;
+    }
+
+    /**
+     * @return The total time spent by reporting threads waiting for the queue, in milliseconds
+     */
+    public synchronized long getWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(waitTime);
+    }
+
+    /**
+     * @return The total time spent by the listener processing changes, in milliseconds
+     */
+    public synchronized long getProcessingTime() {
+        return TimeUnit.NANOSECONDS.toMillis(processingTime);
+    }
+
+    /**
+     * @return The longest time spent by the listener processing changes, in milliseconds
+     */
+    public synchronized long getMaxProcessingTime() {
+        return TimeUnit.NANOSECONDS.toMillis(maxProcessingTime);
+    }
+
+    @Override
+    public String toString() {
+        return "ResourceChangeListenerQueue [listener=" + listener + "]";
+    }
+
+    /**
+     * The queue of an external resource change listener.
+     */
+    private static final class External extends ResourceChangeListenerQueue implements ExternalResourceChangeListener {
+
+        External(final ResourceChangeListener listener,
+                final String[] searchPath,
+                final Executor executor,
+                final int capacity) {
+            super(listener, searchPath, executor, capacity);
+        }
+    }
+
+    private static final class Key {
+
+        private final String path;
+
+        private final ChangeType type;
+
+        private final boolean external;
+
+        Key(final String path, final ChangeType type, final boolean external) {
+            this.path = path;
+            this.type = type;
+            this.external = external;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * path.hashCode() + type.hashCode()) + (external ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if ( !(obj instanceof Key) ) {
+                return false;
+            }
+            final Key other = (Key)obj;
+            return path.equals(other.path) && type == other.type && external == other.external;
+        }
+    }
+}
@@ -18,10 +18,15 @@
  */
 package org.apache.sling.resourceresolver.impl.observation;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.sling.api.resource.observation.ResourceChange;
 import org.apache.sling.api.resource.observation.ResourceChangeListener;
@@ -53,10 +58,30 @@ public class ResourceChangeListenerWhiteboard implements ResourceProviderTracker
 
     private volatile String[] searchPath;
 
+    /** The executor delivering the changes, if they are delivered asynchronously. */
+    private volatile ExecutorService dispatcher;
+
+    private volatile int queueSize;
+
+    /**
+     * Activate the whiteboard
+     * @param bundleContext The bundle context
+     * @param resourceProviderTracker The resource provider tracker
+     * @param searchPath The search path
+     * @param dispatchThreads The number of threads delivering the changes through per listener queues,
+     *                        0 to deliver them synchronously
+     * @param queueSize The maximum number of queued changes per listener
+     */
     public void activate(final BundleContext bundleContext,
             final ResourceProviderTracker resourceProviderTracker,
-            final String[] searchPath) {
+            final String[] searchPath,
+            final int dispatchThreads,
+            final int queueSize) {
         this.searchPath = searchPath;
+        this.queueSize = queueSize;
+        if ( dispatchThreads > 0 ) {
+            this.dispatcher = Executors.newFixedThreadPool(dispatchThreads, new DispatcherThreadFactory());
+        }
         this.resourceProviderTracker = resourceProviderTracker;
         this.resourceProviderTracker.setObservationReporterGenerator(this);
         this.tracker = new ServiceTracker<>(bundleContext,
@@ -68,6 +93,9 @@ public class ResourceChangeListenerWhiteboard implements ResourceProviderTracker
                 final ResourceChangeListenerInfo info = listeners.remove(reference);
                 if ( info != null ) {
                     updateProviderTracker();
+                    if ( info.getListener() instanceof ResourceChangeListenerQueue ) {
+                        ((ResourceChangeListenerQueue)info.getListener()).close();
+                    }
                 }
             }
 
@@ -83,7 +111,12 @@ public class ResourceChangeListenerWhiteboard implements ResourceProviderTracker
                 if ( info.isValid() ) {
                     final ResourceChangeListener listener = bundleContext.getService(reference);
                     if ( listener != null ) {
-                        info.setListener(listener);
+                        final ExecutorService executor = dispatcher;
+                        if ( executor != null ) {
+                            info.setListener(ResourceChangeListenerQueue.create(listener, searchPath, executor, queueSize));
+                        } else {
+                            info.setListener(listener);
+                        }
                         listeners.put(reference, info);
                         updateProviderTracker();
                     }
@@ -103,6 +136,23 @@ public class ResourceChangeListenerWhiteboard implements ResourceProviderTracker
         }
         this.resourceProviderTracker.setObservationReporterGenerator(NOP_GENERATOR);
         this.resourceProviderTracker = null;
+        if ( this.dispatcher != null ) {
+            this.dispatcher.shutdownNow();
+            this.dispatcher = null;
+        }
+    }
+
+    /**
+     * @return The queues of the listeners, empty if changes are delivered synchronously
+     */
+    public List<ResourceChangeListenerQueue> getListenerQueues() {
+        final List<ResourceChangeListenerQueue> queues = new ArrayList<>();
+        for(final ResourceChangeListenerInfo info : this.listeners.values()) {
+            if ( info.getListener() instanceof ResourceChangeListenerQueue ) {
+                queues.add((ResourceChangeListenerQueue)info.getListener());
+            }
+        }
+        return queues;
     }
 
     private void updateProviderTracker() {
@@ -119,6 +169,18 @@ public class ResourceChangeListenerWhiteboard implements ResourceProviderTracker
         return new BasicObservationReporter(this.searchPath, this.listeners.values());
     }
 
+    private static final class DispatcherThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread thread = new Thread(r, "Apache Sling Resource Change Dispatcher #" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
     private static final ObservationReporter EMPTY_REPORTER = new ObservationReporter() {
 
         @Override
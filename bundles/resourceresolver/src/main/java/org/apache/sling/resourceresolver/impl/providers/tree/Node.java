@@ -18,16 +18,25 @@
  */
 package org.apache.sling.resourceresolver.impl.providers.tree;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
 public class Node<T> {
 
+    private static final String[] NO_NAMES = new String[0];
+
     private T value;
 
     private Map<String, Node<T>> children;
 
+    /** The sorted names of the children, for lookups without creating a string */
+    private String[] childNames = NO_NAMES;
+
+    /** The children in the order of {@link #childNames} */
+    private Node<T>[] childNodes;
+
     public boolean hasChild(String name) {
         return children != null && children.containsKey(name);
     }
@@ -40,12 +49,72 @@ public class Node<T> {
         }
     }
 
+    /**
+     * Get the child with the name given by a region of a path.
+     * @param path The path
+     * @param start The start index of the name in the path
+     * @param end The end index of the name in the path (exclusive)
+     * @return The child or {@code null}
+     */
+    public Node<T> getChild(String path, int start, int end) {
+        int low = 0;
+        int high = childNames.length - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int result = compare(childNames[mid], path, start, end);
+            if (result < 0) {
+                low = mid + 1;
+            } else if (result > 0) {
+                high = mid - 1;
+            } else {
+                return childNodes[mid];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Compare the name with a region of the path, like {@link String#compareTo(String)}.
+     */
+    private static int compare(String name, String path, int start, int end) {
+        final int nameLength = name.length();
+        final int regionLength = end - start;
+        final int length = Math.min(nameLength, regionLength);
+        for (int i = 0; i < length; i++) {
+            final int result = name.charAt(i) - path.charAt(start + i);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return nameLength - regionLength;
+    }
+
+    @SuppressWarnings("unchecked")
     Node<T> addChild(String name) {
         if (children == null) {
             children = new HashMap<String, Node<T>>();
         }
         Node<T> newNode = new Node<T>();
-        children.put(name, newNode);
+        Node<T> oldNode = children.put(name, newNode);
+
+        int index = Arrays.binarySearch(childNames, name);
+        if (oldNode != null) {
+            childNodes[index] = newNode;
+        } else {
+            index = -index - 1;
+            final String[] names = new String[childNames.length + 1];
+            final Node<T>[] nodes = new Node[names.length];
+            System.arraycopy(childNames, 0, names, 0, index);
+            names[index] = name;
+            System.arraycopy(childNames, index, names, index + 1, childNames.length - index);
+            if (childNodes != null) {
+                System.arraycopy(childNodes, 0, nodes, 0, index);
+                System.arraycopy(childNodes, index, nodes, index + 1, childNodes.length - index);
+            }
+            nodes[index] = newNode;
+            childNames = names;
+            childNodes = nodes;
+        }
         return newNode;
     }
 
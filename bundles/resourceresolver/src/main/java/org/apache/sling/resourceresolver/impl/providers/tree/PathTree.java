@@ -20,7 +20,6 @@ package org.apache.sling.resourceresolver.impl.providers.tree;
 
 import static org.apache.commons.lang3.StringUtils.split;
 
-import java.util.Iterator;
 import java.util.List;
 
 public class PathTree<T extends Pathable> {
@@ -54,10 +53,11 @@ public class PathTree<T extends Pathable> {
         Node<T> result = root.getValue() != null ? root : null;
 
         Node<T> node = root;
-        Iterator<String> it = new PathSegmentIterator(path, 1);
-        while (it.hasNext()) {
-            String segment = it.next();
-            node = node.getChild(segment);
+        final int length = path.length();
+        int start = 1;
+        while (start < length) {
+            final int end = getSegmentEnd(path, start);
+            node = node.getChild(path, start, end);
             if (node == null) {
                 break;
             } else {
@@ -65,6 +65,7 @@ public class PathTree<T extends Pathable> {
                     result = node;
                 }
             }
+            start = end + 1;
         }
         return result;
     }
@@ -74,14 +75,113 @@ public class PathTree<T extends Pathable> {
             return null;
         }
         Node<T> node = root;
-        Iterator<String> it = new PathSegmentIterator(path, 1);
-        while (it.hasNext()) {
-            String segment = it.next();
-            node = node.getChild(segment);
+        final int length = path.length();
+        int start = 1;
+        while (start < length) {
+            final int end = getSegmentEnd(path, start);
+            node = node.getChild(path, start, end);
             if (node == null) {
                 return null;
             }
+            start = end + 1;
         }
         return node;
     }
+
+    /**
+     * Look up the path and return both the best matching node and the node
+     * of the path. The result can be reused for other paths, see
+     * {@link Match#matches(PathTree, String)}.
+     * @param path The path
+     * @return The match or {@code null} if the path is not absolute
+     */
+    public Match<T> match(final String path) {
+        if (path == null || path.isEmpty() || path.charAt(0) != '/') {
+            return null;
+        }
+
+        Node<T> result = root.getValue() != null ? root : null;
+
+        Node<T> node = root;
+        final int length = path.length();
+        int start = 1;
+        while (start < length) {
+            final int end = getSegmentEnd(path, start);
+            node = node.getChild(path, start, end);
+            if (node == null) {
+                // no node for this segment, so the result is the same for all paths below
+                return new Match<T>(this, path, end, result, null);
+            }
+            if (node.getValue() != null) {
+                result = node;
+            }
+            start = end + 1;
+        }
+        return new Match<T>(this, path, -1, result, node);
+    }
+
+    private static int getSegmentEnd(final String path, final int start) {
+        final int end = path.indexOf('/', start);
+        return end == -1 ? path.length() : end;
+    }
+
+    /**
+     * The result of a lookup in the tree. As the tree is immutable, the
+     * match can be kept to avoid repeated lookups for the same path or
+     * for other paths below a path segment which is not part of the tree.
+     */
+    public static final class Match<T extends Pathable> {
+
+        private final PathTree<T> tree;
+
+        private final String path;
+
+        /** The length of the prefix of the path determining the result, -1 if the result is only valid for the path */
+        private final int prefixLength;
+
+        private final Node<T> bestMatchingNode;
+
+        private final Node<T> node;
+
+        private Match(final PathTree<T> tree, final String path, final int prefixLength,
+                final Node<T> bestMatchingNode, final Node<T> node) {
+            this.tree = tree;
+            this.path = path;
+            this.prefixLength = prefixLength;
+            this.bestMatchingNode = bestMatchingNode;
+            this.node = node;
+        }
+
+        /**
+         * Check whether this match is the result of looking up the path in the tree.
+         * @param tree The tree
+         * @param path The path
+         * @return {@code true} if this match is valid for the path
+         */
+        public boolean matches(final PathTree<T> tree, final String path) {
+            if (tree != this.tree || path == null) {
+                return false;
+            }
+            if (prefixLength == -1) {
+                return path.equals(this.path);
+            }
+            return path.length() >= prefixLength
+                    && path.regionMatches(0, this.path, 0, prefixLength)
+                    && (path.length() == prefixLength || path.charAt(prefixLength) == '/');
+        }
+
+        /**
+         * @return The best matching node, see {@link PathTree#getBestMatchingNode(String)}
+         */
+        public Node<T> getBestMatchingNode() {
+            return bestMatchingNode;
+        }
+
+        /**
+         * @return The node of the path, see {@link PathTree#getNode(String)}
+         */
+        public Node<T> getNode() {
+            return node;
+        }
+    }
 }
@@ -199,6 +199,11 @@ public class MockedResourceResolverImplTest {
                 return 1024000;
             }
 
+            @Override
+            public boolean resource_resolver_vanitypath_index() {
+                return false;
+            }
+
             @Override
             public String[] resource_resolver_vanitypath_blacklist() {
                 return null;
@@ -279,6 +284,16 @@ public class MockedResourceResolverImplTest {
             public boolean resource_resolver_log_unclosed() {
                 return true;
             }
+
+            @Override
+            public int resource_resolver_observation_dispatch_threads() {
+                return 0;
+            }
+
+            @Override
+            public int resource_resolver_observation_queue_size() {
+                return 10000;
+            }
         });
 
         // configure using Bundle
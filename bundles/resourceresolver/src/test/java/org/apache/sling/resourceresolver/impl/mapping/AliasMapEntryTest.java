@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.mapping;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class AliasMapEntryTest {
+
+    @Test public void test_reverse_lookup() {
+        final AliasMapEntry entry = new AliasMapEntry();
+        entry.put("alias1", "child");
+        entry.put("alias2", "child");
+        entry.put("other", "sibling");
+
+        assertEquals("alias1", entry.getAlias("child"));
+        assertEquals("other", entry.getAlias("sibling"));
+        assertNull(entry.getAlias("unknown"));
+        assertTrue(entry.containsValue("child"));
+        assertFalse(entry.containsValue("unknown"));
+
+        // removing the first alias falls back to the next one
+        entry.remove("alias1");
+        assertEquals("alias2", entry.getAlias("child"));
+
+        // replacing an alias target updates both children
+        entry.put("alias2", "sibling");
+        assertNull(entry.getAlias("child"));
+        assertEquals("other", entry.getAlias("sibling"));
+    }
+
+    @Test public void test_remove_name() {
+        final AliasMapEntry entry = new AliasMapEntry();
+        entry.put("alias1", "child");
+        entry.put("alias2", "child");
+        entry.put("other", "sibling");
+
+        assertTrue(entry.removeName("child"));
+        assertFalse(entry.removeName("child"));
+        assertEquals(1, entry.size());
+        assertNull(entry.getAlias("child"));
+        assertEquals("sibling", entry.get("other"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void test_views_are_read_only() {
+        final AliasMapEntry entry = new AliasMapEntry();
+        entry.put("alias", "child");
+        entry.entrySet().iterator().remove();
+    }
+}
@@ -65,7 +65,9 @@ import org.apache.sling.resourceresolver.impl.ResourceResolverImpl;
 import org.apache.sling.resourceresolver.impl.mapping.MapConfigurationProvider.VanityPathConfig;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
@@ -81,6 +83,9 @@ public class MapEntriesTest {
 
     File vanityBloomFilterFile;
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Mock
     private MapConfigurationProvider resourceResolverFactory;
 
@@ -371,6 +376,111 @@ public class MapEntriesTest {
         assertTrue( mapEntries.getResolveMaps().isEmpty());
     }
 
+    @Test
+    public void test_vanity_path_index() throws Exception {
+        final File indexDirectory = new File(folder.getRoot(), "vanityPathIndex");
+        when(bundleContext.getDataFile("vanityPathIndex")).thenReturn(indexDirectory);
+        when(resourceResolverFactory.isVanityPathIndexEnabled()).thenReturn(true);
+
+        Resource parent = mock(Resource.class, "parent");
+        when(parent.getPath()).thenReturn("/foo/parent");
+        when(parent.getName()).thenReturn("parent");
+        when(parent.getValueMap()).thenReturn(buildValueMap("sling:vanityPath", "/target/found"));
+        when(resourceResolver.getResource(parent.getPath())).thenReturn(parent);
+
+        final AtomicInteger vanityPathQueries = new AtomicInteger();
+        when(resourceResolver.findResources(anyString(), eq("sql"))).thenAnswer(new Answer<Iterator<Resource>>() {
+
+            @Override
+            public Iterator<Resource> answer(InvocationOnMock invocation) throws Throwable {
+                if (invocation.getArguments()[0].toString().contains("sling:vanityPath")) {
+                    vanityPathQueries.incrementAndGet();
+                    return Collections.singleton(resourceResolver.getResource("/foo/parent")).iterator();
+                }
+                return Collections.<Resource> emptySet().iterator();
+            }
+        });
+
+        // the index is built in the background on first start
+        MapEntries indexed = new MapEntries(resourceResolverFactory, bundleContext, eventAdmin);
+        try {
+            waitForVanityPathIndex(indexed);
+            assertEquals(1, vanityPathQueries.get());
+            assertEquals("/foo/parent.html", resolve(indexed, "http/localhost.80/target/found"));
+            assertNull(resolve(indexed, "http/localhost.80/target/missing"));
+        } finally {
+            indexed.dispose();
+        }
+
+        // and used without a query on the next start
+        indexed = new MapEntries(resourceResolverFactory, bundleContext, eventAdmin);
+        try {
+            assertEquals(1, vanityPathQueries.get());
+            assertEquals("/foo/parent.html", resolve(indexed, "http/localhost.80/target/found"));
+
+            when(parent.getValueMap()).thenReturn(buildValueMap("sling:vanityPath", "/target/changed"));
+            indexed.onChange(Arrays.asList(new ResourceChange(ChangeType.CHANGED, parent.getPath(), false)));
+            assertNull(resolve(indexed, "http/localhost.80/target/found"));
+            assertEquals("/foo/parent.html", resolve(indexed, "http/localhost.80/target/changed"));
+        } finally {
+            indexed.dispose();
+        }
+
+        // changes are persisted
+        indexed = new MapEntries(resourceResolverFactory, bundleContext, eventAdmin);
+        try {
+            assertEquals(1, vanityPathQueries.get());
+            assertNull(resolve(indexed, "http/localhost.80/target/found"));
+            assertEquals("/foo/parent.html", resolve(indexed, "http/localhost.80/target/changed"));
+
+            when(resourceResolver.getResource(parent.getPath())).thenReturn(null);
+            indexed.onChange(Arrays.asList(new ResourceChange(ChangeType.REMOVED, "/foo", false)));
+            assertNull(resolve(indexed, "http/localhost.80/target/changed"));
+        } finally {
+            indexed.dispose();
+        }
+        assertEquals(1, vanityPathQueries.get());
+
+        // an index which has not been closed cleanly is rebuilt
+        new File(indexDirectory, "clean").delete();
+        when(resourceResolver.getResource(parent.getPath())).thenReturn(parent);
+        indexed = new MapEntries(resourceResolverFactory, bundleContext, eventAdmin);
+        try {
+            waitForVanityPathIndex(indexed);
+            assertEquals(2, vanityPathQueries.get());
+            assertEquals("/foo/parent.html", resolve(indexed, "http/localhost.80/target/changed"));
+        } finally {
+            indexed.dispose();
+        }
+
+        // disabling the index removes it
+        when(resourceResolverFactory.isVanityPathIndexEnabled()).thenReturn(false);
+        new MapEntries(resourceResolverFactory, bundleContext, eventAdmin).dispose();
+        assertFalse(indexDirectory.exists());
+    }
+
+    private void waitForVanityPathIndex(final MapEntries entries) throws Exception {
+        final Field field = MapEntries.class.getDeclaredField("vanityPathIndex");
+        field.setAccessible(true);
+        final VanityPathIndex index = (VanityPathIndex) field.get(entries);
+        final long end = System.currentTimeMillis() + 10000;
+        while (!index.isUpToDate()) {
+            assertTrue("vanity path index not built", System.currentTimeMillis() < end);
+            Thread.sleep(10);
+        }
+    }
+
+    private String resolve(final MapEntries entries, final String requestPath) {
+        final Iterator<MapEntry> i = entries.getResolveMapsIterator(requestPath);
+        while (i.hasNext()) {
+            final String[] result = i.next().replace(requestPath);
+            if (result != null) {
+                return result[0];
+            }
+        }
+        return null;
+    }
+
     private ValueMap buildValueMap(Object... string) {
         final Map<String, Object> data = new HashMap<>();
         for (int i = 0; i < string.length; i = i + 2) {
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.mapping;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+public class MapEntryIndexTest {
+
+    @Test public void test_literal_prefix() {
+        assertEquals("http/localhost", MapEntryIndex.getLiteralPrefix("^http/localhost.80/", 1));
+        assertEquals("/content/site/", MapEntryIndex.getLiteralPrefix("^/content/site/", 1));
+        assertEquals("/content/a.b", MapEntryIndex.getLiteralPrefix("^/content/a\\.b(\\..*)", 1));
+        assertEquals("/conten", MapEntryIndex.getLiteralPrefix("^/content?", 1));
+        assertEquals("/content", MapEntryIndex.getLiteralPrefix("^/content\\d", 1));
+        assertEquals("", MapEntryIndex.getLiteralPrefix("^/content|/libs", 1));
+        assertEquals("", MapEntryIndex.getLiteralPrefix("^[^/]+/[^/]+/", 1));
+    }
+
+    @Test public void test_candidates_preserve_order() {
+        final List<MapEntry> entries = new ArrayList<MapEntry>();
+        entries.add(new MapEntry("^http/localhost.80/content/site/", -1, false, 0, "/a/"));
+        entries.add(new MapEntry("^" + MapEntries.ANY_SCHEME_HOST + "/vanity$", -1, false, 0, "/b"));
+        entries.add(new MapEntry("^http/other.80/", -1, false, 0, "/c/"));
+        entries.add(new MapEntry("^http/[^/]+/", -1, false, 0, "/d/"));
+        entries.add(new MapEntry("^http/localhost.80/", -1, false, 0, "/e/"));
+        Collections.sort(entries);
+
+        final MapEntryIndex index = new MapEntryIndex(entries);
+        assertEquals(entries.size(), index.size());
+
+        assertCandidates(entries, index, "http/localhost.80/content/site/page.html");
+        assertCandidates(entries, index, "http/other.80/vanity");
+        assertCandidates(entries, index, "https/localhost.443/vanity");
+        assertCandidates(entries, index, "gurk");
+    }
+
+    @Test public void test_candidates_skip_non_matching() {
+        final List<MapEntry> entries = new ArrayList<MapEntry>();
+        for (int i = 0; i < 100; i++) {
+            entries.add(new MapEntry("^/content/site" + i + "/", -1, false, 0, "/s" + i + "/"));
+        }
+        Collections.sort(entries);
+
+        final Iterator<MapEntry> i = new MapEntryIndex(entries).getCandidates("/content/site42/page");
+        assertEquals("^/content/site42/", i.next().getPattern());
+        assertFalse(i.hasNext());
+
+        assertFalse(new MapEntryIndex(entries).getCandidates("/libs/foo").hasNext());
+        assertFalse(MapEntryIndex.EMPTY.getCandidates("/libs/foo").hasNext());
+    }
+
+    /**
+     * The matching candidates must be exactly the matching entries of the
+     * full list, in the same order.
+     */
+    private void assertCandidates(final List<MapEntry> entries, final MapEntryIndex index, final String value) {
+        final List<MapEntry> expected = new ArrayList<MapEntry>();
+        for (final MapEntry entry : entries) {
+            if (entry.replace(value) != null) {
+                expected.add(entry);
+            }
+        }
+        final List<MapEntry> actual = new ArrayList<MapEntry>();
+        final Iterator<MapEntry> i = index.getCandidates(value);
+        while (i.hasNext()) {
+            final MapEntry entry = i.next();
+            if (entry.replace(value) != null) {
+                actual.add(entry);
+            }
+        }
+        assertEquals(expected, actual);
+    }
+}
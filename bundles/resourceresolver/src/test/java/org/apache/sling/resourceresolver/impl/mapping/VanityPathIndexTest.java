@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.mapping;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class VanityPathIndexTest {
+
+    private static final String PREFIX = "^" + MapEntries.ANY_SCHEME_HOST;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+
+    private VanityPathIndex index;
+
+    @Before
+    public void setup() {
+        directory = new File(folder.getRoot(), "index");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (index != null) {
+            index.close();
+        }
+    }
+
+    private static VanityPathIndex.Entry entry(final String vanityPath, final String target) {
+        return new VanityPathIndex.Entry(vanityPath, PREFIX, target, -1, 0);
+    }
+
+    private VanityPathIndex create(final int chunkSize, final VanityPathIndex.Entry... entries) throws IOException {
+        final VanityPathIndex.Builder builder = new VanityPathIndex.Builder(directory, chunkSize);
+        try {
+            for (final VanityPathIndex.Entry entry : entries) {
+                builder.add(entry);
+            }
+            return VanityPathIndex.create(directory, builder);
+        } finally {
+            builder.close();
+        }
+    }
+
+    @Test public void test_open_without_index() throws IOException {
+        assertNull(VanityPathIndex.open(directory));
+    }
+
+    @Test public void test_lookup() throws IOException {
+        final List<VanityPathIndex.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            entries.add(entry("/vanity/" + i, "/content/page" + i));
+        }
+        entries.add(entry("/vanity/7", "/content/other"));
+        entries.add(new VanityPathIndex.Entry("/vanity/ä€", "http/localhost.80", "/content/ä", 301, 5));
+        Collections.shuffle(entries);
+
+        // small chunks, so the entries are sorted in runs and merged
+        index = create(7, entries.toArray(new VanityPathIndex.Entry[entries.size()]));
+
+        assertEquals(Collections.singletonList(entry("/vanity/42", "/content/page42")), index.get("/vanity/42"));
+        assertEquals(Arrays.asList(entry("/vanity/7", "/content/other"), entry("/vanity/7", "/content/page7")),
+                index.get("/vanity/7"));
+        assertEquals(Collections.singletonList(new VanityPathIndex.Entry("/vanity/ä€", "http/localhost.80",
+                "/content/ä", 301, 5)), index.get("/vanity/ä€"));
+        assertTrue(index.get("/vanity/100").isEmpty());
+        assertTrue(index.get("/vanity").isEmpty());
+        assertTrue(index.get("/").isEmpty());
+
+        // no temporary files are left
+        assertEquals(new HashSet<>(Arrays.asList("index-1.dat", "index-1.journal")),
+                new HashSet<>(Arrays.asList(directory.list())));
+    }
+
+    @Test public void test_targets() throws IOException {
+        index = create(100, entry("/a", "/content/a"), entry("/b", "/content/a/b"), entry("/c", "/content/a-c"),
+                entry("/d", "/content/ab"), entry("/e", "/content/a/b/e"));
+
+        assertEquals(Arrays.asList("/content/a", "/content/a/b", "/content/a/b/e"),
+                new ArrayList<>(index.getTargets("/content/a")));
+        assertEquals(Arrays.asList("/content/a/b", "/content/a/b/e"), new ArrayList<>(index.getTargets("/content/a/b")));
+        assertEquals(5, index.getTargets("/").size());
+        assertTrue(index.getTargets("/content/b").isEmpty());
+    }
+
+    @Test public void test_changes() throws IOException {
+        index = create(100, entry("/a", "/content/a"), entry("/b", "/content/b"));
+
+        final long modificationCount = index.getModificationCount();
+        index.put("/content/a", Collections.singletonList(entry("/a2", "/content/a")));
+        index.put("/content/c", Collections.singletonList(entry("/b", "/content/c")));
+        assertTrue(index.remove("/content/b"));
+        assertFalse(index.remove("/content/b"));
+        assertFalse(index.remove("/content/missing"));
+        assertTrue(index.getModificationCount() > modificationCount);
+
+        assertTrue(index.get("/a").isEmpty());
+        assertEquals(Collections.singletonList(entry("/a2", "/content/a")), index.get("/a2"));
+        assertEquals(Collections.singletonList(entry("/b", "/content/c")), index.get("/b"));
+        assertEquals(Arrays.asList("/content/a", "/content/c"), new ArrayList<>(index.getTargets("/content")));
+        assertEquals(3, index.getPendingChanges());
+
+        final Set<String> vanityPaths = new HashSet<>();
+        for (final Iterator<String> i = index.getVanityPaths(); i.hasNext(); ) {
+            vanityPaths.add(i.next());
+        }
+        assertTrue(vanityPaths.containsAll(Arrays.asList("/a2", "/b")));
+
+        // the changes are replayed from the journal
+        index.close();
+        index = VanityPathIndex.open(directory);
+        assertTrue(index.get("/a").isEmpty());
+        assertEquals(Collections.singletonList(entry("/a2", "/content/a")), index.get("/a2"));
+        assertEquals(Collections.singletonList(entry("/b", "/content/c")), index.get("/b"));
+        assertEquals(3, index.getPendingChanges());
+    }
+
+    @Test public void test_compact() throws IOException {
+        index = create(100, entry("/a", "/content/a"), entry("/b", "/content/b"));
+        assertFalse(index.compact());
+
+        index.put("/content/a", Collections.singletonList(entry("/a2", "/content/a")));
+        index.remove("/content/b");
+        index.put("/content/c", Arrays.asList(entry("/c", "/content/c"), entry("/a", "/content/c")));
+        assertTrue(index.compact());
+        assertEquals(0, index.getPendingChanges());
+
+        assertEquals(Collections.singletonList(entry("/a", "/content/c")), index.get("/a"));
+        assertEquals(Collections.singletonList(entry("/a2", "/content/a")), index.get("/a2"));
+        assertTrue(index.get("/b").isEmpty());
+        assertEquals(Arrays.asList("/content/a", "/content/c"), new ArrayList<>(index.getTargets("/")));
+
+        index.close();
+        index = VanityPathIndex.open(directory);
+        assertEquals(0, index.getPendingChanges());
+        assertEquals(Collections.singletonList(entry("/a", "/content/c")), index.get("/a"));
+        assertEquals(new HashSet<>(Arrays.asList("index-2.dat", "index-2.journal")),
+                new HashSet<>(Arrays.asList(directory.list())));
+    }
+
+    @Test public void test_replace_keeps_changes() throws IOException {
+        index = create(100, entry("/a", "/content/a"));
+        index.put("/content/b", Collections.singletonList(entry("/b", "/content/b")));
+
+        final VanityPathIndex.Builder builder = new VanityPathIndex.Builder(directory, 100);
+        try {
+            builder.add(entry("/c", "/content/c"));
+            index.replace(builder);
+        } finally {
+            builder.close();
+        }
+
+        assertTrue(index.get("/a").isEmpty());
+        assertEquals(Collections.singletonList(entry("/b", "/content/b")), index.get("/b"));
+        assertEquals(Collections.singletonList(entry("/c", "/content/c")), index.get("/c"));
+    }
+
+    @Test public void test_replace_drops_contained_changes() throws IOException {
+        index = create(100, entry("/a", "/content/a"));
+        index.put("/content/a", Collections.<VanityPathIndex.Entry> emptyList());
+        final Map<String, List<VanityPathIndex.Entry>> changes = index.getChanges();
+        index.put("/content/b", Collections.singletonList(entry("/b", "/content/b")));
+
+        final VanityPathIndex.Builder builder = new VanityPathIndex.Builder(directory, 100);
+        try {
+            builder.add(entry("/a", "/content/a"));
+            index.replace(builder, changes);
+        } finally {
+            builder.close();
+        }
+
+        assertEquals(Collections.singletonList(entry("/a", "/content/a")), index.get("/a"));
+        assertEquals(Collections.singletonList(entry("/b", "/content/b")), index.get("/b"));
+        assertTrue(index.isUpToDate());
+    }
+
+    @Test public void test_up_to_date_after_clean_close() throws IOException {
+        index = VanityPathIndex.createEmpty(directory);
+        assertFalse(index.isUpToDate());
+        index.close();
+        index = VanityPathIndex.open(directory);
+        assertFalse(index.isUpToDate());
+        index.close();
+
+        index = create(100, entry("/a", "/content/a"));
+        assertTrue(index.isUpToDate());
+        index.close();
+        index = VanityPathIndex.open(directory);
+        assertTrue(index.isUpToDate());
+
+        // opened again without being closed
+        final VanityPathIndex previous = index;
+        index = VanityPathIndex.open(directory);
+        assertFalse(index.isUpToDate());
+        previous.close();
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.observation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.api.resource.observation.ExternalResourceChangeListener;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.junit.After;
+import org.junit.Test;
+
+public class ResourceChangeListenerQueueTest {
+
+    private static final String[] SEARCH_PATHS = new String[] { "/apps", "/libs" };
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testCoalescing() {
+        final ManualExecutor manual = new ManualExecutor();
+        final RecordingListener listener = new RecordingListener();
+        final ResourceChangeListenerQueue queue = ResourceChangeListenerQueue.create(listener, SEARCH_PATHS, manual, 100);
+
+        queue.onChange(Arrays.asList(
+                change(ChangeType.ADDED, "/a"),
+                change(ChangeType.CHANGED, "/a"),
+                change(ChangeType.CHANGED, "/b"),
+                change(ChangeType.ADDED, "/b"),
+                change(ChangeType.ADDED, "/c"),
+                change(ChangeType.CHANGED, "/c")));
+        queue.onChange(Arrays.asList(
+                change(ChangeType.REMOVED, "/c"),
+                change(ChangeType.REMOVED, "/d"),
+                change(ChangeType.ADDED, "/d"),
+                change(ChangeType.CHANGED, "/e"),
+                change(ChangeType.CHANGED, "/e"),
+                change(ChangeType.PROVIDER_ADDED, "/f"),
+                change(ChangeType.PROVIDER_ADDED, "/f")));
+        assertEquals("a single delivery is scheduled", 1, manual.tasks.size());
+        manual.runAll();
+
+        assertEquals(Arrays.asList("ADDED /a", "ADDED /b", "REMOVED /c", "REMOVED /d", "ADDED /d", "CHANGED /e",
+                "PROVIDER_ADDED /f", "PROVIDER_ADDED /f"), listener.changes);
+        assertEquals(1, listener.calls);
+        assertEquals(13, queue.getQueuedCount());
+        assertEquals(5, queue.getCoalescedCount());
+        assertEquals(8, queue.getDeliveredCount());
+        assertEquals(0, queue.getQueueSize());
+    }
+
+    @Test
+    public void testExternalChangesAreNotCoalescedWithLocalChanges() {
+        final ManualExecutor manual = new ManualExecutor();
+        final RecordingListener listener = new RecordingListener();
+        final ResourceChangeListenerQueue queue = ResourceChangeListenerQueue.create(listener, SEARCH_PATHS, manual, 100);
+
+        queue.onChange(Arrays.asList(
+                change(ChangeType.CHANGED, "/a"),
+                change(ChangeType.CHANGED, "/a", true),
+                change(ChangeType.ADDED, "/b", true),
+                change(ChangeType.CHANGED, "/b"),
+                change(ChangeType.CHANGED, "/b", true)));
+        manual.runAll();
+
+        assertEquals(Arrays.asList("CHANGED /a", "CHANGED /a external", "ADDED /b external", "CHANGED /b"),
+                listener.changes);
+        assertEquals(1, queue.getCoalescedCount());
+    }
+
+    @Test
+    public void testExternal() {
+        assertFalse(ResourceChangeListenerQueue.create(new RecordingListener(), SEARCH_PATHS, executor, 10)
+                instanceof ExternalResourceChangeListener);
+        assertTrue(ResourceChangeListenerQueue.create(new ExternalRecordingListener(), SEARCH_PATHS, executor, 10)
+                instanceof ExternalResourceChangeListener);
+    }
+
+    @Test
+    public void testSlowListenerDoesNotDelayOthers() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final ResourceChangeListenerQueue slow = ResourceChangeListenerQueue.create(new ResourceChangeListener() {
+
+            @Override
+            public void onChange(final List<ResourceChange> changes) {
+                try {
+                    release.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, SEARCH_PATHS, executor, 10);
+        final RecordingListener listener = new RecordingListener();
+        final ResourceChangeListenerQueue fast = ResourceChangeListenerQueue.create(listener, SEARCH_PATHS, executor, 10);
+
+        final List<ResourceChange> changes = Collections.singletonList(change(ChangeType.ADDED, "/a"));
+        slow.onChange(changes);
+        fast.onChange(changes);
+        assertTrue("the fast listener should get the changes", listener.delivered.await(5, TimeUnit.SECONDS));
+        release.countDown();
+    }
+
+    @Test
+    public void testBackPressure() throws Exception {
+        final ManualExecutor manual = new ManualExecutor();
+        final RecordingListener listener = new RecordingListener();
+        final ResourceChangeListenerQueue queue = ResourceChangeListenerQueue.create(listener, SEARCH_PATHS, manual, 2);
+
+        final Thread reporter = new Thread() {
+
+            @Override
+            public void run() {
+                for(int i = 0; i < 5; i++) {
+                    queue.onChange(Collections.singletonList(change(ChangeType.ADDED, "/" + i)));
+                }
+            }
+        };
+        reporter.start();
+        while ( reporter.isAlive() || !manual.tasks.isEmpty() ) {
+            final Runnable task = manual.tasks.poll(10, TimeUnit.MILLISECONDS);
+            if ( task != null ) {
+                task.run();
+            }
+        }
+        assertEquals(Arrays.asList("ADDED /0", "ADDED /1", "ADDED /2", "ADDED /3", "ADDED /4"), listener.changes);
+        assertTrue("the reporter should have waited for the listener", queue.getWaitCount() > 0);
+        assertEquals(2, queue.getMaxQueueSize());
+    }
+
+    @Test
+    public void testDispatcherThreadDoesNotWait() throws Exception {
+        final ExecutorService single = Executors.newSingleThreadExecutor();
+        try {
+            final RecordingListener listener = new RecordingListener();
+            final ResourceChangeListenerQueue target = ResourceChangeListenerQueue.create(listener, SEARCH_PATHS, single, 1);
+            final ResourceChangeListenerQueue reporting = ResourceChangeListenerQueue.create(new ResourceChangeListener() {
+
+                @Override
+                public void onChange(final List<ResourceChange> changes) {
+                    // the only dispatcher thread is busy here, the target queue can't be delivered meanwhile
+                    for(int i = 0; i < 3; i++) {
+                        target.onChange(Collections.singletonList(change(ChangeType.ADDED, "/" + i)));
+                    }
+                }
+            }, SEARCH_PATHS, single, 1);
+
+            reporting.onChange(Collections.singletonList(change(ChangeType.ADDED, "/a")));
+            assertTrue("the target listener should get the changes", listener.delivered.await(5, TimeUnit.SECONDS));
+            assertEquals(0, target.getWaitCount());
+            assertEquals(3, target.getMaxQueueSize());
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFailingListener() {
+        final ManualExecutor manual = new ManualExecutor();
+        final ResourceChangeListenerQueue queue = ResourceChangeListenerQueue.create(new ResourceChangeListener() {
+
+            @Override
+            public void onChange(final List<ResourceChange> changes) {
+                throw new IllegalStateException("failure");
+            }
+        }, SEARCH_PATHS, manual, 10);
+
+        queue.onChange(Collections.singletonList(change(ChangeType.ADDED, "/a")));
+        manual.runAll();
+        queue.onChange(Collections.singletonList(change(ChangeType.ADDED, "/b")));
+        manual.runAll();
+        assertEquals(2, queue.getDeliveryCount());
+        assertEquals(2, queue.getFailureCount());
+    }
+
+    @Test
+    public void testClose() {
+        final ManualExecutor manual = new ManualExecutor();
+        final RecordingListener listener = new RecordingListener();
+        final ResourceChangeListenerQueue queue = ResourceChangeListenerQueue.create(listener, SEARCH_PATHS, manual, 10);
+
+        queue.onChange(Collections.singletonList(change(ChangeType.ADDED, "/a")));
+        queue.close();
+        manual.runAll();
+        queue.onChange(Collections.singletonList(change(ChangeType.ADDED, "/b")));
+        manual.runAll();
+        assertEquals(0, listener.calls);
+    }
+
+    private static ResourceChange change(final ChangeType type, final String path) {
+        return change(type, path, false);
+    }
+
+    private static ResourceChange change(final ChangeType type, final String path, final boolean external) {
+        return new ResourceChange(type, path, external);
+    }
+
+    private static class ManualExecutor implements Executor {
+
+        private final LinkedBlockingQueue<Runnable> tasks = new LinkedBlockingQueue<>();
+
+        @Override
+        public void execute(final Runnable command) {
+            tasks.add(command);
+        }
+
+        void runAll() {
+            Runnable task;
+            while ( (task = tasks.poll()) != null ) {
+                task.run();
+            }
+        }
+    }
+
+    private static class RecordingListener implements ResourceChangeListener {
+
+        private final List<String> changes = Collections.synchronizedList(new ArrayList<String>());
+
+        private final CountDownLatch delivered = new CountDownLatch(1);
+
+        private volatile int calls;
+
+        @Override
+        public void onChange(final List<ResourceChange> list) {
+            calls++;
+            for(final ResourceChange change : list) {
+                changes.add(change.getType() + " " + change.getPath() + (change.isExternal() ? " external" : ""));
+            }
+            delivered.countDown();
+        }
+    }
+
+    private static class ExternalRecordingListener extends RecordingListener implements ExternalResourceChangeListener {
+    }
+}
@@ -94,6 +94,48 @@ public class PathTreeTest {
         }
     }
     
+    @Test
+    public void bestMatchForSimilarSegments() {
+
+        assertPathHasBestMatch("/libsx", "/");
+        assertPathHasBestMatch("/lib", "/");
+        assertPathHasBestMatch("/libs/slingshot", "/libs");
+        assertPathHasBestMatch("/libs/", "/libs");
+        assertPathHasBestMatch("/libs//sling", "/libs");
+        assertPathDoesNotHaveExactMatch("/libs//sling");
+        assertPathDoesNotHaveExactMatch("/libsx");
+    }
+
+    @Test
+    public void matchBelowMissingSegment() {
+
+        final PathTree.Match<Pathable> match = tree.match("/content/site");
+        assertThat(match.getBestMatchingNode().getValue().getPath(), equalTo("/"));
+        assertThat(match.getNode(), nullValue());
+
+        // same result for all paths below /content
+        assertThat(match.matches(tree, "/content/site"), equalTo(true));
+        assertThat(match.matches(tree, "/content"), equalTo(true));
+        assertThat(match.matches(tree, "/content/other/page"), equalTo(true));
+        assertThat(match.matches(tree, "/contentx"), equalTo(false));
+        assertThat(match.matches(tree, "/libs"), equalTo(false));
+        assertThat(match.matches(tree, null), equalTo(false));
+        assertThat(match.matches(new PathTree<Pathable>(asList((Pathable) new StringPath("/"))), "/content"), equalTo(false));
+    }
+
+    @Test
+    public void matchOfTreeNode() {
+
+        final PathTree.Match<Pathable> match = tree.match("/libs/sling");
+        assertThat(match.getBestMatchingNode().getValue().getPath(), equalTo("/libs/sling"));
+        assertThat(match.getNode().getValue().getPath(), equalTo("/libs/sling"));
+
+        // only valid for the same path, there might be nodes below
+        assertThat(match.matches(tree, "/libs/sling"), equalTo(true));
+        assertThat(match.matches(tree, "/libs/sling/base"), equalTo(false));
+        assertThat(tree.match("not/absolute/path"), nullValue());
+    }
+
     static class StringPath implements Pathable {
 
         private final String path;
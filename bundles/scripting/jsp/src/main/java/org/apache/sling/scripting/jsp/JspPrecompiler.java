@@ -0,0 +1,308 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.scripting.jsp;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The <code>JspPrecompiler</code> compiles JSP scripts in the background,
+ * so the first requests after a start or a deployment do not have to wait
+ * for the compilation.
+ * <p>
+ * On start all JSP scripts below the search paths, or of the configured
+ * resource types only, are compiled. After a change only the changed scripts and the scripts depending on them are
+ * compiled again. The scripts are compiled in parallel by a fixed number of
+ * threads; scripts which are up to date are only loaded. The progress is
+ * shown in the web console.
+ */
+public class JspPrecompiler {
+
+    /** The subservice name used to read the scripts */
+    public static final String SUBSERVICE = "precompiler";
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final JspScriptEngineFactory engineFactory;
+
+    private final ResourceResolverFactory resourceResolverFactory;
+
+    private final ExecutorService executor;
+
+    /** The resource types whose scripts are compiled, all if empty */
+    private final String[] resourceTypes;
+
+    /** The scripts which are scheduled but not compiled yet */
+    private final Set<String> queued = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final AtomicLong scheduled = new AtomicLong();
+
+    private final AtomicLong compiled = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLong compileTime = new AtomicLong();
+
+    private volatile long runStarted;
+
+    private volatile long lastRunDuration = -1;
+
+    private ServiceRegistration serviceRegistration;
+
+    public JspPrecompiler(final BundleContext context,
+            final JspScriptEngineFactory engineFactory,
+            final ResourceResolverFactory resourceResolverFactory,
+            final int threads,
+            final String[] resourceTypes) {
+        this.engineFactory = engineFactory;
+        this.resourceResolverFactory = resourceResolverFactory;
+        this.resourceTypes = (resourceTypes != null) ? resourceTypes : new String[0];
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), new ThreadFactory() {
+
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread t = new Thread(r, "Apache Sling JSP Precompiler #" + counter.incrementAndGet());
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            }
+        });
+
+        Dictionary<String, Object> printerProperties = new Hashtable<String, Object>();
+        printerProperties.put("felix.webconsole.label", "jspprecompiler");
+        printerProperties.put("felix.webconsole.title", "JSP Precompilation");
+        printerProperties.put("felix.webconsole.configprinter.modes", "always");
+        this.serviceRegistration = context.registerService(Object.class.getName(),
+            this, printerProperties);
+    }
+
+    public void deactivate() {
+        if (this.serviceRegistration != null) {
+            this.serviceRegistration.unregister();
+            this.serviceRegistration = null;
+        }
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Compile all JSP scripts below the search paths or of the configured
+     * resource types.
+     */
+    public void precompileAll() {
+        execute(new Runnable() {
+
+            @Override
+            public void run() {
+                final ResourceResolver resolver = login();
+                if (resolver != null) {
+                    try {
+                        for (final String path : getRootPaths(resolver)) {
+                            final Resource root = resolver.getResource(path);
+                            if (root != null) {
+                                collect(root);
+                            }
+                        }
+                    } finally {
+                        resolver.close();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Compile the given scripts.
+     * @param scriptNames The paths of the scripts
+     */
+    public void precompile(final Collection<String> scriptNames) {
+        for (final String scriptName : scriptNames) {
+            if (isJsp(scriptName)) {
+                schedule(scriptName);
+            }
+        }
+    }
+
+    public void printConfiguration(final PrintWriter pw) {
+        pw.println("JSP Precompilation:");
+        pw.println();
+        pw.println("Scheduled scripts: " + scheduled.get());
+        pw.println("Pending scripts: " + pending.get());
+        pw.println("Compiled or loaded scripts: " + compiled.get());
+        pw.println("Failed scripts: " + failed.get());
+        pw.println("Total compilation time: " + compileTime.get() + "ms");
+        if (lastRunDuration >= 0) {
+            pw.println("Duration of the last run: " + lastRunDuration + "ms");
+        }
+    }
+
+    /**
+     * Returns the paths below which the scripts are collected: the
+     * directories of the resource types or the search paths.
+     */
+    private Collection<String> getRootPaths(final ResourceResolver resolver) {
+        final String[] searchPaths = resolver.getSearchPath();
+        if (resourceTypes.length == 0) {
+            return Arrays.asList(searchPaths);
+        }
+        final Set<String> paths = new LinkedHashSet<String>();
+        for (final String resourceType : resourceTypes) {
+            final String relPath = resourceType.replace(':', '/');
+            if (relPath.startsWith("/")) {
+                paths.add(relPath);
+            } else {
+                for (final String searchPath : searchPaths) {
+                    paths.add(searchPath + relPath);
+                }
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Schedule the JSP scripts below the resource. Files other than scripts
+     * are skipped without visiting their content.
+     */
+    private void collect(final Resource resource) {
+        final Iterator<Resource> children = resource.listChildren();
+        while (children.hasNext() && !executor.isShutdown()) {
+            final Resource child = children.next();
+            if (isJsp(child.getPath())) {
+                schedule(child.getPath());
+            } else if (!isFile(child)) {
+                collect(child);
+            }
+        }
+    }
+
+    private void schedule(final String scriptName) {
+        if (!queued.add(scriptName)) {
+            return;
+        }
+        scheduled.incrementAndGet();
+        execute(new Runnable() {
+
+            @Override
+            public void run() {
+                queued.remove(scriptName);
+                compile(scriptName);
+            }
+        });
+    }
+
+    private void compile(final String scriptName) {
+        final ResourceResolver resolver = login();
+        if (resolver == null) {
+            return;
+        }
+        final long start = System.currentTimeMillis();
+        try {
+            engineFactory.compile(resolver, scriptName);
+            compiled.incrementAndGet();
+        } catch (final Exception e) {
+            failed.incrementAndGet();
+            logger.warn("Unable to precompile {}: {}", scriptName, e.getMessage());
+            logger.debug("Precompilation of " + scriptName + " failed", e);
+        } finally {
+            resolver.close();
+            compileTime.addAndGet(System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Run the task in the pool and keep track of the pending tasks, the
+     * duration of a run is measured from the first task scheduled while no
+     * other task is pending until no task is pending anymore.
+     */
+    private void execute(final Runnable task) {
+        if (pending.getAndIncrement() == 0) {
+            runStarted = System.currentTimeMillis();
+        }
+        try {
+            executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        task.run();
+                    } finally {
+                        done();
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException ree) {
+            // shut down
+            pending.decrementAndGet();
+        }
+    }
+
+    private void done() {
+        if (pending.decrementAndGet() == 0) {
+            lastRunDuration = System.currentTimeMillis() - runStarted;
+            logger.info("JSP precompilation finished after {}ms, {} scripts compiled or loaded, {} failed",
+                    new Object[] {lastRunDuration, compiled.get(), failed.get()});
+        }
+    }
+
+    private ResourceResolver login() {
+        try {
+            return resourceResolverFactory.getServiceResourceResolver(
+                    Collections.<String, Object>singletonMap(ResourceResolverFactory.SUBSERVICE, SUBSERVICE));
+        } catch (final LoginException le) {
+            logger.warn("Unable to get a resource resolver for the precompilation, "
+                    + "a service user mapping for the subservice {} is required", SUBSERVICE);
+            return null;
+        }
+    }
+
+    private static boolean isFile(final Resource resource) {
+        final String resourceType = resource.getResourceType();
+        return "nt:file".equals(resourceType)
+                || "nt:resource".equals(resourceType)
+                || "jcr:content".equals(resource.getName());
+    }
+
+    private static boolean isJsp(final String path) {
+        return path.endsWith(".jsp") || path.endsWith(".jspx");
+    }
+}
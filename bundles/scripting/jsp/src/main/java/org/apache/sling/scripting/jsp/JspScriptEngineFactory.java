@@ -23,8 +23,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Reader;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.script.Bindings;
 import javax.script.ScriptContext;
@@ -38,6 +40,7 @@ import org.apache.sling.api.SlingHttpServletRequest;
 import org.apache.sling.api.SlingIOException;
 import org.apache.sling.api.SlingServletException;
 import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
 import org.apache.sling.api.resource.observation.ExternalResourceChangeListener;
 import org.apache.sling.api.resource.observation.ResourceChange;
 import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
@@ -56,6 +59,8 @@ import org.apache.sling.scripting.jsp.jasper.compiler.JspRuntimeContext;
 import org.apache.sling.scripting.jsp.jasper.compiler.JspRuntimeContext.JspFactoryHandler;
 import org.apache.sling.scripting.jsp.jasper.runtime.AnnotationProcessor;
 import org.apache.sling.scripting.jsp.jasper.runtime.JspApplicationContextImpl;
+import org.apache.sling.scripting.jsp.jasper.runtime.TagHandlerPool;
+import org.apache.sling.scripting.jsp.jasper.runtime.TagHandlerPoolStatistics;
 import org.apache.sling.scripting.jsp.jasper.servlet.JspServletWrapper;
 import org.apache.sling.scripting.jsp.util.TagUtil;
 import org.osgi.framework.BundleContext;
@@ -130,6 +135,14 @@ public class JspScriptEngineFactory
                         "enabled. true or false, default true.")
         boolean jasper_enablePooling() default true;
 
+        @AttributeDefinition(name = "Tag Pool Implementation",
+                description = "The class name of the tag handler pool used if tag " +
+                        "pooling is enabled. The default pool synchronizes all accesses, " +
+                        "org.apache.sling.scripting.jsp.jasper.runtime.ConcurrentTagHandlerPool " +
+                        "does not lock and scales better with many concurrent requests. " +
+                        "Default org.apache.sling.scripting.jsp.jasper.runtime.TagHandlerPool.")
+        String jasper_tagpoolClassName() default "";
+
         @AttributeDefinition(name = "Plugin Class-ID",
                 description = "The class-id value to be sent to Internet " +
                       "Explorer when using <jsp:plugin> tags. Default " +
@@ -166,6 +179,25 @@ public class JspScriptEngineFactory
                     "JSP page? Warning - this behavior may produce unintended results and changing " +
                     "it will not impact previously-compiled pages.")
         boolean default_is_session() default true;
+
+        @AttributeDefinition(name = "Precompile Scripts",
+                description = "Should all JSP scripts below the search paths be compiled " +
+                    "in the background when the script handler is started, and changed scripts " +
+                    "together with the scripts depending on them be compiled again after a change? " +
+                    "This requires a service user mapping for the subservice \"precompiler\" " +
+                    "which may read the scripts. Default false.")
+        boolean precompile_enabled() default false;
+
+        @AttributeDefinition(name = "Precompilation Threads",
+                description = "The number of threads compiling the scripts in parallel " +
+                    "if the scripts are precompiled. Default 2.")
+        int precompile_threads() default 2;
+
+        @AttributeDefinition(name = "Precompiled Resource Types",
+                description = "The resource types whose JSP scripts are precompiled. Relative resource " +
+                    "types are looked up below each search path. If empty, all scripts below the " +
+                    "search paths are precompiled.")
+        String[] precompile_resourceTypes() default {};
     }
 
     /** Default logger */
@@ -188,6 +220,13 @@ public class JspScriptEngineFactory
 
     private SlingTldLocationsCache tldLocationsCache;
 
+    private TagHandlerPoolPrinter tagHandlerPoolPrinter;
+
+    @Reference(cardinality=ReferenceCardinality.OPTIONAL, policy=ReferencePolicy.DYNAMIC)
+    private volatile ResourceResolverFactory resourceResolverFactory;
+
+    private volatile JspPrecompiler precompiler;
+
     private JspRuntimeContext jspRuntimeContext;
 
     private JspServletOptions options;
@@ -375,6 +414,37 @@ public class JspScriptEngineFactory
         return wrapper;
     }
 
+    /**
+     * Compile the JSP script if it either hasn't been compiled yet or is
+     * out dated and load its servlet.
+     * @param resolver The resource resolver used to read the script
+     * @param scriptName The path of the script
+     * @throws ServletException If the script can't be compiled
+     * @throws IOException If the script can't be read
+     */
+    void compile(final ResourceResolver resolver, final String scriptName)
+    throws ServletException, IOException {
+        final SlingIOProvider io = this.ioProvider;
+        final JspFactoryHandler jspfh = this.jspFactoryHandler;
+
+        // abort if JSP Support is shut down concurrently
+        if (io == null || jspfh == null) {
+            return;
+        }
+
+        final ClassLoader old = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(dynamicClassLoader);
+        final ResourceResolver oldResolver = io.setRequestResourceResolver(resolver);
+        jspfh.incUsage();
+        try {
+            getJspWrapper(scriptName, null).compile();
+        } finally {
+            jspfh.decUsage();
+            io.resetRequestResourceResolver(oldResolver);
+            Thread.currentThread().setContextClassLoader(old);
+        }
+    }
+
     private JspServletWrapper getJspWrapper(final SlingScriptHelper scriptHelper, final SlingBindings bindings)
     throws SlingException {
         final SlingScript script = scriptHelper.getScript();
@@ -415,6 +485,12 @@ public class JspScriptEngineFactory
 
             servletConfig = new JspServletConfig(jspServletContext, options.getProperties());
 
+            // the counters are shared by the tag handler pools of all pages
+            final TagHandlerPoolStatistics tagHandlerPoolStatistics = new TagHandlerPoolStatistics();
+            slingServletContext.setAttribute(TagHandlerPoolStatistics.class.getName(), tagHandlerPoolStatistics);
+            this.tagHandlerPoolPrinter = new TagHandlerPoolPrinter(bundleContext, tagHandlerPoolStatistics,
+                    servletConfig.getInitParameter(TagHandlerPool.OPTION_TAGPOOL));
+
         } finally {
             // make sure the context loader is reset after setting up the
             // JSP runtime context
@@ -424,6 +500,17 @@ public class JspScriptEngineFactory
         // check for changes in jasper config
         this.checkJasperConfig();
 
+        final ResourceResolverFactory rrf = this.resourceResolverFactory;
+        if ( config.precompile_enabled() ) {
+            if ( rrf == null ) {
+                logger.warn("Precompilation is enabled but no resource resolver factory is available");
+            } else {
+                this.precompiler = new JspPrecompiler(bundleContext, this, rrf,
+                        config.precompile_threads(), config.precompile_resourceTypes());
+                this.precompiler.precompileAll();
+            }
+        }
+
         logger.info("Activating Apache Sling Script Engine for JSP with options {}", options.getProperties());
         logger.debug("IMPORTANT: Do not modify the generated servlet classes directly");
     }
@@ -435,10 +522,19 @@ public class JspScriptEngineFactory
     protected void deactivate(final BundleContext bundleContext) {
         logger.info("Deactivating Apache Sling Script Engine for JSP");
 
+        if ( this.precompiler != null ) {
+            this.precompiler.deactivate();
+            this.precompiler = null;
+        }
+
         if ( this.tldLocationsCache != null ) {
             this.tldLocationsCache.deactivate(bundleContext);
             this.tldLocationsCache = null;
         }
+        if ( this.tagHandlerPoolPrinter != null ) {
+            this.tagHandlerPoolPrinter.deactivate();
+            this.tagHandlerPoolPrinter = null;
+        }
         if (jspRuntimeContext != null) {
             this.destroyJspRuntimeContext(this.jspRuntimeContext);
             jspRuntimeContext = null;
@@ -526,6 +622,7 @@ public class JspScriptEngineFactory
             if (slingServletContext != null) {
                 slingServletContext.removeAttribute(JspApplicationContextImpl.class.getName());
                 slingServletContext.removeAttribute(AnnotationProcessor.class.getName());
+                slingServletContext.removeAttribute(TagHandlerPoolStatistics.class.getName());
             }
         } catch (NullPointerException npe) {
             // SLING-530, might be thrown on system shutdown in a servlet
@@ -688,12 +785,26 @@ public class JspScriptEngineFactory
 
     @Override
 	public void onChange(final List<ResourceChange> changes) {
+        final JspPrecompiler jp = this.precompiler;
+        final Set<String> recompile = (jp != null) ? new LinkedHashSet<String>() : null;
     	for(final ResourceChange change : changes){
             final JspRuntimeContext rctxt = this.jspRuntimeContext;
+            if ( recompile != null ) {
+                if ( change.getType() != ChangeType.REMOVED ) {
+                    recompile.add(change.getPath());
+                }
+                // the dependencies are dropped when handling the modification
+                if ( rctxt != null ) {
+                    recompile.addAll(rctxt.getDependentJsps(change.getPath()));
+                }
+            }
             if ( rctxt != null && rctxt.handleModification(change.getPath(), change.getType() == ChangeType.REMOVED) ) {
                 renewJspRuntimeContext();
             }
     	}
+        if ( recompile != null ) {
+            jp.precompile(recompile);
+        }
     }
 
     /**
@@ -721,5 +832,9 @@ public class JspScriptEngineFactory
 		if ( rctxt != null ) {
             renewJspRuntimeContext();
         }
+        final JspPrecompiler jp = this.precompiler;
+        if ( jp != null ) {
+            jp.precompileAll();
+        }
 	}
 }
@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.scripting.jsp;
+
+import java.io.PrintWriter;
+import java.util.Dictionary;
+import java.util.Hashtable;
+
+import org.apache.sling.scripting.jsp.jasper.runtime.TagHandlerPool;
+import org.apache.sling.scripting.jsp.jasper.runtime.TagHandlerPoolStatistics;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
+
+/**
+ * The <code>TagHandlerPoolPrinter</code> shows the counters of the tag
+ * handler pools of the JSP script engine in the web console.
+ */
+public class TagHandlerPoolPrinter {
+
+    private final TagHandlerPoolStatistics statistics;
+
+    private final String poolClassName;
+
+    private ServiceRegistration serviceRegistration;
+
+    public TagHandlerPoolPrinter(final BundleContext context,
+            final TagHandlerPoolStatistics statistics,
+            final String poolClassName) {
+        this.statistics = statistics;
+        this.poolClassName = (poolClassName != null) ? poolClassName : TagHandlerPool.class.getName();
+
+        Dictionary<String, Object> printerProperties = new Hashtable<String, Object>();
+        printerProperties.put("felix.webconsole.label", "jsptagpools");
+        printerProperties.put("felix.webconsole.title", "JSP Tag Handler Pools");
+        printerProperties.put("felix.webconsole.configprinter.modes", "always");
+        this.serviceRegistration = context.registerService(Object.class.getName(),
+            this, printerProperties);
+    }
+
+    public void deactivate() {
+        if (this.serviceRegistration != null) {
+            this.serviceRegistration.unregister();
+            this.serviceRegistration = null;
+        }
+    }
+
+    public void printConfiguration(final PrintWriter pw) {
+        pw.println("JSP Tag Handler Pools:");
+        pw.println();
+        pw.println("Pool implementation: " + poolClassName);
+        pw.println("Pool hits: " + statistics.getHits());
+        pw.println("Pool misses: " + statistics.getMisses());
+        pw.println("Tag handler instantiations: " + statistics.getInstantiations());
+    }
+}
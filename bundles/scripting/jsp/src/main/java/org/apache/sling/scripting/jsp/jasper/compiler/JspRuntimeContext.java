@@ -24,6 +24,7 @@ import java.security.CodeSource;
 import java.security.PermissionCollection;
 import java.security.Policy;
 import java.security.cert.Certificate;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -255,6 +256,21 @@ public final class JspRuntimeContext {
         }
     }
 
+    /**
+     * Return the uris of the jsps depending on the given script.
+     * @param scriptName The script name
+     * @return A copy of the dependent jsp uris, empty if there are none
+     */
+    public Set<String> getDependentJsps(final String scriptName) {
+        synchronized ( depToJsp ) {
+            final Set<String> deps = depToJsp.get(scriptName);
+            if ( deps == null ) {
+                return Collections.emptySet();
+            }
+            return new HashSet<String>(deps);
+        }
+    }
+
     /**
      * Handle jsp modifications
      */
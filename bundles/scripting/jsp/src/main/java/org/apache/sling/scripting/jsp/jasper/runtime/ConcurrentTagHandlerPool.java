@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.sling.scripting.jsp.jasper.runtime;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.jsp.JspException;
+import javax.servlet.jsp.tagext.Tag;
+
+/**
+ * Tag handler pool which does not lock. It is selected by setting the
+ * {@link TagHandlerPool#OPTION_TAGPOOL} option to the name of this class.
+ * <p>
+ * The tag handlers are kept in an array of slots which are taken and filled
+ * with compare-and-set operations. Each thread starts scanning the slots at
+ * an offset derived from its id, so concurrent requests rendering the same
+ * tag mostly work on different slots instead of contending for the top of a
+ * single stack.
+ */
+public class ConcurrentTagHandlerPool extends TagHandlerPool {
+
+    private AtomicReferenceArray<Tag> slots;
+
+    @Override
+    protected void init(ServletConfig config) {
+        initServices(config);
+        this.slots = new AtomicReferenceArray<Tag>(getMaxSize(config));
+    }
+
+    @Override
+    public Tag get(Class handlerClass) throws JspException {
+        final int length = slots.length();
+        final int start = start(length);
+        for (int i = 0; i < length; i++) {
+            final int index = (start + i) % length;
+            final Tag handler = slots.get(index);
+            if (handler != null && slots.compareAndSet(index, handler, null)) {
+                if (statistics != null) {
+                    statistics.hit();
+                }
+                return handler;
+            }
+        }
+        return newHandler(handlerClass);
+    }
+
+    @Override
+    public void reuse(Tag handler) {
+        final int length = slots.length();
+        final int start = start(length);
+        for (int i = 0; i < length; i++) {
+            final int index = (start + i) % length;
+            if (slots.get(index) == null && slots.compareAndSet(index, null, handler)) {
+                return;
+            }
+        }
+        // the pool is full
+        releaseHandler(handler);
+    }
+
+    @Override
+    public void release() {
+        for (int i = 0; i < slots.length(); i++) {
+            final Tag handler = slots.getAndSet(i, null);
+            if (handler != null) {
+                releaseHandler(handler);
+            }
+        }
+    }
+
+    private static int start(final int length) {
+        return (length == 0) ? 0 : (int) (Thread.currentThread().getId() % length);
+    }
+}
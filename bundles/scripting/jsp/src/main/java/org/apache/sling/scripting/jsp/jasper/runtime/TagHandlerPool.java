@@ -43,14 +43,58 @@ public class TagHandlerPool {
     private int current;
     protected AnnotationProcessor annotationProcessor = null;
 
+    protected TagHandlerPoolStatistics statistics = null;
+
+    /**
+     * Creates the tag handler pool of a tag of a page. The class of the pool
+     * is configured with the {@link #OPTION_TAGPOOL} option, it must extend
+     * this class and have a public default constructor.
+     */
     public static TagHandlerPool getTagHandlerPool( ServletConfig config) {
-        final TagHandlerPool result = new TagHandlerPool();
+        TagHandlerPool result = null;
+        final String className = getOption(config, OPTION_TAGPOOL, null);
+        if ( className != null && !className.equals(TagHandlerPool.class.getName()) ) {
+            try {
+                final Class<?> poolClass = TagHandlerPool.class.getClassLoader().loadClass(className);
+                result = (TagHandlerPool) poolClass.newInstance();
+            } catch (Exception e) {
+                LogFactory.getLog(TagHandlerPool.class).warn("Cannot create tag handler pool "
+                        + className + ", using default pool", e);
+            }
+        }
+        if ( result == null ) {
+            result = new TagHandlerPool();
+        }
         result.init(config);
 
         return result;
     }
 
     protected void init( ServletConfig config ) {
+        int maxSize=getMaxSize(config);
+        this.handlers = new Tag[maxSize];
+        this.current = -1;
+        initServices(config);
+    }
+
+    /**
+     * Looks up the annotation processor and the statistics from the servlet
+     * context. Pools which keep their tag handlers in their own structure
+     * call this from {@link #init(ServletConfig)} instead of the default
+     * implementation.
+     */
+    protected void initServices( ServletConfig config ) {
+        this.annotationProcessor =
+            (AnnotationProcessor) config.getServletContext().getAttribute(AnnotationProcessor.class.getName());
+        this.statistics =
+            (TagHandlerPoolStatistics) config.getServletContext().getAttribute(TagHandlerPoolStatistics.class.getName());
+    }
+
+    /**
+     * Returns the maximum number of tag handlers kept by the pool, as
+     * configured with the {@link #OPTION_MAXSIZE} option.
+     */
+    protected static int getMaxSize( ServletConfig config ) {
         int maxSize=-1;
         String maxSizeS=getOption(config, OPTION_MAXSIZE, null);
         if( maxSizeS != null ) {
@@ -63,10 +107,7 @@ public class TagHandlerPool {
         if( maxSize <0  ) {
             maxSize=Constants.MAX_POOL_SIZE;
         }
-        this.handlers = new Tag[maxSize];
-        this.current = -1;
-        this.annotationProcessor =
-            (AnnotationProcessor) config.getServletContext().getAttribute(AnnotationProcessor.class.getName());
+        return maxSize;
     }
 
     /**
@@ -104,15 +145,39 @@ public class TagHandlerPool {
         synchronized( this ) {
             if (current >= 0) {
                 handler = handlers[current--];
-                return handler;
             }
         }
+        if (handler != null) {
+            if (statistics != null) {
+                statistics.hit();
+            }
+            return handler;
+        }
 
         // Out of sync block - there is no need for other threads to
         // wait for us to construct a tag for this thread.
+        return newHandler(handlerClass);
+    }
+
+    /**
+     * Instantiates a tag handler as the pool has none available.
+     *
+     * @param handlerClass Tag handler class
+     *
+     * @return Newly instantiated tag handler
+     *
+     * @throws JspException if a tag handler cannot be instantiated
+     */
+    protected Tag newHandler(Class handlerClass) throws JspException {
+        if (statistics != null) {
+            statistics.miss();
+        }
         try {
             Tag instance = (Tag) handlerClass.newInstance();
             AnnotationHelper.postConstruct(annotationProcessor, instance);
+            if (statistics != null) {
+                statistics.instantiation();
+            }
             return instance;
         } catch (Exception e) {
             throw new JspException(e.getMessage(), e);
@@ -134,6 +199,15 @@ public class TagHandlerPool {
             }
         }
         // There is no need for other threads to wait for us to release
+        releaseHandler(handler);
+    }
+
+    /**
+     * Releases a tag handler which is not kept by the pool.
+     *
+     * @param handler Tag handler to release
+     */
+    protected void releaseHandler(Tag handler) {
         handler.release();
         if (annotationProcessor != null) {
             try {
@@ -151,15 +225,7 @@ public class TagHandlerPool {
      */
     public synchronized void release() {
         for (int i = current; i >= 0; i--) {
-            handlers[i].release();
-            if (annotationProcessor != null) {
-                try {
-                    AnnotationHelper.preDestroy(annotationProcessor, handlers[i]);
-                } catch (Exception e) {
-                    log.warn("Error processing preDestroy on tag instance of "
-                            + handlers[i].getClass().getName(), e);
-                }
-            }
+            releaseHandler(handlers[i]);
         }
     }
 
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.sling.scripting.jsp.jasper.runtime;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters of all tag handler pools of a JSP engine. The statistics are
+ * made available to the pools as a servlet context attribute named after
+ * this class.
+ * <p>
+ * The counters are updated on every tag invocation by all request threads,
+ * so each counter is striped over several cells selected by the thread id,
+ * with a cache line between the cells.
+ */
+public final class TagHandlerPoolStatistics {
+
+    private static final int STRIPES = 16;
+
+    /** distance between the cells of a counter, 8 longs are a 64 byte cache line */
+    private static final int PADDING = 8;
+
+    private static final int HITS = 0;
+
+    private static final int MISSES = 1;
+
+    private static final int INSTANTIATIONS = 2;
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+    /**
+     * A tag handler has been taken from a pool.
+     */
+    public void hit() {
+        increment(HITS);
+    }
+
+    /**
+     * A pool had no tag handler available.
+     */
+    public void miss() {
+        increment(MISSES);
+    }
+
+    /**
+     * A tag handler has been created.
+     */
+    public void instantiation() {
+        increment(INSTANTIATIONS);
+    }
+
+    public long getHits() {
+        return sum(HITS);
+    }
+
+    public long getMisses() {
+        return sum(MISSES);
+    }
+
+    public long getInstantiations() {
+        return sum(INSTANTIATIONS);
+    }
+
+    private void increment(final int counter) {
+        final int stripe = (int) (Thread.currentThread().getId() & (STRIPES - 1));
+        cells.incrementAndGet(stripe * PADDING + counter);
+    }
+
+    private long sum(final int counter) {
+        long sum = 0;
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            sum += cells.get(stripe * PADDING + counter);
+        }
+        return sum;
+    }
+}
@@ -434,6 +434,27 @@ public class JspServletWrapper {
         this.theServlet = this.loadServlet();
     }
 
+    /**
+     * Compile the JSP if it either hasn't been compiled yet or is out dated
+     * and load the servlet, without servicing a request. This is used to
+     * compile the JSPs before they are requested for the first time.
+     */
+    public void compile() throws ServletException, IOException {
+        if ( theServlet == null ) {
+            synchronized ( this ) {
+                if ( compileException != null ) {
+                    throw compileException;
+                }
+                if ( theServlet == null ) {
+                    this.prepareServlet(null, null);
+                }
+            }
+        }
+        if ( compileException != null ) {
+            throw compileException;
+        }
+    }
+
     /**
      * @param bindings
      * @throws SlingIOException
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.scripting.jsp;
+
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.osgi.framework.BundleContext;
+
+public class JspPrecompilerTest {
+
+    private JspScriptEngineFactory engineFactory;
+
+    private ResourceResolverFactory resourceResolverFactory;
+
+    private ResourceResolver resolver;
+
+    private Resource image;
+
+    private JspPrecompiler precompiler;
+
+    @Before
+    public void setUp() throws Exception {
+        engineFactory = mock(JspScriptEngineFactory.class);
+        resolver = mock(ResourceResolver.class);
+        when(resolver.getSearchPath()).thenReturn(new String[] {"/apps/", "/libs/"});
+        resourceResolverFactory = mock(ResourceResolverFactory.class);
+        when(resourceResolverFactory.getServiceResourceResolver(anyMapOf(String.class, Object.class))).thenReturn(resolver);
+
+        final Resource content = resource("/apps/a/image.png/jcr:content", "nt:resource");
+        image = resource("/apps/a/image.png", "nt:file", content);
+        resource("/apps/", "sling:Folder",
+                resource("/apps/a", "sling:Folder",
+                        resource("/apps/a/a.jsp", "nt:file", resource("/apps/a/a.jsp/jcr:content", "nt:resource")),
+                        image,
+                        resource("/apps/a/b", "sling:Folder",
+                                resource("/apps/a/b/b.jsp", "nt:file"))));
+        resource("/libs/", "sling:Folder",
+                resource("/libs/c", "sling:Folder",
+                        resource("/libs/c/c.jsp", "nt:file")));
+    }
+
+    @After
+    public void tearDown() {
+        if (precompiler != null) {
+            precompiler.deactivate();
+        }
+    }
+
+    @Test
+    public void testPrecompileAll() throws Exception {
+        precompiler = new JspPrecompiler(mock(BundleContext.class), engineFactory, resourceResolverFactory, 1, null);
+        precompiler.precompileAll();
+
+        verify(engineFactory, timeout(5000)).compile(resolver, "/apps/a/a.jsp");
+        verify(engineFactory, timeout(5000)).compile(resolver, "/apps/a/b/b.jsp");
+        verify(engineFactory, timeout(5000)).compile(resolver, "/libs/c/c.jsp");
+        // files are not descended into
+        verify(image, never()).listChildren();
+    }
+
+    @Test
+    public void testPrecompileResourceTypes() throws Exception {
+        precompiler = new JspPrecompiler(mock(BundleContext.class), engineFactory, resourceResolverFactory, 1,
+                new String[] {"a/b"});
+        precompiler.precompileAll();
+
+        verify(engineFactory, timeout(5000)).compile(resolver, "/apps/a/b/b.jsp");
+        // the scripts are compiled after all of them have been collected
+        verify(engineFactory, never()).compile(resolver, "/apps/a/a.jsp");
+        verify(engineFactory, never()).compile(resolver, "/libs/c/c.jsp");
+    }
+
+    @Test
+    public void testPrecompileChanged() throws Exception {
+        precompiler = new JspPrecompiler(mock(BundleContext.class), engineFactory, resourceResolverFactory, 1, null);
+        precompiler.precompile(Arrays.asList("/apps/a/image.png", "/apps/a/a.jsp"));
+        precompiler.precompile(Collections.singleton("/libs/c/c.jsp"));
+
+        verify(engineFactory, timeout(5000)).compile(resolver, "/libs/c/c.jsp");
+        verify(engineFactory).compile(resolver, "/apps/a/a.jsp");
+        verify(engineFactory, never()).compile(resolver, "/apps/a/image.png");
+    }
+
+    private Resource resource(final String path, final String resourceType, final Resource... children) {
+        final Resource resource = mock(Resource.class);
+        when(resource.getPath()).thenReturn(path);
+        when(resource.getName()).thenReturn(path.substring(path.lastIndexOf('/', path.length() - 2) + 1));
+        when(resource.getResourceType()).thenReturn(resourceType);
+        when(resource.listChildren()).thenAnswer(new Answer<Iterator<Resource>>() {
+            @Override
+            public Iterator<Resource> answer(final InvocationOnMock invocation) {
+                return Arrays.asList(children).iterator();
+            }
+        });
+        when(resolver.getResource(path)).thenReturn(resource);
+        return resource;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.scripting.jsp;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collection;
+
+import javax.servlet.ServletContext;
+
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+import org.apache.sling.scripting.jsp.jasper.IOProvider;
+import org.apache.sling.scripting.jsp.jasper.Options;
+import org.apache.sling.scripting.jsp.jasper.compiler.JspRuntimeContext;
+import org.apache.sling.scripting.jsp.jasper.servlet.JspServletWrapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class JspScriptEngineFactoryTest {
+
+    private JspScriptEngineFactory engineFactory;
+
+    private JspPrecompiler precompiler;
+
+    @Before
+    public void setUp() throws Exception {
+        final JspRuntimeContext context = new JspRuntimeContext(mock(ServletContext.class), mock(Options.class),
+                mock(IOProvider.class));
+        context.addJspDependencies(wrapper("/apps/a/page.jsp"), Arrays.asList("/apps/a/header.jsp"));
+        context.addJspDependencies(wrapper("/apps/a/other.jsp"), Arrays.asList("/apps/a/old.jsp"));
+        precompiler = mock(JspPrecompiler.class);
+        engineFactory = new JspScriptEngineFactory();
+        setField("jspRuntimeContext", context);
+        setField("precompiler", precompiler);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPrecompileChanged() {
+        engineFactory.onChange(Arrays.asList(change(ChangeType.CHANGED, "/apps/a/header.jsp"),
+                change(ChangeType.REMOVED, "/apps/a/old.jsp")));
+
+        // the dependent scripts are compiled again, removed scripts are not
+        final ArgumentCaptor<Collection> scriptNames = ArgumentCaptor.forClass(Collection.class);
+        verify(precompiler).precompile(scriptNames.capture());
+        assertEquals(Arrays.asList("/apps/a/header.jsp", "/apps/a/page.jsp", "/apps/a/other.jsp"),
+                Arrays.asList(scriptNames.getValue().toArray()));
+    }
+
+    @Test
+    public void testPrecompileAfterClassLoaderClear() {
+        engineFactory.onClassLoaderClear("/");
+
+        verify(precompiler).precompileAll();
+    }
+
+    private void setField(final String name, final Object value) throws Exception {
+        final Field field = JspScriptEngineFactory.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(engineFactory, value);
+    }
+
+    private static ResourceChange change(final ChangeType type, final String path) {
+        return new ResourceChange(type, path, false, null, null, null);
+    }
+
+    private static JspServletWrapper wrapper(final String jspUri) {
+        final JspServletWrapper wrapper = mock(JspServletWrapper.class);
+        when(wrapper.getJspUri()).thenReturn(jspUri);
+        return wrapper;
+    }
+}
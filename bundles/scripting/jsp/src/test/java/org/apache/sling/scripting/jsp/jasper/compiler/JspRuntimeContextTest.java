@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.scripting.jsp.jasper.compiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import javax.servlet.ServletContext;
+
+import org.apache.sling.scripting.jsp.jasper.IOProvider;
+import org.apache.sling.scripting.jsp.jasper.Options;
+import org.apache.sling.scripting.jsp.jasper.servlet.JspServletWrapper;
+import org.junit.Test;
+
+public class JspRuntimeContextTest {
+
+    @Test
+    public void testGetDependentJsps() {
+        final JspRuntimeContext context = new JspRuntimeContext(mock(ServletContext.class), mock(Options.class),
+                mock(IOProvider.class));
+        context.addJspDependencies(wrapper("/apps/a/page.jsp"), Arrays.asList("/apps/a/header.jsp", "/apps/a/a.tld"));
+        context.addJspDependencies(wrapper("/apps/a/other.jsp"), Arrays.asList("/apps/a/header.jsp"));
+
+        assertEquals(new HashSet<String>(Arrays.asList("/apps/a/page.jsp", "/apps/a/other.jsp")),
+                context.getDependentJsps("/apps/a/header.jsp"));
+        assertEquals(new HashSet<String>(Arrays.asList("/apps/a/page.jsp")),
+                context.getDependentJsps("/apps/a/a.tld"));
+        assertTrue(context.getDependentJsps("/apps/a/page.jsp").isEmpty());
+
+        // a copy is returned
+        context.getDependentJsps("/apps/a/header.jsp").clear();
+        assertEquals(2, context.getDependentJsps("/apps/a/header.jsp").size());
+
+        // handling the modification drops the dependencies
+        context.handleModification("/apps/a/header.jsp", false);
+        assertTrue(context.getDependentJsps("/apps/a/header.jsp").isEmpty());
+        assertEquals(1, context.getDependentJsps("/apps/a/a.tld").size());
+    }
+
+    private JspServletWrapper wrapper(final String jspUri) {
+        final JspServletWrapper wrapper = mock(JspServletWrapper.class);
+        when(wrapper.getJspUri()).thenReturn(jspUri);
+        return wrapper;
+    }
+}
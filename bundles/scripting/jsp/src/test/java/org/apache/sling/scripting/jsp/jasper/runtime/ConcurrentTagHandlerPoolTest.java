@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.scripting.jsp.jasper.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.jsp.tagext.Tag;
+import javax.servlet.jsp.tagext.TagSupport;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConcurrentTagHandlerPoolTest {
+
+    private static final AtomicInteger RELEASED = new AtomicInteger();
+
+    private TagHandlerPoolStatistics statistics;
+
+    private TagHandlerPool pool;
+
+    @Before
+    public void setUp() {
+        RELEASED.set(0);
+        statistics = new TagHandlerPoolStatistics();
+        pool = createPool(2);
+    }
+
+    @Test
+    public void testInit() throws Exception {
+        assertTrue(pool instanceof ConcurrentTagHandlerPool);
+        // the array of the default pool is not allocated
+        final Field handlers = TagHandlerPool.class.getDeclaredField("handlers");
+        handlers.setAccessible(true);
+        assertNull(handlers.get(pool));
+    }
+
+    @Test
+    public void testGetAndReuse() throws Exception {
+        final Tag handler = pool.get(TestTag.class);
+        assertEquals(0, statistics.getHits());
+        assertEquals(1, statistics.getMisses());
+        assertEquals(1, statistics.getInstantiations());
+
+        pool.reuse(handler);
+        assertSame(handler, pool.get(TestTag.class));
+        assertNotSame(handler, pool.get(TestTag.class));
+        assertEquals(1, statistics.getHits());
+        assertEquals(2, statistics.getMisses());
+        assertEquals(2, statistics.getInstantiations());
+        assertEquals(0, RELEASED.get());
+    }
+
+    @Test
+    public void testReuseFullPool() throws Exception {
+        pool.reuse(new TestTag());
+        pool.reuse(new TestTag());
+        assertEquals(0, RELEASED.get());
+
+        // the pool keeps two handlers
+        pool.reuse(new TestTag());
+        assertEquals(1, RELEASED.get());
+    }
+
+    @Test
+    public void testRelease() throws Exception {
+        pool.reuse(new TestTag());
+        pool.reuse(new TestTag());
+        pool.release();
+        assertEquals(2, RELEASED.get());
+
+        // the pool is empty after the release
+        pool.get(TestTag.class);
+        assertEquals(0, statistics.getHits());
+        assertEquals(1, statistics.getMisses());
+    }
+
+    @Test(timeout = 10000)
+    public void testConcurrentGetAndReuse() throws Exception {
+        final int threadCount = 8;
+        final int iterations = 10000;
+        pool = createPool(4);
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < threadCount; i++) {
+            final Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int j = 0; j < iterations; j++) {
+                            final TestTag handler = (TestTag) pool.get(TestTag.class);
+                            // a handler is never handed out to two threads at once
+                            assertTrue(handler.inUse.compareAndSet(false, true));
+                            handler.inUse.set(false);
+                            pool.reuse(handler);
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            };
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+
+        assertEquals(threadCount * iterations, statistics.getHits() + statistics.getMisses());
+        assertEquals(statistics.getMisses(), statistics.getInstantiations());
+        // every handler is released exactly once, either when the pool
+        // was full or when the pool is released
+        pool.release();
+        assertEquals(statistics.getInstantiations(), RELEASED.get());
+        pool.release();
+        assertEquals(statistics.getInstantiations(), RELEASED.get());
+    }
+
+    private TagHandlerPool createPool(final int maxSize) {
+        final ServletContext context = mock(ServletContext.class);
+        when(context.getAttribute(TagHandlerPoolStatistics.class.getName())).thenReturn(statistics);
+        final ServletConfig config = mock(ServletConfig.class);
+        when(config.getServletContext()).thenReturn(context);
+        when(config.getInitParameter(TagHandlerPool.OPTION_TAGPOOL)).thenReturn(ConcurrentTagHandlerPool.class.getName());
+        when(config.getInitParameter(TagHandlerPool.OPTION_MAXSIZE)).thenReturn(String.valueOf(maxSize));
+        return TagHandlerPool.getTagHandlerPool(config);
+    }
+
+    public static class TestTag extends TagSupport {
+
+        private static final long serialVersionUID = 1L;
+
+        final AtomicBoolean inUse = new AtomicBoolean();
+
+        @Override
+        public void release() {
+            assertFalse(inUse.get());
+            RELEASED.incrementAndGet();
+        }
+    }
+}
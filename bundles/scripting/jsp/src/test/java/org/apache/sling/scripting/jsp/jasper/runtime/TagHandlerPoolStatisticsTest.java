@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.scripting.jsp.jasper.runtime;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+public class TagHandlerPoolStatisticsTest {
+
+    @Test
+    public void testCounters() {
+        final TagHandlerPoolStatistics statistics = new TagHandlerPoolStatistics();
+        statistics.hit();
+        statistics.hit();
+        statistics.miss();
+        statistics.instantiation();
+        statistics.instantiation();
+        statistics.instantiation();
+
+        assertEquals(2, statistics.getHits());
+        assertEquals(1, statistics.getMisses());
+        assertEquals(3, statistics.getInstantiations());
+    }
+
+    @Test(timeout = 10000)
+    public void testConcurrentCounters() throws Exception {
+        // more threads than stripes, so threads share cells
+        final int threadCount = 40;
+        final int iterations = 10000;
+        final TagHandlerPoolStatistics statistics = new TagHandlerPoolStatistics();
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < threadCount; i++) {
+            final Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < iterations; j++) {
+                        statistics.hit();
+                        if (j % 2 == 0) {
+                            statistics.miss();
+                        }
+                        if (j % 4 == 0) {
+                            statistics.instantiation();
+                        }
+                    }
+                }
+            };
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(threadCount * iterations, statistics.getHits());
+        assertEquals(threadCount * iterations / 2, statistics.getMisses());
+        assertEquals(threadCount * iterations / 4, statistics.getInstantiations());
+    }
+}
@@ -0,0 +1,341 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ ******************************************************************************/
+package org.apache.sling.scripting.sightly.impl.engine;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nonnull;
+import javax.script.CompiledScript;
+import javax.script.ScriptEngineManager;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.observation.ExternalResourceChangeListener;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.apache.sling.scripting.api.CachedScript;
+import org.apache.sling.scripting.api.ScriptCache;
+import org.apache.sling.scripting.core.ScriptNameAwareReader;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.ConfigurationPolicy;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@code SightlyPrecompiler} compiles HTL scripts in the background and adds them to the script cache, so the first requests
+ * after a start or a deployment do not have to wait for the compilation. It is only active if it is configured and requires a
+ * service user mapping for the subservice {@value #SUBSERVICE} which may read the scripts.
+ * <p>
+ * On activation all HTL scripts below the search paths, or of the configured resource types only, are compiled. After a change
+ * the changed scripts below the search paths are compiled again. HTL scripts are compiled independently of the templates they use,
+ * so unlike for JSPs no dependent scripts have to be compiled again. Scripts shadowed by a script with the same relative path below
+ * a preceding search path are skipped.
+ */
+@Component(
+        service = ResourceChangeListener.class,
+        configurationPid = "org.apache.sling.scripting.sightly.impl.engine.SightlyPrecompiler",
+        configurationPolicy = ConfigurationPolicy.REQUIRE,
+        property = {
+                ResourceChangeListener.PATHS + "=glob:**/*." + SightlyScriptEngineFactory.EXTENSION,
+                ResourceChangeListener.CHANGES + "=ADDED",
+                ResourceChangeListener.CHANGES + "=CHANGED"
+        }
+)
+public class SightlyPrecompiler implements ResourceChangeListener, ExternalResourceChangeListener {
+
+    @interface Configuration {
+
+        @AttributeDefinition(
+                name = "Precompilation Threads",
+                description = "The number of threads compiling the scripts in parallel."
+        )
+        int threads() default 2;
+
+        @AttributeDefinition(
+                name = "Precompiled Resource Types",
+                description = "The resource types whose HTL scripts are precompiled. Relative resource types are looked up below " +
+                        "each search path. If empty, all HTL scripts below the search paths are precompiled."
+        )
+        String[] resourceTypes() default {};
+
+    }
+
+    /**
+     * The subservice name used to read the scripts.
+     */
+    public static final String SUBSERVICE = "precompiler";
+
+    private static final Logger LOG = LoggerFactory.getLogger(SightlyPrecompiler.class);
+
+    @Reference
+    private ResourceResolverFactory resourceResolverFactory;
+
+    @Reference
+    private ScriptEngineManager scriptEngineManager;
+
+    @Reference
+    private ScriptCache scriptCache;
+
+    private final Set<String> queued = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private final AtomicInteger compiled = new AtomicInteger();
+
+    private final AtomicInteger failed = new AtomicInteger();
+
+    private volatile ExecutorService executor;
+
+    private volatile String[] searchPaths;
+
+    private String[] resourceTypes;
+
+    @Activate
+    protected void activate(Configuration configuration) {
+        resourceTypes = configuration.resourceTypes();
+        executor = Executors.newFixedThreadPool(Math.max(1, configuration.threads()), new ThreadFactory() {
+
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(@Nonnull Runnable r) {
+                Thread t = new Thread(r, "Apache Sling HTL Precompiler #" + counter.incrementAndGet());
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            }
+        });
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.currentTimeMillis();
+                ResourceResolver resolver = login();
+                if (resolver != null) {
+                    try {
+                        searchPaths = resolver.getSearchPath();
+                        for (String path : getRootPaths(resolver)) {
+                            Resource root = resolver.getResource(path);
+                            if (root != null) {
+                                collect(root);
+                            }
+                        }
+                    } finally {
+                        resolver.close();
+                    }
+                }
+                LOG.info("Scheduled the precompilation of {} HTL scripts in {}ms.", queued.size(), System.currentTimeMillis() - start);
+            }
+        });
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        executor.shutdownNow();
+        LOG.info("HTL precompilation stopped, {} scripts compiled, {} failed.", compiled.get(), failed.get());
+    }
+
+    @Override
+    public void onChange(@Nonnull List<ResourceChange> changes) {
+        // the script cache drops the changed scripts, compile them again
+        String[] paths = searchPaths;
+        if (paths == null) {
+            // the scripts are collected once the search paths are known
+            return;
+        }
+        for (ResourceChange change : changes) {
+            if (getRelativePath(paths, change.getPath()) != null) {
+                schedule(change.getPath());
+            }
+        }
+    }
+
+    /**
+     * Returns the paths below which the scripts are collected: the directories of the resource types or the search paths.
+     */
+    private Collection<String> getRootPaths(ResourceResolver resolver) {
+        Set<String> paths = new LinkedHashSet<>();
+        if (resourceTypes.length == 0) {
+            Collections.addAll(paths, resolver.getSearchPath());
+        }
+        for (String resourceType : resourceTypes) {
+            String relPath = resourceType.replace(':', '/');
+            if (relPath.startsWith("/")) {
+                paths.add(relPath);
+            } else {
+                for (String searchPath : resolver.getSearchPath()) {
+                    paths.add(searchPath + relPath);
+                }
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Schedules the HTL scripts below the resource. Files other than scripts are skipped without visiting their content.
+     */
+    private void collect(Resource resource) {
+        Iterator<Resource> children = resource.listChildren();
+        while (children.hasNext() && !executor.isShutdown()) {
+            Resource child = children.next();
+            if (child.getName().endsWith("." + SightlyScriptEngineFactory.EXTENSION)) {
+                schedule(child.getPath());
+            } else if (!isFile(child)) {
+                collect(child);
+            }
+        }
+    }
+
+    private void schedule(final String scriptPath) {
+        if (queued.add(scriptPath)) {
+            execute(new Runnable() {
+                @Override
+                public void run() {
+                    queued.remove(scriptPath);
+                    compile(scriptPath);
+                }
+            });
+        }
+    }
+
+    private void execute(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // deactivated
+        }
+    }
+
+    private void compile(final String scriptPath) {
+        ResourceResolver resolver = login();
+        if (resolver == null) {
+            return;
+        }
+        try {
+            if (isShadowed(resolver, scriptPath)) {
+                return;
+            }
+            SightlyScriptEngine engine = (SightlyScriptEngine) scriptEngineManager.getEngineByName(SightlyScriptEngineFactory.SHORT_NAME);
+            Resource script = resolver.getResource(scriptPath);
+            InputStream inputStream = (script != null) ? script.adaptTo(InputStream.class) : null;
+            if (engine == null || inputStream == null) {
+                return;
+            }
+            long lastModified = script.getResourceMetadata().getModificationTime();
+            String encoding = script.getResourceMetadata().getCharacterEncoding();
+            if (StringUtils.isEmpty(encoding)) {
+                encoding = "UTF-8";
+            }
+            final CompiledScript compiledScript;
+            try (ScriptNameAwareReader reader = new ScriptNameAwareReader(new InputStreamReader(inputStream, encoding), scriptPath)) {
+                compiledScript = engine.compile(reader);
+            }
+            // a script changed while it was compiled is compiled again when its change is handled
+            resolver.refresh();
+            Resource current = resolver.getResource(scriptPath);
+            if (current == null || current.getResourceMetadata().getModificationTime() != lastModified) {
+                return;
+            }
+            scriptCache.putScript(new CachedScript() {
+                @Override
+                public String getScriptPath() {
+                    return scriptPath;
+                }
+
+                @Override
+                public CompiledScript getCompiledScript() {
+                    return compiledScript;
+                }
+            });
+            compiled.incrementAndGet();
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            LOG.warn("Unable to precompile {}: {}", scriptPath, e.getMessage());
+            LOG.debug("Precompilation of " + scriptPath + " failed.", e);
+        } finally {
+            resolver.close();
+        }
+    }
+
+    private ResourceResolver login() {
+        try {
+            return resourceResolverFactory.getServiceResourceResolver(
+                    Collections.<String, Object>singletonMap(ResourceResolverFactory.SUBSERVICE, SUBSERVICE));
+        } catch (LoginException e) {
+            LOG.warn("Unable to get a resource resolver for the HTL precompilation, a service user mapping for the subservice {} is " +
+                    "required.", SUBSERVICE);
+            return null;
+        }
+    }
+
+    /**
+     * Checks if a script with the same relative path exists below a search path preceding the one of the script, in which case the
+     * script is not resolved for its resource type.
+     */
+    private static boolean isShadowed(ResourceResolver resolver, String scriptPath) {
+        String[] paths = resolver.getSearchPath();
+        String relPath = getRelativePath(paths, scriptPath);
+        if (relPath == null) {
+            return false;
+        }
+        for (String searchPath : paths) {
+            if (scriptPath.startsWith(searchPath)) {
+                return false;
+            }
+            if (resolver.getResource(searchPath + relPath) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the path of the script relative to its search path, or {@code null} if it is not below a search path.
+     */
+    private static String getRelativePath(String[] searchPaths, String scriptPath) {
+        for (String searchPath : searchPaths) {
+            if (scriptPath.startsWith(searchPath)) {
+                return scriptPath.substring(searchPath.length());
+            }
+        }
+        return null;
+    }
+
+    private static boolean isFile(Resource resource) {
+        return "nt:file".equals(resource.getResourceType())
+                || "nt:resource".equals(resource.getResourceType())
+                || "jcr:content".equals(resource.getName());
+    }
+}
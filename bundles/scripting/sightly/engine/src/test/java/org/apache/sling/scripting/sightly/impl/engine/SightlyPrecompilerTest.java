@@ -0,0 +1,248 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.apache.sling.scripting.sightly.impl.engine;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import javax.script.CompiledScript;
+import javax.script.ScriptEngineManager;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceMetadata;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.scripting.api.CachedScript;
+import org.apache.sling.scripting.api.ScriptCache;
+import org.apache.sling.scripting.core.ScriptNameAwareReader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatcher;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.reflect.Whitebox;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SightlyPrecompilerTest {
+
+    private ResourceResolver resolver;
+
+    private SightlyScriptEngine engine;
+
+    private CompiledScript compiledScript;
+
+    private ScriptCache scriptCache;
+
+    private Resource image;
+
+    private final List<String> compiling = new ArrayList<>();
+
+    private volatile CountDownLatch blocked;
+
+    private final CountDownLatch blocking = new CountDownLatch(1);
+
+    private SightlyPrecompiler precompiler;
+
+    @Before
+    public void setUp() throws Exception {
+        resolver = mock(ResourceResolver.class);
+        when(resolver.getSearchPath()).thenReturn(new String[] {"/apps/", "/libs/"});
+        ResourceResolverFactory resourceResolverFactory = mock(ResourceResolverFactory.class);
+        when(resourceResolverFactory.getServiceResourceResolver(anyMapOf(String.class, Object.class))).thenReturn(resolver);
+
+        compiledScript = mock(CompiledScript.class);
+        engine = mock(SightlyScriptEngine.class);
+        when(engine.compile(any(Reader.class))).thenAnswer(new Answer<CompiledScript>() {
+            @Override
+            public CompiledScript answer(InvocationOnMock invocation) throws Throwable {
+                String scriptName = ((ScriptNameAwareReader) invocation.getArguments()[0]).getScriptName();
+                synchronized (compiling) {
+                    compiling.add(scriptName);
+                }
+                if (blocked != null) {
+                    blocked.countDown();
+                    blocking.await();
+                }
+                return compiledScript;
+            }
+        });
+        ScriptEngineManager scriptEngineManager = mock(ScriptEngineManager.class);
+        when(scriptEngineManager.getEngineByName(SightlyScriptEngineFactory.SHORT_NAME)).thenReturn(engine);
+        scriptCache = mock(ScriptCache.class);
+
+        precompiler = new SightlyPrecompiler();
+        Whitebox.setInternalState(precompiler, "resourceResolverFactory", resourceResolverFactory);
+        Whitebox.setInternalState(precompiler, "scriptEngineManager", scriptEngineManager);
+        Whitebox.setInternalState(precompiler, "scriptCache", scriptCache);
+
+        image = resource("/apps/a/image.png", "nt:file", resource("/apps/a/image.png/jcr:content", "nt:resource"));
+        resource("/apps/", "sling:Folder",
+                resource("/apps/a", "sling:Folder",
+                        resource("/apps/a/a.html", "nt:file"),
+                        image),
+                resource("/apps/b", "sling:Folder",
+                        resource("/apps/b/b.html", "nt:file")));
+        resource("/libs/", "sling:Folder",
+                resource("/libs/a", "sling:Folder",
+                        resource("/libs/a/a.html", "nt:file")),
+                resource("/libs/c", "sling:Folder",
+                        resource("/libs/c/c.html", "nt:file")));
+        resource("/content/page.html", "nt:file");
+    }
+
+    @After
+    public void tearDown() {
+        blocking.countDown();
+        precompiler.deactivate();
+    }
+
+    @Test
+    public void testPrecompileAll() throws Exception {
+        activate();
+
+        verify(scriptCache, timeout(5000)).putScript(script("/apps/a/a.html"));
+        verify(scriptCache, timeout(5000)).putScript(script("/apps/b/b.html"));
+        verify(scriptCache, timeout(5000)).putScript(script("/libs/c/c.html"));
+        // shadowed by /apps/a/a.html
+        verify(scriptCache, never()).putScript(script("/libs/a/a.html"));
+        // files are not descended into
+        verify(image, never()).listChildren();
+    }
+
+    @Test
+    public void testPrecompileResourceTypes() throws Exception {
+        activate("b");
+
+        verify(scriptCache, timeout(5000)).putScript(script("/apps/b/b.html"));
+        assertCompiled("/apps/b/b.html");
+    }
+
+    @Test
+    public void testPrecompileChanged() throws Exception {
+        blocked = new CountDownLatch(1);
+        activate();
+        blocked.await();
+        // the scripts which are still queued are not scheduled again
+        precompiler.onChange(Arrays.asList(change("/apps/b/b.html"), change("/content/page.html"), change("/apps/b/b.html"),
+                change("/libs/c/c.html"), change("/apps/a/a.html")));
+        blocked = null;
+        blocking.countDown();
+
+        // the script being compiled during the change is compiled again
+        verify(scriptCache, timeout(5000).times(2)).putScript(script("/apps/a/a.html"));
+        verify(scriptCache).putScript(script("/apps/b/b.html"));
+        verify(scriptCache).putScript(script("/libs/c/c.html"));
+        assertCompiled("/apps/a/a.html", "/apps/b/b.html", "/libs/c/c.html", "/apps/a/a.html");
+        // not below a search path
+        verify(resolver, never()).getResource("/content/page.html");
+    }
+
+    @Test
+    public void testScriptChangedWhileCompiling() throws Exception {
+        Resource script = resolver.getResource("/apps/b/b.html");
+        ResourceMetadata metadata = script.getResourceMetadata();
+        ResourceMetadata changed = new ResourceMetadata();
+        changed.setModificationTime(2);
+        when(script.getResourceMetadata()).thenReturn(metadata, metadata, changed);
+        activate("b");
+
+        // closed after collecting and after compiling the script
+        verify(resolver, timeout(5000).times(2)).close();
+        verify(engine).compile(any(Reader.class));
+        verify(scriptCache, never()).putScript(any(CachedScript.class));
+    }
+
+    @Test
+    public void testCachedScript() throws Exception {
+        activate("b");
+
+        ArgumentCaptor<CachedScript> cached = ArgumentCaptor.forClass(CachedScript.class);
+        verify(scriptCache, timeout(5000)).putScript(cached.capture());
+        assertEquals("/apps/b/b.html", cached.getValue().getScriptPath());
+        assertSame(compiledScript, cached.getValue().getCompiledScript());
+    }
+
+    private void activate(String... resourceTypes) {
+        SightlyPrecompiler.Configuration configuration = mock(SightlyPrecompiler.Configuration.class);
+        when(configuration.threads()).thenReturn(1);
+        when(configuration.resourceTypes()).thenReturn(resourceTypes);
+        precompiler.activate(configuration);
+    }
+
+    private void assertCompiled(String... scriptNames) {
+        synchronized (compiling) {
+            assertEquals(Arrays.asList(scriptNames), compiling);
+        }
+    }
+
+    private static CachedScript script(final String scriptPath) {
+        return argThat(new ArgumentMatcher<CachedScript>() {
+            @Override
+            public boolean matches(Object argument) {
+                return scriptPath.equals(((CachedScript) argument).getScriptPath());
+            }
+        });
+    }
+
+    private static ResourceChange change(String path) {
+        ResourceChange change = mock(ResourceChange.class);
+        when(change.getPath()).thenReturn(path);
+        return change;
+    }
+
+    private Resource resource(final String path, final String resourceType, final Resource... children) {
+        final Resource resource = mock(Resource.class);
+        when(resource.getPath()).thenReturn(path);
+        when(resource.getName()).thenReturn(path.substring(path.lastIndexOf('/', path.length() - 2) + 1));
+        when(resource.getResourceType()).thenReturn(resourceType);
+        when(resource.listChildren()).thenAnswer(new Answer<Iterator<Resource>>() {
+            @Override
+            public Iterator<Resource> answer(InvocationOnMock invocation) {
+                return Arrays.asList(children).iterator();
+            }
+        });
+        when(resource.adaptTo(InputStream.class)).thenAnswer(new Answer<InputStream>() {
+            @Override
+            public InputStream answer(InvocationOnMock invocation) {
+                return new ByteArrayInputStream(new byte[0]);
+            }
+        });
+        ResourceMetadata metadata = new ResourceMetadata();
+        metadata.setModificationTime(1);
+        when(resource.getResourceMetadata()).thenReturn(metadata);
+        when(resolver.getResource(path)).thenReturn(resource);
+        return resource;
+    }
+}
@@ -33,6 +33,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.math.NumberUtils;
@@ -64,6 +66,23 @@ public abstract class AbstractRuntimeObjectModel implements RuntimeObjectModel {
 
     public static final String TO_STRING_METHOD = "toString";
 
+    /**
+     * Marker for a property without a matching accessor method or field.
+     */
+    private static final Object NOT_FOUND = new Object();
+
+    /**
+     * The resolved accessor methods per class and property name. The values are attached to the {@link Class} objects, so they
+     * are discarded together with the class when its class loader goes away (e.g. on a bundle refresh) and never keep a class loader
+     * alive.
+     */
+    private final ClassValue<ConcurrentMap<String, Object>> methodCache = new AccessorCache();
+
+    /**
+     * The declared fields per class and property name, see {@link #methodCache}.
+     */
+    private final ClassValue<ConcurrentMap<String, Object>> fieldCache = new AccessorCache();
+
     @Override
     public boolean isPrimitive(Object obj) {
         return PRIMITIVE_CLASSES.contains(obj.getClass());
@@ -317,7 +336,7 @@ public abstract class AbstractRuntimeObjectModel implements RuntimeObjectModel {
     protected Object getObjectProperty(Object obj, String property) {
         Object result = getObjectNoArgMethod(obj, property);
         if (result == null) {
-            result = getField(obj, property);
+            result = getCachedField(obj, property);
         }
         return result;
     }
@@ -337,9 +356,18 @@ public abstract class AbstractRuntimeObjectModel implements RuntimeObjectModel {
 
     protected Object getObjectNoArgMethod(Object obj, String property) {
         Class<?> cls = obj.getClass();
-        Method method = findMethod(cls, property);
-        if (method != null) {
-            method = extractMethodInheritanceChain(cls, method);
+        ConcurrentMap<String, Object> methods = methodCache.get(cls);
+        Object cached = methods.get(property);
+        if (cached == null) {
+            Method method = findMethod(cls, property);
+            if (method != null) {
+                method = extractMethodInheritanceChain(cls, method);
+            }
+            cached = method != null ? method : NOT_FOUND;
+            methods.putIfAbsent(property, cached);
+        }
+        if (cached != NOT_FOUND) {
+            Method method = (Method) cached;
             try {
                 return method.invoke(obj);
             } catch (Exception e) {
@@ -349,6 +377,31 @@ public abstract class AbstractRuntimeObjectModel implements RuntimeObjectModel {
         return null;
     }
 
+    private Object getCachedField(Object obj, String property) {
+        Class<?> cls = obj.getClass();
+        if (cls.isArray()) {
+            return getField(obj, property);
+        }
+        ConcurrentMap<String, Object> fields = fieldCache.get(cls);
+        Object cached = fields.get(property);
+        if (cached == null) {
+            try {
+                cached = cls.getDeclaredField(property);
+            } catch (Exception e) {
+                cached = NOT_FOUND;
+            }
+            fields.putIfAbsent(property, cached);
+        }
+        if (cached != NOT_FOUND) {
+            try {
+                return ((Field) cached).get(obj);
+            } catch (Exception e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
     protected static Method findMethod(Class<?> cls, String baseName) {
         Method[] publicMethods = cls.getMethods();
         String capitalized = StringUtils.capitalize(baseName);
@@ -403,4 +456,12 @@ public abstract class AbstractRuntimeObjectModel implements RuntimeObjectModel {
         return null;
     }
 
+    private static final class AccessorCache extends ClassValue<ConcurrentMap<String, Object>> {
+
+        @Override
+        protected ConcurrentMap<String, Object> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    }
+
 }
@@ -31,4 +31,48 @@ public class AbstractRuntimeObjectModelTest {
         assertEquals(ints.length, runtimeObjectModel.resolveProperty(ints, "length"));
         assertEquals(integers.length, runtimeObjectModel.resolveProperty(integers, "length"));
     }
+
+    @Test
+    public void testResolveProperty_Accessors() throws Exception {
+        Bean bean = new Bean();
+        for (int i = 0; i < 2; i++) {
+            // the second iteration is served from the accessor cache
+            assertEquals("value", runtimeObjectModel.resolveProperty(bean, "value"));
+            assertEquals(true, runtimeObjectModel.resolveProperty(bean, "active"));
+            assertEquals("field", runtimeObjectModel.resolveProperty(bean, "field"));
+            assertNull(runtimeObjectModel.resolveProperty(bean, "missing"));
+            assertNull(runtimeObjectModel.resolveProperty(bean, "class"));
+        }
+        bean.field = "changed";
+        assertEquals("changed", runtimeObjectModel.resolveProperty(bean, "field"));
+    }
+
+    @Test
+    public void testResolveProperty_NonPublicClass() throws Exception {
+        Runnable hidden = new Runnable() {
+            @Override
+            public void run() {
+            }
+
+            @Override
+            public String toString() {
+                return "hidden";
+            }
+        };
+        assertEquals("hidden", runtimeObjectModel.resolveProperty(hidden, "toString"));
+        assertEquals("hidden", runtimeObjectModel.resolveProperty(hidden, "toString"));
+    }
+
+    public static class Bean {
+
+        public String field = "field";
+
+        public String getValue() {
+            return "value";
+        }
+
+        public boolean isActive() {
+            return true;
+        }
+    }
 }
@@ -127,6 +127,13 @@ public class DefaultGetServlet extends SlingSafeMethodsServlet {
                   "this basically means the number of Objects to return. Default value is " +
                   "200.")
         int json_maximumresults() default 200;
+
+        @AttributeDefinition(name = "JSON Streaming",
+                description = "Whether the JSON renderer writes the resources while traversing them, instead of " +
+                  "building the complete JSON object in memory before sending it. This starts the response " +
+                  "earlier and uses less memory for large trees. The tidy and harray selectors always build " +
+                  "the complete JSON object. By default streaming is disabled.")
+        boolean json_streaming() default false;
     }
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
@@ -137,6 +144,8 @@ public class DefaultGetServlet extends SlingSafeMethodsServlet {
 
     private int jsonMaximumResults;
 
+    private boolean jsonStreaming;
+
     /** Additional aliases. */
     private String[] aliases;
 
@@ -171,6 +180,7 @@ public class DefaultGetServlet extends SlingSafeMethodsServlet {
         this.enableJson = cfg.enable_json();
         this.enableXml = cfg.enable_xml();
         this.jsonMaximumResults = cfg.json_maximumresults();
+        this.jsonStreaming = cfg.json_streaming();
     }
 
     @Deactivate
@@ -189,7 +199,7 @@ public class DefaultGetServlet extends SlingSafeMethodsServlet {
         } else if ( PlainTextRendererServlet.EXT_TXT.equals(type) ) {
             servlet = new PlainTextRendererServlet();
         } else if (JsonRendererServlet.EXT_JSON.equals(type) ) {
-            servlet = new JsonRendererServlet(jsonMaximumResults);
+            servlet = new JsonRendererServlet(jsonMaximumResults, jsonStreaming);
         } else if ( XMLRendererServlet.EXT_XML.equals(type) ) {
             try {
                 servlet = new XMLRendererServlet();
@@ -31,6 +31,7 @@ import org.apache.sling.api.resource.ResourceNotFoundException;
 import org.apache.sling.api.resource.ResourceUtil;
 import org.apache.sling.api.servlets.SlingSafeMethodsServlet;
 import org.apache.sling.servlets.get.impl.util.JsonRenderer;
+import org.apache.sling.servlets.get.impl.util.JsonResourceWriter;
 import org.apache.sling.servlets.get.impl.util.ResourceTraversor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -63,10 +64,24 @@ public class JsonRendererServlet extends SlingSafeMethodsServlet {
 
     private long maximumResults;
 
+    private final boolean streaming;
+
     private final JsonRenderer renderer = new JsonRenderer();
 
     public JsonRendererServlet(long maximumResults) {
+        this(maximumResults, false);
+    }
+
+    /**
+     * @param maximumResults The maximum number of resources to render
+     * @param streaming Whether to write the resources while traversing them
+     *            instead of building the complete JSON object first. Only
+     *            used without the {@link #TIDY} and {@link #HARRAY}
+     *            selectors.
+     */
+    public JsonRendererServlet(long maximumResults, boolean streaming) {
         this.maximumResults = maximumResults;
+        this.streaming = streaming;
     }
 
     @Override
@@ -94,9 +109,11 @@ public class JsonRendererServlet extends SlingSafeMethodsServlet {
         int allowedLevel = 0;
         final boolean tidy = isTidy(req);
         final boolean harray = hasSelector(req, HARRAY);
+        final boolean stream = streaming && !tidy && !harray;
         ResourceTraversor traversor = null;
         try {
-            traversor = new ResourceTraversor(maxRecursionLevels, maximumResults, r);
+            // when streaming, the traversor only counts the resources
+            traversor = new ResourceTraversor(maxRecursionLevels, maximumResults, r, !stream);
             allowedLevel = traversor.collectResources();
             if ( allowedLevel != -1 ) {
                 allowDump = false;
@@ -107,7 +124,11 @@ public class JsonRendererServlet extends SlingSafeMethodsServlet {
         try {
             // Dump the resource if we can
             if (allowDump) {
-                if (tidy || harray) {
+                if (stream) {
+                    final JsonGenerator generator = Json.createGenerator(resp.getWriter());
+                    new JsonResourceWriter(generator, maxRecursionLevels).write(r);
+                    generator.close();
+                } else if (tidy || harray) {
                     final JsonRenderer.Options opt = renderer.options()
                             .withIndent(tidy ? INDENT_SPACES : 0)
                             .withArraysForChildren(harray);
@@ -17,15 +17,20 @@
 package org.apache.sling.servlets.get.impl.helpers;
 
 import static javax.servlet.http.HttpServletResponse.SC_NOT_MODIFIED;
+import static org.apache.sling.api.servlets.HttpConstants.HEADER_ETAG;
 import static org.apache.sling.api.servlets.HttpConstants.HEADER_IF_MODIFIED_SINCE;
 import static org.apache.sling.api.servlets.HttpConstants.HEADER_LAST_MODIFIED;
 
 import java.io.BufferedInputStream;
 import java.io.Closeable;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
@@ -80,6 +85,9 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
     // Accept-Ranges header value
     private static final String ACCEPT_RANGES_BYTES = "bytes";
 
+    // If-None-Match header name
+    private static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+
     /**
      * Full range marker.
      */
@@ -87,6 +95,12 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
 
     static final int IO_BUFFER_SIZE = 2048;
 
+    /** Ranges of at least this size are copied from a memory mapped file */
+    static final long MAPPED_THRESHOLD = 256 * 1024;
+
+    /** The maximum size of a memory mapped part of a file */
+    static final long MAPPED_WINDOW_SIZE = 16 * 1024 * 1024;
+
     /** default log */
     private final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -167,7 +181,20 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
         }
         InputStream stream = resource.adaptTo(InputStream.class);
         if (stream != null) {
+            // check the entity tag and If-None-Match header
+            final String etag = getETag(resource);
+            if (!included && etag != null) {
+                if (matches(request.getHeader(IF_NONE_MATCH_HEADER), etag, false)) {
+                    closeSilently(stream);
+                    response.setHeader(HEADER_ETAG, etag);
+                    response.setStatus(SC_NOT_MODIFIED);
+                    return;
+                }
+                response.setHeader(HEADER_ETAG, etag);
+            }
+
             if (isHeadRequest(request)) {
+                closeSilently(stream);
                 setContentLength(response, resource.getResourceMetadata().getContentLength());
                 setHeaders(resource, response);
                 return;
@@ -220,8 +247,14 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
      * @param modifTime The last modification time to compare the header to.
      * @return <code>true</code> if the <code>modifTime</code> is less than or
      *         equal to the time of the <code>If-Modified-Since</code> header.
+     *         Always <code>false</code> if the request has an
+     *         <code>If-None-Match</code> header, which takes precedence.
      */
     private boolean unmodified(HttpServletRequest request, long modifTime) {
+        if (request.getHeader(IF_NONE_MATCH_HEADER) != null) {
+            // checked against the entity tag
+            return false;
+        }
         if (modifTime > 0) {
             long modTime = modifTime / 1000; // seconds
             long ims = request.getDateHeader(HEADER_IF_MODIFIED_SINCE) / 1000;
@@ -232,6 +265,65 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
         return false;
     }
 
+    /**
+     * Returns the weak entity tag of the resource, built from its length
+     * and last modification time, or <code>null</code> if either is unknown.
+     * The tag is weak as the modification time of a resource is not
+     * necessarily updated on each change of its content, e.g. if the
+     * <code>jcr:lastModified</code> property is not set, so it can't be used
+     * to combine byte ranges of different requests.
+     *
+     * @param resource The resource to stream
+     * @return The weak entity tag or <code>null</code>
+     */
+    static String getETag(final Resource resource) {
+        final ResourceMetadata meta = resource.getResourceMetadata();
+        final long modifTime = meta.getModificationTime();
+        final long length = meta.getContentLength();
+        if (modifTime <= 0 || length < 0) {
+            return null;
+        }
+        return "W/\"" + Long.toHexString(length) + "-" + Long.toHexString(modifTime) + "\"";
+    }
+
+    /**
+     * Returns <code>true</code> if the value of an <code>If-None-Match</code>
+     * or <code>If-Range</code> header contains the entity tag.
+     *
+     * @param header The header value, may be <code>null</code>
+     * @param etag The entity tag of the resource
+     * @param strong Whether to use the strong comparison, where weak entity
+     *            tags never match
+     * @return <code>true</code> if the entity tag matches
+     */
+    static boolean matches(final String header, final String etag, final boolean strong) {
+        if (header == null) {
+            return false;
+        }
+        final boolean weak = etag.startsWith("W/");
+        if (strong && weak) {
+            return false;
+        }
+        final String opaqueTag = weak ? etag.substring(2) : etag;
+        final StringTokenizer tokens = new StringTokenizer(header, ",");
+        while (tokens.hasMoreTokens()) {
+            String tag = tokens.nextToken().trim();
+            if ("*".equals(tag) && !strong) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                if (strong) {
+                    continue;
+                }
+                tag = tag.substring(2);
+            }
+            if (tag.equals(opaqueTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private void streamResource(final Resource resource,
             final InputStream stream, final boolean included,
             final SlingHttpServletRequest request,
@@ -249,7 +341,7 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
 
                 // parse optional ranges
                 ranges = parseRange(request, response,
-                    resource.getResourceMetadata());
+                    resource.getResourceMetadata(), getETag(resource));
                 if (ranges == null) {
                     // there was something wrong, the parseRange has sent a
                     // response and we are done
@@ -262,15 +354,25 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
 
             ServletOutputStream out = response.getOutputStream();
 
+            // file backed resources are read from their file channel at the
+            // position of each range instead of skipping through the stream
+            final FileChannel channel = (stream instanceof FileInputStream)
+                    ? ((FileInputStream) stream).getChannel()
+                    : null;
+
             if (ranges == FULL) {
 
                 // return full resource
                 setContentLength(response,
                     resource.getResourceMetadata().getContentLength());
-                byte[] buf = new byte[IO_BUFFER_SIZE];
-                int rd;
-                while ((rd = stream.read(buf)) >= 0) {
-                    out.write(buf, 0, rd);
+                if (channel != null) {
+                    staticCopyRange(channel, out, 0, channel.size());
+                } else {
+                    byte[] buf = new byte[IO_BUFFER_SIZE];
+                    int rd;
+                    while ((rd = stream.read(buf)) >= 0) {
+                        out.write(buf, 0, rd);
+                    }
                 }
 
             } else {
@@ -285,14 +387,18 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
                         + "-" + range.end + "/" + range.length);
                     setContentLength(response, range.end - range.start + 1);
 
-                    copy(stream, out, range);
+                    if (channel != null) {
+                        staticCopyRange(channel, out, range.start, range.end + 1);
+                    } else {
+                        copy(stream, out, range);
+                    }
 
                 } else {
 
                     response.setContentType("multipart/byteranges; boundary="
                         + mimeSeparation);
 
-                    copy(resource, out, ranges.iterator());
+                    copy(resource, stream, channel, out, ranges.iterator());
                 }
 
             }
@@ -503,28 +609,29 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
 
     /**
      * Copies a number of ranges from the given resource to the output stream.
-     * Copy the contents of the specified input stream to the specified output
-     * stream, and ensure that both streams are closed before returning (even in
-     * the face of an exception).
+     * The ranges are read from the given stream as long as they are in
+     * ascending order, the stream of the resource is only opened again for a
+     * range starting before the end of the previous one. A file channel
+     * reads each range at its position.
      *
      * @param resource The resource from which to send ranges
+     * @param stream The stream of the resource, closed by the caller
+     * @param channel The file channel of the stream or <code>null</code>
      * @param ostream The output stream to write to
      * @param ranges Iterator of the ranges the client wanted to retrieve
      * @exception IOException if an input/output error occurs
      */
-    private void copy(Resource resource, ServletOutputStream ostream,
-            Iterator<Range> ranges) throws IOException {
+    private void copy(Resource resource, InputStream stream, FileChannel channel,
+            ServletOutputStream ostream, Iterator<Range> ranges) throws IOException {
 
         String contentType = resource.getResourceMetadata().getContentType();
         IOException exception = null;
 
-        while ((exception == null) && (ranges.hasNext())) {
-
-            InputStream resourceInputStream = resource.adaptTo(InputStream.class);
-            InputStream istream = new BufferedInputStream(resourceInputStream,
-                IO_BUFFER_SIZE);
-
-            try {
+        InputStream istream = null;
+        InputStream reopened = null;
+        long position = 0;
+        try {
+            while ((exception == null) && (ranges.hasNext())) {
                 Range currentRange = ranges.next();
 
                 // Writing MIME header.
@@ -539,14 +646,32 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
 
                 // Copy content
                 try {
-                    copy(istream, ostream, currentRange);
+                    if (channel != null) {
+                        staticCopyRange(channel, ostream, currentRange.start, currentRange.end + 1);
+                        continue;
+                    }
+                    if (istream == null || currentRange.start < position) {
+                        if (istream != null) {
+                            closeSilently(reopened);
+                            reopened = resource.adaptTo(InputStream.class);
+                            if (reopened == null) {
+                                throw new IOException("Cannot reopen the stream of " + resource.getPath());
+                            }
+                            istream = new BufferedInputStream(reopened, IO_BUFFER_SIZE);
+                        } else {
+                            istream = new BufferedInputStream(stream, IO_BUFFER_SIZE);
+                        }
+                        position = 0;
+                    }
+                    staticCopyRange(istream, ostream, currentRange.start - position,
+                        currentRange.end + 1 - position);
+                    position = currentRange.end + 1;
                 } catch(IOException e) {
                     exception = e;
                 }
-            } finally {
-                closeSilently(istream);
             }
-
+        } finally {
+            closeSilently(reopened);
         }
 
         ostream.println();
@@ -608,18 +733,59 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
         }
     }
 
+    /**
+     * Copies the bytes from <code>start</code> (inclusive) to <code>end</code>
+     * (exclusive) of the file to the output stream, the position of the
+     * channel is not changed. Large ranges are memory mapped in windows of
+     * {@link #MAPPED_WINDOW_SIZE} bytes and copied from the page cache into
+     * the output buffer, smaller ranges are read at their position.
+     */
+    // static, package-private method to make unit testing easier
+    static void staticCopyRange(FileChannel channel,
+            OutputStream ostream, long start, long end) throws IOException {
+        final long last = Math.min(end, channel.size());
+        final byte[] buffer = new byte[IO_BUFFER_SIZE];
+        long position = start;
+        if (last - start >= MAPPED_THRESHOLD) {
+            while (position < last) {
+                final long length = Math.min(last - position, MAPPED_WINDOW_SIZE);
+                final MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                while (mapped.hasRemaining()) {
+                    final int len = Math.min(mapped.remaining(), buffer.length);
+                    mapped.get(buffer, 0, len);
+                    ostream.write(buffer, 0, len);
+                }
+                position += length;
+            }
+        } else {
+            final ByteBuffer target = ByteBuffer.wrap(buffer);
+            while (position < last) {
+                target.clear();
+                target.limit((int) Math.min(last - position, buffer.length));
+                final int read = channel.read(target, position);
+                if (read < 0) {
+                    break;
+                }
+                ostream.write(buffer, 0, read);
+                position += read;
+            }
+        }
+    }
+
     /**
      * Parse the range header.
      *
      * @param request The servlet request we are processing
      * @param response The servlet response we are creating
+     * @param metadata The metadata of the resource
+     * @param etag The entity tag of the resource or <code>null</code>
      * @return ArrayList of ranges parsed from the Range header or {@link #FULL}
      *         if the full resource should be returned or <code>null</code> if
      *         an error occurred parsing the header and the request has been
      *         finished sending an error status.
      */
     private ArrayList<Range> parseRange(HttpServletRequest request,
-            HttpServletResponse response, ResourceMetadata metadata)
+            HttpServletResponse response, ResourceMetadata metadata, String etag)
             throws IOException {
 
         // Checking If-Range
@@ -636,9 +802,11 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
             if (headerValueTime == (-1L)) {
 
                 // If the ETag the client gave does not match the entity
-                // etag, then the entire entity is returned.
-                // Sling: no etag support yet, return full range
-                return FULL;
+                // etag, then the entire entity is returned. This is always
+                // the case for a weak entity tag.
+                if (etag == null || !matches(headerValue, etag, true)) {
+                    return FULL;
+                }
 
             } else if (metadata.getModificationTime() > (headerValueTime + 1000)) {
 
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.servlets.get.impl.util;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.json.JsonValue;
+import javax.json.stream.JsonGenerator;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceUtil;
+
+/**
+ * The <code>JsonResourceWriter</code> writes a resource and its descendants
+ * directly to a {@link JsonGenerator} during a depth-first traversal. The
+ * output is the same as the one of the {@link ResourceTraversor}, but only
+ * the properties of the current resource are held in memory, so the
+ * response starts right away and the memory used does not depend on the
+ * size of the tree.
+ * <p>
+ * The writer does not check the number of resources: use a
+ * {@link ResourceTraversor} which does not collect the JSON objects to check
+ * the limits first.
+ */
+public class JsonResourceWriter {
+
+    private final JsonGenerator generator;
+
+    private final int maxRecursionLevels;
+
+    /**
+     * @param generator The generator to write to
+     * @param levels recursion levels limit, -1 means no limit
+     */
+    public JsonResourceWriter(final JsonGenerator generator, final int levels) {
+        this.generator = generator;
+        this.maxRecursionLevels = levels;
+    }
+
+    /**
+     * Write the resource and its descendants up to the recursion levels limit
+     * as a JSON object.
+     *
+     * @param resource The resource to write
+     */
+    public void write(final Resource resource) {
+        generator.writeStartObject();
+        writeContent(resource, 0);
+        generator.writeEnd();
+    }
+
+    private void writeContent(final Resource resource, final int currentLevel) {
+        for (final Map.Entry<String, JsonValue> property : JsonObjectCreator.create(resource, 0).build().entrySet()) {
+            generator.write(property.getKey(), property.getValue());
+        }
+
+        if (maxRecursionLevels == -1 || currentLevel < maxRecursionLevels) {
+            final Iterator<Resource> children = ResourceUtil.listChildren(resource);
+            while (children.hasNext()) {
+                final Resource child = children.next();
+                generator.writeStartObject(ResourceUtil.getName(child));
+                writeContent(child, currentLevel + 1);
+                generator.writeEnd();
+            }
+        }
+    }
+}
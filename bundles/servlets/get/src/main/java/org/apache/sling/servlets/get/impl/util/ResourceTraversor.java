@@ -60,20 +60,36 @@ public class ResourceTraversor
 
     private final Resource startResource;
 
+    private final boolean collectJson;
+
     /** Create a ResourceTraversor, optionally limiting recursion and total number of resources
      * @param levels recursion levels limit, -1 means no limit
      * @param maxResources maximum number of resources to collect, ignored if levels == 1
      * @param resource the root resource to traverse
-     * @param tidy not used
      * @throws JSONException
      */
     public ResourceTraversor(final int levels, final long maxResources, final Resource resource) {
+        this(levels, maxResources, resource, true);
+    }
+
+    /** Create a ResourceTraversor, optionally limiting recursion and total number of resources
+     * @param levels recursion levels limit, -1 means no limit
+     * @param maxResources maximum number of resources to collect, ignored if levels == 1
+     * @param resource the root resource to traverse
+     * @param collectJson <code>false</code> to only count the resources, for
+     *            checking the limits before streaming them with a
+     *            {@link JsonResourceWriter}. {@link #getJSONObject()} must not
+     *            be called then.
+     */
+    public ResourceTraversor(final int levels, final long maxResources, final Resource resource,
+            final boolean collectJson) {
         this.maxResources = maxResources;
         this.maxRecursionLevels = levels;
         this.startResource = resource;
+        this.collectJson = collectJson;
         currentQueue = new LinkedList<Entry>();
         nextQueue = new LinkedList<Entry>();
-        this.startObject = this.adapt(resource);
+        this.startObject = collectJson ? this.adapt(resource) : null;
     }
 
     /**
@@ -109,6 +125,13 @@ public class ResourceTraversor
                 if (count > maxResources && maxRecursionLevels != 1) {
                     return currentLevel;
                 }
+                if (!collectJson) {
+                    // only resources with children to count are queued
+                    if (maxRecursionLevels == -1 || currentLevel + 1 < maxRecursionLevels) {
+                        nextQueue.addLast(new Entry(res, null));
+                    }
+                    continue;
+                }
                 Entry child = new Entry(res, adapt(res));
                 nextQueue.addLast(child);
                 List<Entry> childTree = tree.get(jsonObj);
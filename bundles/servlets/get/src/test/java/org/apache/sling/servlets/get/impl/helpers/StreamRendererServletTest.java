@@ -19,23 +19,35 @@
 package org.apache.sling.servlets.get.impl.helpers;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
 import java.util.Random;
 import javax.servlet.ServletContext;
 import junitx.util.PrivateAccessor;
 import org.apache.sling.api.SlingHttpServletResponse;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceMetadata;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Mockito;
 
 public class StreamRendererServletTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void testCopyRange() throws IOException {
         runTests(1234);
@@ -127,6 +139,93 @@ public class StreamRendererServletTest {
         }
     }
     
+    @Test
+    public void testCopyRangeFromChannel() throws IOException {
+        final Random random = new Random(1234);
+        final byte[] expected = new byte[StreamRendererServlet.IO_BUFFER_SIZE * 5 + 42];
+        random.nextBytes(expected);
+        final File file = folder.newFile();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(expected);
+        }
+
+        try (FileInputStream in = new FileInputStream(file)) {
+            final FileChannel channel = in.getChannel();
+            assertCopyRange(expected, channel, 0, expected.length);
+            assertCopyRange(expected, channel, 0, 0);
+            for (int i = 0; i < 50; i++) {
+                final int a = random.nextInt(expected.length);
+                final int b = random.nextInt(expected.length);
+                assertCopyRange(expected, channel, Math.min(a, b), Math.max(a, b));
+            }
+            // ranges beyond the end of the file are cut
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            StreamRendererServlet.staticCopyRange(channel, output, expected.length - 2, expected.length + 10);
+            assertEquals(2, output.size());
+            // the ranges are read at their position
+            assertEquals(0, channel.position());
+        }
+    }
+
+    @Test
+    public void testCopyRangeFromMappedChannel() throws IOException {
+        final Random random = new Random(4321);
+        final byte[] expected = new byte[(int) StreamRendererServlet.MAPPED_THRESHOLD * 3 + 42];
+        random.nextBytes(expected);
+        final File file = folder.newFile();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(expected);
+        }
+
+        try (FileInputStream in = new FileInputStream(file)) {
+            final FileChannel channel = in.getChannel();
+            assertCopyRange(expected, channel, 0, expected.length);
+            assertCopyRange(expected, channel, 17, expected.length - 17);
+            // ranges beyond the end of the file are cut
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            StreamRendererServlet.staticCopyRange(channel, output, 1, expected.length + 10);
+            assertEquals(expected.length - 1, output.size());
+            assertEquals(0, channel.position());
+        }
+    }
+
+    private void assertCopyRange(byte[] expected, FileChannel channel, int a, int b) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        StreamRendererServlet.staticCopyRange(channel, output, a, b);
+        final byte[] actual = output.toByteArray();
+        assertEquals(b - a, actual.length);
+        for (int i = a; i < b; i++) {
+            assertEquals(expected[i], actual[i - a]);
+        }
+    }
+
+    @Test
+    public void testETag() {
+        final Resource resource = Mockito.mock(Resource.class);
+        final ResourceMetadata meta = new ResourceMetadata();
+        Mockito.when(resource.getResourceMetadata()).thenReturn(meta);
+        assertNull(StreamRendererServlet.getETag(resource));
+
+        meta.setModificationTime(0x1234L);
+        meta.setContentLength(0xffL);
+        final String etag = StreamRendererServlet.getETag(resource);
+        assertEquals("W/\"ff-1234\"", etag);
+
+        assertFalse(StreamRendererServlet.matches(null, etag, false));
+        assertTrue(StreamRendererServlet.matches(etag, etag, false));
+        assertTrue(StreamRendererServlet.matches("\"other\", " + etag, etag, false));
+        assertTrue(StreamRendererServlet.matches("*", etag, false));
+        assertTrue(StreamRendererServlet.matches("\"ff-1234\"", etag, false));
+        assertFalse(StreamRendererServlet.matches("\"other\"", etag, false));
+
+        // If-Range uses the strong comparison, a weak entity tag never matches
+        assertFalse(StreamRendererServlet.matches(etag, etag, true));
+        assertFalse(StreamRendererServlet.matches("\"ff-1234\"", etag, true));
+        assertFalse(StreamRendererServlet.matches("*", etag, true));
+        assertTrue(StreamRendererServlet.matches("\"strong\"", "\"strong\"", true));
+        assertFalse(StreamRendererServlet.matches("W/\"strong\"", "\"strong\"", true));
+    }
+
     @Test
     public void test_setHeaders() throws Throwable {
         
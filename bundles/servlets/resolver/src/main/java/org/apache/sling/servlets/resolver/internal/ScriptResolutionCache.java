@@ -0,0 +1,229 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.servlets.resolver.internal;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.Servlet;
+
+import org.apache.sling.servlets.resolver.internal.helper.AbstractResourceCollector;
+import org.apache.sling.servlets.resolver.internal.helper.LocationCache;
+
+/**
+ * The <code>ScriptResolutionCache</code> is a bounded cache for the script
+ * resolution of the {@link SlingServletResolver}.
+ * <p>
+ * The cache is split into segments, each segment is a synchronized access
+ * ordered map evicting its least recently used entry once the segment is
+ * full. Together with each servlet the locations which have been searched
+ * to find it are stored, so a change in the resource tree only removes
+ * the entries which depend on the changed path.
+ */
+public class ScriptResolutionCache {
+
+    /** The maximum number of segments. */
+    private static final int MAX_SEGMENTS = 16;
+
+    /** The minimum number of entries per segment. */
+    private static final int MIN_SEGMENT_SIZE = 16;
+
+    private final Segment[] segments;
+
+    private final int maxSize;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Create a new cache
+     * @param maxSize The maximum number of entries
+     */
+    public ScriptResolutionCache(final int maxSize) {
+        this.maxSize = maxSize;
+        int count = 1;
+        while (count < MAX_SEGMENTS && maxSize / (count * 2) >= MIN_SEGMENT_SIZE) {
+            count = count * 2;
+        }
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            // distribute the remainder over the first segments
+            this.segments[i] = new Segment(maxSize / count + (i < maxSize % count ? 1 : 0));
+        }
+    }
+
+    /**
+     * Get the cached servlet
+     * @param key The collector used to find the servlet
+     * @return The servlet or {@code null}
+     */
+    public Servlet get(final AbstractResourceCollector key) {
+        final Entry entry = segmentFor(key).get(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.servlet;
+    }
+
+    /**
+     * Add a servlet to the cache.
+     * @param key The collector used to find the servlet
+     * @param servlet The servlet
+     * @param locations The locations which have been searched to find the servlet
+     */
+    public void put(final AbstractResourceCollector key, final Servlet servlet, final List<String> locations) {
+        segmentFor(key).put(key, new Entry(servlet, locations.toArray(new String[locations.size()])));
+    }
+
+    /**
+     * Remove all entries which depend on the given path. An entry depends on
+     * a path if one of its locations is the path, an ancestor of the path or
+     * a descendant of the path.
+     * @param path The changed path
+     * @return The number of removed entries
+     */
+    public int invalidate(final String path) {
+        int count = 0;
+        for (final Segment segment : segments) {
+            count += segment.invalidate(path);
+        }
+        return count;
+    }
+
+    /**
+     * Remove all entries.
+     */
+    public void clear() {
+        for (final Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (final Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    private Segment segmentFor(final AbstractResourceCollector key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & (segments.length - 1)];
+    }
+
+    private static final class Entry {
+
+        final Servlet servlet;
+
+        final String[] locations;
+
+        Entry(final Servlet servlet, final String[] locations) {
+            this.servlet = servlet;
+            this.locations = locations;
+        }
+
+        boolean dependsOn(final String path) {
+            for (final String location : locations) {
+                if (LocationCache.affects(path, location)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private final class Segment extends LinkedHashMap<AbstractResourceCollector, Entry> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Segment(final int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        public synchronized Entry get(final Object key) {
+            return super.get(key);
+        }
+
+        @Override
+        public synchronized Entry put(final AbstractResourceCollector key, final Entry value) {
+            return super.put(key, value);
+        }
+
+        @Override
+        public synchronized void clear() {
+            super.clear();
+        }
+
+        @Override
+        public synchronized int size() {
+            return super.size();
+        }
+
+        synchronized int invalidate(final String path) {
+            int count = 0;
+            final Iterator<Entry> iter = values().iterator();
+            while (iter.hasNext()) {
+                if (iter.next().dependsOn(path)) {
+                    iter.remove();
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<AbstractResourceCollector, Entry> eldest) {
+            if (size() > capacity) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -41,7 +41,6 @@ import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 import javax.management.NotCompliantMBeanException;
 import javax.management.StandardMBean;
@@ -82,6 +81,7 @@ import org.apache.sling.serviceusermapping.ServiceUserMapped;
 import org.apache.sling.servlets.resolver.internal.defaults.DefaultErrorHandlerServlet;
 import org.apache.sling.servlets.resolver.internal.defaults.DefaultServlet;
 import org.apache.sling.servlets.resolver.internal.helper.AbstractResourceCollector;
+import org.apache.sling.servlets.resolver.internal.helper.LocationCache;
 import org.apache.sling.servlets.resolver.internal.helper.NamedScriptResourceCollector;
 import org.apache.sling.servlets.resolver.internal.helper.ResourceCollector;
 import org.apache.sling.servlets.resolver.internal.helper.SlingServletConfig;
@@ -154,7 +154,8 @@ public class SlingServletResolver
         /** The default cache size for the script resolution. */
         @AttributeDefinition(name = "Cache Size",
                 description = "This property configures the size of the " +
-                    "cache used for script resolution. A value lower than 5 disables the cache.")
+                    "cache used for script resolution. A value lower than 5 disables the cache. " +
+                    "If the cache is full, the least recently used entries are evicted.")
         int servletresolver_cacheSize() default 200;
 
         @AttributeDefinition(name = "Execution Paths",
@@ -175,6 +176,12 @@ public class SlingServletResolver
 
     private static final String REF_SERVLET = "Servlet";
 
+    /**
+     * The number of super types and empty locations cached per entry of the
+     * script resolution cache: each resolution walks several locations.
+     */
+    private static final int LOCATION_CACHE_SIZE_FACTOR = 10;
+
     @Reference(target="(name=org.apache.sling)")
     private ServletContext servletContext;
 
@@ -207,13 +214,13 @@ public class SlingServletResolver
     private Servlet fallbackErrorServlet;
 
     /** The script resolution cache. */
-    private Map<AbstractResourceCollector, Servlet> cache;
+    private volatile ScriptResolutionCache cache;
 
     /** The cache size. */
     private int cacheSize;
 
-    /** Flag to log warning if cache size exceed only once. */
-    private volatile boolean logCacheSizeWarning;
+    /** The cache for resource super types and empty script locations. */
+    private volatile LocationCache locationCache;
 
     /** Registration as event handler. */
     private ServiceRegistration<?> eventHandlerReg;
@@ -536,6 +543,10 @@ public class SlingServletResolver
         return scriptResolver;
     }
 
+    private boolean isScriptResourceResolver(final ResourceResolver resolver) {
+        return resolver == this.sharedScriptResolver || resolver == this.perThreadScriptResolver.get();
+    }
+
     private final ThreadLocal<ResourceResolver> perThreadScriptResolver = new ThreadLocal<>();
 
     private ServiceRegistration<SlingServletResolverCacheMBean> mbeanRegistration;
@@ -645,7 +656,8 @@ public class SlingServletResolver
     private Servlet getServletInternal(final AbstractResourceCollector locationUtil,
             final SlingHttpServletRequest request,
             final ResourceResolver resolver) {
-        final Servlet scriptServlet = (this.cache != null ? this.cache.get(locationUtil) : null);
+        final ScriptResolutionCache localCache = this.cache;
+        final Servlet scriptServlet = (localCache != null ? localCache.get(locationUtil) : null);
         if (scriptServlet != null) {
             if ( LOGGER.isDebugEnabled() ) {
                 LOGGER.debug("Using cached servlet {}", RequestUtil.getServletName(scriptServlet));
@@ -653,7 +665,10 @@ public class SlingServletResolver
             return scriptServlet;
         }
 
-        final Collection<Resource> candidates = locationUtil.getServlets(resolver);
+        final List<String> locations = (localCache != null ? new ArrayList<String>() : null);
+        // empty locations depend on the access rights, only use the location cache with the script user
+        final LocationCache localLocationCache = (isScriptResourceResolver(resolver) ? this.locationCache : null);
+        final Collection<Resource> candidates = locationUtil.getServlets(resolver, localLocationCache, locations);
 
         if (LOGGER.isDebugEnabled()) {
             if (candidates.isEmpty()) {
@@ -675,14 +690,8 @@ public class SlingServletResolver
                 final boolean isOptingServlet = candidate instanceof OptingServlet;
                 boolean servletAcceptsRequest = !isOptingServlet || (request != null && ((OptingServlet) candidate).accepts(request));
                 if (servletAcceptsRequest) {
-                    if (!hasOptingServlet && !isOptingServlet && this.cache != null) {
-                        if ( this.cache.size() < this.cacheSize ) {
-                            this.cache.put(locationUtil, candidate);
-                        } else if ( this.logCacheSizeWarning ) {
-                            this.logCacheSizeWarning = false;
-                            LOGGER.warn("Script cache has reached its limit of {}. You might want to increase the cache size for the servlet resolver.",
-                                    this.cacheSize);
-                        }
+                    if (!hasOptingServlet && !isOptingServlet && localCache != null) {
+                        localCache.put(locationUtil, candidate, locations);
                     }
                     LOGGER.debug("Using servlet provided by candidate resource {}", candidateResource.getPath());
                     return candidate;
@@ -844,8 +853,8 @@ public class SlingServletResolver
         // create cache - if a cache size is configured
         this.cacheSize = config.servletresolver_cacheSize();
         if (this.cacheSize > 5) {
-            this.cache = new ConcurrentHashMap<>(cacheSize);
-            this.logCacheSizeWarning = true;
+            this.cache = new ScriptResolutionCache(cacheSize);
+            this.locationCache = new LocationCache(LOCATION_CACHE_SIZE_FACTOR * cacheSize);
         } else {
             this.cacheSize = 0;
         }
@@ -929,6 +938,7 @@ public class SlingServletResolver
         }
 
         this.cache = null;
+        this.locationCache = null;
         this.servletResourceProviderFactory = null;
 
         if (this.mbeanRegistration != null) {
@@ -1073,8 +1083,14 @@ public class SlingServletResolver
     }
 
     private void flushCache() {
-        this.cache.clear();
-        this.logCacheSizeWarning = true;
+        final ScriptResolutionCache localCache = this.cache;
+        if ( localCache != null ) {
+            localCache.clear();
+        }
+        final LocationCache localLocationCache = this.locationCache;
+        if ( localLocationCache != null ) {
+            localLocationCache.clear();
+        }
     }
 
     /** The list of property names checked by {@link #getName(ServiceReference)} */
@@ -1385,7 +1401,26 @@ public class SlingServletResolver
 
         @Override
         public int getCacheSize() {
-            return cache != null ? cache.size() : 0;
+            final ScriptResolutionCache localCache = cache;
+            return localCache != null ? localCache.size() : 0;
+        }
+
+        @Override
+        public long getHitCount() {
+            final ScriptResolutionCache localCache = cache;
+            return localCache != null ? localCache.getHits() : 0;
+        }
+
+        @Override
+        public long getMissCount() {
+            final ScriptResolutionCache localCache = cache;
+            return localCache != null ? localCache.getMisses() : 0;
+        }
+
+        @Override
+        public long getEvictionCount() {
+            final ScriptResolutionCache localCache = cache;
+            return localCache != null ? localCache.getEvictions() : 0;
         }
 
         @Override
@@ -1402,21 +1437,24 @@ public class SlingServletResolver
 
     @Override
 	public void onChange(final List<ResourceChange> changes) {
-        boolean flushCache = false;
+        final ScriptResolutionCache localCache = this.cache;
+        if ( localCache == null ) {
+            return;
+        }
         for(final ResourceChange change : changes){
             // if the path of the event is a sub path of a search path
-            // we flush the whole cache
+            // we remove all entries which depend on this path
             final String path = change.getPath();
-            int index = 0;
-            while (!flushCache && index < searchPaths.length) {
-                if (path.startsWith(this.searchPaths[index])) {
-                    flushCache = true;
+            for(final String searchPath : this.searchPaths) {
+                if (path.startsWith(searchPath)) {
+                    final int removed = localCache.invalidate(path);
+                    LOGGER.debug("Removed {} cached scripts after change of {}", removed, path);
+                    final LocationCache localLocationCache = this.locationCache;
+                    if ( localLocationCache != null ) {
+                        localLocationCache.invalidate(path);
+                    }
+                    break;
                 }
-                index++;
-            }
-            if ( flushCache ) {
-                flushCache();
-                break; // we can stop looping
             }
         }
     }
@@ -20,6 +20,7 @@ package org.apache.sling.servlets.resolver.internal.helper;
 
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -28,6 +29,7 @@ import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.SyntheticResource;
 import org.apache.sling.servlets.resolver.internal.SlingServletResolver;
+import org.apache.sling.servlets.resolver.internal.resource.ServletResourceProviderFactory;
 
 /**
  * The <code>ResourceCollector</code> class provides a single public method -
@@ -37,6 +39,9 @@ import org.apache.sling.servlets.resolver.internal.SlingServletResolver;
  */
 public abstract class AbstractResourceCollector {
 
+    /** The resource type of the synthetic resources used for non existing locations */
+    private static final String SYNTHETIC_RESOURCE_TYPE = "$synthetic$";
+
     // the most generic resource type to use. This may be null in which
     // case the default servlet name will be used as the base name
     protected final String baseResourceType;
@@ -65,10 +70,27 @@ public abstract class AbstractResourceCollector {
     }
 
     public final Collection<Resource> getServlets(final ResourceResolver resolver) {
+        return getServlets(resolver, null, null);
+    }
+
+    /**
+     * Find the ordered collection of servlet and script resources and
+     * record the searched locations.
+     *
+     * @param resolver The resource resolver
+     * @param locationCache If not {@code null} this cache is used to skip
+     *            locations known to be empty and to look up resource super types.
+     * @param locationPaths If not {@code null} the absolute paths of all
+     *            searched locations are added to this list.
+     * @return The ordered collection of candidate resources
+     */
+    public final Collection<Resource> getServlets(final ResourceResolver resolver,
+            final LocationCache locationCache,
+            final List<String> locationPaths) {
 
         final SortedSet<Resource> resources = new TreeSet<Resource>();
         final Iterator<String> locations = new LocationIterator(resourceType, resourceSuperType,
-                                                                baseResourceType, resolver);
+                                                                baseResourceType, resolver, locationCache);
         while (locations.hasNext()) {
             final String location = locations.next();
 
@@ -81,7 +103,17 @@ public abstract class AbstractResourceCollector {
             } else {
                 path = location;
             }
+            if ( locationPaths != null ) {
+                locationPaths.add(path);
+            }
+            if ( locationCache != null && locationCache.isEmptyLocation(path) ) {
+                continue;
+            }
             final Resource locationRes = getResource(resolver, path);
+            if ( locationCache != null && isEmptyLocation(resolver, locationRes) ) {
+                locationCache.addEmptyLocation(path);
+                continue;
+            }
             getWeightedResources(resources, locationRes);
         }
 
@@ -134,12 +166,24 @@ public abstract class AbstractResourceCollector {
                 path = "/".concat(path);
             }
 
-            res = new SyntheticResource(resolver, path, "$synthetic$");
+            res = new SyntheticResource(resolver, path, SYNTHETIC_RESOURCE_TYPE);
         }
 
         return res;
     }
 
+    /**
+     * Checks whether the location neither exists nor has any children nor
+     * a servlet registered at its path. Such a location never provides any
+     * servlet or script.
+     */
+    private boolean isEmptyLocation(final ResourceResolver resolver, final Resource location) {
+        return location instanceof SyntheticResource
+                && SYNTHETIC_RESOURCE_TYPE.equals(location.getResourceType())
+                && !resolver.listChildren(location).hasNext()
+                && resolver.getResource(location.getPath() + ServletResourceProviderFactory.SERVLET_PATH_EXTENSION) == null;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if ( !(obj instanceof AbstractResourceCollector) ) {
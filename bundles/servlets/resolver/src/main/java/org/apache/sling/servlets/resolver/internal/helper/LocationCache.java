@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.servlets.resolver.internal.helper;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The <code>LocationCache</code> caches the information gathered while
+ * walking the locations of a resource type hierarchy:
+ * <ul>
+ * <li>The resource super type of a resource type as found in the resource
+ * tree, together with the paths which have been checked to find it.</li>
+ * <li>The locations which neither exist nor have any children. Such a
+ * location can never provide a script or servlet.</li>
+ * </ul>
+ * Entries are removed by {@link #invalidate(String)} if a resource at, above
+ * or below one of their paths changes. If the maximum number of entries is
+ * reached, the least recently used entry is evicted.
+ * <p>
+ * Whether a location is empty depends on the access rights of the reading
+ * resource resolver, therefore the cache must only be filled and read with
+ * the resource resolver of the script user.
+ */
+public class LocationCache {
+
+    private final Lru<SuperTypeEntry> superTypes;
+
+    private final Lru<Boolean> emptyLocations;
+
+    /**
+     * Create a new cache
+     * @param maxEntries The maximum number of super types and empty locations to cache
+     */
+    public LocationCache(final int maxEntries) {
+        this.superTypes = new Lru<SuperTypeEntry>(maxEntries);
+        this.emptyLocations = new Lru<Boolean>(maxEntries);
+    }
+
+    /**
+     * Get the cached resource super type.
+     * @param resourceType The resource type
+     * @return The cache entry or {@code null} if the super type has not been cached yet
+     */
+    public SuperTypeEntry getSuperType(final String resourceType) {
+        return superTypes.get(resourceType);
+    }
+
+    /**
+     * Cache the resource super type of a resource type
+     * @param resourceType The resource type
+     * @param superType The super type, might be {@code null}
+     * @param checkedPaths The paths which have been checked to find the super type
+     */
+    public void putSuperType(final String resourceType, final String superType, final String[] checkedPaths) {
+        superTypes.put(resourceType, new SuperTypeEntry(superType, checkedPaths));
+    }
+
+    /**
+     * Check whether a location is known to have no resource and no children.
+     * @param location The absolute location path
+     * @return {@code true} if the location is empty
+     */
+    public boolean isEmptyLocation(final String location) {
+        return emptyLocations.get(location) != null;
+    }
+
+    /**
+     * Mark a location as empty.
+     * @param location The absolute location path
+     */
+    public void addEmptyLocation(final String location) {
+        emptyLocations.put(location, Boolean.TRUE);
+    }
+
+    /**
+     * Remove all entries depending on the given path.
+     * @param path The changed path
+     */
+    public void invalidate(final String path) {
+        synchronized (emptyLocations) {
+            final Iterator<String> locationIter = emptyLocations.keySet().iterator();
+            while (locationIter.hasNext()) {
+                if (affects(path, locationIter.next())) {
+                    locationIter.remove();
+                }
+            }
+        }
+        synchronized (superTypes) {
+            final Iterator<SuperTypeEntry> superTypeIter = superTypes.values().iterator();
+            while (superTypeIter.hasNext()) {
+                final SuperTypeEntry entry = superTypeIter.next();
+                for (final String checkedPath : entry.checkedPaths) {
+                    if (affects(path, checkedPath)) {
+                        superTypeIter.remove();
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove all entries.
+     */
+    public void clear() {
+        emptyLocations.clear();
+        superTypes.clear();
+    }
+
+    /**
+     * Check if a change of <code>path</code> affects the given location: this
+     * is the case if the path is the location, a descendant of the location,
+     * an ancestor of the location or a servlet registered at the location.
+     * @param path The changed path
+     * @param location The location
+     * @return {@code true} if the location is affected
+     */
+    public static boolean affects(final String path, final String location) {
+        if (path.startsWith(location)) {
+            if (path.length() == location.length()) {
+                return true;
+            }
+            final char c = path.charAt(location.length());
+            return c == '/' || c == '.' || location.endsWith("/");
+        }
+        return location.startsWith(path)
+                && (path.endsWith("/") || location.charAt(path.length()) == '/');
+    }
+
+    /**
+     * A synchronized access ordered map evicting its least recently used
+     * entry once the capacity is exceeded.
+     */
+    private static final class Lru<V> extends LinkedHashMap<String, V> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Lru(final int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        public synchronized V get(final Object key) {
+            return super.get(key);
+        }
+
+        @Override
+        public synchronized V put(final String key, final V value) {
+            return super.put(key, value);
+        }
+
+        @Override
+        public synchronized void clear() {
+            super.clear();
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, V> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    /**
+     * A cached resource super type.
+     */
+    public static final class SuperTypeEntry {
+
+        private final String superType;
+
+        private final String[] checkedPaths;
+
+        SuperTypeEntry(final String superType, final String[] checkedPaths) {
+            this.superType = superType;
+            this.checkedPaths = checkedPaths;
+        }
+
+        /**
+         * @return The super type or {@code null} if the resource type has no super type
+         */
+        public String getSuperType() {
+            return superType;
+        }
+    }
+}
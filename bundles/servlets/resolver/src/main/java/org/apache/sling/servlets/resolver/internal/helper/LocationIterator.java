@@ -18,8 +18,10 @@
  */
 package org.apache.sling.servlets.resolver.internal.helper;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Set;
 
@@ -87,6 +89,9 @@ public class LocationIterator implements Iterator<String> {
     /** Set of used resource types to detect a circular resource type hierarchy. */
     private final Set<String> usedResourceTypes = new HashSet<String>();
 
+    /** Optional cache for the resource super types */
+    private final LocationCache locationCache;
+
     /**
      * Creates an instance of this iterator starting with a location built from
      * the resource type of the <code>resource</code> and ending with the
@@ -99,7 +104,24 @@ public class LocationIterator implements Iterator<String> {
      */
     public LocationIterator(String resourceType, String resourceSuperType, String baseResourceType,
             ResourceResolver resolver) {
+        this(resourceType, resourceSuperType, baseResourceType, resolver, null);
+    }
+
+    /**
+     * Creates an instance of this iterator starting with a location built from
+     * the resource type of the <code>resource</code> and ending with the
+     * given <code>baseResourceType</code>.
+     *
+     * @param resourceType the initial resource type.
+     * @param resourceSuperType the initial resource super type.
+     * @param baseResourceType The base resource type.
+     * @param resolver The resource resolver
+     * @param locationCache The cache for the resource super types, might be {@code null}
+     */
+    public LocationIterator(String resourceType, String resourceSuperType, String baseResourceType,
+            ResourceResolver resolver, LocationCache locationCache) {
         this.resolver = resolver;
+        this.locationCache = locationCache;
         this.baseResourceType = baseResourceType;
 
         String[] tmpPath = resolver.getSearchPath();
@@ -201,8 +223,17 @@ public class LocationIterator implements Iterator<String> {
         if (resourceType.equals(this.firstResourceType)
                 && this.firstResourceSuperType != null ) {
             superType = this.firstResourceSuperType;
+        } else if (locationCache != null) {
+            final LocationCache.SuperTypeEntry entry = locationCache.getSuperType(resourceType);
+            if (entry != null) {
+                superType = entry.getSuperType();
+            } else {
+                final List<String> checkedPaths = new ArrayList<String>();
+                superType = getResourceSuperType(resolver, resourceType, checkedPaths);
+                locationCache.putSuperType(resourceType, superType, checkedPaths.toArray(new String[checkedPaths.size()]));
+            }
         } else {
-            superType = getResourceSuperType(resolver, resourceType);
+            superType = getResourceSuperType(resolver, resourceType, null);
         }
 
         // detect circular dependency
@@ -224,7 +255,8 @@ public class LocationIterator implements Iterator<String> {
 
     // this method is largely duplicated from ResourceUtil
     private String getResourceSuperType(final ResourceResolver resourceResolver,
-                                        final String resourceType) {
+                                        final String resourceType,
+                                        final List<String> checkedPaths) {
         // normalize resource type to a path string
         final String rtPath = ResourceUtil.resourceTypeToPath(resourceType);
         // get the resource type resource and check its super type
@@ -232,6 +264,9 @@ public class LocationIterator implements Iterator<String> {
         // if the path is absolute, use it directly
         if ( rtPath != null && rtPath.startsWith("/") ) {
             final String candidatePath = rtPath;
+            if ( checkedPaths != null ) {
+                checkedPaths.add(candidatePath);
+            }
 
             final Resource rtResource = resourceResolver.getResource(candidatePath);
             if ( rtResource != null ) {
@@ -242,6 +277,9 @@ public class LocationIterator implements Iterator<String> {
             // if the path is relative we use the search paths
             for(final String searchPath : this.searchPath) {
                 final String candidatePath = searchPath + rtPath;
+                if ( checkedPaths != null ) {
+                    checkedPaths.add(candidatePath);
+                }
                 final Resource rtResource = resourceResolver.getResource(candidatePath);
                 if ( rtResource != null && rtResource.getResourceSuperType() != null ) {
                     resourceSuperType = rtResource.getResourceSuperType();
@@ -40,6 +40,31 @@ public interface SlingServletResolverCacheMBean {
      */
     int getMaximumCacheSize();
 
+    /**
+     * Get the number of lookups which have been answered by the cache
+     *
+     * @return the number of cache hits
+     * @since 2.4.0
+     */
+    long getHitCount();
+
+    /**
+     * Get the number of lookups which have not been answered by the cache
+     *
+     * @return the number of cache misses
+     * @since 2.4.0
+     */
+    long getMissCount();
+
+    /**
+     * Get the number of entries which have been evicted from the cache
+     * because the maximum size was reached
+     *
+     * @return the number of evictions
+     * @since 2.4.0
+     */
+    long getEvictionCount();
+
     /**
      * Flush the servlet resolver cache.
      */
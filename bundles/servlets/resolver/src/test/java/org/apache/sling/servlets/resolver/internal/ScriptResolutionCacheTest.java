@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.servlets.resolver.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import javax.servlet.Servlet;
+import javax.servlet.http.HttpServlet;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.servlets.resolver.internal.helper.AbstractResourceCollector;
+import org.junit.Test;
+
+public class ScriptResolutionCacheTest {
+
+    private static final class TestCollector extends AbstractResourceCollector {
+
+        TestCollector(final String resourceType) {
+            super("sling/servlet/default", resourceType, null, "html", null);
+            this.hashCode = resourceType.hashCode();
+        }
+
+        @Override
+        protected void getWeightedResources(final Set<Resource> resources, final Resource location) {
+            // not used
+        }
+    }
+
+    @Test public void testHitsAndMisses() {
+        final ScriptResolutionCache cache = new ScriptResolutionCache(100);
+        final Servlet servlet = new HttpServlet() {};
+
+        assertNull(cache.get(new TestCollector("a/b")));
+        cache.put(new TestCollector("a/b"), servlet, Arrays.asList("/apps/a/b", "/libs/a/b"));
+        assertSame(servlet, cache.get(new TestCollector("a/b")));
+
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0, cache.getEvictions());
+    }
+
+    @Test public void testEviction() {
+        final ScriptResolutionCache cache = new ScriptResolutionCache(10);
+        final Servlet servlet = new HttpServlet() {};
+
+        for (int i = 0; i < 20; i++) {
+            cache.put(new TestCollector("type/" + i), servlet, Arrays.asList("/apps/type/" + i));
+            // keep the first entry in use
+            assertNotNull(cache.get(new TestCollector("type/0")));
+        }
+        assertEquals(10, cache.size());
+        assertEquals(10, cache.getEvictions());
+        assertNotNull(cache.get(new TestCollector("type/0")));
+        assertNull(cache.get(new TestCollector("type/1")));
+    }
+
+    @Test public void testInvalidate() {
+        final ScriptResolutionCache cache = new ScriptResolutionCache(100);
+        final Servlet servlet = new HttpServlet() {};
+
+        cache.put(new TestCollector("a/b"), servlet, Arrays.asList("/apps/a/b", "/libs/a/b"));
+        cache.put(new TestCollector("a/bc"), servlet, Arrays.asList("/apps/a/bc", "/libs/a/bc"));
+        cache.put(new TestCollector("x/y"), servlet, Arrays.asList("/apps/x/y", "/libs/x/y"));
+
+        // script below a location
+        assertEquals(1, cache.invalidate("/apps/a/b/html.jsp"));
+        assertNull(cache.get(new TestCollector("a/b")));
+        assertNotNull(cache.get(new TestCollector("a/bc")));
+
+        // removal of a parent
+        assertEquals(1, cache.invalidate("/libs/a"));
+        assertNull(cache.get(new TestCollector("a/bc")));
+        assertNotNull(cache.get(new TestCollector("x/y")));
+
+        // unrelated path
+        assertEquals(0, cache.invalidate("/apps/other"));
+        assertEquals(1, cache.size());
+    }
+}
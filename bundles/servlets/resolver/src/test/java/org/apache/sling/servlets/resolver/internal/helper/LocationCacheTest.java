@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.servlets.resolver.internal.helper;
+
+import static org.apache.sling.api.servlets.ServletResolverConstants.DEFAULT_RESOURCE_TYPE;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.commons.testing.sling.MockResource;
+
+public class LocationCacheTest extends HelperTestBase {
+
+    public void testAffects() {
+        assertTrue(LocationCache.affects("/apps/a/b", "/apps/a/b"));
+        assertTrue(LocationCache.affects("/apps/a/b/GET.jsp", "/apps/a/b"));
+        assertTrue(LocationCache.affects("/apps/a/b.servlet", "/apps/a/b"));
+        assertTrue(LocationCache.affects("/apps", "/apps/a/b"));
+        assertFalse(LocationCache.affects("/apps/a/bc", "/apps/a/b"));
+        assertFalse(LocationCache.affects("/apps/a/b", "/apps/a/bc"));
+    }
+
+    public void testEmptyLocations() {
+        final LocationCache cache = new LocationCache(10);
+        cache.addEmptyLocation("/apps/a/b");
+        cache.addEmptyLocation("/libs/a/b");
+        assertTrue(cache.isEmptyLocation("/apps/a/b"));
+
+        // adding a script below the location
+        cache.invalidate("/apps/a/b/html.jsp");
+        assertFalse(cache.isEmptyLocation("/apps/a/b"));
+        assertTrue(cache.isEmptyLocation("/libs/a/b"));
+
+        cache.clear();
+        assertFalse(cache.isEmptyLocation("/libs/a/b"));
+    }
+
+    public void testMaxEntries() {
+        final LocationCache cache = new LocationCache(2);
+        cache.addEmptyLocation("/apps/a");
+        cache.addEmptyLocation("/apps/b");
+        assertTrue(cache.isEmptyLocation("/apps/a"));
+
+        // the least recently used location is evicted
+        cache.addEmptyLocation("/apps/c");
+        assertTrue(cache.isEmptyLocation("/apps/a"));
+        assertFalse(cache.isEmptyLocation("/apps/b"));
+        assertTrue(cache.isEmptyLocation("/apps/c"));
+    }
+
+    public void testCachedSuperType() {
+        resourceResolver.setSearchPath("/apps", "/libs");
+        final Resource typeResource = new MockResource(resourceResolver,
+                "/libs/foo/check1", "foo/bar", "foo/check2");
+        resourceResolver.addResource(typeResource);
+
+        final LocationCache cache = new LocationCache(10);
+        assertLocations(cache, "foo/bar", "foo/check1",
+                "/apps/foo/bar", "/libs/foo/bar",
+                "/apps/foo/check1", "/libs/foo/check1",
+                "/apps/foo/check2", "/libs/foo/check2");
+
+        assertEquals("foo/check2", cache.getSuperType("foo/check1").getSuperType());
+        assertNull(cache.getSuperType("foo/check2").getSuperType());
+
+        // the cached super type is used instead of the resource tree
+        cache.putSuperType("foo/check1", "foo/other", new String[] {"/apps/foo/check1", "/libs/foo/check1"});
+        assertLocations(cache, "foo/bar", "foo/check1",
+                "/apps/foo/bar", "/libs/foo/bar",
+                "/apps/foo/check1", "/libs/foo/check1",
+                "/apps/foo/other", "/libs/foo/other");
+
+        // until a change of the type resource is reported
+        cache.invalidate("/libs/foo/check1");
+        assertNull(cache.getSuperType("foo/check1"));
+        assertLocations(cache, "foo/bar", "foo/check1",
+                "/apps/foo/bar", "/libs/foo/bar",
+                "/apps/foo/check1", "/libs/foo/check1",
+                "/apps/foo/check2", "/libs/foo/check2");
+    }
+
+    private void assertLocations(final LocationCache cache, final String resourceType,
+            final String resourceSuperType, final String... expected) {
+        final LocationIterator li = new LocationIterator(resourceType, resourceSuperType,
+                DEFAULT_RESOURCE_TYPE, resourceResolver, cache);
+        for (final String location : expected) {
+            assertTrue(li.hasNext());
+            assertEquals(location, li.next());
+        }
+        assertTrue(li.hasNext());
+        assertEquals("/apps/" + DEFAULT_RESOURCE_TYPE, li.next());
+        assertTrue(li.hasNext());
+        assertEquals("/libs/" + DEFAULT_RESOURCE_TYPE, li.next());
+        assertFalse(li.hasNext());
+    }
+}
@@ -22,8 +22,8 @@ package org.apache.sling.commons.cache.impl;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
 
 import org.apache.sling.commons.cache.api.Cache;
 import org.apache.sling.commons.cache.api.ThreadBound;
@@ -95,10 +95,10 @@ public class MapCacheImpl<V> extends HashMap<String, V> implements Cache<V> {
 		if (!key.endsWith("/")) {
 			key = key + "/";
 		}
-		Set<String> keys = super.keySet();
-		for (String k : keys) {
-			if ((k).startsWith(key)) {
-				super.remove(k);
+		Iterator<String> keys = super.keySet().iterator();
+		while (keys.hasNext()) {
+			if (keys.next().startsWith(key)) {
+				keys.remove();
 			}
 		}
 	}
@@ -0,0 +1,384 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sling.commons.cache.memory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.sling.commons.cache.api.Cache;
+import org.apache.sling.commons.cache.api.ThreadBound;
+
+/**
+ * A concurrent in memory cache, bounded in size and with optional time to
+ * live and time to idle.
+ * <p>
+ * Lookups do not lock. Writes lock one of a fixed number of stripes selected
+ * by the key, so the map of entries and the sorted index of the keys are
+ * updated together. The index is used by {@link #removeChildren(String)},
+ * which only visits the removed keys.
+ * <p>
+ * If the cache is full, entries are evicted in insertion order, except that
+ * entries read since they have been inserted or last considered for eviction
+ * get a second chance. Expired entries are removed when they are read and,
+ * for the time to live, from the head of the eviction queue when entries are
+ * added.
+ */
+public class CacheImpl<V> implements Cache<V> {
+
+	private static final int LOCK_STRIPES = 64;
+
+	private final String cacheName;
+	private final int maxEntries;
+	private final long timeToLive;
+	private final long timeToIdle;
+
+	private final Map<String, Entry<V>> entries = new ConcurrentHashMap<String, Entry<V>>();
+	private final ConcurrentSkipListSet<String> index = new ConcurrentSkipListSet<String>();
+	private final Object[] locks = new Object[LOCK_STRIPES];
+
+	/** The entries in insertion order, including removed entries not yet polled */
+	private final ConcurrentLinkedQueue<Entry<V>> queue = new ConcurrentLinkedQueue<Entry<V>>();
+	private final AtomicInteger removedInQueue = new AtomicInteger();
+	private final AtomicBoolean purging = new AtomicBoolean();
+
+	private final AtomicInteger size = new AtomicInteger();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * @param name
+	 *            The name of the cache.
+	 * @param maxEntries
+	 *            The maximum number of entries, 0 for no limit.
+	 * @param timeToLive
+	 *            The time after which an entry expires (milliseconds), 0 for
+	 *            no limit.
+	 * @param timeToIdle
+	 *            The time after which an entry expires if it is not read
+	 *            (milliseconds), 0 for no limit.
+	 */
+	public CacheImpl(String name, int maxEntries, long timeToLive,
+			long timeToIdle) {
+		this.cacheName = name;
+		this.maxEntries = maxEntries;
+		this.timeToLive = timeToLive;
+		this.timeToIdle = timeToIdle;
+		for (int i = 0; i < locks.length; i++) {
+			locks[i] = new Object();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.apache.sling.commons.cache.api.Cache#put(java.lang.String,
+	 *      java.lang.Object)
+	 */
+	public V put(String key, V payload) {
+		final long now = now();
+		final Entry<V> entry = new Entry<V>(key, payload, now);
+		Entry<V> previous;
+		synchronized (lock(key)) {
+			previous = entries.put(key, entry);
+			if (previous == null) {
+				index.add(key);
+				size.incrementAndGet();
+			} else {
+				previous.removed = true;
+			}
+		}
+		queue.add(entry);
+		if (previous != null) {
+			removedFromQueue();
+		}
+		if (timeToLive > 0) {
+			expireHead(now);
+		}
+		if (maxEntries > 0 && size.get() > maxEntries) {
+			evict(now);
+		}
+		if (previous == null || isExpired(previous, now)) {
+			return null;
+		}
+		return previous.value;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.apache.sling.commons.cache.api.Cache#containsKey(java.lang.String)
+	 */
+	public boolean containsKey(String key) {
+		return getEntry(key) != null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.apache.sling.commons.cache.api.Cache#get(java.lang.String)
+	 */
+	public V get(String key) {
+		Entry<V> e = getEntry(key);
+		return (e == null) ? null : e.value;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.apache.sling.commons.cache.api.Cache#clear()
+	 */
+	public void clear() {
+		for (String key : index) {
+			remove(key);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.apache.sling.commons.cache.api.Cache#remove(java.lang.String)
+	 */
+	public boolean remove(String key) {
+		return removeEntry(key, null, true);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.apache.sling.commons.cache.api.Cache#removeChildren(java.lang.String)
+	 */
+	public void removeChildren(String key) {
+		remove(key);
+		if (!key.endsWith("/")) {
+			key = key + "/";
+		}
+		// the keys starting with key sort before key with the trailing
+		// slash replaced by the next character
+		String end = key.substring(0, key.length() - 1) + (char) ('/' + 1);
+		for (String child : index.subSet(key, end)) {
+			remove(child);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.apache.sling.commons.cache.api.Cache#list()
+	 */
+	public Collection<V> values() {
+		List<V> values = new ArrayList<V>();
+		long now = now();
+		for (Entry<V> e : entries.values()) {
+			if (!isExpired(e, now)) {
+				values.add(e.value);
+			}
+		}
+		return values;
+	}
+
+	public Collection<String> keys() {
+		List<String> keys = new ArrayList<String>();
+		long now = now();
+		for (Entry<V> e : entries.values()) {
+			if (!isExpired(e, now)) {
+				keys.add(e.key);
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * @return the name of the cache.
+	 */
+	public String getName() {
+		return cacheName;
+	}
+
+	/**
+	 * @return the number of entries, including expired entries not removed
+	 *         yet.
+	 */
+	public int size() {
+		return size.get();
+	}
+
+	/**
+	 * @return the number of entries evicted because the cache was full.
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	/**
+	 * @return the current time in milliseconds.
+	 */
+	protected long now() {
+		return System.currentTimeMillis();
+	}
+
+	private Entry<V> getEntry(String key) {
+		Entry<V> e = entries.get(key);
+		if (e == null) {
+			return null;
+		}
+		long now = now();
+		if (isExpired(e, now)) {
+			removeEntry(key, e, true);
+			return null;
+		}
+		// avoid writing to entries read by many threads if nothing changed
+		if (timeToIdle > 0 && e.lastAccessed != now) {
+			e.lastAccessed = now;
+		}
+		if (!e.referenced) {
+			e.referenced = true;
+		}
+		return e;
+	}
+
+	private boolean isExpired(Entry<V> e, long now) {
+		return (timeToLive > 0 && now - e.created >= timeToLive)
+				|| (timeToIdle > 0 && now - e.lastAccessed >= timeToIdle);
+	}
+
+	/**
+	 * Remove the entry of the key.
+	 * 
+	 * @param key
+	 *            the key.
+	 * @param expected
+	 *            the entry to remove, or null to remove any entry.
+	 * @param queued
+	 *            true if the entry is still in the eviction queue.
+	 * @return true if an entry has been removed.
+	 */
+	private boolean removeEntry(String key, Entry<V> expected, boolean queued) {
+		Entry<V> removed;
+		synchronized (lock(key)) {
+			removed = entries.get(key);
+			if (removed == null || (expected != null && removed != expected)) {
+				return false;
+			}
+			entries.remove(key);
+			index.remove(key);
+			size.decrementAndGet();
+			removed.removed = true;
+		}
+		if (queued) {
+			removedFromQueue();
+		}
+		if (removed.value instanceof ThreadBound) {
+			((ThreadBound) removed.value).unbind();
+		}
+		return true;
+	}
+
+	/**
+	 * Remove the expired entries from the head of the queue, which are the
+	 * oldest entries.
+	 */
+	private void expireHead(long now) {
+		Entry<V> head = queue.peek();
+		while (head != null && (head.removed || now - head.created >= timeToLive)) {
+			if (queue.remove(head)) {
+				if (head.removed) {
+					removedInQueue.decrementAndGet();
+				} else {
+					removeEntry(head.key, head, false);
+				}
+			}
+			head = queue.peek();
+		}
+	}
+
+	private void evict(long now) {
+		// every entry gets at most one second chance per round
+		int candidates = 2 * (size.get() + removedInQueue.get()) + 1;
+		while (size.get() > maxEntries && candidates-- > 0) {
+			Entry<V> e = queue.poll();
+			if (e == null) {
+				return;
+			}
+			if (e.removed) {
+				removedInQueue.decrementAndGet();
+			} else if (e.referenced && !isExpired(e, now)) {
+				e.referenced = false;
+				queue.add(e);
+			} else if (removeEntry(e.key, e, false)) {
+				evictions.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Count an entry removed from the cache but not from the queue, and
+	 * remove those entries from the queue once they outnumber the live
+	 * entries, so the queue does not grow with the number of removals.
+	 */
+	private void removedFromQueue() {
+		if (removedInQueue.incrementAndGet() > Math.max(size.get(), 1024)
+				&& purging.compareAndSet(false, true)) {
+			try {
+				// recount from scratch, so races between eviction and
+				// removal do not let the counter drift
+				removedInQueue.set(0);
+				Iterator<Entry<V>> i = queue.iterator();
+				while (i.hasNext()) {
+					if (i.next().removed) {
+						i.remove();
+					}
+				}
+			} finally {
+				purging.set(false);
+			}
+		}
+	}
+
+	private Object lock(String key) {
+		int h = key.hashCode();
+		return locks[(h ^ (h >>> 16)) & (LOCK_STRIPES - 1)];
+	}
+
+	private static final class Entry<V> {
+
+		private final String key;
+		private final V value;
+		private final long created;
+		private volatile long lastAccessed;
+		private volatile boolean referenced;
+		private volatile boolean removed;
+
+		Entry(String key, V value, long created) {
+			this.key = key;
+			this.value = value;
+			this.created = created;
+			this.lastAccessed = created;
+		}
+	}
+
+}
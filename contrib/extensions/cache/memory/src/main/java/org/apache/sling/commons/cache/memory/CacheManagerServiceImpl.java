@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sling.commons.cache.memory;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.felix.scr.annotations.Activate;
+import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Deactivate;
+import org.apache.felix.scr.annotations.Property;
+import org.apache.felix.scr.annotations.Service;
+import org.apache.sling.commons.cache.api.Cache;
+import org.apache.sling.commons.cache.api.CacheManagerService;
+import org.apache.sling.commons.cache.impl.AbstractCacheManagerService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The <code>CacheManagerServiceImpl</code> keeps the instance caches in
+ * memory, without any dependency on a cache library. Cluster scoped caches
+ * are instance caches, they are neither invalidated nor replicated over the
+ * cluster.
+ */
+@Component(immediate = true, metatype = true)
+@Service(value = CacheManagerService.class)
+public class CacheManagerServiceImpl extends AbstractCacheManagerService {
+
+	@Property(value = "The Apache Software Foundation")
+	static final String SERVICE_VENDOR = "service.vendor";
+
+	@Property(value = "Cache Manager Service Implementation")
+	static final String SERVICE_DESCRIPTION = "service.description";
+
+	private static final int DEFAULT_MAX_ENTRIES = 10000;
+
+	private static final long DEFAULT_TIME_TO_LIVE = 0;
+
+	private static final long DEFAULT_TIME_TO_IDLE = 0;
+
+	/** The maximum number of entries per cache, 0 for no limit. */
+	@Property(intValue = DEFAULT_MAX_ENTRIES)
+	public static final String MAX_ENTRIES = "max-entries";
+
+	/** The time to live of the entries (seconds), 0 for no limit. */
+	@Property(longValue = DEFAULT_TIME_TO_LIVE)
+	public static final String TIME_TO_LIVE = "time-to-live";
+
+	/** The time to idle of the entries (seconds), 0 for no limit. */
+	@Property(longValue = DEFAULT_TIME_TO_IDLE)
+	public static final String TIME_TO_IDLE = "time-to-idle";
+
+	private static final String DEFAULT_CACHE_NAME = "default";
+
+	private static final Logger LOGGER = LoggerFactory
+			.getLogger(CacheManagerServiceImpl.class);
+
+	private final ConcurrentMap<String, CacheImpl<?>> caches = new ConcurrentHashMap<String, CacheImpl<?>>();
+	private int maxEntries = DEFAULT_MAX_ENTRIES;
+	private long timeToLive = DEFAULT_TIME_TO_LIVE;
+	private long timeToIdle = DEFAULT_TIME_TO_IDLE;
+
+	public CacheManagerServiceImpl() throws IOException {
+	}
+
+	@Activate
+	public void activate(Map<String, Object> properties) {
+		maxEntries = (int) toLong(properties.get(MAX_ENTRIES), DEFAULT_MAX_ENTRIES);
+		timeToLive = 1000L * toLong(properties.get(TIME_TO_LIVE), DEFAULT_TIME_TO_LIVE);
+		timeToIdle = 1000L * toLong(properties.get(TIME_TO_IDLE), DEFAULT_TIME_TO_IDLE);
+		LOGGER.info("Caches hold up to {} entries, time to live {}ms, time to idle {}ms",
+				new Object[] { maxEntries, timeToLive, timeToIdle });
+	}
+
+	/**
+	 * Drop all caches.
+	 */
+	@Deactivate
+	public void deactivate() {
+		for (CacheImpl<?> cache : caches.values()) {
+			LOGGER.debug("Dropping cache {} with {} entries, {} evictions",
+					new Object[] { cache.getName(), cache.size(), cache.getEvictions() });
+			cache.clear();
+		}
+		caches.clear();
+	}
+
+	/**
+	 * @param name
+	 * @return
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	protected <V> Cache<V> getInstanceCache(String name) {
+		if (name == null) {
+			name = DEFAULT_CACHE_NAME;
+		}
+		CacheImpl<V> c = (CacheImpl<V>) caches.get(name);
+		if (c == null) {
+			c = new CacheImpl<V>(name, maxEntries, timeToLive, timeToIdle);
+			CacheImpl<V> existing = (CacheImpl<V>) caches.putIfAbsent(name, c);
+			if (existing != null) {
+				c = existing;
+			}
+		}
+		return c;
+	}
+
+	private long toLong(Object value, long defaultValue) {
+		String s = toString(value, null);
+		if (s == null) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(s.trim());
+		} catch (NumberFormatException e) {
+			LOGGER.warn("Invalid number {}, using {}", s, defaultValue);
+			return defaultValue;
+		}
+	}
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.cache.memory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.sling.commons.cache.api.ThreadBound;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class CacheImplTest {
+
+  private long now = 1000;
+
+  private CacheImpl<String> newCache(int maxEntries, long timeToLive, long timeToIdle) {
+    return new CacheImpl<String>("test", maxEntries, timeToLive, timeToIdle) {
+      @Override
+      protected long now() {
+        return now;
+      }
+    };
+  }
+
+  @Test
+  public void testTimeToLive() {
+    CacheImpl<String> cache = newCache(0, 100, 0);
+    cache.put("a", "1");
+    now += 50;
+    cache.put("b", "2");
+    assertEquals("1", cache.get("a"));
+    now += 50;
+    assertNull("Expected entry to expire", cache.get("a"));
+    assertEquals("2", cache.get("b"));
+    now += 50;
+    cache.put("c", "3");
+    assertEquals("Expected expired entries to be removed", 1, cache.size());
+  }
+
+  @Test
+  public void testTimeToIdle() {
+    CacheImpl<String> cache = newCache(0, 0, 100);
+    cache.put("a", "1");
+    cache.put("b", "2");
+    now += 60;
+    assertEquals("1", cache.get("a"));
+    now += 60;
+    assertEquals("Expected read entry to stay", "1", cache.get("a"));
+    assertFalse("Expected idle entry to expire", cache.containsKey("b"));
+    assertEquals(1, cache.keys().size());
+  }
+
+  @Test
+  public void testMaxEntries() {
+    CacheImpl<String> cache = newCache(3, 0, 0);
+    cache.put("a", "1");
+    cache.put("b", "2");
+    cache.put("c", "3");
+    cache.get("a");
+    cache.put("d", "4");
+    assertEquals(3, cache.size());
+    assertEquals(1, cache.getEvictions());
+    assertEquals("Expected read entry to get a second chance", "1", cache.get("a"));
+    assertNull("Expected oldest unread entry to be evicted", cache.get("b"));
+    assertEquals("3", cache.get("c"));
+    assertEquals("4", cache.get("d"));
+  }
+
+  @Test
+  public void testPutReturnsPrevious() {
+    CacheImpl<String> cache = newCache(0, 0, 0);
+    assertNull(cache.put("a", "1"));
+    assertEquals("1", cache.put("a", "2"));
+    assertEquals("2", cache.get("a"));
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void testRemoveChildren() {
+    CacheImpl<String> cache = newCache(0, 0, 0);
+    cache.put("/content/site", "site");
+    cache.put("/content/site/en", "en");
+    cache.put("/content/site/en/page", "page");
+    cache.put("/content/site-b", "sibling");
+    cache.put("/content/site0", "sibling");
+    cache.put("/content", "parent");
+    cache.removeChildren("/content/site");
+    assertNull(cache.get("/content/site"));
+    assertNull(cache.get("/content/site/en"));
+    assertNull(cache.get("/content/site/en/page"));
+    assertEquals("sibling", cache.get("/content/site-b"));
+    assertEquals("sibling", cache.get("/content/site0"));
+    assertEquals("parent", cache.get("/content"));
+    assertEquals(3, cache.size());
+  }
+
+  @Test
+  public void testUnbindOnEviction() {
+    CacheImpl<ThreadBound> cache = new CacheImpl<ThreadBound>("test", 1, 0, 0);
+    ThreadBound first = Mockito.mock(ThreadBound.class);
+    cache.put("first", first);
+    cache.put("second", Mockito.mock(ThreadBound.class));
+    Mockito.verify(first).unbind();
+  }
+
+  @Test
+  public void testConcurrentAccess() throws InterruptedException {
+    final CacheImpl<String> cache = new CacheImpl<String>("test", 500, 0, 0);
+    final CountDownLatch done = new CountDownLatch(8);
+    final AtomicInteger failures = new AtomicInteger();
+    for (int t = 0; t < 8; t++) {
+      final int thread = t;
+      new Thread() {
+        @Override
+        public void run() {
+          try {
+            for (int i = 0; i < 20000; i++) {
+              String key = "/content/" + (i % 50) + "/" + ((i + thread) % 40);
+              cache.put(key, key);
+              String value = cache.get(key);
+              if (value != null && !value.equals(key)) {
+                failures.incrementAndGet();
+              }
+              if (i % 100 == 0) {
+                cache.removeChildren("/content/" + (i % 50));
+              }
+              if (i % 7 == 0) {
+                cache.remove(key);
+              }
+            }
+          } catch (RuntimeException e) {
+            failures.incrementAndGet();
+          } finally {
+            done.countDown();
+          }
+        }
+      }.start();
+    }
+    done.await();
+    assertEquals(0, failures.get());
+    assertTrue(cache.size() <= 500);
+    assertEquals(cache.size(), cache.keys().size());
+    cache.clear();
+    assertEquals(0, cache.size());
+  }
+
+}
@@ -0,0 +1,440 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.distribution.agent.impl;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.sling.commons.scheduler.ScheduleOptions;
+import org.apache.sling.commons.scheduler.Scheduler;
+import org.apache.sling.distribution.DistributionRequest;
+import org.apache.sling.distribution.DistributionRequestType;
+import org.apache.sling.distribution.SimpleDistributionRequest;
+import org.apache.sling.distribution.common.DistributionException;
+import org.apache.sling.distribution.log.impl.DefaultDistributionLog;
+
+/**
+ * Merges consecutive {@link DistributionRequestType#ADD} or {@link DistributionRequestType#DELETE} requests of the same
+ * user into a single request, so that a bulk distribution results in a few large packages instead of a package per
+ * request.
+ * <p/>
+ * A batch is exported once it holds the configured number of paths, after the configured delay since its first request
+ * or when a request of another type or user is added, so requests are still exported in the order they have been
+ * received. Paths already covered by another path of the batch are dropped, requests with filters are not batched.
+ * <p/>
+ * Batches are exported outside of the monitor guarding the current batch, so requests are batched while a batch is
+ * exported. One thread exports at a time, in the order the batches have been completed. Requests which are not batched
+ * are exported with {@link #exportDirectly(RequestExporter)} by the same thread, so they are not exported ahead of a
+ * batch completed before them. If a batch cannot be exported, its requests are exported one by one.
+ * <p/>
+ * A batched request is accepted before it is queued: until its batch is exported it is only held in memory. It is lost
+ * if the instance stops without the agent being disabled, which exports the current batch, or if it cannot be exported
+ * on its own after its batch failed. Lost requests are logged with their paths.
+ */
+public class DistributionRequestBatcher {
+
+    /**
+     * Exports the merged requests.
+     */
+    interface BatchExporter {
+
+        /**
+         * @param callingUser the user of the batched requests
+         * @param request     the merged request
+         * @param startTime   the time the first request of the batch has been added
+         * @throws DistributionException if the request cannot be exported
+         */
+        void exportBatch(@Nullable String callingUser, @Nonnull DistributionRequest request, long startTime) throws DistributionException;
+    }
+
+    /**
+     * Exports a request which has not been batched.
+     */
+    interface RequestExporter<T> {
+
+        /**
+         * @return the result of the export
+         * @throws DistributionException if the request cannot be exported
+         */
+        T export() throws DistributionException;
+    }
+
+    private final String agentName;
+    private final int maxPaths;
+    private final long maxDelay;
+    private final Scheduler scheduler;
+    private final BatchExporter exporter;
+    private final DefaultDistributionLog log;
+
+    // current batch
+    private Batch batch;
+    private long nextBatchId;
+
+    // batches to export, in the order they have been completed
+    private final Deque<Batch> completed = new ArrayDeque<Batch>();
+    private final Object exportLock = new Object();
+
+    // stats
+    private final AtomicLong batchesCount = new AtomicLong();
+    private final AtomicLong requestsCount = new AtomicLong();
+    private final AtomicLong pathsCount = new AtomicLong();
+    private final AtomicLong droppedPathsCount = new AtomicLong();
+    private final AtomicLong maxBatchSize = new AtomicLong();
+    private final AtomicLong totalLatency = new AtomicLong();
+    private final AtomicLong maxLatency = new AtomicLong();
+
+    DistributionRequestBatcher(@Nonnull String agentName, int maxPaths, long maxDelay, @Nonnull Scheduler scheduler,
+                               @Nonnull BatchExporter exporter, @Nonnull DefaultDistributionLog log) {
+        this.agentName = agentName;
+        this.maxPaths = maxPaths;
+        this.maxDelay = maxDelay;
+        this.scheduler = scheduler;
+        this.exporter = exporter;
+        this.log = log;
+    }
+
+    /**
+     * add a request to the current batch
+     *
+     * @param callingUser the user of the request
+     * @param request     the request
+     * @return {@code true} if the request has been batched, {@code false} if it cannot be batched and has to be exported
+     * with {@link #exportDirectly(RequestExporter)}
+     */
+    boolean add(@Nullable String callingUser, @Nonnull DistributionRequest request) {
+        DistributionRequestType type = request.getRequestType();
+        boolean batchable = (DistributionRequestType.ADD.equals(type) || DistributionRequestType.DELETE.equals(type))
+                && !hasFilters(request);
+        boolean export = false;
+        synchronized (this) {
+            if (batch != null && (!batchable || !batch.accepts(callingUser, type))) {
+                complete();
+                export = true;
+            }
+            if (batchable) {
+                if (batch == null) {
+                    batch = new Batch(nextBatchId++, callingUser, type);
+                    schedule(batch.id);
+                }
+                batch.add(request);
+                requestsCount.incrementAndGet();
+
+                if (batch.paths.size() >= maxPaths) {
+                    complete();
+                    export = true;
+                }
+            }
+        }
+        if (export) {
+            exportCompleted();
+        }
+        return batchable;
+    }
+
+    /**
+     * export a request which has not been batched, after the batches completed before, including a batch another thread
+     * is still exporting
+     *
+     * @param requestExporter the export of the request
+     * @return the result of the export
+     * @throws DistributionException if the request cannot be exported
+     */
+    <T> T exportDirectly(@Nonnull RequestExporter<T> requestExporter) throws DistributionException {
+        synchronized (exportLock) {
+            exportCompleted();
+            return requestExporter.export();
+        }
+    }
+
+    /**
+     * export the current batch, if any
+     */
+    void flush() {
+        synchronized (this) {
+            if (batch != null) {
+                complete();
+            }
+        }
+        exportCompleted();
+    }
+
+    /**
+     * @return the number of exported batches
+     */
+    public long getBatchesCount() {
+        return batchesCount.get();
+    }
+
+    /**
+     * @return the number of batched requests
+     */
+    public long getRequestsCount() {
+        return requestsCount.get();
+    }
+
+    /**
+     * @return the number of paths of the exported batches
+     */
+    public long getPathsCount() {
+        return pathsCount.get();
+    }
+
+    /**
+     * @return the number of requested paths dropped as they were already covered by their batch
+     */
+    public long getDroppedPathsCount() {
+        return droppedPathsCount.get();
+    }
+
+    /**
+     * @return the largest number of paths of an exported batch
+     */
+    public long getMaxBatchSize() {
+        return maxBatchSize.get();
+    }
+
+    /**
+     * @return the average time in ms from the first request of a batch until the batch has been queued
+     */
+    public long getAverageLatency() {
+        long batches = batchesCount.get();
+        return batches > 0 ? totalLatency.get() / batches : 0;
+    }
+
+    /**
+     * @return the longest time in ms from the first request of a batch until the batch has been queued
+     */
+    public long getMaxLatency() {
+        return maxLatency.get();
+    }
+
+    private void flush(long batchId) {
+        synchronized (this) {
+            if (batch != null && batch.id == batchId) {
+                complete();
+            }
+        }
+        exportCompleted();
+    }
+
+    /**
+     * move the current batch to the batches to export, the caller holds the monitor
+     */
+    private void complete() {
+        Batch completedBatch = batch;
+        batch = null;
+        scheduler.unschedule(getJobName(completedBatch.id));
+        completed.addLast(completedBatch);
+    }
+
+    /**
+     * export the completed batches, including the ones completed by other threads while this thread waited
+     */
+    private void exportCompleted() {
+        synchronized (exportLock) {
+            Batch next;
+            while ((next = pollCompleted()) != null) {
+                export(next);
+            }
+        }
+    }
+
+    private synchronized Batch pollCompleted() {
+        return completed.pollFirst();
+    }
+
+    private void export(Batch exported) {
+        DistributionRequest request = exported.toRequest();
+        try {
+            exporter.exportBatch(exported.callingUser, request, exported.startTime);
+        } catch (DistributionException e) {
+            log.error("cannot export batch of {} requests, paths={}", exported.requests.size(), request.getPaths(), e);
+            exportSeparately(exported);
+        } catch (RuntimeException e) {
+            log.error("cannot export batch of {} requests, paths={}", exported.requests.size(), request.getPaths(), e);
+            exportSeparately(exported);
+        }
+
+        long latency = System.currentTimeMillis() - exported.startTime;
+        int size = exported.paths.size();
+        batchesCount.incrementAndGet();
+        pathsCount.addAndGet(size);
+        droppedPathsCount.addAndGet(exported.droppedPaths);
+        totalLatency.addAndGet(latency);
+        updateMax(maxBatchSize, size);
+        updateMax(maxLatency, latency);
+
+        log.info("BATCH-EXPORTED {}: requests={}, paths={}, dropped={}, latency={}ms", request.getRequestType(),
+                exported.requests.size(), size, exported.droppedPaths, latency);
+    }
+
+    /**
+     * export the requests of a failed batch one by one, so a single failing request does not drop the others
+     */
+    private void exportSeparately(Batch failed) {
+        if (failed.requests.size() == 1) {
+            log.error("cannot export batched request, the request is lost: paths={}", failed.requests.get(0).getPaths());
+            return;
+        }
+        for (DistributionRequest request : failed.requests) {
+            try {
+                exporter.exportBatch(failed.callingUser, request, failed.startTime);
+            } catch (DistributionException e) {
+                log.error("cannot export batched request, the request is lost: paths={}", request.getPaths(), e);
+            } catch (RuntimeException e) {
+                log.error("cannot export batched request, the request is lost: paths={}", request.getPaths(), e);
+            }
+        }
+    }
+
+    private void schedule(final long batchId) {
+        ScheduleOptions options = scheduler.AT(new Date(System.currentTimeMillis() + maxDelay))
+                .name(getJobName(batchId))
+                .canRunConcurrently(false);
+        scheduler.schedule(new Runnable() {
+            public void run() {
+                flush(batchId);
+            }
+        }, options);
+    }
+
+    /**
+     * filters cannot be merged, requests with filters are not batched
+     */
+    private static boolean hasFilters(DistributionRequest request) {
+        for (String path : request.getPaths()) {
+            String[] filters = request.getFilters(path);
+            if (filters != null && filters.length > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String getJobName(long batchId) {
+        return "agent-" + agentName + "-batch-" + batchId;
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    private static final class Batch {
+
+        private final long id;
+        private final String callingUser;
+        private final DistributionRequestType type;
+        private final long startTime = System.currentTimeMillis();
+
+        /** the paths and whether they are deep, in the order they have been requested */
+        private final Map<String, Boolean> paths = new LinkedHashMap<String, Boolean>();
+        private final List<DistributionRequest> requests = new ArrayList<DistributionRequest>();
+        private int droppedPaths;
+
+        Batch(long id, String callingUser, DistributionRequestType type) {
+            this.id = id;
+            this.callingUser = callingUser;
+            this.type = type;
+        }
+
+        boolean accepts(String callingUser, DistributionRequestType type) {
+            return this.type.equals(type)
+                    && (this.callingUser == null ? callingUser == null : this.callingUser.equals(callingUser));
+        }
+
+        void add(DistributionRequest request) {
+            requests.add(request);
+            for (String path : request.getPaths()) {
+                add(path, request.isDeep(path));
+            }
+        }
+
+        private void add(String path, boolean deep) {
+            Boolean existing = paths.get(path);
+            if (existing != null || isCovered(path)) {
+                droppedPaths++;
+                if (existing != null && deep && !existing) {
+                    paths.put(path, true);
+                    removeDescendants(path);
+                }
+                return;
+            }
+            if (coversDescendants(deep)) {
+                removeDescendants(path);
+            }
+            paths.put(path, deep);
+        }
+
+        /**
+         * a path is covered by an ancestor in the batch which includes all its descendants
+         */
+        private boolean isCovered(String path) {
+            for (Map.Entry<String, Boolean> entry : paths.entrySet()) {
+                if (coversDescendants(entry.getValue()) && isDescendant(path, entry.getKey())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void removeDescendants(String path) {
+            Iterator<String> it = paths.keySet().iterator();
+            while (it.hasNext()) {
+                if (isDescendant(it.next(), path)) {
+                    it.remove();
+                    droppedPaths++;
+                }
+            }
+        }
+
+        private boolean coversDescendants(boolean deep) {
+            // deleting a node deletes all its descendants
+            return deep || DistributionRequestType.DELETE.equals(type);
+        }
+
+        private static boolean isDescendant(String path, String ancestor) {
+            return path.length() > ancestor.length() && path.startsWith(ancestor)
+                    && (ancestor.endsWith("/") || path.charAt(ancestor.length()) == '/');
+        }
+
+        DistributionRequest toRequest() {
+            Set<String> deepPaths = new TreeSet<String>();
+            for (Map.Entry<String, Boolean> entry : paths.entrySet()) {
+                if (entry.getValue()) {
+                    deepPaths.add(entry.getKey());
+                }
+            }
+            return new SimpleDistributionRequest(type, paths.keySet().toArray(new String[paths.size()]), deepPaths);
+        }
+    }
+}
@@ -59,6 +59,7 @@ import org.apache.sling.distribution.queue.impl.ErrorQueueDispatchingStrategy;
 import org.apache.sling.distribution.queue.impl.MultipleQueueDispatchingStrategy;
 import org.apache.sling.distribution.queue.impl.PriorityQueueDispatchingStrategy;
 import org.apache.sling.distribution.queue.impl.jobhandling.JobHandlingDistributionQueueProvider;
+import org.apache.sling.distribution.queue.impl.segment.SegmentDistributionQueueProvider;
 import org.apache.sling.distribution.queue.impl.simple.SimpleDistributionQueueProvider;
 import org.apache.sling.distribution.transport.DistributionTransportSecretProvider;
 import org.apache.sling.distribution.transport.impl.HttpConfiguration;
@@ -171,7 +172,8 @@ public class ForwardDistributionAgentFactory extends AbstractDistributionAgentFa
     @Property(options = {
             @PropertyOption(name = JobHandlingDistributionQueueProvider.TYPE, value = "Sling Jobs"),
             @PropertyOption(name = SimpleDistributionQueueProvider.TYPE, value = "In-memory"),
-            @PropertyOption(name = SimpleDistributionQueueProvider.TYPE_CHECKPOINT, value = "In-file")},
+            @PropertyOption(name = SimpleDistributionQueueProvider.TYPE_CHECKPOINT, value = "In-file"),
+            @PropertyOption(name = SegmentDistributionQueueProvider.TYPE, value = "In-file segments")},
             value = "jobs",
             label = "Queue provider", description = "The queue provider implementation."
     )
@@ -180,6 +182,14 @@ public class ForwardDistributionAgentFactory extends AbstractDistributionAgentFa
     @Property(boolValue = false, label = "Async delivery", description = "Whether or not to use a separate delivery queue to maximize transport throughput when queue has more than 100 items")
     public static final String ASYNC_DELIVERY = "async.delivery";
 
+    @Property(intValue = 0, label = "Batch size", description = "The maximum number of paths of consecutive add or delete requests " +
+            "merged into a single package. Batching is disabled if lower than 2.")
+    public static final String BATCH_SIZE = "batch.size";
+
+    @Property(longValue = 1000, label = "Batch delay", description = "The maximum time (in milliseconds) a request is held back " +
+            "to be merged with the following requests.")
+    public static final String BATCH_DELAY = "batch.delay";
+
     /**
      * timeout for HTTP requests
      */
@@ -255,6 +265,8 @@ public class ForwardDistributionAgentFactory extends AbstractDistributionAgentFa
         String queueProviderName = PropertiesUtil.toString(config.get(QUEUE_PROVIDER), JobHandlingDistributionQueueProvider.TYPE);
         if (JobHandlingDistributionQueueProvider.TYPE.equals(queueProviderName)) {
             queueProvider = new JobHandlingDistributionQueueProvider(agentName, jobManager, context, configAdmin);
+        } else if (SegmentDistributionQueueProvider.TYPE.equals(queueProviderName)) {
+            queueProvider = new SegmentDistributionQueueProvider(scheduler, agentName);
         } else if (SimpleDistributionQueueProvider.TYPE.equals(queueProviderName)) {
             queueProvider = new SimpleDistributionQueueProvider(scheduler, agentName, false);
         } else {
@@ -315,10 +327,13 @@ public class ForwardDistributionAgentFactory extends AbstractDistributionAgentFa
             errorQueueStrategy = new ErrorQueueDispatchingStrategy(processingQueues.toArray(new String[processingQueues.size()]));
         }
 
+        int batchSize = PropertiesUtil.toInteger(config.get(BATCH_SIZE), 0);
+        long batchDelay = PropertiesUtil.toLong(config.get(BATCH_DELAY), 1000);
+
         return new SimpleDistributionAgent(agentName, queueProcessingEnabled, processingQueues,
                 serviceName, packageImporter, packageExporter, requestAuthorizationStrategy,
                 queueProvider, exportQueueStrategy, errorQueueStrategy, distributionEventFactory, resourceResolverFactory, slingRepository,
-                distributionLog, allowedRequests, allowedRoots, retryAttepts);
+                distributionLog, allowedRequests, allowedRoots, retryAttepts, batchSize, batchDelay, scheduler);
 
 
     }
@@ -20,6 +20,7 @@ package org.apache.sling.distribution.agent.impl;
 
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.commons.scheduler.Scheduler;
 import org.apache.sling.distribution.DistributionRequest;
 import org.apache.sling.distribution.DistributionRequestState;
 import org.apache.sling.distribution.DistributionRequestType;
@@ -82,6 +83,7 @@ public class SimpleDistributionAgent implements DistributionAgent {
     private final AtomicInteger nextRequestId = new AtomicInteger();
 
     private final SimpleDistributionAgentAuthenticationInfo agentAuthenticationInfo;
+    private final DistributionRequestBatcher requestBatcher;
 
     public SimpleDistributionAgent(String name,
                                    boolean queueProcessingEnabled,
@@ -100,6 +102,37 @@ public class SimpleDistributionAgent implements DistributionAgent {
                                    DistributionRequestType[] allowedRequests,
                                    String[] allowedRoots,
                                    int retryAttempts) {
+        this(name, queueProcessingEnabled, processingQueues, subServiceName, distributionPackageImporter,
+                distributionPackageExporter, distributionRequestAuthorizationStrategy, queueProvider, scheduleQueueStrategy,
+                errorQueueStrategy, distributionEventFactory, resourceResolverFactory, slingRepository, log, allowedRequests,
+                allowedRoots, retryAttempts, 0, 0, null);
+    }
+
+    /**
+     * create an agent which merges consecutive add or delete requests of the same user into batches of up to
+     * {@code batchSize} paths, exported at the latest {@code batchDelay} ms after their first request.
+     * Batching is disabled if {@code batchSize} is lower than 2.
+     */
+    public SimpleDistributionAgent(String name,
+                                   boolean queueProcessingEnabled,
+                                   Set<String> processingQueues,
+                                   String subServiceName,
+                                   DistributionPackageImporter distributionPackageImporter,
+                                   DistributionPackageExporter distributionPackageExporter,
+                                   DistributionRequestAuthorizationStrategy distributionRequestAuthorizationStrategy,
+                                   DistributionQueueProvider queueProvider,
+                                   DistributionQueueDispatchingStrategy scheduleQueueStrategy,
+                                   DistributionQueueDispatchingStrategy errorQueueStrategy,
+                                   DistributionEventFactory distributionEventFactory,
+                                   ResourceResolverFactory resourceResolverFactory,
+                                   SlingRepository slingRepository,
+                                   DefaultDistributionLog log,
+                                   DistributionRequestType[] allowedRequests,
+                                   String[] allowedRoots,
+                                   int retryAttempts,
+                                   int batchSize,
+                                   long batchDelay,
+                                   Scheduler scheduler) {
         this.log = log;
         this.allowedRequests = allowedRequests;
         this.processingQueues = processingQueues;
@@ -119,6 +152,21 @@ public class SimpleDistributionAgent implements DistributionAgent {
         this.agentAuthenticationInfo = new SimpleDistributionAgentAuthenticationInfo(slingRepository, DEFAULT_AGENT_SERVICE, resourceResolverFactory, subServiceName);
         this.queueProcessor = new SimpleDistributionAgentQueueProcessor(distributionPackageExporter, distributionPackageImporter,
                 retryAttempts, errorQueueStrategy, log, queueProvider, distributionEventFactory, agentAuthenticationInfo, name);
+
+        if (batchSize > 1) {
+            if (scheduler == null) {
+                throw new IllegalArgumentException("a scheduler is required for batching requests");
+            }
+            this.requestBatcher = new DistributionRequestBatcher(this.name, batchSize, batchDelay, scheduler,
+                    new DistributionRequestBatcher.BatchExporter() {
+                        public void exportBatch(String callingUser, @Nonnull DistributionRequest request, long startTime)
+                                throws DistributionException {
+                            SimpleDistributionAgent.this.exportBatch(callingUser, request, startTime);
+                        }
+                    }, log);
+        } else {
+            this.requestBatcher = null;
+        }
     }
 
     private void validateConfiguration(String name, boolean queueProcessingEnabled, String subServiceName, DistributionPackageImporter distributionPackageImporter, DistributionPackageExporter distributionPackageExporter, DistributionRequestAuthorizationStrategy distributionRequestAuthorizationStrategy, DistributionQueueProvider queueProvider, DistributionQueueDispatchingStrategy scheduleQueueStrategy, DistributionEventFactory distributionEventFactory, ResourceResolverFactory resourceResolverFactory) {
@@ -175,12 +223,17 @@ public class SimpleDistributionAgent implements DistributionAgent {
             // check permissions
             distributionRequestAuthorizationStrategy.checkPermission(resourceResolver, distributionRequest);
 
-            agentResourceResolver = DistributionUtils.getResourceResolver(callingUser, agentAuthenticationInfo.getAgentService(),
-                    agentAuthenticationInfo.getSlingRepository(), agentAuthenticationInfo.getSubServiceName(),
-                    agentAuthenticationInfo.getResourceResolverFactory());
+            // add to the current batch, exported later on: the request is accepted before it is queued
+            if (requestBatcher != null && requestBatcher.add(callingUser, distributionRequest)) {
+                log.debug("REQUEST-BATCHED {}: {} paths={}", requestId, distributionRequest.getRequestType(), distributionRequest.getPaths());
+                return new SimpleDistributionResponse(DistributionRequestState.ACCEPTED, "Request batched");
+            }
+
+            agentResourceResolver = getAgentResourceResolver(callingUser);
 
             // export packages
-            CompositeDistributionResponse distributionResponse = exportPackages(agentResourceResolver, distributionRequest, callingUser, requestId);
+            CompositeDistributionResponse distributionResponse = exportDirectly(agentResourceResolver, distributionRequest,
+                    callingUser, requestId);
 
             log.debug("REQUEST-STARTED {}: {} paths={}, success={}, state={}, exportTime={}ms, noPackages={}, size={}B, noQueues={}", requestId,
                     distributionRequest.getRequestType(), distributionRequest.getPaths(),
@@ -199,11 +252,74 @@ public class SimpleDistributionAgent implements DistributionAgent {
         }
     }
 
+    /**
+     * export a request which has not been batched, after the batches of the requests received before it
+     */
+    private CompositeDistributionResponse exportDirectly(final ResourceResolver agentResourceResolver,
+                                                         final DistributionRequest distributionRequest,
+                                                         final String callingUser, final String requestId)
+            throws DistributionException {
+        final long startTime = System.currentTimeMillis();
+        if (requestBatcher == null) {
+            return exportPackages(agentResourceResolver, distributionRequest, callingUser, requestId, startTime);
+        }
+        return requestBatcher.exportDirectly(new DistributionRequestBatcher.RequestExporter<CompositeDistributionResponse>() {
+            public CompositeDistributionResponse export() throws DistributionException {
+                return exportPackages(agentResourceResolver, distributionRequest, callingUser, requestId, startTime);
+            }
+        });
+    }
+
+    /**
+     * export a batch of requests merged by the {@link DistributionRequestBatcher}
+     */
+    private void exportBatch(String callingUser, DistributionRequest distributionRequest, long startTime) throws DistributionException {
+        ResourceResolver agentResourceResolver = null;
+
+        final String requestId = "DSTRQ" + nextRequestId.incrementAndGet();
+
+        try {
+            log.info("REQUEST-START {}: {} paths={}, user={}, batched", requestId,
+                    distributionRequest.getRequestType(), distributionRequest.getPaths(), callingUser);
+
+            agentResourceResolver = getAgentResourceResolver(callingUser);
+
+            CompositeDistributionResponse distributionResponse = exportPackages(agentResourceResolver, distributionRequest,
+                    callingUser, requestId, startTime);
+
+            log.debug("REQUEST-STARTED {}: {} paths={}, success={}, state={}, exportTime={}ms, noPackages={}, size={}B, noQueues={}", requestId,
+                    distributionRequest.getRequestType(), distributionRequest.getPaths(),
+                    distributionResponse.isSuccessful(), distributionResponse.getState(),
+                    distributionResponse.getExportTime(),
+                    distributionResponse.getPackagesCount(), distributionResponse.getPackagseSize(),
+                    distributionResponse.getQueuesCount());
+        } catch (DistributionException e) {
+            log.error("REQUEST-FAIL {}: {} paths={}, user={}, message={}", requestId,
+                    distributionRequest.getRequestType(), distributionRequest.getPaths(), callingUser, e.getMessage());
+            throw e;
+        } finally {
+            DistributionUtils.ungetResourceResolver(agentResourceResolver);
+        }
+    }
+
+    private ResourceResolver getAgentResourceResolver(String callingUser) throws DistributionException {
+        return DistributionUtils.getResourceResolver(callingUser, agentAuthenticationInfo.getAgentService(),
+                agentAuthenticationInfo.getSlingRepository(), agentAuthenticationInfo.getSubServiceName(),
+                agentAuthenticationInfo.getResourceResolverFactory());
+    }
+
+    /**
+     * @return the batcher of the requests, {@code null} if batching is disabled
+     */
+    public DistributionRequestBatcher getRequestBatcher() {
+        return requestBatcher;
+    }
+
     private boolean isPassive() {
         return !queueProcessingEnabled;
     }
 
-    private CompositeDistributionResponse exportPackages(ResourceResolver agentResourceResolver, DistributionRequest distributionRequest, String callingUser, String requestId) throws DistributionException {
+    private CompositeDistributionResponse exportPackages(ResourceResolver agentResourceResolver, DistributionRequest distributionRequest, String callingUser, String requestId, long requestStartTime) throws DistributionException {
         final long startTime = System.currentTimeMillis();
         // callback function
         DistributionPackageProcessor packageProcessor;
@@ -212,7 +328,7 @@ public class SimpleDistributionAgent implements DistributionAgent {
             packageProcessor = new ImportingDistributionPackageProcessor(distributionPackageImporter, agentAuthenticationInfo,
                     callingUser, requestId, log);
         } else {
-            packageProcessor = new QueueingDistributionPackageProcessor(callingUser, requestId, startTime,
+            packageProcessor = new QueueingDistributionPackageProcessor(callingUser, requestId, requestStartTime,
                     distributionEventFactory, scheduleQueueStrategy, queueProvider, log, name);
         }
         // export packages
@@ -343,6 +459,10 @@ public class SimpleDistributionAgent implements DistributionAgent {
 
         agentBasedRequestHandler = null;
 
+        if (requestBatcher != null) {
+            requestBatcher.flush();
+        }
+
         if (!isPassive()) {
 
             try {
@@ -128,6 +128,48 @@ public interface ForwardDistributionAgentMBean {
      */
     boolean isAsyncDelivery();
 
+    /**
+     * The maximum number of paths merged into a single package, batching is disabled if lower than 2.
+     *
+     * @return the Batch size
+     */
+    int getBatchSize();
+
+    /**
+     * The maximum time (in milliseconds) a request is held back to be merged with the following requests.
+     *
+     * @return the Batch delay
+     */
+    long getBatchDelay();
+
+    /**
+     * The number of batches of requests exported since the agent has been started.
+     *
+     * @return the number of batches
+     */
+    long getBatchesCount();
+
+    /**
+     * The number of requests merged into batches since the agent has been started.
+     *
+     * @return the number of batched requests
+     */
+    long getBatchedRequestsCount();
+
+    /**
+     * The largest number of paths of a batch.
+     *
+     * @return the maximum batch size
+     */
+    long getMaxBatchSize();
+
+    /**
+     * The average time (in milliseconds) from the first request of a batch until the batch has been queued.
+     *
+     * @return the average batch latency
+     */
+    long getAverageBatchLatency();
+
     /**
      * The distribution agent status, usually one of:
      * paused
@@ -22,6 +22,8 @@ import java.util.Map;
 
 import org.apache.sling.commons.osgi.PropertiesUtil;
 import org.apache.sling.distribution.agent.DistributionAgent;
+import org.apache.sling.distribution.agent.impl.DistributionRequestBatcher;
+import org.apache.sling.distribution.agent.impl.SimpleDistributionAgent;
 
 /**
  * The ForwardDistributionAgent MBean implementation, based on the OSGi configuration.
@@ -112,9 +114,49 @@ public final class ForwardDistributionAgentMBeanImpl implements ForwardDistribut
         return PropertiesUtil.toBoolean(osgiConfiguration.get("async.delivery"), false);
     }
 
+    @Override
+    public int getBatchSize() {
+        return PropertiesUtil.toInteger(osgiConfiguration.get("batch.size"), 0);
+    }
+
+    @Override
+    public long getBatchDelay() {
+        return PropertiesUtil.toLong(osgiConfiguration.get("batch.delay"), 1000);
+    }
+
+    @Override
+    public long getBatchesCount() {
+        DistributionRequestBatcher batcher = getRequestBatcher();
+        return batcher != null ? batcher.getBatchesCount() : 0;
+    }
+
+    @Override
+    public long getBatchedRequestsCount() {
+        DistributionRequestBatcher batcher = getRequestBatcher();
+        return batcher != null ? batcher.getRequestsCount() : 0;
+    }
+
+    @Override
+    public long getMaxBatchSize() {
+        DistributionRequestBatcher batcher = getRequestBatcher();
+        return batcher != null ? batcher.getMaxBatchSize() : 0;
+    }
+
+    @Override
+    public long getAverageBatchLatency() {
+        DistributionRequestBatcher batcher = getRequestBatcher();
+        return batcher != null ? batcher.getAverageLatency() : 0;
+    }
 
     @Override
     public String getStatus() {
         return agent.getState().name().toLowerCase();
     }
+
+    private DistributionRequestBatcher getRequestBatcher() {
+        if (agent instanceof SimpleDistributionAgent) {
+            return ((SimpleDistributionAgent) agent).getRequestBatcher();
+        }
+        return null;
+    }
 }
@@ -0,0 +1,513 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.distribution.queue.impl.segment;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.sling.distribution.queue.DistributionQueue;
+import org.apache.sling.distribution.queue.DistributionQueueEntry;
+import org.apache.sling.distribution.queue.DistributionQueueItem;
+import org.apache.sling.distribution.queue.DistributionQueueItemState;
+import org.apache.sling.distribution.queue.DistributionQueueItemStatus;
+import org.apache.sling.distribution.queue.DistributionQueueState;
+import org.apache.sling.distribution.queue.DistributionQueueStatus;
+import org.apache.sling.distribution.queue.DistributionQueueType;
+import org.apache.sling.distribution.queue.impl.DistributionQueueUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link DistributionQueue} persisted in a {@link SegmentLog}.
+ * <p/>
+ * Adding an item appends an add record to the log and returns once the record is on disk,
+ * removing an item appends a remove record. An added item is not visible until its record is on
+ * disk, so it is not processed if it cannot be persisted. The items are also held in an index by
+ * id in queue order, so the head, lookups and removals do not depend on the size of the queue.
+ * <p/>
+ * Segments are deleted once they and all preceding segments only contain removed items. When the
+ * log rolls over to a new segment, the remaining items of the oldest segment are appended again
+ * if most of its items have been removed, so a few items stuck at the head of the queue do not
+ * keep all later segments on disk.
+ * <p/>
+ * The attempts of the items are not persisted, they start from zero when the queue is reopened.
+ */
+public class SegmentDistributionQueue implements DistributionQueue {
+
+    private static final byte ADD = 1;
+
+    private static final byte REMOVE = 2;
+
+    private static final byte STRING = 0;
+
+    private static final byte STRING_ARRAY = 1;
+
+    private static final byte NULL = 2;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final String name;
+
+    private final SegmentLog segmentLog;
+
+    /** the items by id, in queue order */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>();
+
+    /** the number of add records and of items not removed yet per segment */
+    private final TreeMap<Long, SegmentStats> segments = new TreeMap<Long, SegmentStats>();
+
+    /** the number of added items not on disk yet */
+    private int pending;
+
+    private long nextSequence;
+
+    private boolean compacting;
+
+    /**
+     * open a queue, recovering the items stored in the directory
+     *
+     * @param agentName   the name of the agent
+     * @param name        the name of the queue
+     * @param directory   the directory of the segments
+     * @param segmentSize the size of the segments in bytes
+     * @throws IOException if the queue cannot be recovered
+     */
+    public SegmentDistributionQueue(String agentName, String name, File directory, int segmentSize) throws IOException {
+        this(agentName, name, new SegmentLog(directory, segmentSize));
+    }
+
+    SegmentDistributionQueue(String agentName, String name, SegmentLog segmentLog) throws IOException {
+        log.debug("starting a segment queue {} for agent {}", name, agentName);
+        this.name = name;
+        this.segmentLog = segmentLog;
+        recover();
+    }
+
+    @Nonnull
+    public String getName() {
+        return name;
+    }
+
+    public DistributionQueueEntry add(@Nonnull DistributionQueueItem item) {
+        Entry entry;
+        long offset;
+        synchronized (this) {
+            entry = entries.get(item.getPackageId());
+            if (entry != null) {
+                log.debug("item {} already in queue {}", item.getPackageId(), name);
+                return awaitSynced(entry);
+            }
+            entry = new Entry(nextSequence++, item, Calendar.getInstance());
+            try {
+                offset = write(entry);
+            } catch (IOException e) {
+                log.error("cannot add an item to the queue", e);
+                return null;
+            }
+            entry.pending = true;
+            pending++;
+            entries.put(item.getPackageId(), entry);
+        }
+        boolean synced = false;
+        try {
+            segmentLog.sync(offset);
+            synced = true;
+        } catch (IOException e) {
+            log.error("cannot write item {} to disk", item.getPackageId(), e);
+        }
+        synchronized (this) {
+            entry.pending = false;
+            pending--;
+            if (!synced) {
+                entry.failed = true;
+                remove(item.getPackageId());
+            }
+            notifyAll();
+            return synced ? entry.toQueueEntry(name) : null;
+        }
+    }
+
+    @CheckForNull
+    public synchronized DistributionQueueEntry getHead() {
+        Entry entry = head();
+        if (entry == null) {
+            return null;
+        }
+        DistributionQueueEntry queueEntry = entry.toQueueEntry(name);
+        entry.attempts++;
+        return queueEntry;
+    }
+
+    @Nonnull
+    public synchronized Iterable<DistributionQueueEntry> getItems(int skip, int limit) {
+        List<DistributionQueueEntry> result = new ArrayList<DistributionQueueEntry>();
+        Iterator<Entry> it = entries.values().iterator();
+        for (int i = 0; i < skip && it.hasNext(); i++) {
+            it.next();
+        }
+        while (it.hasNext() && (limit < 0 || result.size() < limit)) {
+            Entry entry = it.next();
+            if (!entry.pending) {
+                result.add(entry.toQueueEntry(name));
+            }
+        }
+        return result;
+    }
+
+    @CheckForNull
+    public synchronized DistributionQueueEntry getItem(@Nonnull String id) {
+        Entry entry = entries.get(id);
+        return entry != null && !entry.pending ? entry.toQueueEntry(name) : null;
+    }
+
+    @CheckForNull
+    public synchronized DistributionQueueEntry remove(@Nonnull String id) {
+        Entry entry = entries.get(id);
+        if (entry != null && !entry.pending) {
+            entries.remove(id);
+        } else {
+            entry = null;
+        }
+        log.debug("item with id {} removed from the queue: {}", id, entry != null);
+        if (entry == null) {
+            return null;
+        }
+        try {
+            // removals are not synced, a removed item may be processed again after a crash
+            append(encodeRemove(id));
+        } catch (IOException e) {
+            log.error("cannot persist the removal of item {}", id, e);
+        }
+        segments.get(entry.segmentId).live--;
+        deleteRemovedSegments();
+        return entry.toQueueEntry(name);
+    }
+
+    @Nonnull
+    public synchronized DistributionQueueStatus getStatus() {
+        DistributionQueueItem firstItem = null;
+        DistributionQueueItemStatus firstItemStatus = null;
+        Entry first = head();
+        if (first != null) {
+            firstItem = first.item;
+            firstItemStatus = first.getStatus(name);
+        }
+        DistributionQueueState state = DistributionQueueUtils.calculateState(firstItem, firstItemStatus);
+        return new DistributionQueueStatus(entries.size() - pending, state);
+    }
+
+    public DistributionQueueType getType() {
+        return DistributionQueueType.ORDERED;
+    }
+
+    /**
+     * flush and close the underlying log, the queue cannot be used afterwards
+     */
+    public synchronized void close() {
+        segmentLog.close();
+    }
+
+    /**
+     * @return the number of segment files of the queue
+     */
+    synchronized int getSegmentCount() {
+        return segmentLog.getSegmentCount();
+    }
+
+    @Override
+    public String toString() {
+        return "SegmentDistributionQueue{" +
+                "name='" + name + '\'' +
+                '}';
+    }
+
+    /**
+     * @return the first item, {@code null} if the queue is empty or the first item is not on disk yet
+     */
+    private Entry head() {
+        if (entries.isEmpty()) {
+            return null;
+        }
+        Entry entry = entries.values().iterator().next();
+        return entry.pending ? null : entry;
+    }
+
+    /**
+     * wait until the record of an item added by another thread is on disk, the caller holds the monitor
+     *
+     * @return the entry of the item, {@code null} if it could not be written to disk
+     */
+    private DistributionQueueEntry awaitSynced(Entry entry) {
+        while (entry.pending) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        return entry.failed ? null : entry.toQueueEntry(name);
+    }
+
+    private void recover() throws IOException {
+        final TreeMap<Long, Entry> recovered = new TreeMap<Long, Entry>();
+        final Map<String, Entry> byId = new HashMap<String, Entry>();
+        segmentLog.open(new SegmentLog.RecordHandler() {
+            public void handle(long segmentId, byte[] payload) throws IOException {
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+                byte type = in.readByte();
+                if (type == ADD) {
+                    stats(segmentId).records++;
+                    Entry entry = decodeAdd(in);
+                    // an item appended again by the compaction keeps its place in the queue
+                    Entry previous = byId.put(entry.item.getPackageId(), entry);
+                    if (previous != null) {
+                        recovered.remove(previous.sequence);
+                    }
+                    entry.segmentId = segmentId;
+                    recovered.put(entry.sequence, entry);
+                    nextSequence = Math.max(nextSequence, entry.sequence + 1);
+                } else if (type == REMOVE) {
+                    Entry entry = byId.remove(readString(in));
+                    if (entry != null) {
+                        recovered.remove(entry.sequence);
+                    }
+                }
+            }
+        });
+        for (Entry entry : recovered.values()) {
+            entries.put(entry.item.getPackageId(), entry);
+            stats(entry.segmentId).live++;
+        }
+        stats(segmentLog.getActiveSegmentId());
+        deleteRemovedSegments();
+        log.info("recovered {} items in queue {}", entries.size(), name);
+    }
+
+    /**
+     * append the add record of the entry
+     */
+    private long write(Entry entry) throws IOException {
+        long offset = append(encodeAdd(entry));
+        entry.segmentId = segmentLog.getActiveSegmentId();
+        SegmentStats stats = stats(entry.segmentId);
+        stats.records++;
+        stats.live++;
+        return offset;
+    }
+
+    /**
+     * append a record, compacting the oldest segment when the log rolls over to a new segment
+     */
+    private long append(byte[] record) throws IOException {
+        long activeSegmentId = segmentLog.getActiveSegmentId();
+        long offset = segmentLog.append(record);
+        if (segmentLog.getActiveSegmentId() != activeSegmentId) {
+            stats(segmentLog.getActiveSegmentId());
+            compact();
+        }
+        return offset;
+    }
+
+    /**
+     * append the remaining items of the oldest segment again, if most of its items have been
+     * removed, so that it can be deleted. The appended items are synced before the segment is
+     * deleted, so they are not lost on a crash.
+     */
+    private void compact() throws IOException {
+        if (compacting || segments.size() <= 2) {
+            return;
+        }
+        long oldest = segments.firstKey();
+        SegmentStats stats = segments.get(oldest);
+        if (stats.live * 4 > stats.records) {
+            return;
+        }
+        long offset = -1;
+        compacting = true;
+        try {
+            log.debug("compacting segment {} of queue {} with {} of {} items left",
+                    new Object[]{oldest, name, stats.live, stats.records});
+            for (Entry entry : entries.values()) {
+                if (entry.segmentId == oldest) {
+                    stats.live--;
+                    offset = write(entry);
+                }
+            }
+        } finally {
+            compacting = false;
+        }
+        if (offset >= 0) {
+            segmentLog.sync(offset);
+        }
+        deleteRemovedSegments();
+    }
+
+    private void deleteRemovedSegments() {
+        long active = segmentLog.getActiveSegmentId();
+        while (segments.firstKey() < active && segments.firstEntry().getValue().live == 0) {
+            segments.remove(segments.firstKey());
+        }
+        segmentLog.deleteSegmentsBefore(segments.firstKey());
+    }
+
+    private SegmentStats stats(long segmentId) {
+        SegmentStats stats = segments.get(segmentId);
+        if (stats == null) {
+            stats = new SegmentStats();
+            segments.put(segmentId, stats);
+        }
+        return stats;
+    }
+
+    private static byte[] encodeAdd(Entry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(ADD);
+        out.writeLong(entry.sequence);
+        out.writeLong(entry.entered.getTimeInMillis());
+        writeString(out, entry.item.getPackageId());
+        out.writeLong(entry.item.getSize());
+        out.writeInt(entry.item.size());
+        for (Map.Entry<String, Object> property : entry.item.entrySet()) {
+            writeString(out, property.getKey());
+            Object value = property.getValue();
+            if (value == null) {
+                out.writeByte(NULL);
+            } else if (value instanceof String[]) {
+                String[] values = (String[]) value;
+                out.writeByte(STRING_ARRAY);
+                out.writeInt(values.length);
+                for (String v : values) {
+                    writeString(out, v);
+                }
+            } else {
+                out.writeByte(STRING);
+                writeString(out, String.valueOf(value));
+            }
+        }
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static Entry decodeAdd(DataInputStream in) throws IOException {
+        long sequence = in.readLong();
+        Calendar entered = Calendar.getInstance();
+        entered.setTimeInMillis(in.readLong());
+        String id = readString(in);
+        long size = in.readLong();
+        int count = in.readInt();
+        Map<String, Object> info = new HashMap<String, Object>();
+        for (int i = 0; i < count; i++) {
+            String key = readString(in);
+            byte type = in.readByte();
+            if (type == NULL) {
+                info.put(key, null);
+            } else if (type == STRING_ARRAY) {
+                String[] values = new String[in.readInt()];
+                for (int j = 0; j < values.length; j++) {
+                    values[j] = readString(in);
+                }
+                info.put(key, values);
+            } else {
+                info.put(key, readString(in));
+            }
+        }
+        return new Entry(sequence, new DistributionQueueItem(id, size, info), entered);
+    }
+
+    private static byte[] encodeRemove(String id) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(REMOVE);
+        writeString(out, id);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * strings are written as their length and UTF-8 bytes, as {@link DataOutputStream#writeUTF(String)}
+     * is limited to 64k
+     */
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private static final class Entry {
+
+        private final long sequence;
+
+        private final DistributionQueueItem item;
+
+        private final Calendar entered;
+
+        private int attempts;
+
+        private long segmentId;
+
+        /** the add record is not on disk yet */
+        private boolean pending;
+
+        /** the add record could not be written to disk */
+        private boolean failed;
+
+        Entry(long sequence, DistributionQueueItem item, Calendar entered) {
+            this.sequence = sequence;
+            this.item = item;
+            this.entered = entered;
+        }
+
+        DistributionQueueItemStatus getStatus(String queueName) {
+            return new DistributionQueueItemStatus(entered, DistributionQueueItemState.QUEUED, attempts, queueName);
+        }
+
+        DistributionQueueEntry toQueueEntry(String queueName) {
+            return new DistributionQueueEntry(item.getPackageId(), item, getStatus(queueName));
+        }
+    }
+
+    private static final class SegmentStats {
+
+        private int records;
+
+        private int live;
+    }
+}
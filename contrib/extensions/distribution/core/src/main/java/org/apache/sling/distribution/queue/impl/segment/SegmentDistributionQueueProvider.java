@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.distribution.queue.impl.segment;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.sling.commons.scheduler.ScheduleOptions;
+import org.apache.sling.commons.scheduler.Scheduler;
+import org.apache.sling.distribution.common.DistributionException;
+import org.apache.sling.distribution.queue.DistributionQueue;
+import org.apache.sling.distribution.queue.DistributionQueueProcessor;
+import org.apache.sling.distribution.queue.DistributionQueueProvider;
+import org.apache.sling.distribution.queue.DistributionQueueType;
+import org.apache.sling.distribution.queue.impl.simple.SimpleDistributionQueueProcessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * a queue provider {@link org.apache.sling.distribution.queue.DistributionQueueProvider} for
+ * {@link SegmentDistributionQueue}s stored in segment files on disk
+ */
+public class SegmentDistributionQueueProvider implements DistributionQueueProvider {
+
+    public static final String TYPE = "segment";
+
+    private static final int DEFAULT_SEGMENT_SIZE = 8 * 1024 * 1024;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final String name;
+    private final Scheduler scheduler;
+    private final File directory;
+    private final int segmentSize;
+
+    private final Map<String, SegmentDistributionQueue> queueMap = new ConcurrentHashMap<String, SegmentDistributionQueue>();
+
+    public SegmentDistributionQueueProvider(Scheduler scheduler, String name) {
+        this(scheduler, name, new File(name + "-segment-queues"), DEFAULT_SEGMENT_SIZE);
+    }
+
+    public SegmentDistributionQueueProvider(Scheduler scheduler, String name, File directory, int segmentSize) {
+        if (name == null || scheduler == null || directory == null) {
+            throw new IllegalArgumentException("all arguments are required");
+        }
+        this.scheduler = scheduler;
+        this.name = name;
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        log.info("storing queues in {}", directory.getAbsoluteFile());
+    }
+
+    @Nonnull
+    public DistributionQueue getQueue(@Nonnull String queueName) throws DistributionException {
+        SegmentDistributionQueue queue = queueMap.get(queueName);
+        if (queue == null) {
+            synchronized (queueMap) {
+                queue = queueMap.get(queueName);
+                if (queue == null) {
+                    try {
+                        queue = new SegmentDistributionQueue(name, queueName,
+                                new File(directory, toFileName(queueName)), segmentSize);
+                    } catch (IOException e) {
+                        throw new DistributionException("cannot open queue " + queueName, e);
+                    }
+                    queueMap.put(queueName, queue);
+                    log.debug("queue created {}", queue);
+                }
+            }
+        }
+        return queue;
+    }
+
+    @Override
+    public DistributionQueue getQueue(@Nonnull String queueName, @Nonnull DistributionQueueType type) {
+        try {
+            return getQueue(queueName);
+        } catch (DistributionException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void enableQueueProcessing(@Nonnull DistributionQueueProcessor queueProcessor, String... queueNames) throws DistributionException {
+        for (String queueName : queueNames) {
+            ScheduleOptions options = scheduler.NOW(-1, 1)
+                    .canRunConcurrently(false)
+                    .name(getJobName(queueName));
+            scheduler.schedule(new SimpleDistributionQueueProcessor(getQueue(queueName), queueProcessor), options);
+        }
+    }
+
+    public void disableQueueProcessing() {
+        synchronized (queueMap) {
+            for (SegmentDistributionQueue queue : queueMap.values()) {
+                String queueName = queue.getName();
+                if (scheduler.unschedule(getJobName(queueName))) {
+                    log.debug("queue processing on {} stopped", queue);
+                } else {
+                    log.warn("could not disable queue processing on {}", queue);
+                }
+                queue.close();
+            }
+            queueMap.clear();
+        }
+    }
+
+    private String getJobName(String queueName) {
+        return "segment-queueProcessor-" + name + "-" + queueName;
+    }
+
+    private static String toFileName(String queueName) {
+        return queueName.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.distribution.queue.impl.segment;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An append only log of records stored in memory mapped segment files.
+ * <p/>
+ * Each record is stored as its length, the CRC32 of its payload and the payload. Segments are
+ * created with a fixed size and filled with records; the unused tail of a segment is zero, so a
+ * zero length marks its end. When the log is opened all segments are replayed in order up to the
+ * first incomplete or corrupt record, and records are then appended to a new segment.
+ * <p/>
+ * Appended records become durable with {@link #sync(long)}: concurrent callers are served by a
+ * single flush of the active segment (group commit). Segments are only deleted from the start of
+ * the log, see {@link #deleteSegmentsBefore(long)}.
+ */
+class SegmentLog {
+
+    private static final String SUFFIX = ".segment";
+
+    private static final int HEADER_SIZE = 8;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final File directory;
+
+    private final int segmentSize;
+
+    /** the segment files by id, including the active segment */
+    private final TreeMap<Long, File> segments = new TreeMap<Long, File>();
+
+    private long activeSegmentId;
+
+    private MappedByteBuffer activeBuffer;
+
+    /** the number of bytes appended since the log has been opened */
+    private long writeOffset;
+
+    private final Object syncLock = new Object();
+
+    private long durableOffset;
+
+    private boolean syncing;
+
+    /**
+     * Receives the records replayed when the log is opened.
+     */
+    interface RecordHandler {
+
+        void handle(long segmentId, byte[] payload) throws IOException;
+    }
+
+    SegmentLog(File directory, int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * open the log, replaying the records of the existing segments
+     *
+     * @param handler the handler receiving the records
+     * @throws IOException if the segments cannot be read or the log cannot be created
+     */
+    synchronized void open(RecordHandler handler) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("cannot create directory " + directory);
+        }
+        File[] files = directory.listFiles(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.endsWith(SUFFIX);
+            }
+        });
+        for (File file : files) {
+            String name = file.getName();
+            try {
+                segments.put(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())), file);
+            } catch (NumberFormatException e) {
+                log.warn("ignoring file {}", file);
+            }
+        }
+        for (Map.Entry<Long, File> segment : segments.entrySet()) {
+            replay(segment.getKey(), segment.getValue(), handler);
+        }
+        // never append to a replayed segment, its tail may be corrupt
+        activeSegmentId = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+        activeBuffer = createSegment(activeSegmentId, segmentSize);
+    }
+
+    /**
+     * append a record to the active segment, rolling over to a new segment if it does not fit
+     *
+     * @param payload the record
+     * @return the offset to pass to {@link #sync(long)} to make the record durable
+     * @throws IOException if a new segment cannot be created
+     */
+    synchronized long append(byte[] payload) throws IOException {
+        if (activeBuffer == null) {
+            throw new IOException("log " + directory + " is closed");
+        }
+        int recordSize = HEADER_SIZE + payload.length;
+        if (activeBuffer.remaining() < recordSize) {
+            roll(recordSize);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        int position = activeBuffer.position();
+        activeBuffer.position(position + HEADER_SIZE);
+        activeBuffer.put(payload);
+        activeBuffer.putInt(position + 4, (int) crc.getValue());
+        // the length is written last, a record without length is not replayed
+        activeBuffer.putInt(position, payload.length);
+        writeOffset += recordSize;
+        return writeOffset;
+    }
+
+    /**
+     * @return the id of the segment records are appended to
+     */
+    synchronized long getActiveSegmentId() {
+        return activeSegmentId;
+    }
+
+    /**
+     * wait until the records appended up to the given offset are written to disk. One of the
+     * waiting threads flushes the active segment for all of them.
+     *
+     * @param offset the offset returned by {@link #append(byte[])}
+     * @throws IOException if the segment cannot be flushed
+     */
+    void sync(long offset) throws IOException {
+        synchronized (syncLock) {
+            while (durableOffset < offset && syncing) {
+                try {
+                    syncLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted while waiting for " + directory);
+                }
+            }
+            if (durableOffset >= offset) {
+                return;
+            }
+            syncing = true;
+        }
+        try {
+            MappedByteBuffer buffer;
+            long target;
+            synchronized (this) {
+                buffer = activeBuffer;
+                target = writeOffset;
+            }
+            if (buffer != null) {
+                buffer.force();
+            }
+            markDurable(target);
+        } finally {
+            synchronized (syncLock) {
+                syncing = false;
+                syncLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * delete the segments preceding the given segment, the active segment is never deleted
+     *
+     * @param segmentId the id of the first segment to keep
+     */
+    synchronized void deleteSegmentsBefore(long segmentId) {
+        while (!segments.isEmpty() && segments.firstKey() < Math.min(segmentId, activeSegmentId)) {
+            File file = segments.remove(segments.firstKey());
+            if (!file.delete()) {
+                log.warn("could not delete segment {}", file);
+            } else {
+                log.debug("deleted segment {}", file);
+            }
+        }
+    }
+
+    /**
+     * @return the number of segment files
+     */
+    synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * flush and close the log
+     */
+    synchronized void close() {
+        if (activeBuffer != null) {
+            activeBuffer.force();
+            activeBuffer = null;
+        }
+    }
+
+    private void roll(int recordSize) throws IOException {
+        activeBuffer.force();
+        markDurable(writeOffset);
+        activeSegmentId++;
+        activeBuffer = createSegment(activeSegmentId, Math.max(segmentSize, recordSize));
+        log.debug("rolled log {} over to segment {}", directory, activeSegmentId);
+    }
+
+    private void markDurable(long offset) {
+        synchronized (syncLock) {
+            if (offset > durableOffset) {
+                durableOffset = offset;
+            }
+        }
+    }
+
+    private MappedByteBuffer createSegment(long segmentId, int size) throws IOException {
+        File file = new File(directory, String.format("%020d%s", segmentId, SUFFIX));
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(size);
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            segments.put(segmentId, file);
+            return buffer;
+        } finally {
+            // the mapping stays valid after the channel is closed
+            raf.close();
+        }
+    }
+
+    private void replay(long segmentId, File file, RecordHandler handler) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        MappedByteBuffer buffer;
+        try {
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        } finally {
+            raf.close();
+        }
+        int records = 0;
+        while (buffer.remaining() >= HEADER_SIZE) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0) {
+                break;
+            }
+            if (length > buffer.remaining()) {
+                log.warn("truncated record at {} in segment {}", buffer.position() - HEADER_SIZE, file);
+                break;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum) {
+                log.warn("corrupt record at {} in segment {}", buffer.position() - length - HEADER_SIZE, file);
+                break;
+            }
+            handler.handle(segmentId, payload);
+            records++;
+        }
+        log.debug("replayed {} records from segment {}", records, file);
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.distribution.agent.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import org.apache.sling.commons.scheduler.ScheduleOptions;
+import org.apache.sling.commons.scheduler.Scheduler;
+import org.apache.sling.distribution.DistributionRequest;
+import org.apache.sling.distribution.DistributionRequestType;
+import org.apache.sling.distribution.SimpleDistributionRequest;
+import org.apache.sling.distribution.common.DistributionException;
+import org.apache.sling.distribution.log.impl.DefaultDistributionLog;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Testcase for {@link DistributionRequestBatcher}
+ */
+public class DistributionRequestBatcherTest {
+
+    private Scheduler scheduler;
+
+    private final List<DistributionRequest> exported = new ArrayList<DistributionRequest>();
+
+    private final List<String> users = new ArrayList<String>();
+
+    private DistributionRequestBatcher batcher;
+
+    @Before
+    public void setUp() throws Exception {
+        scheduler = mock(Scheduler.class);
+        ScheduleOptions options = mock(ScheduleOptions.class);
+        when(scheduler.AT(any(Date.class))).thenReturn(options);
+        when(options.name(anyString())).thenReturn(options);
+        when(options.canRunConcurrently(anyBoolean())).thenReturn(options);
+        batcher = new DistributionRequestBatcher("agent", 5, 1000, scheduler, new DistributionRequestBatcher.BatchExporter() {
+            public void exportBatch(String callingUser, @Nonnull DistributionRequest request, long startTime) {
+                users.add(callingUser);
+                exported.add(request);
+            }
+        }, mock(DefaultDistributionLog.class));
+    }
+
+    @Test
+    public void testRequestsAreMergedUpToBatchSize() throws Exception {
+        for (int i = 0; i < 7; i++) {
+            assertTrue(batcher.add("user", new SimpleDistributionRequest(DistributionRequestType.ADD, "/content/page" + i)));
+        }
+        assertEquals(1, exported.size());
+        assertArrayEquals(new String[]{"/content/page0", "/content/page1", "/content/page2", "/content/page3", "/content/page4"},
+                exported.get(0).getPaths());
+
+        batcher.flush();
+        assertEquals(2, exported.size());
+        assertArrayEquals(new String[]{"/content/page5", "/content/page6"}, exported.get(1).getPaths());
+        assertEquals(DistributionRequestType.ADD, exported.get(1).getRequestType());
+
+        assertEquals(2, batcher.getBatchesCount());
+        assertEquals(7, batcher.getRequestsCount());
+        assertEquals(7, batcher.getPathsCount());
+        assertEquals(5, batcher.getMaxBatchSize());
+    }
+
+    @Test
+    public void testOverlappingPathsAreDropped() throws Exception {
+        batcher.add("user", new SimpleDistributionRequest(DistributionRequestType.ADD, "/content/a/b", "/content/c"));
+        batcher.add("user", new SimpleDistributionRequest(DistributionRequestType.ADD, true, "/content/a"));
+        batcher.add("user", new SimpleDistributionRequest(DistributionRequestType.ADD, "/content/a/d", "/content/c", "/content/ab"));
+        batcher.flush();
+
+        assertEquals(1, exported.size());
+        DistributionRequest request = exported.get(0);
+        assertArrayEquals(new String[]{"/content/c", "/content/a", "/content/ab"}, request.getPaths());
+        assertTrue(request.isDeep("/content/a"));
+        assertFalse(request.isDeep("/content/c"));
+        assertEquals(3, batcher.getDroppedPathsCount());
+    }
+
+    @Test
+    public void testDeletedDescendantsAreDropped() throws Exception {
+        batcher.add("user", new SimpleDistributionRequest(DistributionRequestType.DELETE, "/content/a/b"));
+        batcher.add("user", new SimpleDistributionRequest(DistributionRequestType.DELETE, "/content/a"));
+        batcher.add("user", new SimpleDistributionRequest(DistributionRequestType.DELETE, "/content/a/c"));
+        batcher.flush();
+
+        assertEquals(1, exported.size());
+        assertArrayEquals(new String[]{"/content/a"}, exported.get(0).getPaths());
+    }
+
+    @Test
+    public void testOrderIsKeptAcrossTypesAndUsers() throws Exception {
+        batcher.add("user", new SimpleDistributionRequest(DistributionRequestType.ADD, "/content/a"));
+        batcher.add("user", new SimpleDistributionRequest(DistributionRequestType.DELETE, "/content/a"));
+        batcher.add("other", new SimpleDistributionRequest(DistributionRequestType.DELETE, "/content/b"));
+        assertFalse(batcher.add("other", new SimpleDistributionRequest(DistributionRequestType.PULL)));
+
+        assertEquals(3, exported.size());
+        assertEquals(DistributionRequestType.ADD, exported.get(0).getRequestType());
+        assertEquals(DistributionRequestType.DELETE, exported.get(1).getRequestType());
+        assertArrayEquals(new String[]{"/content/b"}, exported.get(2).getPaths());
+        assertEquals(Arrays.asList("user", "user", "other"), users);
+    }
+
+    @Test
+    public void testRequestsWithFiltersAreNotBatched() throws Exception {
+        Map<String, String[]> filters = new HashMap<String, String[]>();
+        filters.put("/content/a", new String[]{"+/content/a/b"});
+        DistributionRequest request = new SimpleDistributionRequest(DistributionRequestType.ADD, new String[]{"/content/a"},
+                new HashSet<String>(Collections.singleton("/content/a")), filters);
+        assertFalse(batcher.add("user", request));
+        assertTrue(exported.isEmpty());
+    }
+
+    @Test
+    public void testBatchIsExportedAfterDelay() throws Exception {
+        batcher.add("user", new SimpleDistributionRequest(DistributionRequestType.ADD, "/content/a"));
+
+        ArgumentCaptor<Runnable> job = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler).schedule(job.capture(), any(ScheduleOptions.class));
+        assertTrue(exported.isEmpty());
+
+        job.getValue().run();
+        assertEquals(1, exported.size());
+
+        // the job of an already exported batch does nothing
+        batcher.add("user", new SimpleDistributionRequest(DistributionRequestType.ADD, "/content/b"));
+        job.getValue().run();
+        assertEquals(1, exported.size());
+    }
+
+    @Test
+    public void testRequestsOfFailedBatchAreExportedSeparately() throws Exception {
+        batcher = new DistributionRequestBatcher("agent", 5, 1000, scheduler, new DistributionRequestBatcher.BatchExporter() {
+            public void exportBatch(String callingUser, @Nonnull DistributionRequest request, long startTime)
+                    throws DistributionException {
+                if (Arrays.asList(request.getPaths()).contains("/content/broken")) {
+                    throw new DistributionException("broken");
+                }
+                exported.add(request);
+            }
+        }, mock(DefaultDistributionLog.class));
+        batcher.add("user", new SimpleDistributionRequest(DistributionRequestType.ADD, "/content/a"));
+        batcher.add("user", new SimpleDistributionRequest(DistributionRequestType.ADD, "/content/broken"));
+        batcher.add("user", new SimpleDistributionRequest(DistributionRequestType.ADD, "/content/b", "/content/c"));
+        batcher.flush();
+
+        assertEquals(2, exported.size());
+        assertArrayEquals(new String[]{"/content/a"}, exported.get(0).getPaths());
+        assertArrayEquals(new String[]{"/content/b", "/content/c"}, exported.get(1).getPaths());
+    }
+
+    @Test(timeout = 10000)
+    public void testRequestsAreBatchedWhileExporting() throws Exception {
+        final CountDownLatch exporting = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        batcher = new DistributionRequestBatcher("agent", 2, 1000, scheduler, new DistributionRequestBatcher.BatchExporter() {
+            public void exportBatch(String callingUser, @Nonnull DistributionRequest request, long startTime) {
+                exporting.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                exported.add(request);
+            }
+        }, mock(DefaultDistributionLog.class));
+
+        Thread exporter = new Thread() {
+            @Override
+            public void run() {
+                batcher.add("user", new SimpleDistributionRequest(DistributionRequestType.ADD, "/content/a"));
+                batcher.add("user", new SimpleDistributionRequest(DistributionRequestType.ADD, "/content/b"));
+            }
+        };
+        exporter.start();
+        assertTrue(exporting.await(5, TimeUnit.SECONDS));
+
+        // the export of the full batch does not block batching
+        assertTrue(batcher.add("user", new SimpleDistributionRequest(DistributionRequestType.ADD, "/content/c")));
+        assertTrue(exported.isEmpty());
+
+        release.countDown();
+        exporter.join();
+        batcher.flush();
+        assertEquals(2, exported.size());
+        assertArrayEquals(new String[]{"/content/a", "/content/b"}, exported.get(0).getPaths());
+        assertArrayEquals(new String[]{"/content/c"}, exported.get(1).getPaths());
+    }
+
+    @Test(timeout = 10000)
+    public void testDirectRequestsAreExportedAfterBatches() throws Exception {
+        final CountDownLatch exporting = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        batcher = new DistributionRequestBatcher("agent", 2, 1000, scheduler, new DistributionRequestBatcher.BatchExporter() {
+            public void exportBatch(String callingUser, @Nonnull DistributionRequest request, long startTime) {
+                exporting.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                exported.add(request);
+            }
+        }, mock(DefaultDistributionLog.class));
+
+        Thread exporter = new Thread() {
+            @Override
+            public void run() {
+                batcher.add("user", new SimpleDistributionRequest(DistributionRequestType.ADD, "/content/a"));
+                batcher.add("user", new SimpleDistributionRequest(DistributionRequestType.ADD, "/content/b"));
+            }
+        };
+        exporter.start();
+        assertTrue(exporting.await(5, TimeUnit.SECONDS));
+
+        // no batch is pending, but the full batch is still exported by the other thread
+        final DistributionRequest pull = new SimpleDistributionRequest(DistributionRequestType.PULL);
+        assertFalse(batcher.add("user", pull));
+        Thread direct = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    batcher.exportDirectly(new DistributionRequestBatcher.RequestExporter<Void>() {
+                        public Void export() {
+                            exported.add(pull);
+                            return null;
+                        }
+                    });
+                } catch (DistributionException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        direct.start();
+        direct.join(500);
+        assertTrue(direct.isAlive());
+        assertTrue(exported.isEmpty());
+
+        release.countDown();
+        exporter.join();
+        direct.join();
+        assertEquals(2, exported.size());
+        assertArrayEquals(new String[]{"/content/a", "/content/b"}, exported.get(0).getPaths());
+        assertEquals(pull, exported.get(1));
+    }
+}
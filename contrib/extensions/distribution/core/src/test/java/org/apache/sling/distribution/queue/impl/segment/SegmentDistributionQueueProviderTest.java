@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.distribution.queue.impl.segment;
+
+import org.apache.sling.commons.scheduler.ScheduleOptions;
+import org.apache.sling.commons.scheduler.Scheduler;
+import org.apache.sling.distribution.queue.DistributionQueue;
+import org.apache.sling.distribution.queue.DistributionQueueItem;
+import org.apache.sling.distribution.queue.DistributionQueueProcessor;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Testcase for {@link SegmentDistributionQueueProvider}
+ */
+public class SegmentDistributionQueueProviderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testGetOrCreateQueue() throws Exception {
+        SegmentDistributionQueueProvider provider = new SegmentDistributionQueueProvider(mock(Scheduler.class),
+                "agentName", folder.getRoot(), 4096);
+        DistributionQueue queue = provider.getQueue("default");
+        assertNotNull(queue);
+        assertSame(queue, provider.getQueue("default"));
+        provider.disableQueueProcessing();
+    }
+
+    @Test
+    public void testQueuesAreReopenedAfterDisabling() throws Exception {
+        Scheduler scheduler = mock(Scheduler.class);
+        ScheduleOptions options = mock(ScheduleOptions.class);
+        when(scheduler.NOW(-1, 1)).thenReturn(options);
+        when(options.canRunConcurrently(false)).thenReturn(options);
+        when(options.name(any(String.class))).thenReturn(options);
+        SegmentDistributionQueueProvider provider = new SegmentDistributionQueueProvider(scheduler,
+                "agentName", folder.getRoot(), 4096);
+        DistributionQueueProcessor processor = mock(DistributionQueueProcessor.class);
+        provider.enableQueueProcessing(processor, "endpoint/1");
+        verify(scheduler).schedule(any(Runnable.class), any(ScheduleOptions.class));
+
+        DistributionQueue queue = provider.getQueue("endpoint/1");
+        queue.add(new DistributionQueueItem("id", new HashMap<String, Object>()));
+        provider.disableQueueProcessing();
+
+        DistributionQueue reopened = provider.getQueue("endpoint/1");
+        assertNotSame(queue, reopened);
+        assertEquals(1, reopened.getStatus().getItemsCount());
+        provider.disableQueueProcessing();
+    }
+}
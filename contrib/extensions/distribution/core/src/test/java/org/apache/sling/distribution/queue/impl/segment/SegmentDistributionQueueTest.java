@@ -0,0 +1,296 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.distribution.queue.impl.segment;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.distribution.queue.DistributionQueueEntry;
+import org.apache.sling.distribution.queue.DistributionQueueItem;
+import org.apache.sling.distribution.queue.DistributionQueueItemStatus;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Testcase for {@link SegmentDistributionQueue}
+ */
+public class SegmentDistributionQueueTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SegmentDistributionQueue open(int segmentSize) throws Exception {
+        return new SegmentDistributionQueue("agentName", "default", new File(folder.getRoot(), "default"), segmentSize);
+    }
+
+    private static DistributionQueueItem item(String id) {
+        Map<String, Object> info = new HashMap<String, Object>();
+        info.put("request.type", "ADD");
+        info.put("request.paths", new String[]{"/foo", "/bar"});
+        info.put("internal.request.user", null);
+        return new DistributionQueueItem(id, 42, info);
+    }
+
+    @Test
+    public void testPackageAdditionRetrievalAndRemoval() throws Exception {
+        SegmentDistributionQueue queue = open(4096);
+        DistributionQueueItem pkg = item("id");
+        assertNotNull(queue.add(pkg));
+        assertFalse(queue.getStatus().isEmpty());
+        assertEquals(pkg, queue.getHead().getItem());
+        DistributionQueueItemStatus status = queue.getItem("id").getStatus();
+        assertEquals(1, status.getAttempts());
+        assertNotNull(queue.remove("id"));
+        assertTrue(queue.getStatus().isEmpty());
+        assertNull(queue.getItem("id"));
+        assertNull(queue.remove("id"));
+        assertNull(queue.getHead());
+        queue.close();
+    }
+
+    @Test
+    public void testOrderAndPaging() throws Exception {
+        SegmentDistributionQueue queue = open(4096);
+        for (int i = 0; i < 10; i++) {
+            queue.add(item("id" + i));
+        }
+        queue.remove("id0");
+        assertEquals("id1", queue.getHead().getId());
+        int i = 3;
+        for (DistributionQueueEntry entry : queue.getItems(2, 3)) {
+            assertEquals("id" + i++, entry.getId());
+        }
+        assertEquals(6, i);
+        queue.close();
+    }
+
+    @Test
+    public void testRecovery() throws Exception {
+        SegmentDistributionQueue queue = open(4096);
+        for (int i = 0; i < 5; i++) {
+            queue.add(item("id" + i));
+        }
+        queue.remove("id0");
+        queue.remove("id3");
+        queue.close();
+
+        queue = open(4096);
+        assertEquals(3, queue.getStatus().getItemsCount());
+        DistributionQueueEntry head = queue.getHead();
+        assertEquals("id1", head.getId());
+        DistributionQueueItem item = head.getItem();
+        assertEquals(42, item.getSize());
+        assertEquals("ADD", item.get("request.type"));
+        assertArrayEquals(new String[]{"/foo", "/bar"}, (String[]) item.get("request.paths"));
+        assertTrue(item.containsKey("internal.request.user"));
+        assertNull(queue.getItem("id3"));
+        assertNotNull(queue.getItem("id4"));
+
+        // items added after the recovery follow the recovered items
+        queue.add(item("id5"));
+        queue.close();
+        queue = open(4096);
+        int i = 0;
+        String[] expected = {"id1", "id2", "id4", "id5"};
+        for (DistributionQueueEntry entry : queue.getItems(0, -1)) {
+            assertEquals(expected[i++], entry.getId());
+        }
+        assertEquals(4, i);
+        queue.close();
+    }
+
+    @Test
+    public void testSegmentsOfRemovedItemsAreDeleted() throws Exception {
+        SegmentDistributionQueue queue = open(512);
+        for (int i = 0; i < 100; i++) {
+            queue.add(item("id" + i));
+        }
+        assertTrue(queue.getSegmentCount() > 10);
+        for (int i = 0; i < 100; i++) {
+            queue.remove("id" + i);
+        }
+        assertEquals(1, queue.getSegmentCount());
+        queue.close();
+
+        queue = open(512);
+        assertTrue(queue.getStatus().isEmpty());
+        queue.close();
+    }
+
+    @Test
+    public void testCompactionOfStuckHead() throws Exception {
+        SegmentDistributionQueue queue = open(2048);
+        queue.add(item("stuck"));
+        for (int i = 0; i < 200; i++) {
+            queue.add(item("id" + i));
+            queue.remove("id" + i);
+        }
+        // the stuck item is appended again instead of keeping all segments
+        assertTrue(queue.getSegmentCount() <= 3);
+        assertEquals("stuck", queue.getHead().getId());
+        queue.close();
+
+        queue = open(2048);
+        assertEquals(1, queue.getStatus().getItemsCount());
+        assertEquals("stuck", queue.getHead().getId());
+        queue.add(item("next"));
+        assertEquals("stuck", queue.getHead().getId());
+        queue.close();
+    }
+
+    @Test
+    public void testCorruptTailIsIgnored() throws Exception {
+        SegmentDistributionQueue queue = open(4096);
+        queue.add(item("id0"));
+        queue.add(item("id1"));
+        queue.close();
+
+        File[] segments = new File(folder.getRoot(), "default").listFiles();
+        assertEquals(1, segments.length);
+        RandomAccessFile raf = new RandomAccessFile(segments[0], "rw");
+        try {
+            // flip a byte in the payload of the second record
+            long position = 8 + raf.readInt() + 8 + 20;
+            raf.seek(position);
+            int b = raf.read();
+            raf.seek(position);
+            raf.write(b ^ 0xff);
+        } finally {
+            raf.close();
+        }
+
+        queue = open(4096);
+        assertEquals(1, queue.getStatus().getItemsCount());
+        assertEquals("id0", queue.getHead().getId());
+        queue.close();
+    }
+
+    @Test(timeout = 10000)
+    public void testItemIsHiddenUntilSynced() throws Exception {
+        BlockingSegmentLog segmentLog = new BlockingSegmentLog(new File(folder.getRoot(), "default"));
+        SegmentDistributionQueue queue = new SegmentDistributionQueue("agentName", "default", segmentLog);
+        try {
+            FutureTask<DistributionQueueEntry> added = add(queue, "id0");
+            assertTrue(segmentLog.syncing.await(5, TimeUnit.SECONDS));
+            FutureTask<DistributionQueueEntry> addedAgain = add(queue, "id0");
+
+            assertNull(queue.getHead());
+            assertNull(queue.getItem("id0"));
+            assertFalse(queue.getItems(0, -1).iterator().hasNext());
+            assertEquals(0, queue.getStatus().getItemsCount());
+            assertNull(queue.remove("id0"));
+            assertFalse(addedAgain.isDone());
+
+            segmentLog.release.countDown();
+            assertEquals("id0", added.get().getId());
+            assertEquals("id0", addedAgain.get().getId());
+            assertEquals("id0", queue.getHead().getId());
+            assertEquals(1, queue.getStatus().getItemsCount());
+        } finally {
+            segmentLog.release.countDown();
+            queue.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testItemIsDroppedIfSyncFails() throws Exception {
+        BlockingSegmentLog segmentLog = new BlockingSegmentLog(new File(folder.getRoot(), "default"));
+        segmentLog.failing = true;
+        SegmentDistributionQueue queue = new SegmentDistributionQueue("agentName", "default", segmentLog);
+        try {
+            FutureTask<DistributionQueueEntry> added = add(queue, "id0");
+            assertTrue(segmentLog.syncing.await(5, TimeUnit.SECONDS));
+            FutureTask<DistributionQueueEntry> addedAgain = add(queue, "id0");
+
+            segmentLog.release.countDown();
+            assertNull(added.get());
+            // the item added concurrently is not reported as added either
+            assertNull(addedAgain.get());
+            assertNull(queue.getHead());
+            assertEquals(0, queue.getStatus().getItemsCount());
+        } finally {
+            segmentLog.release.countDown();
+            queue.close();
+        }
+    }
+
+    /**
+     * add an item in another thread, returning once the thread is adding it or waiting for the pending add of the item
+     */
+    private static FutureTask<DistributionQueueEntry> add(final SegmentDistributionQueue queue, final String id)
+            throws InterruptedException {
+        FutureTask<DistributionQueueEntry> task = new FutureTask<DistributionQueueEntry>(new Callable<DistributionQueueEntry>() {
+            public DistributionQueueEntry call() {
+                return queue.add(item(id));
+            }
+        });
+        Thread thread = new Thread(task);
+        thread.start();
+        while (thread.getState() != Thread.State.WAITING && !task.isDone()) {
+            Thread.sleep(10);
+        }
+        return task;
+    }
+
+    /**
+     * blocks the syncs until released, failing the first one if requested
+     */
+    private static class BlockingSegmentLog extends SegmentLog {
+
+        private final CountDownLatch syncing = new CountDownLatch(1);
+
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        private volatile boolean failing;
+
+        BlockingSegmentLog(File directory) {
+            super(directory, 4096);
+        }
+
+        @Override
+        void sync(long offset) throws IOException {
+            syncing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failing) {
+                failing = false;
+                throw new IOException("sync failed");
+            }
+            super.sync(offset);
+        }
+    }
+}
@@ -38,6 +38,7 @@ public class BasePipe implements Pipe {
     public static final String RESOURCE_TYPE = "slingPipes/base";
     public static final String DRYRUN_KEY = "dryRun";
     public static final String READ_ONLY = "readOnly";
+    public static final String RESUME_KEY = "resume";
     public static final String PN_STATUS = "status";
     public static final String PN_STATUS_MODIFIED = "statusModified";
     public static final String STATUS_STARTED = "started";
@@ -81,6 +81,16 @@ public class ContainerPipe extends BasePipe {
         return new ContainerResourceIterator(this);
     }
 
+    /**
+     * Returns the output of the container for a given output of its first pipe, which is then not
+     * executed. This allows the output of the first pipe to be split between several instances of the container
+     * @param firstPipeOutput resources to be used as output of the first pipe
+     * @return output of the container
+     */
+    public Iterator<Resource> getOutput(Iterator<Resource> firstPipeOutput) {
+        return new ContainerResourceIterator(this, firstPipeOutput);
+    }
+
     /**
      * Returns the pipe immediately before the given pipe, null if it's the first
      * @param pipe given pipe
@@ -147,12 +157,20 @@ public class ContainerPipe extends BasePipe {
          * @param containerPipe corresponding container pipe
          */
         ContainerResourceIterator(ContainerPipe containerPipe) {
+            this(containerPipe, containerPipe.getFirstPipe().getOutput());
+        }
+
+        /**
+         * Constructor
+         * @param containerPipe corresponding container pipe
+         * @param firstPipeOutput output of the first pipe
+         */
+        ContainerResourceIterator(ContainerPipe containerPipe, Iterator<Resource> firstPipeOutput) {
             container = containerPipe;
             bindings = container.bindings;
             iterators = new HashMap<>();
-            Pipe firstPipe = container.getFirstPipe();
             //we initialize the first iterator the only one not to be updated
-            iterators.put(firstPipe, firstPipe.getOutput());
+            iterators.put(container.getFirstPipe(), firstPipeOutput);
         }
 
         /**
@@ -46,6 +46,12 @@ public interface Pipe {
 
     String PN_DISTRIBUTION_AGENT = "distribution.agent";
 
+    /**
+     * Number of workers executing a container pipe in parallel, the output of its first pipe being split by subtree
+     * between them. Such an execution streams its output, and can be resumed from its last checkpoint
+     */
+    String PN_PARALLEL = "parallel";
+
     /**
      * returns true if that pipe will modify content during its execution
      * @return true for write / false for read
@@ -66,7 +66,7 @@ public interface Plumber {
      * @param writer output of the pipe
      * @param save in case that pipe writes anything, wether the plumber should save changes or not
      * @throws Exception in case execution fails
-     * @return set of paths of output resources
+     * @return set of paths of output resources, empty for a parallel execution that only streams them to the writer
      */
     Set<String> execute(ResourceResolver resolver, Pipe pipe, Map bindings, OutputWriter writer, boolean save) throws Exception;
 
@@ -0,0 +1,414 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.pipes.internal;
+
+import static org.apache.sling.pipes.BasePipe.STATUS_FINISHED;
+import static org.apache.sling.pipes.BasePipe.STATUS_STARTED;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.distribution.DistributionRequest;
+import org.apache.sling.distribution.DistributionRequestType;
+import org.apache.sling.distribution.DistributionResponse;
+import org.apache.sling.distribution.Distributor;
+import org.apache.sling.distribution.SimpleDistributionRequest;
+import org.apache.sling.pipes.BasePipe;
+import org.apache.sling.pipes.ContainerPipe;
+import org.apache.sling.pipes.OutputWriter;
+import org.apache.sling.pipes.Pipe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executes a container pipe with several workers, each of them having its own resource resolver.
+ *
+ * The output of the first pipe is read by the calling thread, and dispatched by subtree: resources below the same
+ * child of the first pipe's input go to the same worker, so that workers don't modify the same nodes. Each worker
+ * executes the following pipes of its own container instance, streams the output to the writer and saves every
+ * buffer size resources, distributing the saved paths if needed, so no path is kept once saved.
+ *
+ * The path of the oldest output of the first pipe that is not entirely saved is written as the pipe's status,
+ * execution can then be resumed from there with the {@link BasePipe#RESUME_KEY} binding, assuming the first pipe
+ * outputs its resources in the same order. Resources between that checkpoint and the interruption are executed again.
+ */
+class PartitionedExecution {
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private static final Item END = new Item(-1, null);
+
+    private final PlumberImpl plumber;
+
+    private final ResourceResolver resolver;
+
+    private final ContainerPipe pipe;
+
+    private final Map additionalBindings;
+
+    private final OutputWriter writer;
+
+    private final boolean save;
+
+    private final int bufferSize;
+
+    private final Distributor distributor;
+
+    private final List<Worker> workers = new ArrayList<>();
+
+    /**
+     * dispatched outputs of the first pipe that are not saved yet, by dispatch index
+     */
+    private final ConcurrentSkipListMap<Long, String> pending = new ConcurrentSkipListMap<>();
+
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+
+    PartitionedExecution(PlumberImpl plumber, ResourceResolver resolver, ContainerPipe pipe, Map additionalBindings,
+                         OutputWriter writer, boolean save, int bufferSize, Distributor distributor) {
+        this.plumber = plumber;
+        this.resolver = resolver;
+        this.pipe = pipe;
+        this.additionalBindings = additionalBindings;
+        this.writer = writer;
+        this.save = save;
+        this.bufferSize = bufferSize;
+        this.distributor = distributor;
+    }
+
+    /**
+     * Executes the pipe with the given number of workers
+     * @param nbWorkers number of workers
+     * @return empty set, as output paths are only streamed to the writer
+     * @throws Exception in case execution fails, status then being the last checkpoint
+     */
+    Set<String> execute(int nbWorkers) throws Exception {
+        if (additionalBindings != null) {
+            pipe.getBindings().addBindings(additionalBindings);
+        }
+        log.info("[{}] partitioned execution starts with {} workers, save ({})", new Object[]{pipe, nbWorkers, save});
+        writer.setPipe(pipe);
+        String checkpoint = getCheckpoint();
+        if (checkpoint == null) {
+            plumber.writeStatus(pipe, STATUS_STARTED);
+            resolver.commit();
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(nbWorkers, new WorkerThreadFactory(pipe.getName()));
+        List<Future<Void>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < nbWorkers; i++) {
+                Worker worker = new Worker(resolver.clone(null));
+                workers.add(worker);
+                futures.add(executor.submit(worker));
+            }
+            dispatch(checkpoint);
+        } catch (Exception e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            for (Worker worker : workers) {
+                worker.offer(END);
+            }
+            executor.shutdown();
+        }
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                log.debug("worker failed", e.getCause());
+            }
+        }
+        if (failure.get() != null) {
+            if (failure.get() instanceof CheckpointNotFoundException || !checkpoint()) {
+                // nothing to resume from, pipe can be executed again from the beginning
+                plumber.writeStatus(pipe, STATUS_FINISHED);
+            }
+            resolver.commit();
+            throw failure.get();
+        }
+        writer.setPipe(pipe);
+        writer.ends();
+        plumber.writeStatus(pipe, STATUS_FINISHED);
+        resolver.commit();
+        log.info("[{}] done executing.", pipe.getName());
+        return Collections.emptySet();
+    }
+
+    /**
+     * @return checkpoint from which execution should resume, null if it should start from the beginning
+     */
+    private String getCheckpoint() {
+        if (!plumber.isRunning(pipe.getResource())) {
+            return null;
+        }
+        if (additionalBindings == null || !Boolean.TRUE.equals(additionalBindings.get(BasePipe.RESUME_KEY))) {
+            throw new RuntimeException("Pipe is already running");
+        }
+        String status = plumber.getStatus(pipe.getResource());
+        log.info("[{}] resuming execution from {}", pipe.getName(), status);
+        return STATUS_STARTED.equals(status) ? null : status;
+    }
+
+    /**
+     * reads the output of the first pipe, and dispatches it between the workers
+     * @param checkpoint path of the first resource to dispatch, null to dispatch them all
+     */
+    private void dispatch(String checkpoint) throws Exception {
+        Pipe firstPipe = pipe.getFirstPipe();
+        Resource root = firstPipe.getInput();
+        String prefix = root == null ? null : StringUtils.removeEnd(root.getPath(), "/") + "/";
+        boolean skipping = checkpoint != null;
+        long index = 0;
+        for (Iterator<Resource> it = firstPipe.getOutput(); it.hasNext() && failure.get() == null;) {
+            Resource resource = it.next();
+            if (resource != null) {
+                String path = resource.getPath();
+                if (skipping && !path.equals(checkpoint)) {
+                    continue;
+                }
+                skipping = false;
+                pending.put(index, path);
+                workers.get(getPartition(prefix, path, workers.size())).offer(new Item(index, path));
+                if (++index % bufferSize == 0) {
+                    checkpoint();
+                    resolver.commit();
+                }
+            }
+        }
+        if (skipping) {
+            throw new CheckpointNotFoundException("checkpoint " + checkpoint + " has not been found in " + firstPipe.getName()
+                    + " output, execution can't be resumed");
+        }
+    }
+
+    /**
+     * @param prefix path of the first pipe's input followed by a slash, can be null
+     * @param path path of a resource output by the first pipe
+     * @param partitions number of partitions
+     * @return index of the partition of the subtree of the given path
+     */
+    static int getPartition(String prefix, String path, int partitions) {
+        String subtree = path;
+        if (prefix != null && path.startsWith(prefix)) {
+            int end = path.indexOf('/', prefix.length());
+            subtree = end < 0 ? path : path.substring(0, end);
+        }
+        return (subtree.hashCode() & Integer.MAX_VALUE) % partitions;
+    }
+
+    /**
+     * writes the oldest pending path as status, if the pipe is worth resuming
+     * @return true if a checkpoint has been written
+     */
+    private boolean checkpoint() throws Exception {
+        Map.Entry<Long, String> oldest = pending.firstEntry();
+        if (oldest != null && pipe.modifiesContent() && !pipe.isDryRun()) {
+            plumber.writeStatus(pipe, oldest.getValue());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * output of the first pipe dispatched to a worker
+     */
+    private static class Item {
+        final long index;
+        final String path;
+
+        Item(long index, String path) {
+            this.index = index;
+            this.path = path;
+        }
+    }
+
+    private static class CheckpointNotFoundException extends Exception {
+        CheckpointNotFoundException(String message) {
+            super(message);
+        }
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+        private final String name;
+
+        WorkerThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "sling-pipes-" + name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * executes its own instance of the container on the resources it receives
+     */
+    private class Worker implements Callable<Void>, Iterator<Resource> {
+        private final BlockingQueue<Item> queue = new ArrayBlockingQueue<>(bufferSize);
+
+        private final ResourceResolver workerResolver;
+
+        /**
+         * indexes of the received items since last save, the last one being currently executed
+         */
+        private final List<Long> received = new ArrayList<>();
+
+        /**
+         * output paths since last save
+         */
+        private final List<String> paths = new ArrayList<>();
+
+        private Resource next;
+
+        private boolean ended;
+
+        private volatile boolean done;
+
+        Worker(ResourceResolver workerResolver) {
+            this.workerResolver = workerResolver;
+        }
+
+        /**
+         * adds an item to the queue, unless the worker is done
+         * @param item item to execute
+         */
+        void offer(Item item) throws InterruptedException {
+            while (!done && !queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                log.trace("waiting for worker");
+            }
+        }
+
+        @Override
+        public Void call() throws Exception {
+            try {
+                ContainerPipe workerPipe = (ContainerPipe)plumber.getPipe(workerResolver.getResource(pipe.getResource().getPath()));
+                if (additionalBindings != null) {
+                    workerPipe.getBindings().addBindings(additionalBindings);
+                }
+                for (Iterator<Resource> it = workerPipe.getOutput(this); it.hasNext();) {
+                    Resource resource = it.next();
+                    if (resource != null) {
+                        log.debug("[{}] retrieved {}", pipe.getName(), resource.getPath());
+                        synchronized (writer) {
+                            writer.setPipe(workerPipe);
+                            writer.write(resource);
+                        }
+                        paths.add(resource.getPath());
+                        if (paths.size() >= bufferSize) {
+                            persist(workerPipe, false);
+                        }
+                    }
+                }
+                if (failure.get() == null) {
+                    persist(workerPipe, true);
+                }
+                return null;
+            } catch (Exception e) {
+                log.error("[{}] worker failed", pipe.getName(), e);
+                failure.compareAndSet(null, e);
+                throw e;
+            } finally {
+                done = true;
+                queue.clear();
+                workerResolver.close();
+            }
+        }
+
+        /**
+         * saves the changes, and releases the items executed since last save
+         * @param workerPipe pipe executed by this worker
+         * @param last true if there is no more item to execute
+         */
+        private void persist(Pipe workerPipe, boolean last) throws Exception {
+            if (workerPipe.modifiesContent() && workerResolver.hasChanges() && !workerPipe.isDryRun() && (save || !last)) {
+                log.info("[{}] saving changes...", pipe.getName());
+                workerResolver.commit();
+                if (distributor != null && StringUtils.isNotBlank(pipe.getDistributionAgent()) && !paths.isEmpty()) {
+                    DistributionRequest request = new SimpleDistributionRequest(DistributionRequestType.ADD, true, paths.toArray(new String[paths.size()]));
+                    DistributionResponse response = distributor.distribute(pipe.getDistributionAgent(), workerResolver, request);
+                    log.info("distribution response : {}", response);
+                }
+            }
+            paths.clear();
+            // the current item might still have outputs to come
+            int released = last ? received.size() : received.size() - 1;
+            for (Long index : received.subList(0, Math.max(released, 0))) {
+                pending.remove(index);
+            }
+            received.subList(0, Math.max(released, 0)).clear();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && !ended) {
+                Item item;
+                try {
+                    item = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("interrupted while waiting for resources", e);
+                }
+                if (item == END || failure.get() != null) {
+                    ended = true;
+                } else {
+                    received.add(item.index);
+                    next = workerResolver.getResource(item.path);
+                    if (next == null) {
+                        log.warn("[{}] {} is not found anymore", pipe.getName(), item.path);
+                    }
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Resource next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Resource resource = next;
+            next = null;
+            return resource;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
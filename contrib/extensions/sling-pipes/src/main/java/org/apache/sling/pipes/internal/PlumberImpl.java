@@ -44,6 +44,7 @@ import org.apache.sling.api.resource.PersistenceException;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.ValueMap;
 import org.apache.sling.distribution.DistributionRequest;
 import org.apache.sling.distribution.DistributionRequestType;
 import org.apache.sling.distribution.DistributionResponse;
@@ -180,6 +181,11 @@ public class PlumberImpl implements Plumber, JobConsumer {
 
     @Override
     public Set<String> execute(ResourceResolver resolver, Pipe pipe, Map additionalBindings, OutputWriter writer, boolean save) throws Exception {
+        int workers = pipe.getResource().adaptTo(ValueMap.class).get(Pipe.PN_PARALLEL, 0);
+        if (workers > 0 && pipe instanceof ContainerPipe) {
+            return new PartitionedExecution(this, resolver, (ContainerPipe)pipe, additionalBindings, writer, save, bufferSize, distributor)
+                    .execute(workers);
+        }
         try {
             if (additionalBindings != null && pipe instanceof ContainerPipe){
                 pipe.getBindings().addBindings(additionalBindings);
@@ -280,6 +286,18 @@ public class PlumberImpl implements Plumber, JobConsumer {
         try(ResourceResolver resolver = factory.getServiceResourceResolver(serviceUser)){
             String path = (String)job.getProperty(SlingConstants.PROPERTY_PATH);
             Map bindings = (Map)job.getProperty(PipeBindings.NN_ADDITIONALBINDINGS);
+            if (job.getRetryCount() > 0) {
+                // job is processed again after an interruption, a partitioned execution resumes from its checkpoint
+                Map retryBindings = new HashMap();
+                if (bindings == null) {
+                    // jobs without bindings are not read only
+                    retryBindings.put(BasePipe.READ_ONLY, false);
+                } else {
+                    retryBindings.putAll(bindings);
+                }
+                retryBindings.put(BasePipe.RESUME_KEY, true);
+                bindings = retryBindings;
+            }
             execute(resolver, path, bindings, new NopWriter(), true);
             return JobResult.OK;
         } catch (LoginException e) {
@@ -118,6 +118,10 @@ public class PlumberServlet extends SlingAllMethodsServlet {
         if (StringUtils.isNotBlank(dryRun) && dryRun.equals(Boolean.TRUE.toString())) {
             bindings.put(BasePipe.DRYRUN_KEY, true);
         }
+        String resume = request.getParameter(BasePipe.RESUME_KEY);
+        if (StringUtils.isNotBlank(resume) && resume.equals(Boolean.TRUE.toString())) {
+            bindings.put(BasePipe.RESUME_KEY, true);
+        }
         String paramBindings = request.getParameter(PARAM_BINDINGS);
         if (StringUtils.isNotBlank(paramBindings)){
             try {
@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.pipes.dummies;
+
+import java.util.Collections;
+import java.util.Iterator;
+
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.pipes.BasePipe;
+import org.apache.sling.pipes.Plumber;
+
+/**
+ * dummy write marks its input with a written property without using JCR, and fails on the input configured with
+ * failOn property
+ */
+public class DummyWrite extends BasePipe {
+    public static final String PN_WRITTEN = "written";
+
+    public static final String PN_FAIL_ON = "failOn";
+
+    public DummyWrite(Plumber plumber, Resource resource) throws Exception {
+        super(plumber, resource);
+    }
+
+    @Override
+    public boolean modifiesContent() {
+        return true;
+    }
+
+    @Override
+    public Iterator<Resource> getOutput() {
+        Resource resource = getInput();
+        if (resource.getPath().equals(properties.get(PN_FAIL_ON, String.class))) {
+            throw new IllegalStateException("failing on " + resource.getPath());
+        }
+        resource.adaptTo(ModifiableValueMap.class).put(PN_WRITTEN, true);
+        return Collections.singleton(resource).iterator();
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.pipes.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.sling.api.SlingConstants;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.consumer.JobConsumer.JobResult;
+import org.apache.sling.pipes.AbstractPipeTest;
+import org.apache.sling.pipes.BasePipe;
+import org.apache.sling.pipes.OutputWriter;
+import org.apache.sling.pipes.Pipe;
+import org.apache.sling.pipes.dummies.DummyChildren;
+import org.apache.sling.pipes.dummies.DummyWrite;
+import org.apache.sling.testing.mock.sling.ResourceResolverType;
+import org.apache.sling.testing.mock.sling.junit.SlingContext;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * test parallel execution of a container pipe
+ */
+public class PartitionedExecutionTest extends AbstractPipeTest {
+
+    private static final String PATH_PARALLEL = PATH_PIPE + "/fruits";
+
+    private static final String PATH_SEEDS = PATH_PIPE + "/seeds";
+
+    private static final int NB_FRUITS = 40;
+
+    private static final int NB_SEEDS = 2;
+
+    /**
+     * JCR mock session used by cloned resolvers is not thread safe, pipes modifying content are executed with the
+     * resource resolver mock
+     */
+    @Rule
+    public SlingContext resolverContext = new SlingContext(ResourceResolverType.RESOURCERESOLVER_MOCK);
+
+    @Before
+    public void setup() {
+        super.setup();
+        PlumberImpl plumberImpl = new PlumberImpl();
+        PlumberImpl.Configuration configuration = mock(PlumberImpl.Configuration.class);
+        when(configuration.authorizedUsers()).thenReturn(new String[]{});
+        when(configuration.serviceUser()).thenReturn(null);
+        when(configuration.bufferSize()).thenReturn(3);
+        plumberImpl.activate(configuration);
+        plumberImpl.registerPipe("slingPipes/dummyChildren", DummyChildren.class);
+        plumberImpl.registerPipe("slingPipes/dummyWrite", DummyWrite.class);
+        plumber = plumberImpl;
+        context.load().json("/parallel.json", PATH_PIPE);
+        for (int i = 0; i < NB_FRUITS; i++) {
+            context.create().resource(PATH_FRUITS + "/fruit" + i, "jcr:primaryType", "nt:unstructured");
+        }
+    }
+
+    @Test
+    public void testParallelExecution() throws Exception {
+        ListWriter writer = new ListWriter();
+        plumber.execute(context.resourceResolver(), PATH_PARALLEL, null, writer, true);
+        List<String> expected = getFruits();
+        Collections.sort(expected);
+        Collections.sort(writer.paths);
+        assertEquals("all fruits should have been output once", expected, writer.paths);
+        assertTrue("writer should have been ended", writer.ended);
+        assertFalse("pipe should not be running anymore", plumber.isRunning(context.resourceResolver().getResource(PATH_PARALLEL)));
+    }
+
+    @Test
+    public void testResume() throws Exception {
+        List<String> fruits = getFruits();
+        String checkpoint = PATH_FRUITS + "/fruit20";
+        context.resourceResolver().getResource(PATH_PARALLEL).adaptTo(ModifiableValueMap.class).put(BasePipe.PN_STATUS, checkpoint);
+        context.resourceResolver().commit();
+        try {
+            plumber.execute(context.resourceResolver(), PATH_PARALLEL, null, new ListWriter(), true);
+            fail("an interrupted pipe should not be executed again without resume binding");
+        } catch (RuntimeException e) {
+            assertEquals("Pipe is already running", e.getMessage());
+        }
+        ListWriter writer = new ListWriter();
+        plumber.execute(context.resourceResolver(), PATH_PARALLEL, Collections.singletonMap(BasePipe.RESUME_KEY, true), writer, true);
+        List<String> expected = new ArrayList<>(fruits.subList(fruits.indexOf(checkpoint), fruits.size()));
+        Collections.sort(expected);
+        Collections.sort(writer.paths);
+        assertEquals("only fruits from the checkpoint should have been output", expected, writer.paths);
+        assertFalse("pipe should not be running anymore", plumber.isRunning(context.resourceResolver().getResource(PATH_PARALLEL)));
+    }
+
+    @Test
+    public void testReadOnlyFailure() throws Exception {
+        final String failing = PATH_FRUITS + "/fruit20";
+        ListWriter failingWriter = new ListWriter() {
+            @Override
+            public void write(Resource resource) {
+                if (resource.getPath().equals(failing)) {
+                    throw new IllegalStateException("failing on " + failing);
+                }
+                super.write(resource);
+            }
+        };
+        try {
+            plumber.execute(context.resourceResolver(), PATH_PARALLEL, null, failingWriter, true);
+            fail("execution should fail with its worker");
+        } catch (IllegalStateException e) {
+            assertEquals("failing on " + failing, e.getMessage());
+        }
+        assertFalse("read only pipe has no checkpoint and should not be running anymore",
+                plumber.isRunning(context.resourceResolver().getResource(PATH_PARALLEL)));
+        ListWriter writer = new ListWriter();
+        plumber.execute(context.resourceResolver(), PATH_PARALLEL, null, writer, true);
+        assertEquals("all fruits should have been output", getFruits().size(), writer.paths.size());
+    }
+
+    @Test
+    public void testResumeUnknownCheckpoint() throws Exception {
+        context.resourceResolver().getResource(PATH_PARALLEL).adaptTo(ModifiableValueMap.class).put(BasePipe.PN_STATUS, PATH_FRUITS + "/unknown");
+        context.resourceResolver().commit();
+        try {
+            plumber.execute(context.resourceResolver(), PATH_PARALLEL, Collections.singletonMap(BasePipe.RESUME_KEY, true), new ListWriter(), true);
+            fail("execution should fail when the checkpoint is not in the output");
+        } catch (Exception e) {
+            assertFalse("pipe should be executable again from the beginning", plumber.isRunning(context.resourceResolver().getResource(PATH_PARALLEL)));
+        }
+    }
+
+    @Test
+    public void testWriteCheckpointAfterWorkerFailure() throws Exception {
+        ResourceResolver resolver = setupSeeds();
+        // a single worker, saving every 3 seeds, saves after fruit31/seed0 so that fruit31 is only partially saved
+        resolver.getResource(PATH_SEEDS).adaptTo(ModifiableValueMap.class).put(Pipe.PN_PARALLEL, 1);
+        String failing = PATH_FRUITS + "/fruit31/seed1";
+        resolver.getResource(PATH_SEEDS + "/conf/write").adaptTo(ModifiableValueMap.class).put(DummyWrite.PN_FAIL_ON, failing);
+        resolver.commit();
+        try {
+            plumber.execute(resolver, PATH_SEEDS, null, new ListWriter(), true);
+            fail("execution should fail with its worker");
+        } catch (IllegalStateException e) {
+            assertEquals("failing on " + failing, e.getMessage());
+        }
+        List<String> fruits = getFruits(resolver);
+        String checkpoint = plumber.getStatus(resolver.getResource(PATH_SEEDS));
+        int checkpointIndex = fruits.indexOf(checkpoint);
+        assertTrue("checkpoint should be a fruit up to the failing one, not " + checkpoint,
+                checkpointIndex >= 0 && checkpointIndex <= fruits.indexOf(PATH_FRUITS + "/fruit31"));
+        try (ResourceResolver saved = resolver.clone(null)) {
+            for (String fruit : fruits.subList(0, checkpointIndex)) {
+                for (int i = 0; i < NB_SEEDS; i++) {
+                    assertTrue("seeds before the checkpoint should have been saved", isWritten(saved, fruit + "/seed" + i));
+                }
+            }
+            assertFalse("failing seed should not have been saved", isWritten(saved, failing));
+        }
+
+        resolver.getResource(PATH_SEEDS).adaptTo(ModifiableValueMap.class).put(Pipe.PN_PARALLEL, 3);
+        resolver.getResource(PATH_SEEDS + "/conf/write").adaptTo(ModifiableValueMap.class).remove(DummyWrite.PN_FAIL_ON);
+        resolver.commit();
+        Map<String, Object> bindings = new HashMap<>();
+        bindings.put(BasePipe.READ_ONLY, false);
+        bindings.put(BasePipe.RESUME_KEY, true);
+        ListWriter writer = new ListWriter();
+        plumber.execute(resolver, PATH_SEEDS, bindings, writer, true);
+        assertEquals("seeds from the checkpoint should have been output", (fruits.size() - checkpointIndex) * NB_SEEDS, writer.paths.size());
+        try (ResourceResolver saved = resolver.clone(null)) {
+            for (String fruit : fruits) {
+                for (int i = 0; i < NB_SEEDS; i++) {
+                    assertTrue("all seeds should have been saved after resuming", isWritten(saved, fruit + "/seed" + i));
+                }
+            }
+        }
+        assertFalse("pipe should not be running anymore", plumber.isRunning(resolver.getResource(PATH_SEEDS)));
+    }
+
+    @Test
+    public void testJob() throws Exception {
+        ResourceResolver resolver = setupSeeds();
+        ResourceResolverFactory factory = mock(ResourceResolverFactory.class);
+        when(factory.getServiceResourceResolver(any(Map.class))).thenAnswer(invocation -> newResolver());
+        ((PlumberImpl)plumber).factory = factory;
+        Job job = mock(Job.class);
+        when(job.getProperty(SlingConstants.PROPERTY_PATH)).thenReturn(PATH_SEEDS);
+        assertEquals("job without bindings should execute a pipe modifying content", JobResult.OK, ((PlumberImpl)plumber).process(job));
+        assertTrue("seeds should have been written", isWritten(resolver, PATH_FRUITS + "/fruit0/seed0"));
+
+        String checkpoint = PATH_FRUITS + "/fruit20";
+        resolver.getResource(PATH_SEEDS).adaptTo(ModifiableValueMap.class).put(BasePipe.PN_STATUS, checkpoint);
+        resolver.commit();
+        assertEquals("new job should not execute a pipe already running", JobResult.FAILED, ((PlumberImpl)plumber).process(job));
+        when(job.getRetryCount()).thenReturn(1);
+        assertEquals("retried job should resume", JobResult.OK, ((PlumberImpl)plumber).process(job));
+        assertFalse("pipe should not be running anymore", plumber.isRunning(resolver.getResource(PATH_SEEDS)));
+    }
+
+    @Test
+    public void testPartition() throws Exception {
+        assertEquals("same subtree should go to the same worker",
+                PartitionedExecution.getPartition("/content/", "/content/a", 7),
+                PartitionedExecution.getPartition("/content/", "/content/a/b/c", 7));
+        assertEquals("resources out of the input should go to a worker",
+                "/other".hashCode() % 7, PartitionedExecution.getPartition("/content/", "/other", 7));
+    }
+
+    /**
+     * creates fruits with seeds and the parallel pipes in the resource resolver mock
+     * @return resolver of the resource resolver mock
+     */
+    private ResourceResolver setupSeeds() throws Exception {
+        resolverContext.load().json("/parallel.json", PATH_PIPE);
+        for (int i = 0; i < NB_FRUITS; i++) {
+            for (int j = 0; j < NB_SEEDS; j++) {
+                resolverContext.create().resource(PATH_FRUITS + "/fruit" + i + "/seed" + j);
+            }
+        }
+        resolverContext.resourceResolver().commit();
+        return newResolver();
+    }
+
+    /**
+     * resource resolver mock doesn't support cloning, its resolvers share the same content though
+     * @return new resolver of the resource resolver mock, cloned as a new resolver
+     */
+    private ResourceResolver newResolver() throws LoginException {
+        ResourceResolver resolver = spy(resolverContext.getService(ResourceResolverFactory.class).getResourceResolver(null));
+        doAnswer(invocation -> newResolver()).when(resolver).clone(any(Map.class));
+        return resolver;
+    }
+
+    private boolean isWritten(ResourceResolver resolver, String path) {
+        return resolver.getResource(path).adaptTo(ValueMap.class).get(DummyWrite.PN_WRITTEN, false);
+    }
+
+    private List<String> getFruits() {
+        return getFruits(context.resourceResolver());
+    }
+
+    private List<String> getFruits(ResourceResolver resolver) {
+        List<String> fruits = new ArrayList<>();
+        for (Resource fruit : resolver.getResource(PATH_FRUITS).getChildren()) {
+            fruits.add(fruit.getPath());
+        }
+        return fruits;
+    }
+
+    /**
+     * keeps output paths in a list
+     */
+    private static class ListWriter extends OutputWriter {
+        List<String> paths = new ArrayList<>();
+        boolean ended;
+
+        @Override
+        public boolean handleRequest(SlingHttpServletRequest request) {
+            return true;
+        }
+
+        @Override
+        protected void initInternal(SlingHttpServletRequest request, SlingHttpServletResponse response) {
+        }
+
+        @Override
+        public void write(Resource resource) {
+            paths.add(resource.getPath());
+        }
+
+        @Override
+        protected void writeItem(Resource resource) {
+        }
+
+        @Override
+        public void ends() {
+            ended = true;
+        }
+    }
+}
@@ -266,7 +266,7 @@ public abstract class AbstractQuery<T, Q extends AbstractQuery<T, Q>> implements
 	 * @return new SlingQuery object transformed by this operation
 	 */
 	public Q find(Predicate<T> predicate) {
-		return function(new FindFunction<T>(searchStrategy, provider, ""), predicate);
+		return function(new FindFunction<T>(searchStrategy, provider, "", predicate), predicate);
 	}
 
 	/**
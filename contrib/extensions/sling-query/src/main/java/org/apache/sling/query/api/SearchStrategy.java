@@ -23,5 +23,11 @@ import aQute.bnd.annotation.ProviderType;
 
 @ProviderType
 public enum SearchStrategy {
-	BFS, DFS, QUERY;
+	BFS, DFS, QUERY,
+	/**
+	 * Returns the same elements as {@link #DFS}, but searches the tree with several threads, each reading it
+	 * through a clone of the resource resolver. As the clones don't see the pending changes of the resolver,
+	 * {@link #DFS} is used instead while the resolver has pending changes.
+	 */
+	PARALLEL;
 }
@@ -0,0 +1,59 @@
+/*-
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.query.api.internal;
+
+import aQute.bnd.annotation.ConsumerType;
+
+/**
+ * A tree provider whose elements are bound to a session which must not be used by more than one thread at a time.
+ * The parallel search strategy reads the tree through a separate session in each worker thread.
+ */
+@ConsumerType
+public interface SessionTreeProvider<T> extends TreeProvider<T> {
+
+	/**
+	 * Open a new session on the same tree. May return this provider if its elements can be read by several
+	 * threads at the same time.
+	 * 
+	 * @return provider reading the tree through the new session
+	 */
+	SessionTreeProvider<T> openSession();
+
+	/**
+	 * Check whether the session has changes which are not visible to the sessions opened with
+	 * {@link #openSession()}, in which case the tree is searched through this session only.
+	 * 
+	 * @return true if the session has pending changes
+	 */
+	boolean hasPendingChanges();
+
+	/**
+	 * Return the element as read through the session of this provider. The element may belong to a closed
+	 * session, only its identity is used.
+	 * 
+	 * @param element Element read through another session
+	 * @return the element or {@code null} if it is not visible in this session
+	 */
+	T adapt(T element);
+
+	/**
+	 * Close a session opened with {@link #openSession()}.
+	 */
+	void closeSession();
+}
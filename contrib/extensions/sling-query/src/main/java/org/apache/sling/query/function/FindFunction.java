@@ -23,12 +23,15 @@ import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
+import org.apache.sling.query.api.Predicate;
 import org.apache.sling.query.api.SearchStrategy;
 import org.apache.sling.query.api.internal.ElementToIteratorFunction;
+import org.apache.sling.query.api.internal.SessionTreeProvider;
 import org.apache.sling.query.api.internal.TreeProvider;
 import org.apache.sling.query.iterator.WarningIterator;
 import org.apache.sling.query.iterator.tree.BfsTreeIterator;
 import org.apache.sling.query.iterator.tree.DfsTreeIterator;
+import org.apache.sling.query.iterator.tree.ParallelTreeIterator;
 import org.apache.sling.query.selector.parser.Selector;
 import org.apache.sling.query.selector.parser.SelectorParser;
 import org.apache.sling.query.selector.parser.SelectorSegment;
@@ -41,18 +44,31 @@ public class FindFunction<T> implements ElementToIteratorFunction<T> {
 
 	private final SearchStrategy strategy;
 
+	private final Predicate<T> preFilteringPredicate;
+
 	public FindFunction(SearchStrategy searchStrategy, TreeProvider<T> provider,
 			SelectorSegment preFilteringSelector) {
 		this.strategy = searchStrategy;
 		this.provider = provider;
 		this.preFilteringSelector = Arrays.asList(preFilteringSelector);
+		this.preFilteringPredicate = null;
 	}
 
 	public FindFunction(SearchStrategy searchStrategy, TreeProvider<T> provider, String preFilteringSelector) {
+		this(searchStrategy, provider, preFilteringSelector, null);
+	}
+
+	/**
+	 * The pre-filtering predicate is only used by the {@link SearchStrategy#PARALLEL} strategy, to evaluate it
+	 * in the worker threads. The results still have to be filtered.
+	 */
+	public FindFunction(SearchStrategy searchStrategy, TreeProvider<T> provider, String preFilteringSelector,
+			Predicate<T> preFilteringPredicate) {
 		this.strategy = searchStrategy;
 		this.provider = provider;
 		List<Selector> selectors = SelectorParser.parse(preFilteringSelector);
 		this.preFilteringSelector = SelectorParser.getFirstSegmentFromEachSelector(selectors);
+		this.preFilteringPredicate = preFilteringPredicate;
 	}
 
 	@Override
@@ -65,6 +81,16 @@ public class FindFunction<T> implements ElementToIteratorFunction<T> {
 			case QUERY:
 				iterator = provider.query(preFilteringSelector, input);
 				break;
+			case PARALLEL:
+				if (provider instanceof SessionTreeProvider
+						&& ((SessionTreeProvider<T>) provider).hasPendingChanges()) {
+					// the worker sessions wouldn't see the pending changes
+					iterator = new DfsTreeIterator<T>(input, provider);
+				} else {
+					iterator = new ParallelTreeIterator<T>(input, provider, preFilteringSelector,
+							preFilteringPredicate);
+				}
+				break;
 			case DFS:
 			default:
 				iterator = new DfsTreeIterator<T>(input, provider);
@@ -0,0 +1,362 @@
+/*-
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.query.iterator.tree;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.sling.query.api.Predicate;
+import org.apache.sling.query.api.internal.SessionTreeProvider;
+import org.apache.sling.query.api.internal.TreeProvider;
+import org.apache.sling.query.iterator.AbstractIterator;
+import org.apache.sling.query.selector.parser.SelectorSegment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Returns the descendants of the root matching the filter in the same order as the {@link DfsTreeIterator}, but
+ * searches the tree with a fork/join pool of one thread per core.
+ * <p>
+ * The subtrees are searched by tasks which split off a task per child as long as the pool runs out of work. The
+ * matching elements are collected by the tasks and the iterator waits for a task only once it reaches its
+ * subtree, so the first elements are returned before the search is done. The search runs ahead of the iterator
+ * until about {@value #LOOK_AHEAD} matches are collected, the subtrees of the remaining children are then
+ * deferred until the iterator reaches them or has read half of the collected matches. The search is cancelled
+ * once the iterator is exhausted or no longer referenced.
+ * <p>
+ * Elements of a {@link SessionTreeProvider} are read through a new session in each worker thread and adapted to
+ * the session of the provider when returned. The sessions are closed whenever no task is running. Predicates
+ * passed to the iterator are evaluated by the workers and need to be thread-safe.
+ */
+public class ParallelTreeIterator<T> extends AbstractIterator<T> {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ParallelTreeIterator.class);
+
+	/**
+	 * Tasks are split as long as less than this number of tasks are queued by the worker.
+	 */
+	private static final int SURPLUS_THRESHOLD = 3;
+
+	/**
+	 * Number of matches the search collects ahead of the iterator.
+	 */
+	static final int LOOK_AHEAD = 1024;
+
+	private final Search<T> search;
+
+	private final Deque<Iterator<Object>> results = new LinkedList<Iterator<Object>>();
+
+	/**
+	 * @param root Root of the searched tree
+	 * @param provider Tree provider
+	 * @param segments Filter of the elements, an element matching any of the segments is returned. All elements
+	 * are matched if empty
+	 * @param predicate Additional filter of the elements, may be {@code null}
+	 */
+	public ParallelTreeIterator(T root, TreeProvider<T> provider, List<SelectorSegment> segments,
+			Predicate<T> predicate) {
+		search = new Search<T>(this, provider, segments, predicate);
+		Search<T>.SearchTask rootTask = search.newTask(root, provider);
+		search.start(rootTask);
+		results.add(Collections.<Object> singletonList(rootTask).iterator());
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	protected T getElement() {
+		while (!results.isEmpty()) {
+			Iterator<Object> iterator = results.peekLast();
+			if (!iterator.hasNext()) {
+				results.pollLast();
+				continue;
+			}
+			Object next = iterator.next();
+			if (next instanceof Search.SearchTask) {
+				results.add(search.await((Search<T>.SearchTask) next).iterator());
+			} else {
+				search.consumed();
+				T element = search.adapt((T) next);
+				if (element != null) {
+					return element;
+				}
+			}
+		}
+		search.cancel();
+		return null;
+	}
+
+	/**
+	 * State of the search shared by the tasks. It only references the iterator weakly, so the search can be
+	 * cancelled when the iterator is dropped.
+	 */
+	private static class Search<T> {
+
+		private final WeakReference<ParallelTreeIterator<T>> iterator;
+
+		private final TreeProvider<T> provider;
+
+		private final List<SelectorSegment> segments;
+
+		private final Predicate<T> predicate;
+
+		private final Map<Thread, Worker> workers = new HashMap<Thread, Worker>();
+
+		private final Deque<SearchTask> deferredTasks = new ArrayDeque<SearchTask>();
+
+		private int runningTasks;
+
+		private final AtomicInteger collectedMatches = new AtomicInteger();
+
+		private volatile boolean cancelled;
+
+		Search(ParallelTreeIterator<T> iterator, TreeProvider<T> provider, List<SelectorSegment> segments,
+				Predicate<T> predicate) {
+			this.iterator = new WeakReference<ParallelTreeIterator<T>>(iterator);
+			this.provider = provider;
+			this.segments = segments;
+			this.predicate = predicate;
+		}
+
+		SearchTask newTask(T parent, TreeProvider<T> parentSession) {
+			return new SearchTask(parent, parentSession);
+		}
+
+		synchronized void start(SearchTask task) {
+			if (task.started || cancelled) {
+				return;
+			}
+			task.started = true;
+			runningTasks++;
+			ForkJoinPool pool = SearchPool.get();
+			Thread thread = Thread.currentThread();
+			if (thread instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) thread).getPool() == pool) {
+				task.fork();
+			} else {
+				pool.execute(task);
+			}
+		}
+
+		List<Object> await(SearchTask task) {
+			task.awaited = true;
+			start(task);
+			task.join();
+			return task.matches;
+		}
+
+		void consumed() {
+			if (collectedMatches.decrementAndGet() < LOOK_AHEAD / 2) {
+				resumeDeferredTasks();
+			}
+		}
+
+		private synchronized void resumeDeferredTasks() {
+			SearchTask task;
+			while ((task = deferredTasks.poll()) != null) {
+				start(task);
+			}
+		}
+
+		private synchronized void defer(SearchTask task) {
+			deferredTasks.add(task);
+		}
+
+		synchronized void cancel() {
+			cancelled = true;
+			deferredTasks.clear();
+		}
+
+		boolean isStopped() {
+			if (!cancelled && iterator.get() == null) {
+				LOG.debug("Iterator dropped, cancelling the search");
+				cancel();
+			}
+			return cancelled;
+		}
+
+		T adapt(T element) {
+			if (provider instanceof SessionTreeProvider) {
+				return ((SessionTreeProvider<T>) provider).adapt(element);
+			}
+			return element;
+		}
+
+		private Worker getWorker() {
+			Thread thread = Thread.currentThread();
+			synchronized (this) {
+				Worker worker = workers.get(thread);
+				if (worker != null) {
+					return worker;
+				}
+			}
+			Worker worker = new Worker(openSession());
+			synchronized (this) {
+				workers.put(thread, worker);
+			}
+			return worker;
+		}
+
+		private TreeProvider<T> openSession() {
+			if (provider instanceof SessionTreeProvider) {
+				return ((SessionTreeProvider<T>) provider).openSession();
+			}
+			return provider;
+		}
+
+		private void taskDone() {
+			List<Worker> idleWorkers;
+			synchronized (this) {
+				if (--runningTasks > 0) {
+					return;
+				}
+				idleWorkers = new ArrayList<Worker>(workers.values());
+				workers.clear();
+			}
+			for (Worker worker : idleWorkers) {
+				if (worker.session != provider) {
+					try {
+						((SessionTreeProvider<T>) worker.session).closeSession();
+					} catch (RuntimeException e) {
+						LOG.warn("Can't close session", e);
+					}
+				}
+			}
+		}
+
+		/**
+		 * The session and filters used by a worker thread.
+		 */
+		private class Worker {
+
+			private final TreeProvider<T> session;
+
+			private final List<Predicate<T>> segmentPredicates = new ArrayList<Predicate<T>>();
+
+			Worker(TreeProvider<T> session) {
+				this.session = session;
+				for (SelectorSegment segment : segments) {
+					segmentPredicates.add(session.getPredicate(segment.getType(), segment.getName(),
+							segment.getAttributes()));
+				}
+			}
+
+			boolean accepts(T element) {
+				if (predicate != null && !predicate.accepts(element)) {
+					return false;
+				}
+				if (segmentPredicates.isEmpty()) {
+					return true;
+				}
+				for (Predicate<T> segmentPredicate : segmentPredicates) {
+					if (segmentPredicate.accepts(element)) {
+						return true;
+					}
+				}
+				return false;
+			}
+		}
+
+		/**
+		 * Searches the descendants of an element. The matches are collected in DFS order, together with the tasks
+		 * split off or deferred for the subtrees of children.
+		 */
+		class SearchTask extends RecursiveAction {
+
+			private static final long serialVersionUID = 1L;
+
+			private final T parent;
+
+			private final TreeProvider<T> parentSession;
+
+			private final List<Object> matches = new ArrayList<Object>();
+
+			private boolean started;
+
+			private volatile boolean awaited;
+
+			SearchTask(T parent, TreeProvider<T> parentSession) {
+				this.parent = parent;
+				this.parentSession = parentSession;
+			}
+
+			@Override
+			protected void compute() {
+				try {
+					if (isStopped()) {
+						return;
+					}
+					Worker worker = getWorker();
+					T element = parent;
+					if (worker.session != parentSession) {
+						element = ((SessionTreeProvider<T>) worker.session).adapt(parent);
+					}
+					if (element != null) {
+						search(worker, element);
+					}
+				} finally {
+					taskDone();
+				}
+			}
+
+			/**
+			 * A task the iterator waits for only counts its own matches, so the iterator gets the next
+			 * {@value ParallelTreeIterator#LOOK_AHEAD} matches even if the search ran ahead elsewhere.
+			 */
+			private boolean isFull() {
+				if (awaited) {
+					return matches.size() >= LOOK_AHEAD;
+				}
+				return collectedMatches.get() >= LOOK_AHEAD;
+			}
+
+			private void search(Worker worker, T element) {
+				Iterator<T> children = worker.session.listChildren(element);
+				while (children.hasNext() && !isStopped()) {
+					T child = children.next();
+					if (worker.accepts(child)) {
+						matches.add(child);
+						collectedMatches.incrementAndGet();
+					}
+					if (isFull()) {
+						SearchTask task = new SearchTask(child, worker.session);
+						defer(task);
+						matches.add(task);
+					} else if (getSurplusQueuedTaskCount() < SURPLUS_THRESHOLD) {
+						SearchTask task = new SearchTask(child, worker.session);
+						start(task);
+						matches.add(task);
+					} else {
+						search(worker, child);
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,70 @@
+/*-
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.query.iterator.tree;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holds the fork/join pool of the {@link ParallelTreeIterator}. The pool is created on first use and shut down by
+ * the {@link Activator} when the bundle is stopped.
+ */
+final class SearchPool {
+
+	private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+	private static ForkJoinPool pool;
+
+	private static boolean closed;
+
+	private SearchPool() {
+	}
+
+	static synchronized ForkJoinPool get() {
+		if (closed) {
+			throw new IllegalStateException("The Sling Query bundle is stopped");
+		}
+		if (pool == null) {
+			pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+					new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+						@Override
+						public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+							ForkJoinWorkerThread thread = new ForkJoinWorkerThread(pool) {
+							};
+							thread.setName("sling-query-" + THREAD_COUNT.incrementAndGet());
+							return thread;
+						}
+					}, null, false);
+		}
+		return pool;
+	}
+
+	static synchronized void open() {
+		closed = false;
+	}
+
+	static synchronized void close() {
+		closed = true;
+		if (pool != null) {
+			pool.shutdownNow();
+			pool = null;
+		}
+	}
+}
@@ -22,21 +22,32 @@ package org.apache.sling.query.resource;
 import java.util.Iterator;
 import java.util.List;
 
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.apache.sling.api.resource.LoginException;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.query.api.Predicate;
-import org.apache.sling.query.api.internal.TreeProvider;
+import org.apache.sling.query.api.internal.SessionTreeProvider;
 import org.apache.sling.query.resource.jcr.JcrQueryIterator;
 import org.apache.sling.query.resource.jcr.JcrTypeResolver;
 import org.apache.sling.query.resource.jcr.SessionJcrTypeResolver;
 import org.apache.sling.query.selector.parser.Attribute;
 import org.apache.sling.query.selector.parser.SelectorSegment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class ResourceTreeProvider implements SessionTreeProvider<Resource> {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ResourceTreeProvider.class);
 
-public class ResourceTreeProvider implements TreeProvider<Resource> {
+	private final ResourceResolver resolver;
 
 	private final JcrTypeResolver typeResolver;
 
 	public ResourceTreeProvider(ResourceResolver resolver) {
+		this.resolver = resolver;
 		this.typeResolver = new SessionJcrTypeResolver(resolver);
 	}
 
@@ -84,4 +95,44 @@ public class ResourceTreeProvider implements TreeProvider<Resource> {
 		return testedElement.getPath().startsWith(root.getPath());
 	}
 
+	@Override
+	public SessionTreeProvider<Resource> openSession() {
+		if (resolver == null) {
+			return this;
+		}
+		try {
+			return new ResourceTreeProvider(resolver.clone(null));
+		} catch (LoginException e) {
+			throw new IllegalStateException("Can't clone the resource resolver", e);
+		}
+	}
+
+	@Override
+	public boolean hasPendingChanges() {
+		Session session = resolver == null ? null : resolver.adaptTo(Session.class);
+		if (session == null) {
+			return false;
+		}
+		try {
+			return session.hasPendingChanges();
+		} catch (RepositoryException e) {
+			LOG.error("Can't check pending changes", e);
+			return true;
+		}
+	}
+
+	@Override
+	public Resource adapt(Resource element) {
+		if (resolver == null || element.getResourceResolver() == resolver) {
+			return element;
+		}
+		return resolver.getResource(element.getPath());
+	}
+
+	@Override
+	public void closeSession() {
+		if (resolver != null) {
+			resolver.close();
+		}
+	}
 }
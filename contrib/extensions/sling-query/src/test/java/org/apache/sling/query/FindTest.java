@@ -24,8 +24,14 @@ import static org.apache.sling.query.TestUtils.assertEmptyIterator;
 import static org.apache.sling.query.TestUtils.assertResourceListEquals;
 import static org.apache.sling.query.TestUtils.assertResourceSetEquals;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.apache.sling.api.resource.Resource;
+import org.apache.sling.query.api.Predicate;
 import org.apache.sling.query.api.SearchStrategy;
+import org.apache.sling.query.mock.ResourceMock;
+import org.junit.Assert;
 import org.junit.Test;
 
 public class FindTest {
@@ -84,4 +90,58 @@ public class FindTest {
 		assertResourceListEquals(query.iterator(), "jcr:content", "configParsys", "tab", "items",
 				"localizedtext", "lang", "text", "tab_0", "items", "text_0", "text");
 	}
+
+	@Test
+	public void testParallelFind() {
+		SlingQuery query = $(tree.getChild("application/configuration/labels")).searchStrategy(
+				SearchStrategy.PARALLEL).find("");
+		assertResourceListEquals(query.iterator(), "jcr:content", "configParsys", "tab", "items",
+				"localizedtext", "lang", "text", "tab_0", "items", "text_0", "text");
+	}
+
+	@Test
+	public void testParallelFindWithFilter() {
+		SlingQuery query = $(tree.getChild("application/configuration/labels")).searchStrategy(
+				SearchStrategy.PARALLEL).find("cq-commons/config/components/text");
+		assertResourceListEquals(query.iterator(), "text", "text");
+	}
+
+	@Test
+	public void testParallelFindWithPredicate() {
+		SlingQuery query = $(tree.getChild("application/configuration/labels")).searchStrategy(
+				SearchStrategy.PARALLEL).find(new Predicate<Resource>() {
+			@Override
+			public boolean accepts(Resource resource) {
+				return resource.getName().startsWith("text");
+			}
+		});
+		assertResourceListEquals(query.iterator(), "text", "text_0", "text");
+	}
+
+	@Test
+	public void testParallelFindKeepsDfsOrder() {
+		Resource root = createTree(null, "root", 6, 5);
+		List<String> dfs = getPaths($(root).searchStrategy(SearchStrategy.DFS).find());
+		List<String> parallel = getPaths($(root).searchStrategy(SearchStrategy.PARALLEL).find());
+		Assert.assertEquals(9330, dfs.size());
+		Assert.assertEquals(dfs, parallel);
+	}
+
+	private static Resource createTree(Resource parent, String name, int children, int depth) {
+		ResourceMock resource = new ResourceMock(parent, name);
+		if (depth > 0) {
+			for (int i = 0; i < children; i++) {
+				resource.addChild(createTree(resource, "child" + i, children, depth - 1));
+			}
+		}
+		return resource;
+	}
+
+	private static List<String> getPaths(SlingQuery query) {
+		List<String> paths = new ArrayList<String>();
+		for (Resource resource : query) {
+			paths.add(resource.getPath());
+		}
+		return paths;
+	}
 }
@@ -0,0 +1,218 @@
+/*-
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.query.iterator.tree;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.sling.query.api.Predicate;
+import org.apache.sling.query.api.SearchStrategy;
+import org.apache.sling.query.api.internal.SessionTreeProvider;
+import org.apache.sling.query.function.FindFunction;
+import org.apache.sling.query.selector.parser.Attribute;
+import org.apache.sling.query.selector.parser.SelectorSegment;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ParallelTreeIteratorTest {
+
+	private static final int CHILDREN = 100;
+
+	private static final int GRANDCHILDREN = 1000;
+
+	private final Counters counters = new Counters();
+
+	@Test
+	public void testSearchStopsAheadOfIterator() throws InterruptedException {
+		Iterator<String> iterator = new ParallelTreeIterator<String>("", new PathTreeProvider(counters),
+				Collections.<SelectorSegment> emptyList(), null);
+		Assert.assertEquals("/0", iterator.next());
+		awaitIdle();
+		Assert.assertTrue(counters.listed.get() < CHILDREN * GRANDCHILDREN / 2);
+	}
+
+	@Test
+	public void testSearchResumesWhenIteratorCatchesUp() {
+		Iterator<String> iterator = new ParallelTreeIterator<String>("", new PathTreeProvider(counters),
+				Collections.<SelectorSegment> emptyList(), null);
+		List<String> paths = new ArrayList<String>();
+		while (iterator.hasNext()) {
+			paths.add(iterator.next());
+		}
+		List<String> expected = new ArrayList<String>();
+		Iterator<String> dfs = new DfsTreeIterator<String>("", new PathTreeProvider(new Counters()));
+		while (dfs.hasNext()) {
+			expected.add(dfs.next());
+		}
+		Assert.assertEquals(CHILDREN * (GRANDCHILDREN + 1), paths.size());
+		Assert.assertEquals(expected, paths);
+	}
+
+	@Test
+	public void testDroppedIteratorCancelsSearch() throws InterruptedException {
+		counters.rootListed = new CountDownLatch(1);
+		Iterator<String> iterator = new ParallelTreeIterator<String>("", new PathTreeProvider(counters),
+				Collections.<SelectorSegment> emptyList(), null);
+		while (counters.listed.get() == 0) {
+			Thread.sleep(10);
+		}
+		WeakReference<Iterator<String>> reference = new WeakReference<Iterator<String>>(iterator);
+		iterator = null;
+		while (reference.get() != null) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		counters.rootListed.countDown();
+		awaitIdle();
+		Assert.assertEquals(1, counters.listed.get());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testStoppedBundle() {
+		SearchPool.close();
+		try {
+			new ParallelTreeIterator<String>("", new PathTreeProvider(counters),
+					Collections.<SelectorSegment> emptyList(), null);
+		} finally {
+			SearchPool.open();
+		}
+	}
+
+	@Test
+	public void testPendingChangesAreSearchedInSession() {
+		counters.pendingChanges = true;
+		Iterator<String> iterator = new FindFunction<String>(SearchStrategy.PARALLEL,
+				new PathTreeProvider(counters), "").apply("");
+		int count = 0;
+		while (iterator.hasNext()) {
+			iterator.next();
+			count++;
+		}
+		Assert.assertEquals(CHILDREN * (GRANDCHILDREN + 1), count);
+		Assert.assertEquals(0, counters.opened.get());
+	}
+
+	private void awaitIdle() throws InterruptedException {
+		long timeout = System.currentTimeMillis() + 10000;
+		while (counters.opened.get() == 0 || counters.opened.get() != counters.closed.get()) {
+			Assert.assertTrue("Search is still running", System.currentTimeMillis() < timeout);
+			Thread.sleep(10);
+		}
+	}
+
+	private static class Counters {
+
+		private final AtomicInteger listed = new AtomicInteger();
+
+		private final AtomicInteger opened = new AtomicInteger();
+
+		private final AtomicInteger closed = new AtomicInteger();
+
+		private volatile CountDownLatch rootListed;
+
+		private volatile boolean pendingChanges;
+	}
+
+	/**
+	 * Tree of paths with {@link #CHILDREN} children below the root, each with {@link #GRANDCHILDREN} children.
+	 */
+	private static class PathTreeProvider implements SessionTreeProvider<String> {
+
+		private final Counters counters;
+
+		PathTreeProvider(Counters counters) {
+			this.counters = counters;
+		}
+
+		@Override
+		public Iterator<String> listChildren(String parent) {
+			counters.listed.incrementAndGet();
+			if (parent.isEmpty() && counters.rootListed != null) {
+				try {
+					counters.rootListed.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			int depth = parent.isEmpty() ? 0 : parent.split("/").length - 1;
+			int count = depth == 0 ? CHILDREN : depth == 1 ? GRANDCHILDREN : 0;
+			List<String> children = new ArrayList<String>(count);
+			for (int i = 0; i < count; i++) {
+				children.add(parent + "/" + i);
+			}
+			return children.iterator();
+		}
+
+		@Override
+		public String getParent(String element) {
+			return element.isEmpty() ? null : element.substring(0, element.lastIndexOf('/'));
+		}
+
+		@Override
+		public String getName(String element) {
+			return element.substring(element.lastIndexOf('/') + 1);
+		}
+
+		@Override
+		public Predicate<String> getPredicate(String type, String name, List<Attribute> attributes) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Iterator<String> query(List<SelectorSegment> segment, String resource) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public boolean sameElement(String o1, String o2) {
+			return o1.equals(o2);
+		}
+
+		@Override
+		public boolean isDescendant(String root, String testedElement) {
+			return testedElement.startsWith(root + "/");
+		}
+
+		@Override
+		public SessionTreeProvider<String> openSession() {
+			counters.opened.incrementAndGet();
+			return new PathTreeProvider(counters);
+		}
+
+		@Override
+		public boolean hasPendingChanges() {
+			return counters.pendingChanges;
+		}
+
+		@Override
+		public String adapt(String element) {
+			return element;
+		}
+
+		@Override
+		public void closeSession() {
+			counters.closed.incrementAndGet();
+		}
+	}
+}
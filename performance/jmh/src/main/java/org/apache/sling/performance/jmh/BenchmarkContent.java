@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.performance.jmh;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.sling.api.resource.ResourceResolver;
+
+/**
+ * The content used by the benchmarks.
+ * <p>
+ * Each site <code>/content/site&lt;n&gt;</code> has {@link #PAGES} pages,
+ * {@link #ALIAS_PAGE} has an alias and {@link #VANITY_PAGE} a vanity path.
+ * Each site is mapped to its own host name in <code>/etc/map</code>.
+ */
+public abstract class BenchmarkContent {
+
+    /** The number of pages per site */
+    public static final int PAGES = 10;
+
+    /** The index of the page with an alias */
+    public static final int ALIAS_PAGE = 1;
+
+    /** The index of the page with a vanity path */
+    public static final int VANITY_PAGE = 2;
+
+    public static final String MAP_ROOT = "/etc/map";
+
+    public static String getSitePath(final int site) {
+        return "/content/site" + site;
+    }
+
+    public static String getPagePath(final int site, final int page) {
+        return getSitePath(site) + "/page" + page;
+    }
+
+    public static String getAlias(final int page) {
+        return "alias" + page;
+    }
+
+    public static String getVanityPath(final int site, final int page) {
+        return "/vanity/site" + site + "/page" + page;
+    }
+
+    public static String getHost(final int site) {
+        return "site" + site + ".example.com";
+    }
+
+    /**
+     * Add the sites and their pages.
+     * @param provider The provider
+     * @param sites The number of sites
+     */
+    public static void addSites(final InMemoryResourceProvider provider, final int sites) {
+        for (int site = 0; site < sites; site++) {
+            provider.add(getSitePath(site), properties(ResourceResolver.PROPERTY_RESOURCE_TYPE, "bench/site"));
+            for (int page = 0; page < PAGES; page++) {
+                final Map<String, Object> props = properties(ResourceResolver.PROPERTY_RESOURCE_TYPE, "bench/page");
+                if (page == ALIAS_PAGE) {
+                    props.put("sling:alias", getAlias(page));
+                } else if (page == VANITY_PAGE) {
+                    props.put("sling:vanityPath", getVanityPath(site, page));
+                }
+                provider.add(getPagePath(site, page), props);
+            }
+        }
+    }
+
+    /**
+     * Add an <code>/etc/map</code> entry for the host of each site, and some
+     * regular expression based entries which have to be checked for every
+     * request.
+     * @param provider The provider
+     * @param sites The number of sites
+     */
+    public static void addMappings(final InMemoryResourceProvider provider, final int sites) {
+        provider.add(MAP_ROOT + "/http/localhost.80", properties("sling:internalRedirect", "/content"));
+        provider.add(MAP_ROOT + "/http/any_redirect", properties("sling:match", "redirect\\.[^/]+\\.example\\.com\\.80",
+                "sling:redirect", "http://www.example.com/"));
+        provider.add(MAP_ROOT + "/http/any_static", properties("sling:match", "static\\d+\\.example\\.com\\.80",
+                "sling:internalRedirect", "/content/static"));
+        for (int site = 0; site < sites; site++) {
+            provider.add(MAP_ROOT + "/http/" + getHost(site) + ".80", properties("sling:internalRedirect", getSitePath(site)));
+        }
+    }
+
+    private static Map<String, Object> properties(final Object... keyValues) {
+        final Map<String, Object> props = new HashMap<String, Object>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            props.put((String) keyValues[i], keyValues[i + 1]);
+        }
+        return props;
+    }
+}
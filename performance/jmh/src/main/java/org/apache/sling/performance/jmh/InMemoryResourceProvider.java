@@ -0,0 +1,216 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.performance.jmh;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.servlet.Servlet;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.spi.resource.provider.QueryLanguageProvider;
+import org.apache.sling.spi.resource.provider.ResolveContext;
+import org.apache.sling.spi.resource.provider.ResourceContext;
+import org.apache.sling.spi.resource.provider.ResourceProvider;
+
+/**
+ * A read only resource provider keeping the whole tree in memory.
+ * <p>
+ * The tree is built with {@link #add(String, Map)} and
+ * {@link #addScript(String, Servlet)} before the provider is registered, it
+ * must not be changed while a benchmark is running.
+ * <p>
+ * The provider supports the "sql" queries issued by the map entries for
+ * aliases and vanity paths: a query selects all resources having the
+ * property of its first <code>WHERE</code> condition, restricted to the
+ * given values if the condition compares with literals.
+ */
+public class InMemoryResourceProvider extends ResourceProvider<Object> {
+
+    private static final String QUERY_LANGUAGE = "sql";
+
+    private static final Pattern CONDITION = Pattern.compile("WHERE ([^ =]+) ?(IS NOT NULL|=)");
+
+    private static final Pattern LITERAL = Pattern.compile("= ?'((?:[^']|'')*)'");
+
+    private final Map<String, Node> nodes = new HashMap<String, Node>();
+
+    private final QueryLanguageProvider<Object> queryProvider = new QueryLanguageProvider<Object>() {
+
+        @Override
+        public String[] getSupportedLanguages(final ResolveContext<Object> ctx) {
+            return new String[] {QUERY_LANGUAGE};
+        }
+
+        @Override
+        public Iterator<Resource> findResources(final ResolveContext<Object> ctx, final String query, final String language) {
+            final Matcher condition = CONDITION.matcher(query);
+            if (!QUERY_LANGUAGE.equals(language) || !condition.find()) {
+                return Collections.<Resource> emptyList().iterator();
+            }
+            final String name = condition.group(1);
+            List<String> values = null;
+            if ("=".equals(condition.group(2))) {
+                values = new ArrayList<String>();
+                final Matcher literal = LITERAL.matcher(query);
+                while (literal.find()) {
+                    values.add(literal.group(1).replace("''", "'"));
+                }
+            }
+            final List<Resource> result = new ArrayList<Resource>();
+            for (final Node node : nodes.values()) {
+                final Object value = node.properties.get(name);
+                if (value != null && (values == null || matches(value, values))) {
+                    result.add(new InMemoryResource(ctx.getResourceResolver(), node.path, node.properties, node.servlet));
+                }
+            }
+            return result.iterator();
+        }
+
+        @Override
+        public Iterator<ValueMap> queryResources(final ResolveContext<Object> ctx, final String query, final String language) {
+            return Collections.<ValueMap> emptyList().iterator();
+        }
+    };
+
+    public InMemoryResourceProvider() {
+        nodes.put("/", new Node("/", Collections.<String, Object> emptyMap(), null));
+    }
+
+    /**
+     * Add a resource, missing parents are created as resources without
+     * properties. If the resource already exists, its properties are replaced.
+     * @param path The absolute path
+     * @param properties The properties
+     */
+    public void add(final String path, final Map<String, Object> properties) {
+        addNode(path, properties, null);
+    }
+
+    /**
+     * Add a script resource which adapts to the given servlet.
+     * @param path The absolute path
+     * @param servlet The servlet
+     */
+    public void addScript(final String path, final Servlet servlet) {
+        addNode(path, Collections.<String, Object> emptyMap(), servlet);
+    }
+
+    /**
+     * @return The number of resources in the tree
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    @Override
+    public Resource getResource(final ResolveContext<Object> ctx, final String path, final ResourceContext resourceContext,
+            final Resource parent) {
+        final Node node = nodes.get(path);
+        if (node == null) {
+            return null;
+        }
+        return new InMemoryResource(ctx.getResourceResolver(), node.path, node.properties, node.servlet);
+    }
+
+    @Override
+    public Iterator<Resource> listChildren(final ResolveContext<Object> ctx, final Resource parent) {
+        final Node node = nodes.get(parent.getPath());
+        if (node == null || node.children.isEmpty()) {
+            return null;
+        }
+        final Iterator<Node> children = node.children.values().iterator();
+        return new Iterator<Resource>() {
+
+            @Override
+            public boolean hasNext() {
+                return children.hasNext();
+            }
+
+            @Override
+            public Resource next() {
+                final Node child = children.next();
+                return new InMemoryResource(ctx.getResourceResolver(), child.path, child.properties, child.servlet);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("remove");
+            }
+        };
+    }
+
+    @Override
+    public QueryLanguageProvider<Object> getQueryLanguageProvider() {
+        return queryProvider;
+    }
+
+    private void addNode(final String path, final Map<String, Object> properties, final Servlet servlet) {
+        final Node node = new Node(path, new HashMap<String, Object>(properties), servlet);
+        final Node old = nodes.put(path, node);
+        if (old != null) {
+            node.children.putAll(old.children);
+        }
+        final String parentPath = ResourceUtil.getParent(path);
+        Node parent = nodes.get(parentPath);
+        if (parent == null) {
+            addNode(parentPath, Collections.<String, Object> emptyMap(), null);
+            parent = nodes.get(parentPath);
+        }
+        parent.children.put(ResourceUtil.getName(path), node);
+    }
+
+    private static boolean matches(final Object value, final List<String> values) {
+        if (value instanceof String[]) {
+            for (final String v : (String[]) value) {
+                if (values.contains(v)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return values.contains(value.toString());
+    }
+
+    private static final class Node {
+
+        final String path;
+
+        final Map<String, Object> properties;
+
+        final Servlet servlet;
+
+        final Map<String, Node> children = new LinkedHashMap<String, Node>();
+
+        Node(final String path, final Map<String, Object> properties, final Servlet servlet) {
+            this.path = path;
+            this.properties = properties;
+            this.servlet = servlet;
+        }
+    }
+}
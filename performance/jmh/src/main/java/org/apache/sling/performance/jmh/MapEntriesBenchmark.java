@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.performance.jmh;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.resourceresolver.impl.mapping.MapEntries;
+import org.apache.sling.resourceresolver.impl.mapping.MapEntry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the <code>MapEntries</code> with a large /etc/map tree:
+ * the initial loading of the map entries, aliases and vanity paths, and the
+ * lookup of the entries used to resolve and to map a path.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MapEntriesBenchmark {
+
+    /** The number of sites, each site has its own /etc/map entry. */
+    @Param({"10", "1000", "10000"})
+    public int sites;
+
+    private ResourceResolverFixture fixture;
+
+    private MapEntries mapEntries;
+
+    private String[] requestPaths;
+
+    private String[] pagePaths;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        final InMemoryResourceProvider provider = new InMemoryResourceProvider();
+        BenchmarkContent.addSites(provider, sites);
+        BenchmarkContent.addMappings(provider, sites);
+        fixture = new ResourceResolverFixture(provider, Collections.<String, Object> emptyMap());
+        mapEntries = new MapEntries(fixture.getCommonFactory(), fixture.getBundleContext(), null);
+
+        requestPaths = new String[sites];
+        pagePaths = new String[sites];
+        for (int site = 0; site < sites; site++) {
+            requestPaths[site] = "http/" + BenchmarkContent.getHost(site) + ".80/page3.html";
+            pagePaths[site] = BenchmarkContent.getPagePath(site, 3) + ".html";
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mapEntries.dispose();
+        fixture.dispose();
+    }
+
+    private int next() {
+        if (++next >= sites) {
+            next = 0;
+        }
+        return next;
+    }
+
+    /**
+     * Load all map entries, aliases and vanity paths, as done on startup
+     * and on each change of /etc/map.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public MapEntries load() throws Exception {
+        final MapEntries entries = new MapEntries(fixture.getCommonFactory(), fixture.getBundleContext(), null);
+        entries.dispose();
+        return entries;
+    }
+
+    /**
+     * Find the first entry resolving the request path, as done by the
+     * resource resolver for each resolve call.
+     */
+    @Benchmark
+    public String[] resolveEntry() {
+        final String requestPath = requestPaths[next()];
+        final Iterator<MapEntry> entries = mapEntries.getResolveMapsIterator(requestPath);
+        while (entries.hasNext()) {
+            final String[] result = entries.next().replace(requestPath);
+            if (result != null) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find the first entry mapping the path, as done by the resource
+     * resolver for each map call.
+     */
+    @Benchmark
+    public String[] mapEntry() {
+        final String path = pagePaths[next()];
+        final Iterator<MapEntry> entries = mapEntries.getMapMapsIterator(path);
+        while (entries.hasNext()) {
+            final String[] result = entries.next().replace(path);
+            if (result != null) {
+                return result;
+            }
+        }
+        return null;
+    }
+}
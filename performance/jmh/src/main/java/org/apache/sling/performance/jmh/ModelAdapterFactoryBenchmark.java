@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.performance.jmh;
+
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.models.annotations.Model;
+import org.apache.sling.models.annotations.Optional;
+import org.apache.sling.models.annotations.injectorspecific.ValueMapValue;
+import org.apache.sling.models.impl.ModelAdapterFactory;
+import org.apache.sling.models.impl.injectors.BindingsInjector;
+import org.apache.sling.models.impl.injectors.ChildResourceInjector;
+import org.apache.sling.models.impl.injectors.RequestAttributeInjector;
+import org.apache.sling.models.impl.injectors.ResourcePathInjector;
+import org.apache.sling.models.impl.injectors.SelfInjector;
+import org.apache.sling.models.impl.injectors.SlingObjectInjector;
+import org.apache.sling.models.impl.injectors.ValueMapInjector;
+import org.apache.sling.models.spi.Injector;
+import org.apache.sling.models.spi.injectorspecific.InjectAnnotationProcessorFactory;
+import org.apache.sling.models.spi.injectorspecific.InjectAnnotationProcessorFactory2;
+import org.apache.sling.models.spi.injectorspecific.StaticInjectAnnotationProcessorFactory;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.service.component.ComponentContext;
+
+/**
+ * Benchmark for adapting resources to Sling Models with many injected
+ * elements, a class model with field injection and an interface model. The
+ * injectors and annotation processor factories of the models implementation
+ * are registered with their default rankings, so the elements not annotated
+ * with an injector specific annotation go through them in the same order as
+ * in a running instance.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ModelAdapterFactoryBenchmark {
+
+    private ModelAdapterFactory factory;
+
+    private Resource resource;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        final BundleContext bundleContext = Mockito.mock(BundleContext.class);
+        final ComponentContext componentContext = Mockito.mock(ComponentContext.class);
+        Mockito.when(componentContext.getBundleContext()).thenReturn(bundleContext);
+        Mockito.when(componentContext.getProperties()).thenReturn(new Hashtable<String, Object>());
+
+        factory = new ModelAdapterFactory();
+        ResourceResolverFixture.invoke(factory, "activate", new Class<?>[] {ComponentContext.class}, componentContext);
+
+        bind(new BindingsInjector(), 1, 1000);
+        bind(new ValueMapInjector(), 2, 2000);
+        bind(new ResourcePathInjector(), 3, 2500);
+        bind(new ChildResourceInjector(), 4, 3000);
+        bind(new RequestAttributeInjector(), 5, 4000);
+        bind(new SelfInjector(), 6, Integer.MAX_VALUE);
+        bind(new SlingObjectInjector(), 7, Integer.MAX_VALUE);
+
+        ResourceResolverFixture.invoke(ResourceResolverFixture.getField(factory, "adapterImplementations"),
+                "addClassesAsAdapterAndImplementation", new Class<?>[] {Class[].class},
+                (Object) new Class<?>[] {FieldModel.class, InterfaceModel.class});
+
+        final Map<String, Object> properties = new HashMap<String, Object>();
+        for (int i = 0; i < 8; i++) {
+            properties.put("text" + i, "value " + i);
+        }
+        for (int i = 0; i < 4; i++) {
+            properties.put("number" + i, i);
+            properties.put("long" + i, (long) i);
+        }
+        properties.put("flag0", true);
+        properties.put("flag1", false);
+        properties.put("tags", new String[] {"a", "b", "c"});
+        properties.put("list", new String[] {"x", "y"});
+        resource = new InMemoryResource(null, "/content/page/jcr:content/par/text", properties, null) {
+
+            @Override
+            public Resource getChild(final String relPath) {
+                // the resource has no children, no need for a resolver
+                return null;
+            }
+        };
+
+        if (adaptToFieldModel() == null || adaptToInterfaceModel() == null) {
+            throw new IllegalStateException("Resource can not be adapted to the models.");
+        }
+    }
+
+    private void bind(final Injector injector, final long id, final int ranking) {
+        final Map<String, Object> props = new HashMap<String, Object>();
+        props.put(Constants.SERVICE_ID, id);
+        props.put(Constants.SERVICE_RANKING, ranking);
+        ResourceResolverFixture.invoke(factory, "bindInjector", new Class<?>[] {Injector.class, Map.class},
+                injector, props);
+        if (injector instanceof InjectAnnotationProcessorFactory) {
+            ResourceResolverFixture.invoke(factory, "bindInjectAnnotationProcessorFactory",
+                    new Class<?>[] {InjectAnnotationProcessorFactory.class, Map.class}, injector, props);
+        }
+        if (injector instanceof InjectAnnotationProcessorFactory2) {
+            ResourceResolverFixture.invoke(factory, "bindInjectAnnotationProcessorFactory2",
+                    new Class<?>[] {InjectAnnotationProcessorFactory2.class, Map.class}, injector, props);
+        }
+        if (injector instanceof StaticInjectAnnotationProcessorFactory) {
+            ResourceResolverFixture.invoke(factory, "bindStaticInjectAnnotationProcessorFactory",
+                    new Class<?>[] {StaticInjectAnnotationProcessorFactory.class, Map.class}, injector, props);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void cleanup() {
+        // the cleanup job of a running instance releases the disposal callbacks of collected models
+        factory.run();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ResourceResolverFixture.invoke(factory, "deactivate", new Class<?>[0]);
+    }
+
+    @Benchmark
+    public FieldModel adaptToFieldModel() {
+        return factory.getAdapter(resource, FieldModel.class);
+    }
+
+    @Benchmark
+    public InterfaceModel adaptToInterfaceModel() {
+        return factory.getAdapter(resource, InterfaceModel.class);
+    }
+
+    /**
+     * A model with 24 injected fields, four of them optional and missing.
+     */
+    @Model(adaptables = Resource.class)
+    public static class FieldModel {
+
+        @Inject private String text0;
+        @Inject private String text1;
+        @Inject private String text2;
+        @Inject private String text3;
+        @ValueMapValue private String text4;
+        @ValueMapValue private String text5;
+        @ValueMapValue private String text6;
+        @ValueMapValue private String text7;
+        @Inject private int number0;
+        @Inject private int number1;
+        @ValueMapValue private Integer number2;
+        @ValueMapValue private Integer number3;
+        @Inject private long long0;
+        @Inject private long long1;
+        @Inject private Long long2;
+        @Inject private Long long3;
+        @Inject private boolean flag0;
+        @ValueMapValue private boolean flag1;
+        @Inject private String[] tags;
+        @Inject private List<String> list;
+        @Inject @Optional private String missing0;
+        @Inject @Optional private String missing1;
+        @ValueMapValue(optional = true) private String missing2;
+        @ValueMapValue(optional = true) private Integer missing3;
+    }
+
+    /**
+     * A model with 22 injected methods, two of them optional and missing.
+     */
+    @Model(adaptables = Resource.class)
+    public interface InterfaceModel {
+
+        @Inject String getText0();
+        @Inject String getText1();
+        @Inject String getText2();
+        @Inject String getText3();
+        @Inject String getText4();
+        @Inject String getText5();
+        @Inject String getText6();
+        @Inject String getText7();
+        @Inject int getNumber0();
+        @Inject int getNumber1();
+        @Inject int getNumber2();
+        @Inject int getNumber3();
+        @Inject long getLong0();
+        @Inject long getLong1();
+        @Inject long getLong2();
+        @Inject long getLong3();
+        @Inject boolean getFlag0();
+        @Inject boolean getFlag1();
+        @Inject String[] getTags();
+        @Inject List<String> getList();
+        @Inject @Optional String getMissing0();
+        @Inject @Optional String getMissing1();
+    }
+}
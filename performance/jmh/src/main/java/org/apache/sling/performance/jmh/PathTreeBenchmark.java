@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.performance.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.resourceresolver.impl.providers.tree.Node;
+import org.apache.sling.resourceresolver.impl.providers.tree.PathTree;
+import org.apache.sling.resourceresolver.impl.providers.tree.Pathable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for the lookups in the tree of the resource providers, done by
+ * the resource resolver for every <code>getResource</code>,
+ * <code>listChildren</code> and <code>getParent</code> call. Run it with
+ * <code>-prof gc</code> to see the allocation rate of the lookups.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PathTreeBenchmark {
+
+    /** Mount points of a typical instance */
+    private static final String[] PROVIDERS = {"/", "/libs/sling/servlet/default", "/apps/system/config",
+            "/etc/packages", "/var/classes", "/content/dam/bundles", "/bin/receive", "/system/sling"};
+
+    private PathTree<Pathable> tree;
+
+    private String[] paths;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        final List<Pathable> providers = new ArrayList<Pathable>();
+        for (final String path : PROVIDERS) {
+            providers.add(new Pathable() {
+
+                @Override
+                public String getPath() {
+                    return path;
+                }
+            });
+        }
+        tree = new PathTree<Pathable>(providers);
+
+        paths = new String[BenchmarkContent.PAGES * 2];
+        for (int page = 0; page < BenchmarkContent.PAGES; page++) {
+            paths[page * 2] = BenchmarkContent.getPagePath(page, page) + "/jcr:content/par/text";
+            paths[page * 2 + 1] = "/libs/sling/servlet/default/page" + page + "/jcr:content";
+        }
+    }
+
+    private String next() {
+        if (++next >= paths.length) {
+            next = 0;
+        }
+        return paths[next];
+    }
+
+    @Benchmark
+    public Node<Pathable> getBestMatchingNode() {
+        return tree.getBestMatchingNode(next());
+    }
+
+    @Benchmark
+    public Node<Pathable> getNode() {
+        return tree.getNode(next());
+    }
+}
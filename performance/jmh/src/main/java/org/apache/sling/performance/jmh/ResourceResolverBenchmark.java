@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.performance.jmh;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.commons.testing.sling.MockSlingHttpServletRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for the resolving, mapping, reading and listing of resources
+ * through the <code>ResourceResolverImpl</code>. Each operation picks the
+ * next site in a round robin fashion, so all /etc/map entries, aliases and
+ * vanity paths are used.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResourceResolverBenchmark {
+
+    private static final String ALIAS_PATH = "/" + BenchmarkContent.getAlias(BenchmarkContent.ALIAS_PAGE) + ".html";
+
+    /** The number of sites, each site has its own /etc/map entry. */
+    @Param({"10", "1000"})
+    public int sites;
+
+    private ResourceResolverFixture fixture;
+
+    private HttpServletRequest[] requests;
+
+    private String[] sitePaths;
+
+    private String[] pagePaths;
+
+    private String[] mappedPaths;
+
+    private String[] vanityPaths;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        final InMemoryResourceProvider provider = new InMemoryResourceProvider();
+        BenchmarkContent.addSites(provider, sites);
+        BenchmarkContent.addMappings(provider, sites);
+        fixture = new ResourceResolverFixture(provider, Collections.<String, Object> emptyMap());
+
+        requests = new HttpServletRequest[sites];
+        sitePaths = new String[sites];
+        pagePaths = new String[sites];
+        mappedPaths = new String[sites];
+        vanityPaths = new String[sites];
+        for (int site = 0; site < sites; site++) {
+            requests[site] = new MockSlingHttpServletRequest(null, null, null, null, null, null,
+                    "http", BenchmarkContent.getHost(site), 80, "");
+            sitePaths[site] = BenchmarkContent.getSitePath(site);
+            pagePaths[site] = BenchmarkContent.getPagePath(site, 3);
+            mappedPaths[site] = pagePaths[site] + ".html";
+            vanityPaths[site] = BenchmarkContent.getVanityPath(site, BenchmarkContent.VANITY_PAGE);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.dispose();
+    }
+
+    /**
+     * A resource resolver per thread, like a resource resolver per request.
+     */
+    @State(Scope.Thread)
+    public static class ResolverState {
+
+        ResourceResolver resolver;
+
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setup(final ResourceResolverBenchmark benchmark) throws Exception {
+            resolver = benchmark.fixture.getResourceResolver();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            resolver.close();
+        }
+
+        int next(final int bound) {
+            if (++next >= bound) {
+                next = 0;
+            }
+            return next;
+        }
+    }
+
+    @Benchmark
+    public Resource resolve(final ResolverState state) {
+        final int site = state.next(sites);
+        return state.resolver.resolve(requests[site], "/page3.html");
+    }
+
+    @Benchmark
+    public Resource resolveAlias(final ResolverState state) {
+        final int site = state.next(sites);
+        return state.resolver.resolve(requests[site], ALIAS_PATH);
+    }
+
+    @Benchmark
+    public Resource resolveVanityPath(final ResolverState state) {
+        final int site = state.next(sites);
+        return state.resolver.resolve(requests[site], vanityPaths[site]);
+    }
+
+    @Benchmark
+    public Resource resolveNonExisting(final ResolverState state) {
+        final int site = state.next(sites);
+        return state.resolver.resolve(requests[site], "/missing/page.html");
+    }
+
+    @Benchmark
+    public String map(final ResolverState state) {
+        final int site = state.next(sites);
+        return state.resolver.map(requests[site], mappedPaths[site]);
+    }
+
+    @Benchmark
+    public Resource getResource(final ResolverState state) {
+        return state.resolver.getResource(pagePaths[state.next(sites)]);
+    }
+
+    @Benchmark
+    public void listChildren(final ResolverState state, final Blackhole blackhole) {
+        final Resource site = state.resolver.getResource(sitePaths[state.next(sites)]);
+        final Iterator<Resource> children = state.resolver.listChildren(site);
+        while (children.hasNext()) {
+            blackhole.consume(children.next());
+        }
+    }
+}
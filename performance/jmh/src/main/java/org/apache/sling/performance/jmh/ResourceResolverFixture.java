@@ -0,0 +1,264 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.performance.jmh;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.resourceresolver.impl.CommonResourceResolverFactoryImpl;
+import org.apache.sling.resourceresolver.impl.ResourceAccessSecurityTracker;
+import org.apache.sling.resourceresolver.impl.ResourceResolverFactoryActivator;
+import org.apache.sling.resourceresolver.impl.ResourceResolverFactoryConfig;
+import org.apache.sling.resourceresolver.impl.ResourceResolverFactoryImpl;
+import org.apache.sling.resourceresolver.impl.observation.ResourceChangeListenerWhiteboard;
+import org.apache.sling.resourceresolver.impl.providers.ResourceProviderHandler;
+import org.apache.sling.resourceresolver.impl.providers.ResourceProviderInfo;
+import org.apache.sling.resourceresolver.impl.providers.ResourceProviderStorage;
+import org.apache.sling.resourceresolver.impl.providers.ResourceProviderTracker;
+import org.apache.sling.serviceusermapping.ServiceUserMapper;
+import org.apache.sling.spi.resource.provider.ResourceProvider;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceFactory;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
+
+/**
+ * Sets up the resource resolver factory of this source tree with a single
+ * {@link InMemoryResourceProvider} mounted at the root, outside of an OSGi
+ * framework. The OSGi plumbing is mocked, the same way the unit tests of the
+ * resource resolver do it.
+ */
+public class ResourceResolverFixture {
+
+    private static final String PROVIDER_NAME = "benchmark";
+
+    private final ResourceResolverFactoryActivator activator = new ResourceResolverFactoryActivator();
+
+    private final BundleContext bundleContext;
+
+    private final File dataDirectory;
+
+    private ResourceResolverFactoryImpl factory;
+
+    /**
+     * Create and activate the resource resolver factory
+     * @param provider The provider mounted at the root
+     * @param configuration Configuration values overriding the defaults of
+     *                      {@link ResourceResolverFactoryConfig}, keyed by method name
+     */
+    public ResourceResolverFixture(final ResourceProvider<?> provider, final Map<String, Object> configuration)
+    throws IOException {
+        this.dataDirectory = File.createTempFile("resourceresolver", "data");
+        this.dataDirectory.delete();
+        this.dataDirectory.mkdirs();
+
+        final Bundle bundle = Mockito.mock(Bundle.class);
+        Mockito.when(bundle.getState()).thenReturn(Bundle.ACTIVE);
+        this.bundleContext = Mockito.mock(BundleContext.class);
+        Mockito.when(bundleContext.getBundle()).thenReturn(bundle);
+        Mockito.when(bundleContext.getBundle(Constants.SYSTEM_BUNDLE_LOCATION)).thenReturn(bundle);
+        Mockito.when(bundle.getBundleContext()).thenReturn(bundleContext);
+        Mockito.when(bundleContext.getDataFile(Mockito.anyString())).thenAnswer(new Answer<File>() {
+
+            @Override
+            public File answer(final InvocationOnMock invocation) throws Throwable {
+                return new File(dataDirectory, (String) invocation.getArguments()[0]);
+            }
+        });
+        Mockito.when(bundleContext.registerService(Mockito.<Class<Object>> any(), Mockito.<Object> any(),
+                Mockito.<Dictionary<String, ?>> any())).thenReturn(Mockito.mock(ServiceRegistration.class));
+        Mockito.when(bundleContext.registerService(Mockito.eq(ResourceResolverFactory.class),
+                Mockito.<ServiceFactory<ResourceResolverFactory>> any(), Mockito.<Dictionary<String, ?>> any()))
+                .thenAnswer(new Answer<ServiceRegistration<ResourceResolverFactory>>() {
+
+            @SuppressWarnings("unchecked")
+            @Override
+            public ServiceRegistration<ResourceResolverFactory> answer(final InvocationOnMock invocation) {
+                final ServiceFactory<ResourceResolverFactory> serviceFactory =
+                        (ServiceFactory<ResourceResolverFactory>) invocation.getArguments()[1];
+                factory = (ResourceResolverFactoryImpl) serviceFactory.getService(bundle, null);
+                return Mockito.mock(ServiceRegistration.class);
+            }
+        });
+
+        final ServiceUserMapper serviceUserMapper = Mockito.mock(ServiceUserMapper.class);
+        Mockito.when(serviceUserMapper.getServiceUserID(Mockito.any(Bundle.class), Mockito.anyString())).thenReturn("admin");
+
+        final ResourceProviderStorage storage = new ResourceProviderStorage(
+                Collections.singletonList(createHandler(provider, "/")));
+        final ResourceProviderTracker tracker = Mockito.mock(ResourceProviderTracker.class);
+        Mockito.when(tracker.getResourceProviderStorage()).thenReturn(storage);
+
+        setField(activator, "resourceAccessSecurityTracker", new ResourceAccessSecurityTracker());
+        setField(activator, "resourceProviderTracker", tracker);
+        setField(activator, "changeListenerWhiteboard", Mockito.mock(ResourceChangeListenerWhiteboard.class));
+        setField(activator, "serviceUserMapper", serviceUserMapper);
+
+        final Map<String, Object> config = new HashMap<String, Object>();
+        config.put("resource_resolver_required_providernames", new String[] {PROVIDER_NAME});
+        config.put("resource_resolver_log_unclosed", false);
+        config.putAll(configuration);
+        invoke(activator, "activate", new Class<?>[] {BundleContext.class, ResourceResolverFactoryConfig.class},
+                bundleContext, createConfig(ResourceResolverFactoryConfig.class, config));
+        if (factory == null) {
+            throw new IllegalStateException("Resource resolver factory has not been registered.");
+        }
+    }
+
+    /**
+     * @return The resource resolver factory
+     */
+    public ResourceResolverFactory getFactory() {
+        return factory;
+    }
+
+    /**
+     * @return The factory implementation used by the map entries
+     */
+    public CommonResourceResolverFactoryImpl getCommonFactory() {
+        return (CommonResourceResolverFactoryImpl) getField(factory, "commonFactory");
+    }
+
+    /**
+     * @return The (mocked) bundle context of the resource resolver bundle
+     */
+    public BundleContext getBundleContext() {
+        return bundleContext;
+    }
+
+    /**
+     * Get a resource resolver. Service and administrative resource
+     * resolvers are mapped to the same user, so this one can be used
+     * for all benchmarks.
+     */
+    public ResourceResolver getResourceResolver() throws Exception {
+        return factory.getServiceResourceResolver(null);
+    }
+
+    /**
+     * Deactivate the resource resolver factory.
+     */
+    public void dispose() {
+        invoke(activator, "deactivate", new Class<?>[0]);
+        delete(dataDirectory);
+    }
+
+    private static void delete(final File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (final File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static ResourceProviderHandler createHandler(final ResourceProvider<?> provider, final String path) {
+        final ServiceReference<?> ref = Mockito.mock(ServiceReference.class);
+        final BundleContext bc = Mockito.mock(BundleContext.class);
+        Mockito.when(bc.getService(Mockito.eq(ref))).thenReturn(provider);
+        Mockito.when(ref.getProperty(Mockito.eq(Constants.SERVICE_ID))).thenReturn(1L);
+        Mockito.when(ref.getProperty(Mockito.eq(Constants.SERVICE_RANKING))).thenReturn(0);
+        Mockito.when(ref.getProperty(Mockito.eq(ResourceProvider.PROPERTY_NAME))).thenReturn(PROVIDER_NAME);
+        Mockito.when(ref.getProperty(Mockito.eq(ResourceProvider.PROPERTY_ROOT))).thenReturn(path);
+        Mockito.when(ref.getProperty(Mockito.eq(ResourceProvider.PROPERTY_ADAPTABLE))).thenReturn(true);
+
+        final ResourceProviderHandler handler = new ResourceProviderHandler(bc, new ResourceProviderInfo(ref));
+        handler.activate();
+        return handler;
+    }
+
+    /**
+     * Create an instance of a configuration annotation, returning the given
+     * values and the default values for all other methods.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T createConfig(final Class<T> type, final Map<String, Object> values) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, new InvocationHandler() {
+
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+                if (values.containsKey(method.getName())) {
+                    return values.get(method.getName());
+                }
+                if ("annotationType".equals(method.getName())) {
+                    return type;
+                }
+                return method.getDefaultValue();
+            }
+        });
+    }
+
+    static void setField(final Object target, final String name, final Object value) {
+        try {
+            final Field field = findField(target.getClass(), name);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (final Exception e) {
+            throw new IllegalStateException("Unable to set field " + name, e);
+        }
+    }
+
+    static Object getField(final Object target, final String name) {
+        try {
+            final Field field = findField(target.getClass(), name);
+            field.setAccessible(true);
+            return field.get(target);
+        } catch (final Exception e) {
+            throw new IllegalStateException("Unable to get field " + name, e);
+        }
+    }
+
+    static Object invoke(final Object target, final String name, final Class<?>[] types, final Object... args) {
+        try {
+            final Method method = target.getClass().getDeclaredMethod(name, types);
+            method.setAccessible(true);
+            return method.invoke(target, args);
+        } catch (final Exception e) {
+            throw new IllegalStateException("Unable to invoke " + name, e);
+        }
+    }
+
+    private static Field findField(final Class<?> type, final String name) throws NoSuchFieldException {
+        Class<?> current = type;
+        while (current != null) {
+            try {
+                return current.getDeclaredField(name);
+            } catch (final NoSuchFieldException ignore) {
+                current = current.getSuperclass();
+            }
+        }
+        throw new NoSuchFieldException(name);
+    }
+}
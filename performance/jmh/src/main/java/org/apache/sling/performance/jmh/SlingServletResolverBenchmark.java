@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.performance.jmh;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.Servlet;
+import javax.servlet.http.HttpServlet;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.request.SlingRequestEvent;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.commons.testing.sling.MockSlingHttpServletRequest;
+import org.apache.sling.servlets.resolver.internal.SlingServletResolver;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.framework.BundleContext;
+import org.osgi.service.component.ComponentContext;
+
+/**
+ * Benchmark for <code>SlingServletResolver.resolveServlet</code> with the
+ * scripts in the in-memory resource provider.
+ * <p>
+ * There are {@link #TYPES} resource types, all inheriting the scripts of a
+ * common base type. Half of the requests use a selector which has a script
+ * of its own. With a cache size of 0 the script resolution cache is
+ * disabled, so every call walks the resource type hierarchy.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SlingServletResolverBenchmark {
+
+    /** The number of resource types */
+    private static final int TYPES = 50;
+
+    private static final String BASE_TYPE = "bench/base";
+
+    @Param({"0", "200"})
+    public int cacheSize;
+
+    private ResourceResolverFixture fixture;
+
+    private SlingServletResolver servletResolver;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        final InMemoryResourceProvider provider = new InMemoryResourceProvider();
+        provider.addScript("/apps/" + BASE_TYPE + "/html.jsp", new ScriptServlet());
+        provider.addScript("/apps/" + BASE_TYPE + "/GET.jsp", new ScriptServlet());
+        provider.addScript("/apps/" + BASE_TYPE + "/print.html.jsp", new ScriptServlet());
+        for (int type = 0; type < TYPES; type++) {
+            final Map<String, Object> props = new HashMap<String, Object>();
+            props.put("sling:resourceSuperType", BASE_TYPE);
+            provider.add("/apps/" + getType(type), props);
+            provider.add("/content/page" + type,
+                    Collections.<String, Object> singletonMap(ResourceResolver.PROPERTY_RESOURCE_TYPE, getType(type)));
+        }
+        fixture = new ResourceResolverFixture(provider, Collections.<String, Object> emptyMap());
+
+        servletResolver = new SlingServletResolver();
+        ResourceResolverFixture.setField(servletResolver, "resourceResolverFactory", fixture.getFactory());
+        final Map<String, Object> config = new HashMap<String, Object>();
+        config.put("servletresolver_cacheSize", cacheSize);
+        ResourceResolverFixture.invoke(servletResolver, "activate",
+                new Class<?>[] {BundleContext.class, SlingServletResolver.Config.class},
+                Mockito.mock(BundleContext.class),
+                ResourceResolverFixture.createConfig(SlingServletResolver.Config.class, config));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ResourceResolverFixture.invoke(servletResolver, "deactivate", new Class<?>[] {ComponentContext.class},
+                (Object) null);
+        fixture.dispose();
+    }
+
+    private static String getType(final int type) {
+        return "bench/type" + type;
+    }
+
+    /**
+     * The requests of a thread. The per thread script resolver is set up
+     * the way the request processor does it for each request.
+     */
+    @State(Scope.Thread)
+    public static class RequestState {
+
+        private SlingHttpServletRequest[] requests;
+
+        private ResourceResolver resolver;
+
+        private SlingServletResolver servletResolver;
+
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setup(final SlingServletResolverBenchmark benchmark) throws Exception {
+            servletResolver = benchmark.servletResolver;
+            resolver = benchmark.fixture.getResourceResolver();
+            requests = new SlingHttpServletRequest[TYPES * 2];
+            for (int i = 0; i < requests.length; i++) {
+                final MockSlingHttpServletRequest request = new MockSlingHttpServletRequest(
+                        "/content/page" + (i / 2), i % 2 == 0 ? null : "print", "html", null, null);
+                request.setMethod("GET");
+                request.setResourceResolver(resolver);
+                request.setResource(resolver.getResource("/content/page" + (i / 2)));
+                requests[i] = request;
+            }
+            servletResolver.onEvent(new SlingRequestEvent(null, requests[0], SlingRequestEvent.EventType.EVENT_INIT));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            servletResolver.onEvent(new SlingRequestEvent(null, requests[0], SlingRequestEvent.EventType.EVENT_DESTROY));
+            resolver.close();
+        }
+
+        SlingHttpServletRequest next() {
+            if (++next >= requests.length) {
+                next = 0;
+            }
+            return requests[next];
+        }
+    }
+
+    @Benchmark
+    public Servlet resolveServlet(final RequestState state) {
+        return servletResolver.resolveServlet(state.next());
+    }
+
+    private static final class ScriptServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+    }
+}